@@ -0,0 +1,84 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.dictionary.Sentence;
+import net.java.sen.dictionary.Token;
+import net.java.sen.dictionary.Viterbi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the latency of {@link Viterbi#getBestTokens(Sentence, List)} on a
+ * single long sentence without punctuation, for exact and beam searches
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BeamSearchBenchmark {
+  
+  /** 0 for the exact search */
+  @Param({"0", "8", "32"})
+  public int beamWidth;
+  
+  @Param({"1000", "10000"})
+  public int length;
+  
+  private char[] sentence;
+  private Viterbi viterbi;
+  private final List<Token> reuse = new ArrayList<Token>();
+  
+  @Setup
+  public void setUp() throws IOException {
+    StringBuilder text = new StringBuilder();
+    List<String> lines = BenchmarkCorpus.getLines("unpunctuated");
+    while (text.length() < length) {
+      for (String line : lines) {
+        text.append(line);
+      }
+    }
+    text.setLength(length);
+    sentence = text.toString().toCharArray();
+    viterbi = SenFactory.getViterbi(BenchmarkCorpus.getDictionaryDir());
+    viterbi.setBeamWidth(beamWidth);
+  }
+  
+  @Benchmark
+  public int getBestTokens() throws IOException {
+    return viterbi.getBestTokens(new Sentence(sentence), reuse).size();
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+package net.java.sen;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.util.IOUtils;
+
+/**
+ * Access to the bundled benchmark corpora and dictionary<br><br>
+ * 
+ * The corpora are stored as UTF-8 text under <code>/corpus/</code> on the
+ * classpath:
+ * <ul>
+ * <li><code>news</code>: newspaper style sentences, one per line</li>
+ * <li><code>chat</code>: short, casual chat messages</li>
+ * <li><code>unpunctuated</code>: a single long line of text with no
+ *     punctuation or line breaks</li>
+ * </ul>
+ */
+public class BenchmarkCorpus {
+  
+  /**
+   * The system property naming the dictionary directory to benchmark
+   */
+  public static final String DICTIONARY_PROPERTY = "benchmark.dictionary";
+  
+  /**
+   * Returns the dictionary directory to benchmark
+   *
+   * @return The dictionary directory
+   */
+  public static String getDictionaryDir() {
+    return System.getProperty(DICTIONARY_PROPERTY, "dictionary/ipadic");
+  }
+  
+  /**
+   * Reads the lines of a bundled corpus
+   *
+   * @param name The name of the corpus
+   * @return The lines of the corpus
+   * @throws IOException
+   */
+  public static List<String> getLines(String name) throws IOException {
+    InputStream in = BenchmarkCorpus.class.getResourceAsStream("/corpus/" + name + ".txt");
+    if (in == null) {
+      throw new IllegalArgumentException("Unknown corpus [" + name + "]");
+    }
+    
+    BufferedReader reader = null;
+    try {
+      reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+      List<String> lines = new ArrayList<String>();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.length() > 0) {
+          lines.add(line);
+        }
+      }
+      return lines;
+    } finally {
+      IOUtils.closeWhileHandlingException(reader, in);
+    }
+  }
+  
+  /**
+   * Reads a bundled corpus as a single document
+   *
+   * @param name The name of the corpus
+   * @return The text of the corpus, with lines separated by '\n'
+   * @throws IOException
+   */
+  public static String getText(String name) throws IOException {
+    StringBuilder builder = new StringBuilder();
+    for (String line : getLines(name)) {
+      builder.append(line).append('\n');
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.dictionary.Morpheme;
+import net.java.sen.dictionary.Token;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the lazy decoding of {@link Morpheme} data for every token of a
+ * corpus. The corpus is re-analysed before each invocation so that every
+ * Morpheme starts out undecoded
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MorphemeBenchmark {
+  
+  @Param({"news", "chat"})
+  public String corpus;
+  
+  private List<String> lines;
+  private StringTagger tagger;
+  private final List<Morpheme> morphemes = new ArrayList<Morpheme>();
+  
+  @Setup
+  public void setUp() throws IOException {
+    lines = BenchmarkCorpus.getLines(corpus);
+    tagger = SenFactory.getStringTagger(BenchmarkCorpus.getDictionaryDir());
+  }
+  
+  @Setup(Level.Invocation)
+  public void analyze() throws IOException {
+    morphemes.clear();
+    for (String line : lines) {
+      for (Token token : tagger.analyze(line, new ArrayList<Token>())) {
+        morphemes.add(token.getMorpheme());
+      }
+    }
+  }
+  
+  @Benchmark
+  public void basicForm(Blackhole blackhole) {
+    for (Morpheme morpheme : morphemes) {
+      blackhole.consume(morpheme.getPartOfSpeech());
+      blackhole.consume(morpheme.getBasicForm());
+    }
+  }
+  
+  @Benchmark
+  public void readings(Blackhole blackhole) {
+    for (Morpheme morpheme : morphemes) {
+      blackhole.consume(morpheme.getReadings());
+      blackhole.consume(morpheme.getPronunciations());
+    }
+  }
+}
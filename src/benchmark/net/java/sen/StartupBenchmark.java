@@ -0,0 +1,65 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.dictionary.Token;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time from {@link SenFactory#getInstance(String)} to the first
+ * token in a fresh JVM, as seen by a frontend that has just started. Each
+ * fork loads the dictionary once, so the score is the cold start time;
+ * <code>morpheme</code> also decodes the part-of-speech data of the first
+ * token, which loads the part-of-speech sections
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+  
+  @Param({"false", "true"})
+  public boolean morpheme;
+  
+  @Benchmark
+  public Object firstToken() throws IOException {
+    String dictionaryDir = BenchmarkCorpus.getDictionaryDir();
+    SenFactory.getInstance(dictionaryDir);
+    List<Token> tokens = SenFactory.getStringTagger(dictionaryDir).analyze("関西国際空港", new ArrayList<Token>());
+    Token token = tokens.get(0);
+    return morpheme ? token.getMorpheme().getPartOfSpeech() : token.getSurface();
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.dictionary.Token;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link StringTagger#analyze(String, List)} over every line of a
+ * corpus, with both the buffer and the heap array dictionary backends
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StringTaggerBenchmark {
+  
+  @Param({"news", "chat", "unpunctuated"})
+  public String corpus;
+  
+  @Param({"buffer", "array"})
+  public String backend;
+  
+  private List<String> lines;
+  private StringTagger tagger;
+  private final List<Token> reuse = new ArrayList<Token>();
+  
+  @Setup
+  public void setUp() throws IOException {
+    lines = BenchmarkCorpus.getLines(corpus);
+    tagger = SenFactory.getStringTagger(BenchmarkCorpus.getDictionaryDir(), "array".equals(backend));
+  }
+  
+  @Benchmark
+  public int analyze() throws IOException {
+    int count = 0;
+    for (String line : lines) {
+      count += tagger.analyze(line, reuse).size();
+    }
+    return count;
+  }
+}
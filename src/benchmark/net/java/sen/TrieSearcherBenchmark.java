@@ -0,0 +1,131 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+package net.java.sen;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.trie.CharIterator;
+import net.java.sen.trie.TrieSearcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link TrieSearcher#commonPrefixSearch} from every character
+ * position of a corpus, over both the mapped buffer and a heap array copy of
+ * trie.sen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TrieSearcherBenchmark {
+  
+  @Param({"news", "chat", "unpunctuated"})
+  public String corpus;
+  
+  private char[][] lines;
+  private IntBuffer trieBuffer;
+  private int[] trieArray;
+  private final int[] results = new int[256];
+  private final SentenceCharIterator iterator = new SentenceCharIterator();
+  
+  /**
+   * A CharIterator over a region of a char[]
+   */
+  private static final class SentenceCharIterator implements CharIterator {
+    private char[] chars;
+    private int position;
+    
+    void reset(char[] chars, int position) {
+      this.chars = chars;
+      this.position = position;
+    }
+    
+    public boolean hasNext() {
+      return position < chars.length;
+    }
+    
+    public char next() throws NoSuchElementException {
+      if (position >= chars.length) {
+        throw new NoSuchElementException();
+      }
+      return chars[position++];
+    }
+  }
+  
+  @Setup
+  public void setUp() throws IOException {
+    List<String> text = BenchmarkCorpus.getLines(corpus);
+    lines = new char[text.size()][];
+    for (int i = 0; i < lines.length; i++) {
+      lines[i] = text.get(i).toCharArray();
+    }
+    
+    RandomAccessFile file = new RandomAccessFile(new File(BenchmarkCorpus.getDictionaryDir(), "trie.sen"), "r");
+    try {
+      trieBuffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()).asIntBuffer();
+    } finally {
+      file.close();
+    }
+    trieArray = new int[trieBuffer.limit()];
+    trieBuffer.duplicate().get(trieArray);
+  }
+  
+  @Benchmark
+  public int buffer() {
+    int hits = 0;
+    for (char[] line : lines) {
+      for (int i = 0; i < line.length; i++) {
+        iterator.reset(line, i);
+        hits += TrieSearcher.commonPrefixSearch(trieBuffer, iterator, results);
+      }
+    }
+    return hits;
+  }
+  
+  @Benchmark
+  public int array() {
+    int hits = 0;
+    for (char[] line : lines) {
+      for (int i = 0; i < line.length; i++) {
+        iterator.reset(line, i);
+        hits += TrieSearcher.commonPrefixSearch(trieArray, iterator, results);
+      }
+    }
+    return hits;
+  }
+}
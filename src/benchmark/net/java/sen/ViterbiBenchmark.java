@@ -0,0 +1,78 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.dictionary.Sentence;
+import net.java.sen.dictionary.Token;
+import net.java.sen.dictionary.Viterbi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Viterbi#getBestTokens(Sentence, List)} over every line of
+ * a corpus, without the filter processing of {@link StringTagger}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ViterbiBenchmark {
+  
+  @Param({"news", "chat", "unpunctuated"})
+  public String corpus;
+  
+  private char[][] lines;
+  private Viterbi viterbi;
+  private final List<Token> reuse = new ArrayList<Token>();
+  
+  @Setup
+  public void setUp() throws IOException {
+    List<String> text = BenchmarkCorpus.getLines(corpus);
+    lines = new char[text.size()][];
+    for (int i = 0; i < lines.length; i++) {
+      lines[i] = text.get(i).toCharArray();
+    }
+    viterbi = SenFactory.getViterbi(BenchmarkCorpus.getDictionaryDir());
+  }
+  
+  @Benchmark
+  public int getBestTokens() throws IOException {
+    int count = 0;
+    for (char[] line : lines) {
+      count += viterbi.getBestTokens(new Sentence(line), reuse).size();
+    }
+    return count;
+  }
+}
@@ -0,0 +1,73 @@
+package org.apache.lucene.analysis.gosen;
+
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import net.java.sen.BenchmarkCorpus;
+import net.java.sen.SenFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link StreamTagger2#next()} over a whole corpus read as a single
+ * document
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StreamTagger2Benchmark {
+  
+  @Param({"news", "chat", "unpunctuated"})
+  public String corpus;
+  
+  private String text;
+  private StreamTagger2 tagger;
+  
+  @Setup
+  public void setUp() throws IOException {
+    text = BenchmarkCorpus.getText(corpus);
+    tagger = new StreamTagger2(SenFactory.getStringTagger(BenchmarkCorpus.getDictionaryDir()), new StringReader(""));
+  }
+  
+  @Benchmark
+  public int next() throws IOException {
+    tagger.reset(new StringReader(text));
+    int count = 0;
+    while (tagger.next() != null) {
+      count++;
+    }
+    return count;
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import net.java.sen.dictionary.Token;
+
+/**
+ * Analyses many documents in parallel on an {@link ExecutorService}
+ * 
+ * <p>Each document is analysed by a single task using a {@link SharedTagger},
+ * so every worker thread reuses pooled analysis state. Results are returned
+ * in the order of the input. At most <code>maxInFlight</code> documents are
+ * submitted but not yet consumed at any time, which bounds the memory used by
+ * queued tasks and unconsumed results when the input is much larger than the
+ * number of workers
+ * 
+ * <p><b>Thread Safety</b>: Objects of this class are thread safe, but each
+ * {@link Iterator} returned by {@link #iterator(Iterator)} should be consumed
+ * by a single thread
+ */
+public class BatchTagger {
+  
+  /**
+   * The tagger used by every task
+   */
+  private final SharedTagger tagger;
+  
+  /**
+   * The executor on which documents are analysed
+   */
+  private final ExecutorService executor;
+  
+  /**
+   * The maximum number of documents submitted but not yet consumed
+   */
+  private final int maxInFlight;
+  
+  /**
+   * A task analysing one document
+   */
+  private final class AnalysisTask implements Callable<List<Token>> {
+    
+    private final String surface;
+    
+    AnalysisTask(String surface) {
+      this.surface = surface;
+    }
+    
+    public List<Token> call() throws IOException {
+      return tagger.analyze(surface, new ArrayList<Token>());
+    }
+  }
+  
+  /**
+   * Iterates over the analyses of a sequence of documents, submitting
+   * documents ahead of the consumer up to the in-flight limit
+   */
+  private final class ResultIterator implements Iterator<List<Token>> {
+    
+    private final Iterator<? extends CharSequence> inputs;
+    
+    /** Submitted documents in input order */
+    private final LinkedList<Future<List<Token>>> pending = new LinkedList<Future<List<Token>>>();
+    
+    ResultIterator(Iterator<? extends CharSequence> inputs) {
+      this.inputs = inputs;
+      fill();
+    }
+    
+    /**
+     * Submits documents until the in-flight limit is reached or the input is
+     * exhausted
+     */
+    private void fill() {
+      while (pending.size() < maxInFlight && inputs.hasNext()) {
+        pending.add(executor.submit(new AnalysisTask(inputs.next().toString())));
+      }
+    }
+    
+    public boolean hasNext() {
+      return !pending.isEmpty();
+    }
+    
+    /**
+     * @throws RuntimeException wrapping the {@link IOException} of a failed
+     *         analysis, or an {@link InterruptedException}
+     */
+    public List<Token> next() {
+      if (pending.isEmpty()) {
+        throw new NoSuchElementException();
+      }
+      Future<List<Token>> future = pending.removeFirst();
+      fill();
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        cancel();
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+        cancel();
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new RuntimeException(cause);
+      }
+    }
+    
+    /**
+     * Cancels the remaining submitted documents after a failure
+     */
+    private void cancel() {
+      for (Future<List<Token>> future : pending) {
+        future.cancel(false);
+      }
+      pending.clear();
+    }
+    
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+  
+  /**
+   * Analyses a list of documents in parallel
+   *
+   * @param inputs The documents to analyse
+   * @return The {@link Token}s of each document, in the order of the input
+   * @throws IOException if the analysis of any document fails
+   */
+  public List<List<Token>> analyzeAll(List<? extends CharSequence> inputs) throws IOException {
+    List<List<Token>> results = new ArrayList<List<Token>>(inputs.size());
+    try {
+      for (Iterator<List<Token>> iterator = iterator(inputs.iterator()); iterator.hasNext();) {
+        results.add(iterator.next());
+      }
+    } catch (RuntimeException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw e;
+    }
+    return results;
+  }
+  
+  /**
+   * Analyses a stream of documents in parallel. Documents are read from
+   * <code>inputs</code> only as far ahead of the consumer as the in-flight
+   * limit allows
+   *
+   * @param inputs The documents to analyse
+   * @return An iterator over the {@link Token}s of each document, in the order
+   *         of the input. Its <code>next()</code> method throws a
+   *         RuntimeException wrapping the IOException of a failed analysis
+   */
+  public Iterator<List<Token>> iterator(Iterator<? extends CharSequence> inputs) {
+    return new ResultIterator(inputs);
+  }
+  
+  /**
+   * @param tagger The tagger used to analyse each document
+   * @param executor The executor on which documents are analysed. It is not
+   *                 shut down by this class
+   * @param maxInFlight The maximum number of documents submitted but not yet
+   *                    consumed; a few times the number of workers keeps them
+   *                    busy
+   */
+  public BatchTagger(SharedTagger tagger, ExecutorService executor, int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be positive");
+    }
+    this.tagger = tagger;
+    this.executor = executor;
+    this.maxInFlight = maxInFlight;
+  }
+  
+  /**
+   * @param dictionaryDir a directory of dictionary
+   * @param executor The executor on which documents are analysed. It is not
+   *                 shut down by this class
+   * @param maxInFlight The maximum number of documents submitted but not yet
+   *                    consumed
+   */
+  public BatchTagger(String dictionaryDir, ExecutorService executor, int maxInFlight) {
+    this(SenFactory.getSharedTagger(dictionaryDir), executor, maxInFlight);
+  }
+}
@@ -20,20 +20,44 @@
 
 package net.java.sen;
 
-import java.io.DataInputStream;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 
 import net.java.sen.util.IOUtils;
 
+import net.java.sen.dictionary.AnalysisMetrics;
 import net.java.sen.dictionary.Dictionary;
+import net.java.sen.dictionary.DictionaryFile;
+import net.java.sen.dictionary.DictionaryHeader;
+import net.java.sen.dictionary.LazySection;
+import net.java.sen.dictionary.MorphemeCache;
+import net.java.sen.dictionary.PartOfSpeechTables;
+import net.java.sen.dictionary.Token;
 import net.java.sen.dictionary.Tokenizer;
+import net.java.sen.dictionary.UserDictionary;
 import net.java.sen.dictionary.Viterbi;
+import net.java.sen.tokenizers.ja.CharacterClassTable;
 import net.java.sen.tokenizers.ja.JapaneseTokenizer;
 
 /**
@@ -42,75 +66,467 @@ import net.java.sen.tokenizers.ja.JapaneseTokenizer;
  * 
  * <b>Thread Safety:</b> This class and all its public methods are thread safe.
  * The objects constructed by the factory are <b>NOT</b> thread safe and should
- * not be accessed simultaneously by multiple threads
+ * not be accessed simultaneously by multiple threads, except for the
+ * {@link SharedTagger}
  */
 public class SenFactory {
   
   private static final Map<String,SenFactory> map = new ConcurrentHashMap<String,SenFactory>();
   
+  private static final Logger log = Logger.getLogger(SenFactory.class.getName());
+  
   private static final String EMPTY_DICTIONARYDIR_KEY = "NO_DICTIONARY_INSTANCE"; 
   
+  /** Source of the versions of loaded dictionaries */
+  private static final AtomicLong versions = new AtomicLong();
+  
+  /** Timers polling watched dictionary directories, by key */
+  private static final Map<String,Timer> watchers = new HashMap<String,Timer>();
+  
+  /** The metrics of dictionary directories for which they are enabled, by key */
+  private static final Map<String,AnalysisMetrics> metrics = new ConcurrentHashMap<String,AnalysisMetrics>();
+  
+  /** The compiled dictionary files checked for changes by a watch */
+  private static final String[] DICTIONARY_FILES = new String[] {
+      DictionaryFile.FILE_NAME, "header.sen", "connectionCost.sen", "partOfSpeech.sen",
+      "token.sen", "trie.sen", "posIndex.sen", "char.def"
+  };
+  
+  /** Analysed by a newly loaded dictionary before it replaces the old one */
+  private static final String VALIDATION_TEXT = "日本語の文章を解析する。";
+  
+  private static String getKey(String dictionaryDir) {
+    return (dictionaryDir == null || dictionaryDir.trim().length() == 0) ? EMPTY_DICTIONARYDIR_KEY : dictionaryDir;
+  }
+  
   /**
-   * Get the singleton factory instance
+   * Get the singleton factory instance<br><br>
+   * 
+   * The checksums of a single dictionary file are verified in the background
+   * once it is opened. If they do not match, this fails from then on until
+   * the dictionary is reloaded
+   * 
    * @param dictionaryDir a directory of dictinaries
    */
-  public synchronized static SenFactory getInstance(String dictionaryDir) {
+  public static SenFactory getInstance(String dictionaryDir) {
     
-    String key = (dictionaryDir == null || dictionaryDir.trim().length() == 0) ? EMPTY_DICTIONARYDIR_KEY : dictionaryDir; 
+    String key = getKey(dictionaryDir);
     SenFactory instance = map.get(key);
     if (instance == null) {
-      try {
-        instance = new SenFactory(dictionaryDir);
-        map.put(key, instance);
-      } catch (IOException ex) {
-        throw new RuntimeException(ex);
+      synchronized (SenFactory.class) {
+        instance = map.get(key);
+        if (instance == null) {
+          try {
+            instance = new SenFactory(dictionaryDir);
+            instance.verifyInBackground();
+            map.put(key, instance);
+          } catch (IOException ex) {
+            throw new RuntimeException(ex);
+          }
+        }
       }
     }
     
+    IOException failure = instance.verificationFailure;
+    if (failure != null) {
+      throw new RuntimeException(failure);
+    }
     return instance;
   }
   
-  private SenFactory(String dictionaryDir) throws IOException {
+  /**
+   * Returns the version of the dictionary currently in use for a directory.
+   * The version changes whenever the dictionary is reloaded, so a holder of
+   * a tagger can tell that it should create a new one
+   * 
+   * @param dictionaryDir a directory of dictionary
+   * @return The version of the current dictionary
+   * @see #reload(String)
+   */
+  public static long getVersion(String dictionaryDir) {
+    return getInstance(dictionaryDir).version;
+  }
+  
+  /**
+   * Loads the dictionary of a directory again, and uses it for all taggers
+   * created from then on<br><br>
+   * 
+   * The new dictionary is loaded and validated on the calling thread, and
+   * replaces the old one only if that succeeds. The checksums of a single
+   * dictionary file are verified here, before the new dictionary is used,
+   * rather than in the background. The user dictionaries read over
+   * the old dictionary are read again over the new one, and the reload fails
+   * if any of them no longer can be. Taggers created before the
+   * reload keep using the old dictionary, whose buffers are released once
+   * the last of them is garbage collected
+   * 
+   * @param dictionaryDir a directory of dictionary
+   * @return The version of the new dictionary
+   * @throws IOException if the new dictionary cannot be read, or is corrupt,
+   *         or a user dictionary cannot be read over it
+   * @throws RuntimeException if the new dictionary is invalid
+   */
+  public static long reload(String dictionaryDir) throws IOException {
+    SenFactory instance = new SenFactory(dictionaryDir);
+    instance.validate();
+    
+    SenFactory oldInstance = map.get(getKey(dictionaryDir));
+    if (oldInstance != null) {
+      List<String> userDictionaryFiles;
+      synchronized (oldInstance.userDictionaries) {
+        userDictionaryFiles = new ArrayList<String>(oldInstance.userDictionaries.keySet());
+      }
+      for (String userDictionaryFile : userDictionaryFiles) {
+        instance.loadUserDictionary(userDictionaryFile);
+      }
+    }
+    
+    synchronized (SenFactory.class) {
+      map.put(getKey(dictionaryDir), instance);
+    }
+    return instance.version;
+  }
+  
+  /**
+   * Polls a dictionary directory for changes to the compiled dictionary
+   * files, and reloads the dictionary in the background when they have
+   * changed and then been left unchanged for one interval. A dictionary that
+   * fails to load or validate is ignored, and the current one kept, until
+   * the files change again
+   * 
+   * @param dictionaryDir a directory of dictionary
+   * @param interval The polling interval in milliseconds
+   * @see #reload(String)
+   */
+  public static void watch(String dictionaryDir, long interval) {
+    if (dictionaryDir == null || dictionaryDir.trim().length() == 0) {
+      throw new IllegalArgumentException("Only a dictionary directory can be watched");
+    }
+    if (interval <= 0) {
+      throw new IllegalArgumentException("Invalid interval: " + interval);
+    }
+    
+    synchronized (watchers) {
+      unwatch(dictionaryDir);
+      Timer timer = new Timer("SenFactory reload " + dictionaryDir, true);
+      timer.schedule(new ReloadTask(dictionaryDir), interval, interval);
+      watchers.put(getKey(dictionaryDir), timer);
+    }
+  }
+  
+  /**
+   * Stops polling a dictionary directory for changes
+   * 
+   * @param dictionaryDir a directory of dictionary
+   * @see #watch(String, long)
+   */
+  public static void unwatch(String dictionaryDir) {
+    synchronized (watchers) {
+      Timer timer = watchers.remove(getKey(dictionaryDir));
+      if (timer != null) {
+        timer.cancel();
+      }
+    }
+  }
+  
+  /**
+   * Enables the recording of {@link AnalysisMetrics} for a dictionary
+   * directory, and registers them with the platform MBean server as
+   * <code>net.java.sen:type=AnalysisMetrics,dictionaryDir="..."</code><br><br>
+   * 
+   * The metrics are recorded by all taggers created from then on, including
+   * those over reloaded dictionaries. Metrics cost nothing until enabled
+   * 
+   * @param dictionaryDir a directory of dictionary
+   * @return The metrics
+   */
+  public static AnalysisMetrics enableMetrics(String dictionaryDir) {
+    String key = getKey(dictionaryDir);
+    synchronized (metrics) {
+      AnalysisMetrics analysisMetrics = metrics.get(key);
+      if (analysisMetrics == null) {
+        analysisMetrics = new AnalysisMetrics();
+        try {
+          ManagementFactory.getPlatformMBeanServer().registerMBean(analysisMetrics, getMetricsName(key));
+        } catch (JMException e) {
+          // Another copy of these classes, as in a separate webapp, may have
+          // registered the name; the metrics are still recorded
+        }
+        metrics.put(key, analysisMetrics);
+      }
+      return analysisMetrics;
+    }
+  }
+  
+  /**
+   * Stops recording {@link AnalysisMetrics} for a dictionary directory in
+   * taggers created from then on, and unregisters them from the platform
+   * MBean server
+   * 
+   * @param dictionaryDir a directory of dictionary
+   */
+  public static void disableMetrics(String dictionaryDir) {
+    String key = getKey(dictionaryDir);
+    synchronized (metrics) {
+      if (metrics.remove(key) != null) {
+        try {
+          ManagementFactory.getPlatformMBeanServer().unregisterMBean(getMetricsName(key));
+        } catch (JMException e) {
+          // Not registered by this copy of the classes
+        }
+      }
+    }
+  }
+  
+  /**
+   * Returns the {@link AnalysisMetrics} of a dictionary directory
+   * 
+   * @param dictionaryDir a directory of dictionary
+   * @return The metrics, or <code>null</code> if they are not enabled
+   * @see #enableMetrics(String)
+   */
+  public static AnalysisMetrics getMetrics(String dictionaryDir) {
+    return metrics.get(getKey(dictionaryDir));
+  }
+  
+  /**
+   * @param key The key of a dictionary directory
+   * @return The name of the MBean of its metrics
+   * @throws MalformedObjectNameException
+   */
+  private static ObjectName getMetricsName(String key) throws MalformedObjectNameException {
+    return new ObjectName("net.java.sen:type=AnalysisMetrics,dictionaryDir=" + ObjectName.quote(key));
+  }
+  
+  /**
+   * Summarises the modification times and sizes of the compiled dictionary
+   * files in a directory
+   * 
+   * @param dictionaryDir a directory of dictionary
+   * @return A value that changes when any of the files changes
+   */
+  private static long getSignature(String dictionaryDir) {
+    long signature = 17;
+    for (String name : DICTIONARY_FILES) {
+      File file = new File(dictionaryDir, name);
+      signature = 31 * signature + file.lastModified();
+      signature = 31 * signature + file.length();
+    }
+    return signature;
+  }
+  
+  /**
+   * A periodic check of a watched dictionary directory
+   */
+  private static class ReloadTask extends TimerTask {
+    
+    private final String dictionaryDir;
+    
+    /** The signature of the files last loaded, or attempted */
+    private long loadedSignature;
+    
+    /** The signature of the files at the previous check */
+    private long lastSignature;
+    
+    ReloadTask(String dictionaryDir) {
+      this.dictionaryDir = dictionaryDir;
+      this.loadedSignature = getSignature(dictionaryDir);
+      this.lastSignature = loadedSignature;
+    }
+    
+    @Override
+    public void run() {
+      long signature = getSignature(dictionaryDir);
+      // reload only once the files have stopped changing
+      if ((signature != loadedSignature) && (signature == lastSignature)) {
+        loadedSignature = signature;
+        try {
+          reload(dictionaryDir);
+        } catch (IOException e) {
+          // keep the current dictionary
+        } catch (RuntimeException e) {
+          // keep the current dictionary
+        }
+      }
+      lastSignature = signature;
+    }
+  }
+  
+  
+  /**
+   * Checks that a newly loaded dictionary can be used, by verifying the
+   * checksums of a single dictionary file, building a Dictionary over it and
+   * analysing a short text. The heap array backend reads the same data, and
+   * is not built here so that its copies are only made if a caller asks for
+   * them
+   * 
+   * @throws IOException
+   */
+  private void validate() throws IOException {
+    if (file != null) {
+      file.verify();
+    }
+    
+    // load the sections that are otherwise loaded on first use
+    pos.get();
+    partOfSpeechTables.get();
+    
+    Tokenizer tokenizer = createTokenizer(false);
+    tokenizer.getDictionary().setMetrics(null);
+    StringTagger tagger = new StringTagger(tokenizer);
+    for (Token token : tagger.analyze(VALIDATION_TEXT, new ArrayList<Token>())) {
+      token.getMorpheme().toString();
+    }
+  }
+  
+  /**
+   * Verifies the checksums of a single dictionary file on a daemon thread,
+   * so that opening the dictionary does not wait to read the whole file. A
+   * mismatch is logged, and fails {@link #getInstance(String)} until the
+   * dictionary is reloaded
+   */
+  private void verifyInBackground() {
+    if (file == null) {
+      return;
+    }
+    
+    verifier = new Thread("SenFactory verify " + key) {
+      @Override
+      public void run() {
+        try {
+          file.verify();
+        } catch (IOException e) {
+          verificationFailure = e;
+          log.log(Level.SEVERE, "Dictionary [" + key + "] is unusable until it is reloaded", e);
+        }
+      }
+    };
+    verifier.setDaemon(true);
+    verifier.start();
+  }
+  
+  /**
+   * Waits for the background verification of a single dictionary file to
+   * finish
+   * 
+   * @throws InterruptedException
+   */
+  void awaitVerification() throws InterruptedException {
+    // for test only
+    if (verifier != null) {
+      verifier.join();
+    }
+  }
+  
+  private SenFactory(final String dictionaryDir) throws IOException {
+    key = getKey(dictionaryDir);
+    
     InputStream in = null;
-    DataInputStream din = null;
+    // a single dictionary file is preferred to the separate files
+    file = openDictionaryFile(dictionaryDir);
+    
     // read main data files
     try {
-      in = getInputStream("header.sen", dictionaryDir);
-      din = new DataInputStream(in);
-      costs = loadBuffer("connectionCost.sen", din.readInt(), dictionaryDir).asReadOnlyBuffer();
-      pos = loadBuffer("partOfSpeech.sen", din.readInt(), dictionaryDir).asReadOnlyBuffer();
-      tokens = loadBuffer("token.sen", din.readInt(), dictionaryDir).asReadOnlyBuffer();
-      trie = loadBuffer("trie.sen", din.readInt(), dictionaryDir).asReadOnlyBuffer();
+      in = new BufferedInputStream(getInputStream("header.sen", dictionaryDir, file));
+      header = DictionaryHeader.read(in);
     } finally {
-      IOUtils.closeWhileHandlingException(din, in);
+      IOUtils.closeWhileHandlingException(in);
     }
-
-      
+    costs = loadBuffer("connectionCost.sen", header.getConnectionCostLength(), dictionaryDir, file).asReadOnlyBuffer();
+    tokens = loadBuffer("token.sen", header.getTokenLength(), dictionaryDir, file).asReadOnlyBuffer();
+    trie = loadBuffer("trie.sen", header.getTrieLength(), dictionaryDir, file).asReadOnlyBuffer();
+    connectionRowOffsets = Dictionary.readConnectionRowOffsets(costs.asShortBuffer());
     
-    // read index files
-    try {
-      in = getInputStream("posIndex.sen", dictionaryDir);
-      din = new DataInputStream(in);
-      posIndex = new String[din.readChar()];
-      for (int i = 0; i < posIndex.length; i++) {
-        posIndex[i] = din.readUTF();
+    // the part-of-speech data are only needed to decode Morphemes, so they
+    // are read when the first one is decoded
+    pos = new LazySection<ByteBuffer>() {
+      @Override
+      protected ByteBuffer load() throws IOException {
+        return loadBuffer("partOfSpeech.sen", header.getPartOfSpeechLength(), dictionaryDir, file).asReadOnlyBuffer();
       }
+    };
     
-      conjTypeIndex = new String[din.readChar()];
-      for (int i = 0; i < conjTypeIndex.length; i++) {
-        conjTypeIndex[i] = din.readUTF();
+    // read index files, which are decoded from the mapped file as each value
+    // is first used
+    partOfSpeechTables = new LazySection<PartOfSpeechTables>() {
+      @Override
+      protected PartOfSpeechTables load() throws IOException {
+        if (file != null) {
+          return PartOfSpeechTables.read(file.getSection("posIndex.sen"));
+        }
+        if (dictionaryDir != null && dictionaryDir.trim().length() != 0) {
+          File index = new File(dictionaryDir, "posIndex.sen");
+          return PartOfSpeechTables.read(mapBuffer(index, (int) index.length()));
+        }
+        
+        InputStream in = null;
+        try {
+          in = new BufferedInputStream(getInputStream("posIndex.sen", dictionaryDir, file));
+          return PartOfSpeechTables.read(in);
+        } finally {
+          IOUtils.closeWhileHandlingException(in);
+        }
       }
+    };
+    
+    // read the optional character class definitions
+    charClasses = loadCharacterClasses(dictionaryDir);
     
-      conjFormIndex = new String[din.readChar()];
-      for (int i = 0; i < conjFormIndex.length; i++) {
-        conjFormIndex[i] = din.readUTF();
+    int cacheSize = MorphemeCache.getConfiguredSize();
+    morphemeCache = (cacheSize > 0) ? new MorphemeCache(cacheSize) : null;
+  }
+  
+  /**
+   * Reads the character class definitions (char.def) of a dictionary, if
+   * there are any
+   * 
+   * @param dictionaryDir a directory of dictionary
+   * @return The character classes, or the default classes if the dictionary
+   *         has no char.def
+   * @throws IOException
+   */
+  private static CharacterClassTable loadCharacterClasses(String dictionaryDir) throws IOException {
+    InputStream in = null;
+    if (dictionaryDir == null || dictionaryDir.trim().length() == 0) {
+      in = SenFactory.class.getResourceAsStream("char.def");
+    } else {
+      File file = new File(dictionaryDir, "char.def");
+      if (file.exists()) {
+        in = new FileInputStream(file);
       }
+    }
+    if (in == null) {
+      return CharacterClassTable.getDefault();
+    }
+    
+    try {
+      return CharacterClassTable.load(new InputStreamReader(in, "UTF-8"));
     } finally {
-      IOUtils.closeWhileHandlingException(din, in);
+      IOUtils.closeWhileHandlingException(in);
     }
   }
   
-  private static InputStream getInputStream(String name, String dictionaryDir) throws IOException{
+  /**
+   * Opens the single dictionary file of a dictionary directory, if it has
+   * one
+   * 
+   * @param dictionaryDir a directory of dictionary
+   * @return The dictionary file, or <code>null</code> if the dictionary is
+   *         held in separate files
+   * @throws IOException if the dictionary file cannot be read
+   */
+  private static DictionaryFile openDictionaryFile(String dictionaryDir) throws IOException {
+    if (dictionaryDir == null || dictionaryDir.trim().length() == 0) {
+      return null;
+    }
+    File file = new File(dictionaryDir, DictionaryFile.FILE_NAME);
+    return file.isFile() ? DictionaryFile.open(file) : null;
+  }
+  
+  private static InputStream getInputStream(String name, String dictionaryDir, DictionaryFile file) throws IOException{
+    if (file != null) {
+      return file.getSectionStream(name);
+    }
     InputStream in = null;
     if(dictionaryDir == null || dictionaryDir.trim().length() == 0){
       in = SenFactory.class.getResourceAsStream(name);
@@ -123,16 +539,72 @@ public class SenFactory {
     return in;
   }
 
-  private final String[] posIndex, conjTypeIndex, conjFormIndex;
-  private final ByteBuffer costs, pos, tokens, trie;
+  /**
+   * The single dictionary file, or <code>null</code> if the dictionary is
+   * held in separate files
+   */
+  private final DictionaryFile file;
+  
+  /** The thread verifying the dictionary file in the background, or <code>null</code> */
+  private Thread verifier;
+  
+  /** The failure of the background verification, or <code>null</code> */
+  private volatile IOException verificationFailure;
+  
+  private final ByteBuffer costs, tokens, trie;
+  
+  /**
+   * The row offsets of a compact connection cost matrix, shared by all
+   * Dictionaries using this factory, or <code>null</code>
+   */
+  private final int[] connectionRowOffsets;
+  
+  /** The part-of-speech data, read on first use */
+  private final LazySection<ByteBuffer> pos;
+  private final LazySection<PartOfSpeechTables> partOfSpeechTables;
+  private final DictionaryHeader header;
+  
+  /** The key of this factory's dictionary directory */
+  private final String key;
+  private final CharacterClassTable charClasses;
+  
+  /** The version of this dictionary, unique within the JVM */
+  private final long version = versions.incrementAndGet();
+  
+  /** Decoded part-of-speech records, shared by all Dictionaries */
+  private final MorphemeCache morphemeCache;
+  
+  /** Heap copies of the connection costs and Trie, created on first use */
+  private short[] costArray;
+  private int[] trieArray;
+  
+  /** User dictionaries over this dictionary, by file name, read on first use */
+  private final Map<String,UserDictionary> userDictionaries = new HashMap<String,UserDictionary>();
+  
+  /** Shared taggers over the buffers and the heap arrays, created on first use */
+  private SharedTagger sharedTagger;
+  private SharedTagger sharedArrayTagger;
   
   
   public static final String unknownPOS = "未知語";
   
-  private static ByteBuffer loadBuffer(String resource, int size, String dictionaryDir) throws IOException {
+  private static ByteBuffer loadBuffer(String resource, int size, String dictionaryDir, DictionaryFile file) throws IOException {
+    if (file != null) {
+      ByteBuffer section = file.getSection(resource);
+      if (section.capacity() < size) {
+        throw new IOException("Dictionary section [" + resource + "] is truncated: expected " + size
+            + " bytes but found " + section.capacity());
+      }
+      section.limit(size);
+      return section.slice();
+    }
+    if (dictionaryDir != null && dictionaryDir.trim().length() != 0) {
+      return mapBuffer(new File(dictionaryDir, resource), size);
+    }
+    
     InputStream in = null;
     try {
-      in = getInputStream(resource, dictionaryDir);
+      in = getInputStream(resource, dictionaryDir, null);
     ByteBuffer buffer = ByteBuffer.allocateDirect(size);
     buffer.limit(size);
     
@@ -153,23 +625,96 @@ public class SenFactory {
     }
   }
   
+  /**
+   * Maps a dictionary file read-only, so that the data is backed by the OS
+   * page cache and shared between all processes that load the same file
+   * instead of being copied onto each JVM's heap
+   * 
+   * @param file The dictionary file
+   * @param size The length of the data as recorded in header.sen
+   * @return The mapped buffer
+   * @throws IOException
+   */
+  private static ByteBuffer mapBuffer(File file, int size) throws IOException {
+    FileInputStream in = null;
+    FileChannel channel = null;
+    try {
+      in = new FileInputStream(file);
+      channel = in.getChannel();
+      if (channel.size() < size) {
+        throw new IOException("Dictionary file [" + file + "] is truncated: expected " + size
+            + " bytes but found " + channel.size());
+      }
+      // the mapping stays valid after the channel is closed
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    } finally {
+      IOUtils.closeWhileHandlingException(channel, in);
+    }
+  }
+  
   /**
    * Builds a Tokenizer for the given dictionary configuration
    *
-   * @param configurationFilename The dictionary configuration filename
+   * @param dictionaryDir a directory of dictionary
+   * @param heapArrays if <code>true</code>, the Trie and connection cost
+   *                   matrix are searched as heap arrays
    * @return The constructed Tokenizer
    */
-  private static Tokenizer getTokenizer(String dictionaryDir) {
-    SenFactory localInstance = SenFactory.getInstance(dictionaryDir);
+  private static Tokenizer getTokenizer(String dictionaryDir, boolean heapArrays) {
+    return SenFactory.getInstance(dictionaryDir).createTokenizer(heapArrays);
+  }
+  
+  /**
+   * Builds a Tokenizer over this factory's dictionary
+   *
+   * @param heapArrays if <code>true</code>, the Trie and connection cost
+   *                   matrix are searched as heap arrays
+   * @return The constructed Tokenizer
+   */
+  private Tokenizer createTokenizer(boolean heapArrays) {
+    Dictionary dictionary = new Dictionary(costs.asShortBuffer(), heapArrays ? getCostArray() : null, pos,
+        tokens.duplicate(), trie.asIntBuffer(), heapArrays ? getTrieArray() : null, partOfSpeechTables, header,
+        connectionRowOffsets);
+    
+    dictionary.setMorphemeCache(morphemeCache);
+    dictionary.setMetrics(metrics.get(key));
     
-    return new JapaneseTokenizer(
-        new Dictionary(localInstance.costs.asShortBuffer(),
-          localInstance.pos.duplicate(),
-          localInstance.tokens.duplicate(),
-          localInstance.trie.asIntBuffer(),
-          localInstance.posIndex,
-          localInstance.conjTypeIndex,
-          localInstance.conjFormIndex), unknownPOS);
+    return new JapaneseTokenizer(dictionary, unknownPOS, charClasses);
+  }
+  
+  static Tokenizer getTokenizer(String dictionaryDir) {
+    // also used by tests
+    return getTokenizer(dictionaryDir, false);
+  }
+  
+  /**
+   * Returns the connection cost matrix copied onto the heap. The copy is
+   * made once, and shared by all Dictionaries using this factory
+   * 
+   * @return The connection cost matrix
+   */
+  private synchronized short[] getCostArray() {
+    if (costArray == null) {
+      short[] array = new short[costs.capacity() / 2];
+      costs.asShortBuffer().get(array);
+      costArray = array;
+    }
+    return costArray;
+  }
+  
+  /**
+   * Returns the Trie data copied onto the heap. The copy is made once, and
+   * shared by all Dictionaries using this factory
+   * 
+   * @return The Trie data
+   */
+  private synchronized int[] getTrieArray() {
+    if (trieArray == null) {
+      int[] array = new int[trie.capacity() / 4];
+      trie.asIntBuffer().get(array);
+      trieArray = array;
+    }
+    return trieArray;
   }
   
   /**
@@ -193,6 +738,138 @@ public class SenFactory {
     return new StringTagger(getTokenizer(dictionaryDir));
   }
   
+  /**
+   * Creates a StringTagger from the given configuration<br><br>
+   * 
+   * With <code>heapArrays</code> set, the Trie and connection cost matrix
+   * are copied once per dictionary onto the Java heap and searched as plain
+   * arrays, which is faster than reading the mapped files but costs a
+   * private copy of that data in every JVM. Both produce identical tokens
+   *
+   * @param dictionaryDir a directory of dictionary
+   * @param heapArrays if <code>true</code>, use heap arrays for the Trie and
+   *                   connection cost matrix
+   * @return A StringTagger
+   */
+  public static StringTagger getStringTagger(String dictionaryDir, boolean heapArrays) {
+    return new StringTagger(getTokenizer(dictionaryDir, heapArrays));
+  }
+  
+  /**
+   * Creates a StringTagger from the given configuration, which also finds
+   * the morphemes of a user dictionary
+   *
+   * @param dictionaryDir a directory of dictionary
+   * @param userDictionaryFile a user dictionary CSV file, or
+   *                           <code>null</code> for none
+   * @return A StringTagger
+   * @see UserDictionary
+   */
+  public static StringTagger getStringTagger(String dictionaryDir, String userDictionaryFile) {
+    SenFactory localInstance = SenFactory.getInstance(dictionaryDir);
+    Tokenizer tokenizer = localInstance.createTokenizer(false);
+    if (userDictionaryFile != null) {
+      try {
+        tokenizer.getDictionary().setUserDictionary(localInstance.loadUserDictionary(userDictionaryFile));
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+    return new StringTagger(tokenizer);
+  }
+  
+  /**
+   * Returns the user dictionary read from a file for the given
+   * configuration. Each file is read once per dictionary, and read again
+   * after the dictionary is reloaded
+   *
+   * @param dictionaryDir a directory of dictionary
+   * @param userDictionaryFile a user dictionary CSV file
+   * @return The user dictionary
+   * @throws IOException if the user dictionary cannot be read or is invalid
+   * @see UserDictionary
+   */
+  public static UserDictionary getUserDictionary(String dictionaryDir, String userDictionaryFile) throws IOException {
+    return SenFactory.getInstance(dictionaryDir).loadUserDictionary(userDictionaryFile);
+  }
+  
+  /**
+   * Reads a user dictionary over this factory's dictionary, or returns the
+   * one already read from the same file
+   *
+   * @param userDictionaryFile a user dictionary CSV file
+   * @return The user dictionary
+   * @throws IOException
+   */
+  private UserDictionary loadUserDictionary(String userDictionaryFile) throws IOException {
+    synchronized (userDictionaries) {
+      UserDictionary userDictionary = userDictionaries.get(userDictionaryFile);
+      if (userDictionary == null) {
+        InputStream in = null;
+        try {
+          in = new FileInputStream(userDictionaryFile);
+          userDictionary = UserDictionary.load(createTokenizer(false).getDictionary(),
+              new InputStreamReader(in, "UTF-8"));
+        } finally {
+          IOUtils.closeWhileHandlingException(in);
+        }
+        userDictionaries.put(userDictionaryFile, userDictionary);
+      }
+      return userDictionary;
+    }
+  }
+  
+  /**
+   * Returns the thread safe tagger for the given configuration. There is one
+   * SharedTagger per dictionary, which may be used by any number of threads
+   *
+   * @param dictionaryDir a directory of dictionary
+   * @return The SharedTagger
+   */
+  public static SharedTagger getSharedTagger(String dictionaryDir) {
+    return getSharedTagger(dictionaryDir, false);
+  }
+  
+  /**
+   * Returns the thread safe tagger for the given configuration. There is one
+   * SharedTagger per dictionary and backend, which may be used by any number
+   * of threads
+   *
+   * @param dictionaryDir a directory of dictionary
+   * @param heapArrays if <code>true</code>, use heap arrays for the Trie and
+   *                   connection cost matrix
+   * @return The SharedTagger
+   * @see #getStringTagger(String, boolean)
+   */
+  public static SharedTagger getSharedTagger(String dictionaryDir, boolean heapArrays) {
+    SenFactory localInstance = SenFactory.getInstance(dictionaryDir);
+    synchronized (localInstance) {
+      if (heapArrays) {
+        if (localInstance.sharedArrayTagger == null) {
+          localInstance.sharedArrayTagger = new SharedTagger(dictionaryDir, true);
+        }
+        return localInstance.sharedArrayTagger;
+      }
+      if (localInstance.sharedTagger == null) {
+        localInstance.sharedTagger = new SharedTagger(dictionaryDir, false);
+      }
+      return localInstance.sharedTagger;
+    }
+  }
+  
+  /**
+   * Returns the cache of decoded part-of-speech records shared by all
+   * taggers of the given configuration, for example to monitor its hit rate.
+   * Its capacity is set by the {@link MorphemeCache#SIZE_PROPERTY} system
+   * property
+   *
+   * @param dictionaryDir a directory of dictionary
+   * @return The cache, or <code>null</code> if caching is disabled
+   */
+  public static MorphemeCache getMorphemeCache(String dictionaryDir) {
+    return SenFactory.getInstance(dictionaryDir).morphemeCache;
+  }
+  
   /**
    * Creates a ReadingProcessor from the given configuration
    *
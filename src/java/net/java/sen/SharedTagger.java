@@ -0,0 +1,189 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import net.java.sen.dictionary.Token;
+
+/**
+ * A thread safe tagger sharing one dictionary between any number of threads
+ * 
+ * <p>The dictionary data are immutable and shared by every analysis. The
+ * mutable state of an analysis - the Viterbi lattice, Trie search buffers and
+ * working token list - belongs to a {@link StringTagger}, which is leased
+ * from a lock-free pool for the duration of a call and then returned. The pool
+ * grows to the greatest number of threads that have analysed concurrently.
+ * After the dictionary is reloaded, taggers over the old dictionary are
+ * discarded as they are leased or returned, so that no analysis begun after
+ * the reload uses the old dictionary, and its buffers can be released.
+ * 
+ * <p>The {@link Token}s returned are not shared with the pool, and remain
+ * valid after the call. No {@link net.java.sen.filter.StreamFilter}s are
+ * applied; use a {@link StringTagger} per thread where filters are needed
+ * 
+ * <p><b>Thread Safety</b>: This class and all its public methods are thread
+ * safe
+ */
+public final class SharedTagger {
+  
+  /**
+   * The directory of the dictionary used by pooled taggers
+   */
+  private final String dictionaryDir;
+  
+  /**
+   * If <code>true</code>, pooled taggers search heap arrays rather than
+   * buffers
+   */
+  private final boolean heapArrays;
+  
+  /**
+   * Idle taggers available for lease
+   */
+  private final ConcurrentLinkedQueue<PooledTagger> pool = new ConcurrentLinkedQueue<PooledTagger>();
+  
+  /**
+   * A pooled tagger and the version of the dictionary it was created over
+   */
+  private static final class PooledTagger {
+    
+    final StringTagger tagger;
+    
+    final long version;
+    
+    PooledTagger(StringTagger tagger, long version) {
+      this.tagger = tagger;
+      this.version = version;
+    }
+  }
+  
+  /**
+   * Takes an idle tagger over the current dictionary from the pool,
+   * discarding any over an older dictionary, or creates one if none is idle
+   *
+   * @return A tagger for the exclusive use of the caller until it is released
+   */
+  private PooledTagger lease() {
+    long version = SenFactory.getVersion(dictionaryDir);
+    PooledTagger pooled;
+    while ((pooled = pool.poll()) != null) {
+      if (pooled.version == version) {
+        return pooled;
+      }
+    }
+    // if the dictionary is reloaded meanwhile, the tagger is newer than its
+    // version, and is discarded when released
+    return new PooledTagger(SenFactory.getStringTagger(dictionaryDir, heapArrays), version);
+  }
+  
+  /**
+   * Returns a leased tagger to the pool, or discards it if the dictionary
+   * has been reloaded since it was created
+   *
+   * @param pooled The tagger to return
+   */
+  private void release(PooledTagger pooled) {
+    if (pooled.version == SenFactory.getVersion(dictionaryDir)) {
+      pool.offer(pooled);
+    }
+  }
+  
+  /**
+   * Decompose a string into its most likely constituent morphemes
+   * 
+   * @param surface The string to analyse
+   * @param reuse A list owned by the caller, which is cleared and filled with
+   *              the result
+   * @return <code>reuse</code>, containing {@link Token}s representing the
+   *         most likely morphemes
+   * @throws IOException 
+   */
+  public List<Token> analyze(String surface, List<Token> reuse) throws IOException {
+    PooledTagger pooled = lease();
+    try {
+      return pooled.tagger.analyze(surface, reuse);
+    } finally {
+      release(pooled);
+    }
+  }
+  
+  /**
+   * Decompose a string into its most likely constituent morphemes
+   * 
+   * @param surface The string to analyse
+   * @return A new list of {@link Token}s representing the most likely
+   *         morphemes
+   * @throws IOException 
+   */
+  public List<Token> analyze(String surface) throws IOException {
+    return analyze(surface, new ArrayList<Token>());
+  }
+  
+  /**
+   * Decompose a string into its most likely constituent morphemes
+   * 
+   * @param surface The string to analyse
+   * @param reuse A list owned by the caller, which is cleared and filled with
+   *              the result
+   * @return <code>reuse</code>, containing {@link Token}s representing the
+   *         most likely morphemes
+   * @throws IOException 
+   */
+  public List<Token> analyze(char[] surface, List<Token> reuse) throws IOException {
+    PooledTagger pooled = lease();
+    try {
+      return pooled.tagger.analyze(surface, reuse);
+    } finally {
+      release(pooled);
+    }
+  }
+  
+  /**
+   * @return The number of idle taggers in the pool
+   */
+  int getPoolSize() {
+    return pool.size();
+  }
+  
+  /**
+   * @return <code>true</code> if every idle tagger in the pool is over the
+   *         current dictionary
+   */
+  boolean isCurrent() {
+    long version = SenFactory.getVersion(dictionaryDir);
+    for (PooledTagger pooled : pool) {
+      if (pooled.version != version) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * @param dictionaryDir a directory of dictionary
+   * @param heapArrays if <code>true</code>, use heap arrays for the Trie and
+   *                   connection cost matrix
+   */
+  SharedTagger(String dictionaryDir, boolean heapArrays) {
+    this.dictionaryDir = dictionaryDir;
+    this.heapArrays = heapArrays;
+  }
+}
@@ -24,8 +24,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import net.java.sen.dictionary.AnalysisMetrics;
+import net.java.sen.dictionary.Dictionary;
 import net.java.sen.dictionary.Sentence;
 import net.java.sen.dictionary.Token;
+import net.java.sen.dictionary.TokenBuffer;
 import net.java.sen.dictionary.Tokenizer;
 import net.java.sen.dictionary.Viterbi;
 import net.java.sen.filter.StreamFilter;
@@ -49,11 +52,40 @@ public class StringTagger {
    */
   private final Viterbi viterbi;
   
+  /**
+   * The Dictionary analysed over, which holds any {@link AnalysisMetrics}
+   */
+  private final Dictionary dictionary;
+  
   /**
    * {@link StreamFilter}s to apply during analysis
    */
   private List<StreamFilter> filterList = new ArrayList<StreamFilter>();
   
+  /**
+   * The sentence reused by every analysis
+   */
+  private final Sentence sentence = new Sentence(new char[0]);
+  
+  /**
+   * A buffer reused to hold the characters of analysed strings
+   */
+  private char[] buffer = new char[0];
+  
+  /**
+   * Copies a string into the reusable buffer
+   *
+   * @param surface The string to copy
+   * @return The buffer, holding the string from index 0
+   */
+  private char[] toCharArray(String surface) {
+    if (buffer.length < surface.length()) {
+      buffer = new char[Math.max(surface.length(), 2 * buffer.length)];
+    }
+    surface.getChars(0, surface.length(), buffer, 0);
+    return buffer;
+  }
+  
   /**
    * Apply the pre-processing phase of all attached {@link StreamFilter}s to
    * the input sentence
@@ -106,14 +138,7 @@ public class StringTagger {
    * @throws IOException 
    */
   public List<Token> analyze(String surface, List<Token> reuse) throws IOException {
-    Sentence sentence = new Sentence(surface.toCharArray());
-    filterPreProcess(sentence);
-    
-    List<Token> tokens = viterbi.getBestTokens(sentence, reuse);
-    
-    tokens = filterPostProcess(tokens);
-    
-    return tokens;
+    return analyze(toCharArray(surface), 0, surface.length(), reuse);
   }
   
   /**
@@ -132,13 +157,72 @@ public class StringTagger {
    * @throws IOException 
    */
   public List<Token> analyze(char[] surface, List<Token> reuse) throws IOException {
-    Sentence sentence = new Sentence(surface);
+    return analyze(surface, 0, surface.length, reuse);
+  }
+  
+  /**
+   * Decompose a range of characters into its most likely constituent
+   * morphemes. The characters are analysed in place, without being copied;
+   * the starts of the returned {@link Token}s are relative to
+   * <code>offset</code>
+   * 
+   * @param surface The array holding the characters to analyse
+   * @param offset The index of the first character to analyse
+   * @param length The number of characters to analyse
+   * @param reuse A list to reuse for the result
+   * @return An array of {@link Token}s representing the most likely morphemes
+   * @throws IOException 
+   */
+  public List<Token> analyze(char[] surface, int offset, int length, List<Token> reuse) throws IOException {
+    AnalysisMetrics metrics = dictionary.getMetrics();
+    long start = (metrics != null) ? System.nanoTime() : 0;
+    
+    sentence.reset(surface, offset, length);
     filterPreProcess(sentence);
     
     List<Token> tokens = viterbi.getBestTokens(sentence, reuse);
     
     tokens = filterPostProcess(tokens);
     
+    if (metrics != null) {
+      metrics.recordSentence(length, System.nanoTime() - start);
+    }
+    
+    return tokens;
+  }
+  
+  /**
+   * Decompose a range of characters into its most likely constituent
+   * morphemes, returned in a {@link TokenBuffer}. The characters are
+   * analysed in place, and neither they nor the surfaces of the morphemes
+   * are copied; the starts of the morphemes are relative to
+   * <code>offset</code>. As {@link StreamFilter}s operate on {@link Token}s,
+   * this may only be used by a tagger without filters
+   * 
+   * @param surface The array holding the characters to analyse
+   * @param offset The index of the first character to analyse
+   * @param length The number of characters to analyse
+   * @param reuse The buffer to fill
+   * @return <code>reuse</code>, holding the most likely morphemes
+   * @throws IOException 
+   * @throws IllegalStateException if a {@link StreamFilter} has been added
+   */
+  public TokenBuffer analyze(char[] surface, int offset, int length, TokenBuffer reuse) throws IOException {
+    if (!filterList.isEmpty()) {
+      throw new IllegalStateException("StreamFilters require a List of Tokens");
+    }
+    
+    AnalysisMetrics metrics = dictionary.getMetrics();
+    long start = (metrics != null) ? System.nanoTime() : 0;
+    
+    sentence.reset(surface, offset, length);
+    
+    TokenBuffer tokens = viterbi.getBestTokens(sentence, reuse);
+    
+    if (metrics != null) {
+      metrics.recordSentence(length, System.nanoTime() - start);
+    }
+    
     return tokens;
   }
   
@@ -150,10 +234,86 @@ public class StringTagger {
     return analyze(surface, new ArrayList<Token>());
   }
   
+  /**
+   * Decompose a string into its <code>n</code> most likely sequences of
+   * constituent morphemes
+   *
+   * @param surface The string to analyse
+   * @param n The maximum number of sequences to return
+   * @param costMargin The maximum difference in cost between the most likely
+   *                   and any other returned sequence
+   * @return Lists of {@link Token}s representing the most likely sequences of
+   *         morphemes, most likely first
+   * @throws IOException
+   * @see Viterbi#getNBestTokens(Sentence, int, int)
+   */
+  public List<List<Token>> analyzeNBest(String surface, int n, int costMargin) throws IOException {
+    return analyzeNBest(toCharArray(surface), 0, surface.length(), n, costMargin);
+  }
+  
+  /**
+   * Decompose a range of characters into its <code>n</code> most likely
+   * sequences of constituent morphemes. The characters are analysed in
+   * place, without being copied; the starts of the returned {@link Token}s
+   * are relative to <code>offset</code>
+   *
+   * @param surface The array holding the characters to analyse
+   * @param offset The index of the first character to analyse
+   * @param length The number of characters to analyse
+   * @param n The maximum number of sequences to return
+   * @param costMargin The maximum difference in cost between the most likely
+   *                   and any other returned sequence
+   * @return Lists of {@link Token}s representing the most likely sequences of
+   *         morphemes, most likely first
+   * @throws IOException
+   * @see Viterbi#getNBestTokens(Sentence, int, int)
+   */
+  public List<List<Token>> analyzeNBest(char[] surface, int offset, int length, int n, int costMargin) throws IOException {
+    AnalysisMetrics metrics = dictionary.getMetrics();
+    long start = (metrics != null) ? System.nanoTime() : 0;
+    
+    sentence.reset(surface, offset, length);
+    filterPreProcess(sentence);
+    
+    List<List<Token>> paths = viterbi.getNBestTokens(sentence, n, costMargin);
+    
+    for (int i = 0; i < paths.size(); i++) {
+      paths.set(i, filterPostProcess(paths.get(i)));
+    }
+    
+    if (metrics != null) {
+      metrics.recordSentence(length, System.nanoTime() - start);
+    }
+    
+    return paths;
+  }
+  
+  /**
+   * Restricts analysis to a beam of the most likely morphemes ending at each
+   * position
+   *
+   * @param beamWidth The beam width, or 0 for an exact analysis
+   * @see Viterbi#setBeamWidth(int)
+   */
+  public void setBeamWidth(int beamWidth) {
+    viterbi.setBeamWidth(beamWidth);
+  }
+  
+  /**
+   * Returns the metrics recorded by this tagger's analyses
+   *
+   * @return The metrics, or <code>null</code> if nothing is recorded
+   * @see Dictionary#setMetrics(AnalysisMetrics)
+   */
+  public AnalysisMetrics getMetrics() {
+    return dictionary.getMetrics();
+  }
+  
   /**
    * @param tokenizer The Tokenizer to use for analysis 
    */
   public StringTagger(Tokenizer tokenizer) {
     this.viterbi = new Viterbi(tokenizer);
+    this.dictionary = tokenizer.getDictionary();
   }
 }
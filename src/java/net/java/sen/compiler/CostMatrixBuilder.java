@@ -22,13 +22,17 @@
 package net.java.sen.compiler;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.java.sen.util.IOUtils;
 
@@ -63,8 +67,16 @@ class CostMatrixBuilder {
   /**
    * // dic2IdHash('word type')= id for word type
    * TODO This is magic. How does this work?
+   * Concurrent, as {@link #getDicId(String[])} may be called from several
+   * threads once the builder is built
    */
-  private Map<String, Integer> dicIndex = new HashMap<String, Integer>();
+  private Map<String, Integer> dicIndex = new ConcurrentHashMap<String, Integer>();
+  
+  /**
+   * The IDs calculated for rules with a lexicalized last field, keyed by all
+   * of their fields
+   */
+  private Map<String, Integer> lexicalizedIndex = new ConcurrentHashMap<String, Integer>();
   
   
   /**
@@ -78,38 +90,64 @@ class CostMatrixBuilder {
    */
   private Set<String> lexicalized = new HashSet<String>();
   
+  /**
+   * For each field position, the rules having each value at that position
+   */
+  private List<Map<String, BitSet>> valueIndex = new ArrayList<Map<String, BitSet>>();
+  
+  /**
+   * For each field position, the rules having each value or a wildcard at
+   * that position
+   */
+  private List<Map<String, BitSet>> parentIndex = new ArrayList<Map<String, BitSet>>();
+  
+  /**
+   * For each field position, the rules having a wildcard at that position
+   */
+  private List<BitSet> wildcardIndex = new ArrayList<BitSet>();
+  
+  /**
+   * The number of fields of each rule that are not wildcards
+   */
+  private int priorities[];
+  
   /**
    * Converts a list of part-of-speech / conjugation identifier strings to
-   * a vector of IDs unique to each string 
+   * the set of IDs of the rules matching it. Rules are matched through
+   * {@link #valueIndex}, {@link #parentIndex} and {@link #wildcardIndex}
+   * rather than by comparing every rule
    * TODO This is magic. How does this work?
    *
    * @param csv The part-of-speech / conjugation strings
    * @param parent TODO How does this work?
-   * @return A vector of IDs for the strings
+   * @return The IDs of the matching rules
    */
-  private Vector<Integer> getIdList(String csv[], boolean parent) {
-    Vector<Integer> results = new Vector<Integer>(ruleList.size());
-    results.setSize(ruleList.size());
+  private BitSet getIdList(String csv[], boolean parent) {
+    BitSet results = new BitSet(ruleList.size());
+    results.set(0, ruleList.size());
     
-    for (int j = 0; j < ruleList.size(); j++) {
-      results.set(j, j);
-    }
-    
-    for (int j = 0; j < csv.length; j++) {
-      int k = 0;
-      for (int n = 0; n < results.size(); n++) {
-        int i = results.get(n);
-        String rl_ij = ruleList.get(i)[j];
-        if (
-            ((!parent) && (csv[j].charAt(0) == '*'))
-            || ((parent) && (rl_ij.charAt(0) == '*'))
-            || rl_ij.equals(csv[j])
-        )
-        {
-          results.set(k++, results.get(n));
+    for (int j = 0; j < csv.length && !results.isEmpty(); j++) {
+      if ((!parent) && (csv[j].charAt(0) == '*')) {
+        continue;
+      }
+      
+      BitSet matches = null;
+      if (j < valueIndex.size()) {
+        if (parent) {
+          matches = parentIndex.get(j).get(csv[j]);
+          if (matches == null) {
+            matches = wildcardIndex.get(j);
+          }
+        } else {
+          matches = valueIndex.get(j).get(csv[j]);
         }
       }
-      results.setSize(k);
+      
+      if (matches == null) {
+        results.clear();
+      } else {
+        results.and(matches);
+      }
     }
     
     return results;
@@ -123,27 +161,36 @@ class CostMatrixBuilder {
    * @return The calculated ID
    */
   private int getDicIdNoCache(String csv[]) {
-    Vector<Integer> results = getIdList(csv, true);
+    BitSet results = getIdList(csv, true);
     
-    if (results.size() == 0) {
+    int max = results.nextSetBit(0);
+    if (max < 0) {
       throw new IllegalArgumentException();
     }
     
-    int priority[] = new int[results.size()];
-    int max = 0;
-    for (int i = 0; i < results.size(); i++) {
-      String csvValues[] = this.ruleList.get(results.get(i));
-      for (int j = 0; j < csvValues.length; j++) {
-        if (csvValues[j].charAt(0) != '*') {
-          priority[i]++;
-        }
-      }
-      if (priority[max] < priority[i]) {
+    for (int i = results.nextSetBit(max + 1); i >= 0; i = results.nextSetBit(i + 1)) {
+      if (priorities[max] < priorities[i]) {
         max = i;
       }
     }
     
-    return results.get(max);
+    return max;
+  }
+  
+  /**
+   * Adds a rule to the rule sets of a map
+   * 
+   * @param index The map from values to rule sets
+   * @param value The value
+   * @param rule The ID of the rule
+   */
+  private static void addToIndex(Map<String, BitSet> index, String value, int rule) {
+    BitSet rules = index.get(value);
+    if (rules == null) {
+      rules = new BitSet();
+      index.put(value, rules);
+    }
+    rules.set(rule);
   }
   
   /**
@@ -179,10 +226,42 @@ class CostMatrixBuilder {
     
     ruleSet.clear();
     
+    priorities = new int[ruleList.size()];
+    for (int j = 0; j < ruleList.size(); j++) {
+      String tokenList[] = ruleList.get(j);
+      for (int k = 0; k < tokenList.length; k++) {
+        if (k == valueIndex.size()) {
+          valueIndex.add(new HashMap<String, BitSet>());
+          wildcardIndex.add(new BitSet());
+        }
+        
+        addToIndex(valueIndex.get(k), tokenList[k], j);
+        if (tokenList[k].charAt(0) == '*') {
+          wildcardIndex.get(k).set(j);
+        } else {
+          priorities[j]++;
+        }
+      }
+    }
+    
+    for (int k = 0; k < valueIndex.size(); k++) {
+      Map<String, BitSet> parentRules = new HashMap<String, BitSet>();
+      for (Map.Entry<String, BitSet> entry : valueIndex.get(k).entrySet()) {
+        BitSet rules = (BitSet) entry.getValue().clone();
+        rules.or(wildcardIndex.get(k));
+        parentRules.put(entry.getKey(), rules);
+      }
+      parentIndex.add(parentRules);
+    }
+    
     idList.setSize(ruleList.size());
     for (int j = 0; j < ruleList.size(); j++) {
-      Vector<Integer> results = getIdList(ruleList.get(j), false);
-      idList.set(j, results);
+      BitSet results = getIdList(ruleList.get(j), false);
+      Vector<Integer> ids = new Vector<Integer>(results.cardinality());
+      for (int k = results.nextSetBit(0); k >= 0; k = results.nextSetBit(k + 1)) {
+        ids.add(k);
+      }
+      idList.set(j, ids);
     }
   }
   
@@ -206,30 +285,58 @@ class CostMatrixBuilder {
     
     try {
       parser = new CSVParser(rule);
-      String csv[] = parser.nextTokens();
-    
-      String lex = csv[csv.length - 1];
+      return getDicId(parser.nextTokens());
+    } finally {
+      IOUtils.closeWhileHandlingException(parser);
+    }
+  }
+  
+  /**
+   * Equivalent to {@link #getDicId(String)} for a rule already split into
+   * its values. Once the builder is built, this may be called concurrently
+   * from several threads
+   *
+   * @param csv The values of the rule
+   * @return TODO how is this ID defined?
+   */
+  public int getDicId(String csv[]) {
+    String lex = csv[csv.length - 1];
     
-      if (lexicalized.contains(lex)) {
-        return getDicIdNoCache(csv);
+    if (lexicalized.contains(lex)) {
+      StringBuilder rule = new StringBuilder();
+      for (int i = 0; i < csv.length; i++) {
+        rule.append(csv[i]).append(',');
       }
+      String key = rule.toString();
       
-      // Remove end field
-      String partOfSpeech = rule.substring(0, rule.lastIndexOf(","));
-     
-      Integer r = dicIndex.get(partOfSpeech);
-      if ((r != null) && (r != 0)) {
-        // 0 if empty
-        return r - 1;
+      Integer r = lexicalizedIndex.get(key);
+      if (r != null) {
+        return r;
       }
       
       int rg = getDicIdNoCache(csv);
       
-      dicIndex.put(partOfSpeech, rg + 1);
+      lexicalizedIndex.put(key, rg);
       return rg;
-    } finally {
-      IOUtils.closeWhileHandlingException(parser);
     }
+    
+    // Remove end field
+    StringBuilder partOfSpeech = new StringBuilder();
+    for (int i = 0; i < csv.length - 1; i++) {
+      partOfSpeech.append(csv[i]).append(',');
+    }
+    String key = partOfSpeech.toString();
+    
+    Integer r = dicIndex.get(key);
+    if ((r != null) && (r != 0)) {
+      // 0 if empty
+      return r - 1;
+    }
+    
+    int rg = getDicIdNoCache(csv);
+    
+    dicIndex.put(key, rg + 1);
+    return rg;
   }
   
   /**
@@ -27,22 +27,28 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.MappedByteBuffer;
-import java.nio.ShortBuffer;
-import java.nio.channels.FileChannel;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import net.java.sen.util.IOUtils;
 
 import net.java.sen.dictionary.CToken;
+import net.java.sen.dictionary.Dictionary;
+import net.java.sen.dictionary.DictionaryHeader;
 import net.java.sen.dictionary.DictionaryUtil;
 import net.java.sen.trie.TrieBuilder;
-import net.java.sen.util.CSVData;
 import net.java.sen.util.CSVParser;
 
 /**
@@ -90,6 +96,11 @@ public class DictionaryBuilder {
    */
   private static final String HEADER_DATA_FILENAME = "header.sen";
 
+  /**
+   * The number of dictionary CSV lines parsed as one task
+   */
+  private static final int PARSE_CHUNK_SIZE = 4096;
+
   /**
    * Default connection cost
    */
@@ -120,6 +131,30 @@ public class DictionaryBuilder {
    */
   private static final String UNKNOWN_PART_OF_SPEECH = "名詞,サ変接続,*,*,*,*,*";
 
+  /**
+   * The directory holding the CSV source data and the compiled files, or
+   * <code>null</code> for the working directory
+   */
+  private final File directory;
+
+  /**
+   * If <code>true</code>, the connection cost matrix is written in the
+   * compact, row deduplicated layout
+   */
+  private final boolean compactMatrix;
+
+  /**
+   * The number of threads parsing the dictionary CSV data
+   */
+  private final int parseThreads;
+
+  /**
+   * <code>false</code> if the connection costs do not depend on rcAttr2, in
+   * which case the first extent of the matrix is collapsed and every CToken
+   * has an rcAttr2 of 0
+   */
+  private boolean trigramCosts = true;
+
   /**
    * Precursor data for the Trie file
    */
@@ -132,6 +167,30 @@ public class DictionaryBuilder {
 
     /** The actual number of entries in the keys/values arrays */
     public int size;
+
+    /**
+     * The index of the first token of each key followed by the number of
+     * tokens, if the values are key indices, or <code>null</code> if they
+     * are packed
+     */
+    public int groupStarts[];
+
+    /** The largest number of keys found by a single prefix search */
+    public int maxTrieResults;
+
+    /** The largest number of tokens found by a single prefix search */
+    public int maxTokens;
+  }
+
+  /**
+   * Resolves the name of a source or compiled file against the directory
+   * 
+   * @param filename
+   *          The name of the file
+   * @return The path of the file
+   */
+  private String path(String filename) {
+    return new File(directory, filename).getPath();
   }
 
   /**
@@ -147,6 +206,23 @@ public class DictionaryBuilder {
     return tmp;
   }
 
+  /**
+   * Gets the rcAttr2 of a CToken
+   * 
+   * @param matrixBuilder
+   *          The CostMatrixBuilder for the first extent
+   * @param partOfSpeech
+   *          The values of the part-of-speech of the CToken
+   * @return The index of the part-of-speech in the first extent, or 0 if the
+   *         first extent was collapsed
+   */
+  private short getRcAttr2(CostMatrixBuilder matrixBuilder, String[] partOfSpeech) {
+    if (!trigramCosts) {
+      return 0;
+    }
+    return (short) matrixBuilder.getDicId(partOfSpeech);
+  }
+
   /**
    * Splits a compound reading or pronunciation field into a list
    * 
@@ -187,7 +263,253 @@ public class DictionaryBuilder {
   }
 
   /**
-   * Creates the part-of-speech data file
+   * A line of dictionary CSV data, parsed and ready to be written to the
+   * part-of-speech data file
+   */
+  private static class ParsedEntry {
+    /** The surface of the morpheme */
+    String surface;
+
+    /** The CToken, lacking its part-of-speech index */
+    final CToken ctoken = new CToken();
+
+    String partOfSpeech;
+    String conjugationalType;
+    String conjugationalForm;
+    String basicForm;
+    List<String> readings;
+    List<String> pronunciations;
+
+    /**
+     * 0 if the readings and pronunciations are all katakana, otherwise 1
+     */
+    int encoding;
+  }
+
+  /**
+   * Parses a chunk of dictionary CSV lines. Chunks are parsed concurrently;
+   * the CostMatrixBuilders must already be built
+   */
+  private class ParseTask implements Callable<ParsedEntry[]> {
+
+    private final String[] lines;
+    private final int size;
+    private final CostMatrixBuilder[] matrixBuilders;
+    private final int partOfSpeechStart;
+    private final int partOfSpeechSize;
+
+    ParseTask(String[] lines, int size, CostMatrixBuilder[] matrixBuilders,
+        int partOfSpeechStart, int partOfSpeechSize) {
+      this.lines = lines;
+      this.size = size;
+      this.matrixBuilders = matrixBuilders;
+      this.partOfSpeechStart = partOfSpeechStart;
+      this.partOfSpeechSize = partOfSpeechSize;
+    }
+
+    public ParsedEntry[] call() {
+      CSVParser parser = new CSVParser("");
+      ParsedEntry[] entries = new ParsedEntry[size];
+
+      for (int n = 0; n < size; n++) {
+        String[] csvValues = parser.tokenize(lines[n]);
+
+        if (csvValues.length < (partOfSpeechSize + partOfSpeechStart)) {
+          throw new RuntimeException("format error:" + lines[n]);
+        }
+
+        String[] key = new String[partOfSpeechSize];
+        System.arraycopy(csvValues, partOfSpeechStart, key, 0, partOfSpeechSize);
+
+        ParsedEntry entry = new ParsedEntry();
+        entry.surface = csvValues[0];
+
+        CToken ctoken = entry.ctoken;
+        ctoken.rcAttr2 = getRcAttr2(matrixBuilders[0], key);
+        ctoken.rcAttr1 = (short) matrixBuilders[1].getDicId(key);
+        ctoken.lcAttr = (short) matrixBuilders[2].getDicId(key);
+        ctoken.length = (short) csvValues[0].length();
+        ctoken.cost = (short) Integer.parseInt(csvValues[1]);
+
+        StringBuilder partOfSpeechBuilder = new StringBuilder();
+        for (int i = partOfSpeechStart; i < (partOfSpeechStart + 4); i++) {
+          if (!csvValues[i].equals("*")) {
+            partOfSpeechBuilder.append(csvValues[i]);
+            partOfSpeechBuilder.append("-");
+          }
+        }
+        entry.partOfSpeech = partOfSpeechBuilder.substring(0,
+            partOfSpeechBuilder.length() - 1);
+        entry.conjugationalType = csvValues[partOfSpeechStart + 4];
+        entry.conjugationalForm = csvValues[partOfSpeechStart + 5];
+        entry.basicForm = csvValues[partOfSpeechStart + 6];
+        entry.readings = splitCompoundField(csvValues[partOfSpeechStart + 7]);
+        entry.pronunciations = splitCompoundField(csvValues[partOfSpeechStart + 8]);
+
+        // by default we write a single-byte katakana encoding, but if we
+        // find any non-katakana in the readings or pronunciation, we use
+        // utf-16
+        entry.encoding = (isKatakana(entry.readings) && isKatakana(entry.pronunciations)) ? 0 : 1;
+
+        entries[n] = entry;
+      }
+
+      return entries;
+    }
+  }
+
+  /**
+   * Checks whether every character of a list of strings is katakana
+   * 
+   * @param strings
+   *          The strings to check
+   * @return <code>true</code> if every character is katakana
+   */
+  private static boolean isKatakana(List<String> strings) {
+    for (String string : strings) {
+      for (int i = 0; i < string.length(); i++) {
+        char ch = string.charAt(i);
+        if (ch < 0x30A0 || ch > 0x30FF) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the position of a value within an index, adding it if it is not
+   * present
+   * 
+   * @param index
+   *          The index values, in order
+   * @param positions
+   *          The position of each value of the index
+   * @param value
+   *          The value to find
+   * @return The position of the value
+   */
+  private static int indexOf(List<String> index, Map<String, Integer> positions,
+      String value) {
+    Integer position = positions.get(value);
+    if (position == null) {
+      position = index.size();
+      index.add(value);
+      positions.put(value, position);
+    }
+    return position;
+  }
+
+  /**
+   * Writes a parsed entry to the part-of-speech data file
+   * 
+   * @param outputStream
+   *          The part-of-speech data file
+   * @param entry
+   *          The parsed entry
+   * @param posIndex
+   *          The unique parts of speech, to which the entry's is added
+   * @param posPositions
+   *          The position of each part of speech in <code>posIndex</code>
+   * @param conjTypeIndex
+   *          The unique conjugational types
+   * @param conjTypePositions
+   *          The position of each conjugational type
+   * @param conjFormIndex
+   *          The unique conjugational forms
+   * @param conjFormPositions
+   *          The position of each conjugational form
+   * @throws IOException
+   */
+  private static void writePartOfSpeech(DataOutputStream outputStream,
+      ParsedEntry entry, List<String> posIndex,
+      Map<String, Integer> posPositions, List<String> conjTypeIndex,
+      Map<String, Integer> conjTypePositions, List<String> conjFormIndex,
+      Map<String, Integer> conjFormPositions) throws IOException {
+    DictionaryUtil.writeVInt(outputStream,
+        indexOf(posIndex, posPositions, entry.partOfSpeech));
+    DictionaryUtil.writeVInt(outputStream,
+        indexOf(conjTypeIndex, conjTypePositions, entry.conjugationalType));
+    DictionaryUtil.writeVInt(outputStream,
+        indexOf(conjFormIndex, conjFormPositions, entry.conjugationalForm));
+
+    if (entry.basicForm.equals(entry.surface)) {
+      DictionaryUtil.writeVInt(outputStream, 0);
+    } else {
+      DictionaryUtil.writeVInt(outputStream, entry.basicForm.length());
+      outputStream.writeChars(entry.basicForm);
+    }
+
+    List<String> readings = entry.readings;
+    List<String> pronunciations = entry.pronunciations;
+    int encoding = entry.encoding;
+
+    DictionaryUtil.writeVInt(outputStream, readings.size() << 1 | encoding);
+
+    for (int i = 0; i < readings.size(); i++) {
+      String reading = readings.get(i);
+      String pronunciation = pronunciations.get(i);
+      if (pronunciation.equals(reading)) {
+        // if the pronunciation is the same as the associated reading, we
+        // write a 0 for the length
+        DictionaryUtil.writeVInt(outputStream, reading.length() << 1 | 0);
+        if (encoding == 0) {
+          DictionaryUtil.writeKatakana(outputStream, reading);
+        } else {
+          outputStream.writeChars(reading);
+        }
+      } else {
+        DictionaryUtil.writeVInt(outputStream, reading.length() << 1 | 1);
+        if (encoding == 0) {
+          DictionaryUtil.writeKatakana(outputStream, reading);
+        } else {
+          outputStream.writeChars(reading);
+        }
+        DictionaryUtil.writeVInt(outputStream, pronunciation.length());
+        if (encoding == 0) {
+          DictionaryUtil.writeKatakana(outputStream, pronunciation);
+        } else {
+          outputStream.writeChars(pronunciation);
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits for the oldest chunk being parsed, and writes its entries to the
+   * part-of-speech data file and the token list, in the order of the source
+   * data
+   * 
+   * @param pending
+   *          The chunks being parsed, oldest first
+   * @return The parsed entries
+   * @throws IOException
+   */
+  private static ParsedEntry[] takeChunk(LinkedList<Future<ParsedEntry[]>> pending)
+      throws IOException {
+    try {
+      return pending.removeFirst().get();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Creates the part-of-speech data file<br><br>
+   * 
+   * The CSV data is read in chunks, which are parsed and have their
+   * connection attributes found concurrently; the main thread writes each
+   * chunk in turn while later chunks are parsed, so the output is the same
+   * as if the lines were processed one by one
    * 
    * @param dictionaryCSVFilenames
    *          The filenames of the dictionary CSV data file and any additional
@@ -226,15 +548,14 @@ public class DictionaryBuilder {
       String eosPartOfSpeech, String unknownPartOfSpeech,
       VirtualTupleList dictionaryList, CToken[] standardCTokens)
       throws IOException {
-    String[] csvValues = null;
-
-    CSVData key_b = new CSVData();
-    CSVData pos_b = new CSVData();
-
     FileOutputStream fileOutputStream = null;
     BufferedOutputStream bufferedOutputStream = null;
     DataOutputStream outputStream = null;
 
+    int threads = parseThreads;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    LinkedList<Future<ParsedEntry[]>> pending = new LinkedList<Future<ParsedEntry[]>>();
+
     try {
       fileOutputStream = new FileOutputStream(partOfSpeechDataFilename);
       bufferedOutputStream = new BufferedOutputStream(fileOutputStream);
@@ -243,6 +564,9 @@ public class DictionaryBuilder {
       List<String> posIndex = new ArrayList<String>();
       List<String> conjTypeIndex = new ArrayList<String>();
       List<String> conjFormIndex = new ArrayList<String>();
+      Map<String, Integer> posPositions = new HashMap<String, Integer>();
+      Map<String, Integer> conjTypePositions = new HashMap<String, Integer>();
+      Map<String, Integer> conjFormPositions = new HashMap<String, Integer>();
 
       for (String dictionaryCSVFilename : dictionaryCSVFilenames) {
 
@@ -252,140 +576,26 @@ public class DictionaryBuilder {
           fileInputStream = new FileInputStream(dictionaryCSVFilename);
           parser = new CSVParser(fileInputStream, charset);
 
-          while ((csvValues = parser.nextTokens()) != null) {
-
-            if (csvValues.length < (partOfSpeechSize + partOfSpeechStart)) {
-              throw new RuntimeException("format error:" + parser.currentLine());
+          boolean more = true;
+          while (more) {
+            String[] lines = new String[PARSE_CHUNK_SIZE];
+            int size = 0;
+            while ((size < lines.length) && (more = parser.nextRow())) {
+              lines[size++] = parser.currentLine();
             }
-
-            key_b.clear();
-            pos_b.clear();
-            for (int i = partOfSpeechStart; i < (partOfSpeechStart + partOfSpeechSize); i++) {
-              key_b.append(csvValues[i]);
-              pos_b.append(csvValues[i]);
-            }
-
-            for (int i = partOfSpeechStart + partOfSpeechSize; i < csvValues.length; i++) {
-              pos_b.append(csvValues[i]);
+            if (size > 0) {
+              pending.add(executor.submit(new ParseTask(lines, size,
+                  matrixBuilders, partOfSpeechStart, partOfSpeechSize)));
             }
 
-            CToken ctoken = new CToken();
-
-            ctoken.rcAttr2 = (short) matrixBuilders[0].getDicId(key_b
-                .toString());
-            ctoken.rcAttr1 = (short) matrixBuilders[1].getDicId(key_b
-                .toString());
-            ctoken.lcAttr = (short) matrixBuilders[2]
-                .getDicId(key_b.toString());
-            ctoken.partOfSpeechIndex = outputStream.size();
-            ctoken.length = (short) csvValues[0].length();
-            ctoken.cost = (short) Integer.parseInt(csvValues[1]);
-
-            dictionaryList.add(csvValues[0], ctoken);
-
-            // Write to part of speech data file
-
-            StringBuilder partOfSpeechBuilder = new StringBuilder();
-            for (int i = partOfSpeechStart; i < (partOfSpeechStart + 4); i++) {
-              if (!csvValues[i].equals("*")) {
-                partOfSpeechBuilder.append(csvValues[i]);
-                partOfSpeechBuilder.append("-");
-              }
-            }
-            String partOfSpeech = partOfSpeechBuilder.substring(0,
-                partOfSpeechBuilder.length() - 1);
-            String conjugationalType = csvValues[partOfSpeechStart + 4];
-            String conjugationalForm = csvValues[partOfSpeechStart + 5];
-            String basicForm = csvValues[partOfSpeechStart + 6];
-            List<String> readings = splitCompoundField(csvValues[partOfSpeechStart + 7]);
-            List<String> pronunciations = splitCompoundField(csvValues[partOfSpeechStart + 8]);
-
-            int index = posIndex.indexOf(partOfSpeech);
-            if (index < 0) {
-              index = posIndex.size();
-              posIndex.add(partOfSpeech);
-            }
-
-            DictionaryUtil.writeVInt(outputStream, index);
-
-            index = conjTypeIndex.indexOf(conjugationalType);
-            if (index < 0) {
-              index = conjTypeIndex.size();
-              conjTypeIndex.add(conjugationalType);
-            }
-
-            DictionaryUtil.writeVInt(outputStream, index);
-
-            index = conjFormIndex.indexOf(conjugationalForm);
-            if (index < 0) {
-              index = conjFormIndex.size();
-              conjFormIndex.add(conjugationalForm);
-            }
-
-            DictionaryUtil.writeVInt(outputStream, index);
-
-            if (basicForm.equals(csvValues[0])) {
-              DictionaryUtil.writeVInt(outputStream, 0);
-            } else {
-              DictionaryUtil.writeVInt(outputStream, basicForm.length());
-              outputStream.writeChars(basicForm);
-            }
-
-            int encoding = 0; // by default we write a single-byte katakana
-                              // encoding
-
-            // but if we find any non-katakana in the readings or pronunciation,
-            // we
-            // use utf-16
-            for (String reading : readings) {
-              for (int i = 0; i < reading.length(); i++) {
-                char ch = reading.charAt(i);
-                if (ch < 0x30A0 || ch > 0x30FF) {
-                  encoding = 1;
-                }
-              }
-            }
-
-            for (String pronunciation : pronunciations) {
-              for (int i = 0; i < pronunciation.length(); i++) {
-                char ch = pronunciation.charAt(i);
-                if (ch < 0x30A0 || ch > 0x30FF) {
-                  encoding = 1;
-                }
-              }
-            }
-
-            DictionaryUtil.writeVInt(outputStream, readings.size() << 1
-                | encoding);
-
-            for (int i = 0; i < readings.size(); i++) {
-              String reading = readings.get(i);
-              String pronunciation = pronunciations.get(i);
-              if (pronunciation.equals(reading)) {
-                // if the pronunciation is the same as the associated reading,
-                // we
-                // write a 0 for the length
-                DictionaryUtil.writeVInt(outputStream,
-                    reading.length() << 1 | 0);
-                if (encoding == 0) {
-                  DictionaryUtil.writeKatakana(outputStream, reading);
-                } else {
-                  outputStream.writeChars(reading);
-                }
-              } else {
-                DictionaryUtil.writeVInt(outputStream,
-                    reading.length() << 1 | 1);
-                if (encoding == 0) {
-                  DictionaryUtil.writeKatakana(outputStream, reading);
-                } else {
-                  outputStream.writeChars(reading);
-                }
-                DictionaryUtil.writeVInt(outputStream, pronunciation.length());
-                if (encoding == 0) {
-                  DictionaryUtil.writeKatakana(outputStream, pronunciation);
-                } else {
-                  outputStream.writeChars(pronunciation);
-                }
+            // Write the oldest chunks while keeping every thread busy
+            while ((pending.size() > 2 * threads) || (!more && !pending.isEmpty())) {
+              for (ParsedEntry entry : takeChunk(pending)) {
+                entry.ctoken.partOfSpeechIndex = outputStream.size();
+                dictionaryList.add(entry.surface, entry.ctoken);
+                writePartOfSpeech(outputStream, entry, posIndex, posPositions,
+                    conjTypeIndex, conjTypePositions, conjFormIndex,
+                    conjFormPositions);
               }
             }
           }
@@ -418,36 +628,41 @@ public class DictionaryBuilder {
 
         dictionaryList.sort();
 
-        CToken bosCToken = new CToken();
-        bosCToken.rcAttr2 = (short) matrixBuilders[0].getDicId(bosPartOfSpeech);
-        bosCToken.rcAttr1 = (short) matrixBuilders[1].getDicId(bosPartOfSpeech);
-        bosCToken.lcAttr = (short) matrixBuilders[2].getDicId(bosPartOfSpeech);
-        standardCTokens[0] = bosCToken;
-
-        CToken eosCToken = new CToken();
-        eosCToken.rcAttr2 = (short) matrixBuilders[0].getDicId(eosPartOfSpeech);
-        eosCToken.rcAttr1 = (short) matrixBuilders[1].getDicId(eosPartOfSpeech);
-        eosCToken.lcAttr = (short) matrixBuilders[2].getDicId(eosPartOfSpeech);
-        standardCTokens[1] = eosCToken;
-
-        CToken unknownCToken = new CToken();
-        unknownCToken.rcAttr2 = (short) matrixBuilders[0]
-            .getDicId(unknownPartOfSpeech);
-        unknownCToken.rcAttr1 = (short) matrixBuilders[1]
-            .getDicId(unknownPartOfSpeech);
-        unknownCToken.lcAttr = (short) matrixBuilders[2]
-            .getDicId(unknownPartOfSpeech);
+        standardCTokens[0] = createStandardCToken(matrixBuilders, bosPartOfSpeech);
+        standardCTokens[1] = createStandardCToken(matrixBuilders, eosPartOfSpeech);
+        CToken unknownCToken = createStandardCToken(matrixBuilders, unknownPartOfSpeech);
         unknownCToken.partOfSpeechIndex = -1;
         standardCTokens[2] = unknownCToken;
       } finally {
         IOUtils.closeWhileHandlingException(index, fos);
       }
     } finally {
+      executor.shutdownNow();
       IOUtils.closeWhileHandlingException(outputStream, bufferedOutputStream,
           fileOutputStream);
     }
   }
 
+  /**
+   * Creates one of the beginning-of-string, end-of-string or unknown
+   * CTokens
+   * 
+   * @param matrixBuilders
+   *          The three <code>CostMatrixBuilder</code>s
+   * @param partOfSpeech
+   *          The part-of-speech code of the CToken
+   * @return The CToken
+   * @throws IOException
+   */
+  private CToken createStandardCToken(CostMatrixBuilder[] matrixBuilders,
+      String partOfSpeech) throws IOException {
+    CToken ctoken = new CToken();
+    ctoken.rcAttr2 = trigramCosts ? (short) matrixBuilders[0].getDicId(partOfSpeech) : 0;
+    ctoken.rcAttr1 = (short) matrixBuilders[1].getDicId(partOfSpeech);
+    ctoken.lcAttr = (short) matrixBuilders[2].getDicId(partOfSpeech);
+    return ctoken;
+  }
+
   /**
    * Creates the connection cost matrix file
    * 
@@ -481,8 +696,9 @@ public class DictionaryBuilder {
     // Read connection cost CSV data
     FileInputStream fis = null;
     CSVParser parser = null;
-    FileChannel indexChannel = null;
-    RandomAccessFile file = null;
+    FileOutputStream fos = null;
+    BufferedOutputStream bos = null;
+    DataOutputStream out = null;
 
     try {
       fis = new FileInputStream(connectionCSVFilename);
@@ -520,26 +736,8 @@ public class DictionaryBuilder {
       int size3 = matrixBuilders[2].size();
       int ruleSize = rule1.size();
 
-      // Write connection cost data
-      MappedByteBuffer buffer = null;
-      ShortBuffer shortBuffer = null;
-      int matrixSizeBytes = (size1 * size2 * size3 * 2);
-      int headerSizeBytes = (3 * 2);
-
-      file = new RandomAccessFile(connectionCostDataFilename, "rw");
-      file.setLength(0);
-      file.writeShort(size1);
-      file.writeShort(size2);
-      file.writeShort(size3);
-      file.setLength(headerSizeBytes + matrixSizeBytes);
-      indexChannel = file.getChannel();
-      buffer = indexChannel.map(FileChannel.MapMode.READ_WRITE,
-          headerSizeBytes, matrixSizeBytes);
-      shortBuffer = buffer.asShortBuffer();
-
-      for (int i = 0; i < (size1 * size2 * size3); i++) {
-        shortBuffer.put(i, defaultCost);
-      }
+      short[] matrix = new short[size1 * size2 * size3];
+      Arrays.fill(matrix, defaultCost);
 
       for (int i = 0; i < ruleSize; i++) {
         Vector<Integer> r1 = matrixBuilders[0].getRuleIdList(rule1.get(i));
@@ -553,18 +751,158 @@ public class DictionaryBuilder {
             for (Iterator<Integer> i3 = r3.iterator(); i3.hasNext();) {
               int ii3 = i3.next();
               int position = size3 * (size2 * ii1 + ii2) + ii3;
-              shortBuffer.put(position, scores[i]);
+              matrix[position] = scores[i];
             }
           }
         }
       }
 
-      buffer.force();
+      // Write connection cost data
+      fos = new FileOutputStream(connectionCostDataFilename);
+      bos = new BufferedOutputStream(fos);
+      out = new DataOutputStream(bos);
+      trigramCosts = writeConnectionCosts(out, matrix, size1, size2, size3,
+          compactMatrix);
+      out.flush();
 
       return matrixBuilders;
     } finally {
-      IOUtils.closeWhileHandlingException(parser, fis, indexChannel, file);
+      IOUtils.closeWhileHandlingException(parser, fis, out, bos, fos);
+    }
+  }
+
+  /**
+   * Writes a connection cost matrix in the format of connectionCost.sen. The
+   * first extent only exists for trigram rules; if every slice of it is the
+   * same, the costs do not depend on rcAttr2 and a single slice is written
+   * 
+   * @param out
+   *          The output to write to
+   * @param matrix
+   *          The connection cost matrix, indexed by
+   *          <code>size3 * (size2 * rcAttr2 + rcAttr1) + lcAttr</code>
+   * @param size1
+   *          The size of the first extent
+   * @param size2
+   *          The size of the second extent
+   * @param size3
+   *          The size of the third extent
+   * @param compactMatrix
+   *          If <code>true</code>, write the matrix in the compact, row
+   *          deduplicated layout where it has few enough distinct rows
+   * @return <code>false</code> if the first extent was collapsed, in which
+   *         case every CToken must have an rcAttr2 of 0
+   * @throws IOException
+   */
+  public static boolean writeConnectionCosts(DataOutputStream out,
+      short[] matrix, int size1, int size2, int size3, boolean compactMatrix)
+      throws IOException {
+    boolean trigramCosts = true;
+    if (isFirstExtentDegenerate(matrix, size1, size2 * size3)) {
+      trigramCosts = false;
+      if (size1 > 1) {
+        short[] slice = new short[size2 * size3];
+        System.arraycopy(matrix, 0, slice, 0, slice.length);
+        matrix = slice;
+        size1 = 1;
+      }
+    }
+
+    if (!compactMatrix || !writeCompactMatrix(out, matrix, size1, size2, size3)) {
+      out.writeShort(size1);
+      out.writeShort(size2);
+      out.writeShort(size3);
+      for (short cost : matrix) {
+        out.writeShort(cost);
+      }
+    }
+    return trigramCosts;
+  }
+
+  /**
+   * Determines whether every slice of the first extent of a connection cost
+   * matrix is identical
+   * 
+   * @param matrix
+   *          The connection cost matrix
+   * @param size1
+   *          The size of the first extent
+   * @param sliceSize
+   *          The size of each slice of the first extent
+   * @return <code>true</code> if the slices are identical
+   */
+  private static boolean isFirstExtentDegenerate(short[] matrix, int size1,
+      int sliceSize) {
+    for (int i = 1; i < size1; i++) {
+      int offset = i * sliceSize;
+      for (int j = 0; j < sliceSize; j++) {
+        if (matrix[offset + j] != matrix[j]) {
+          return false;
+        }
+      }
     }
+    return true;
+  }
+
+  /**
+   * Writes a connection cost matrix in the compact, row deduplicated
+   * layout. Each distinct row of <code>size3</code> costs is stored once,
+   * preceded by the index of the row used for each (rcAttr2, rcAttr1) pair
+   * 
+   * @param out
+   *          The output to write to
+   * @param matrix
+   *          The connection cost matrix
+   * @param size1
+   *          The size of the first extent
+   * @param size2
+   *          The size of the second extent
+   * @param size3
+   *          The size of the third extent
+   * @return <code>false</code>, having written nothing, if there are too many
+   *         distinct rows to index
+   * @throws IOException
+   */
+  private static boolean writeCompactMatrix(DataOutputStream out,
+      short[] matrix, int size1, int size2, int size3) throws IOException {
+    int rowCount = size1 * size2;
+    int[] rowIndex = new int[rowCount];
+    List<Integer> rowStarts = new ArrayList<Integer>();
+    Map<String, Integer> rowMap = new HashMap<String, Integer>();
+    char[] row = new char[size3];
+
+    for (int i = 0; i < rowCount; i++) {
+      for (int j = 0; j < size3; j++) {
+        row[j] = (char) matrix[i * size3 + j];
+      }
+      String key = new String(row);
+      Integer index = rowMap.get(key);
+      if (index == null) {
+        index = rowStarts.size();
+        rowMap.put(key, index);
+        rowStarts.add(i * size3);
+      }
+      rowIndex[i] = index;
+    }
+
+    if (rowStarts.size() > Dictionary.MAX_COMPACT_ROWS) {
+      return false;
+    }
+
+    out.writeShort(Dictionary.COMPACT_CONNECTION_COST_MARKER);
+    out.writeShort(size1);
+    out.writeShort(size2);
+    out.writeShort(size3);
+    out.writeShort(rowStarts.size());
+    for (int index : rowIndex) {
+      out.writeShort(index);
+    }
+    for (int start : rowStarts) {
+      for (int j = 0; j < size3; j++) {
+        out.writeShort(matrix[start + j]);
+      }
+    }
+    return true;
   }
 
   /**
@@ -586,6 +924,7 @@ public class DictionaryBuilder {
 
     TrieData trieData = new TrieData();
 
+    int groupStarts[] = new int[tupleList.size() + 1];
     trieData.values = new int[tupleList.size()];
     trieData.keys = new String[tupleList.size()];
     trieData.size = 0;
@@ -613,7 +952,8 @@ public class DictionaryBuilder {
         String k = tuple.key;
         if (!prev.equals(k) && i != 0) {
           trieData.keys[trieData.size] = tupleList.get(spos).key;
-          trieData.values[trieData.size] = bsize + (spos << 8);
+          trieData.values[trieData.size] = bsize;
+          groupStarts[trieData.size] = spos;
           trieData.size++;
           bsize = 1;
           spos = i;
@@ -626,8 +966,12 @@ public class DictionaryBuilder {
       out.flush();
 
       trieData.keys[trieData.size] = tupleList.get(spos).key;
-      trieData.values[trieData.size] = bsize + (spos << 8);
+      trieData.values[trieData.size] = bsize;
+      groupStarts[trieData.size] = spos;
       trieData.size++;
+      groupStarts[trieData.size] = trieData.keys.length;
+
+      encodeTrieValues(trieData, groupStarts);
 
       return trieData;
     } finally {
@@ -636,6 +980,69 @@ public class DictionaryBuilder {
 
   }
 
+  /**
+   * Replaces the token counts in the values of Trie precursor data with the
+   * values locating each key's tokens, and records the largest number of
+   * keys and tokens found by a single prefix search. The values are packed
+   * counts and starts if the dictionary is small enough, and otherwise key
+   * indices into a table of starts
+   * 
+   * @param trieData
+   *          The Trie precursor data, with the number of tokens of each key
+   *          as its values
+   * @param groupStarts
+   *          The index of the first token of each key, followed by the
+   *          number of tokens
+   */
+  private static void encodeTrieValues(TrieData trieData, int groupStarts[]) {
+    int maxCount = 0;
+    for (int i = 0; i < trieData.size; i++) {
+      maxCount = Math.max(maxCount, trieData.values[i]);
+    }
+
+    // The keys that are prefixes of the current key, with the number of
+    // keys and tokens found by a search ending with each
+    String prefixes[] = new String[16];
+    int prefixTokens[] = new int[16];
+    int depth = 0;
+
+    for (int i = 0; i < trieData.size; i++) {
+      String key = trieData.keys[i];
+      while (depth > 0 && !key.startsWith(prefixes[depth - 1])) {
+        depth--;
+      }
+
+      if (depth == prefixes.length) {
+        String newPrefixes[] = new String[2 * depth];
+        System.arraycopy(prefixes, 0, newPrefixes, 0, depth);
+        prefixes = newPrefixes;
+        int newPrefixTokens[] = new int[2 * depth];
+        System.arraycopy(prefixTokens, 0, newPrefixTokens, 0, depth);
+        prefixTokens = newPrefixTokens;
+      }
+
+      int tokens = trieData.values[i] + (depth > 0 ? prefixTokens[depth - 1] : 0);
+      prefixes[depth] = key;
+      prefixTokens[depth] = tokens;
+      depth++;
+
+      trieData.maxTrieResults = Math.max(trieData.maxTrieResults, depth);
+      trieData.maxTokens = Math.max(trieData.maxTokens, tokens);
+    }
+
+    if (DictionaryHeader.canPack(maxCount, groupStarts[trieData.size - 1])) {
+      for (int i = 0; i < trieData.size; i++) {
+        trieData.values[i] = DictionaryHeader.pack(trieData.values[i], groupStarts[i]);
+      }
+    } else {
+      trieData.groupStarts = new int[trieData.size + 1];
+      System.arraycopy(groupStarts, 0, trieData.groupStarts, 0, trieData.size + 1);
+      for (int i = 0; i < trieData.size; i++) {
+        trieData.values[i] = i;
+      }
+    }
+  }
+
   /**
    * Create Trie file
    * 
@@ -653,21 +1060,33 @@ public class DictionaryBuilder {
   }
 
   /**
-   * Creates the header file containing resource lengths
+   * Creates the header file containing resource lengths, search limits and
+   * the encoding of the Trie values
+   * 
+   * @param headerFilename
+   *          The filename for the header file
+   * @param trieData
+   *          The Trie precursor data
+   * @throws IOException
    */
-  private void createHeaderFile(String headerFilename) throws IOException {
+  private void createHeaderFile(String headerFilename, TrieData trieData)
+      throws IOException {
+
+    DictionaryHeader header = new DictionaryHeader(
+        (int) new File(directory, CONNECTION_COST_DATA_FILENAME).length(),
+        (int) new File(directory, PART_OF_SPEECH_DATA_FILENAME).length(),
+        (int) new File(directory, TOKEN_DATA_FILENAME).length(),
+        (int) new File(directory, TRIE_DATA_FILENAME).length(),
+        trieData.maxTrieResults, trieData.maxTokens, trieData.groupStarts);
 
     FileOutputStream fos = null;
-    DataOutputStream os = null;
+    BufferedOutputStream bos = null;
     try {
       fos = new FileOutputStream(headerFilename);
-      os = new DataOutputStream(fos);
-      os.writeInt((int) new File(CONNECTION_COST_DATA_FILENAME).length());
-      os.writeInt((int) new File(PART_OF_SPEECH_DATA_FILENAME).length());
-      os.writeInt((int) new File(TOKEN_DATA_FILENAME).length());
-      os.writeInt((int) new File(TRIE_DATA_FILENAME).length());
+      bos = new BufferedOutputStream(fos);
+      header.write(bos);
     } finally {
-      IOUtils.closeWhileHandlingException(os, fos);
+      IOUtils.closeWhileHandlingException(bos, fos);
     }
   }
 
@@ -680,16 +1099,62 @@ public class DictionaryBuilder {
    */
   public DictionaryBuilder(String[] customDictionaryCSVFilenames)
       throws IOException {
+    this(customDictionaryCSVFilenames, false);
+  }
+
+  /**
+   * Compiles CSV source data into the data files used for analysis
+   * 
+   * @param customDictionaryCSVFilenames
+   *          The filenames of custom dictionaries, or <code>null</code>
+   * @param compactMatrix
+   *          If <code>true</code>, write the connection cost matrix in the
+   *          compact, row deduplicated layout
+   * @throws IOException
+   */
+  public DictionaryBuilder(String[] customDictionaryCSVFilenames,
+      boolean compactMatrix) throws IOException {
+    this(null, customDictionaryCSVFilenames, compactMatrix,
+        Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Compiles CSV source data into the data files used for analysis. The
+   * output is the same for any number of parsing threads
+   * 
+   * @param directory
+   *          The directory holding dictionary.csv and connection.csv, to
+   *          which the compiled files are written, or <code>null</code> for
+   *          the working directory
+   * @param customDictionaryCSVFilenames
+   *          The filenames of custom dictionaries, or <code>null</code>
+   * @param compactMatrix
+   *          If <code>true</code>, write the connection cost matrix in the
+   *          compact, row deduplicated layout
+   * @param parseThreads
+   *          The number of threads parsing the dictionary CSV data
+   * @throws IOException
+   */
+  public DictionaryBuilder(File directory,
+      String[] customDictionaryCSVFilenames, boolean compactMatrix,
+      int parseThreads) throws IOException {
+    if (parseThreads < 1) {
+      throw new IllegalArgumentException("Invalid number of threads: "
+          + parseThreads);
+    }
+    this.directory = directory;
+    this.compactMatrix = compactMatrix;
+    this.parseThreads = parseThreads;
 
     List<String> dictionaryCSVFilenames = new ArrayList<String>();
-    dictionaryCSVFilenames.add(DICTIONARY_CSV_FILENAME);
+    dictionaryCSVFilenames.add(path(DICTIONARY_CSV_FILENAME));
     dictionaryCSVFilenames.addAll(Arrays.asList(customDictionaryCSVFilenames));
 
     String charset = "UTF-8";
 
     // Create connection cost file (matrix.sen)
     CostMatrixBuilder[] matrixBuilders = createConnectionCostFile(
-        CONNECTION_CSV_FILENAME, CONNECTION_COST_DATA_FILENAME,
+        path(CONNECTION_CSV_FILENAME), path(CONNECTION_COST_DATA_FILENAME),
         DEFAULT_CONNECTION_COST, charset);
 
     // Create part-of-speech data file (posInfo.sen)
@@ -700,18 +1165,18 @@ public class DictionaryBuilder {
       CToken[] standardCTokens = new CToken[3];
 
       createPartOfSpeechDataFile(dictionaryCSVFilenames,
-          PART_OF_SPEECH_DATA_FILENAME, PART_OF_SPEECH_INDEX_FILENAME,
+          path(PART_OF_SPEECH_DATA_FILENAME), path(PART_OF_SPEECH_INDEX_FILENAME),
           matrixBuilders, PART_OF_SPEECH_START, PART_OF_SPEECH_SIZE, charset,
           BOS_PART_OF_SPEECH, EOS_PART_OF_SPEECH, UNKNOWN_PART_OF_SPEECH,
           dictionaryList, standardCTokens);
 
       // Create Token file (token.sen)
-      TrieData trieData = createTokenFile(TOKEN_DATA_FILENAME, standardCTokens,
+      TrieData trieData = createTokenFile(path(TOKEN_DATA_FILENAME), standardCTokens,
           dictionaryList);
 
       // Create Trie file (da.sen)
-      createTrieFile(TRIE_DATA_FILENAME, trieData);
-      createHeaderFile(HEADER_DATA_FILENAME);
+      createTrieFile(path(TRIE_DATA_FILENAME), trieData);
+      createHeaderFile(path(HEADER_DATA_FILENAME), trieData);
     } finally {
       IOUtils.closeWhileHandlingException(dictionaryList);
     }
@@ -28,10 +28,6 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
 
 import net.java.sen.util.IOUtils;
 
@@ -41,8 +37,10 @@ import net.java.sen.dictionary.CToken;
  * A file-mapped list of {@link StringCTokenTuple <code>StringCTokenTuple</code>}s.
  * Slightly slower than a simple in-memory sort, but capable of storing and
  * sorting very long lists without using large quantities of heap memory.<br>
- * The index of entry positions in the list's file is stored in memory, leading
- * to a usage of one Integer's worth of memory for each entry.
+ * The index of entry positions in the list's file is stored in memory,
+ * together with the first characters of each entry's String, leading to a
+ * usage of 12 bytes of memory for each entry. Entries whose first
+ * characters differ are sorted without reading the file.
  * 
  * <p> Usage:
  * <p>  - Call {@link #add} one or more times
@@ -52,6 +50,16 @@ import net.java.sen.dictionary.CToken;
  */
 public class VirtualTupleList implements Closeable {
   
+  /**
+   * The number of characters of each String held in memory
+   */
+  private static final int PREFIX_LENGTH = 4;
+  
+  /**
+   * Below this size, a range is sorted by insertion sort
+   */
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+  
   /**
    * A RandomAccessFile used to create the memory mapped buffer during sorting
    */
@@ -75,22 +83,36 @@ public class VirtualTupleList implements Closeable {
   /**
    * An index of entry positions within the temporary file
    */
-  private List<Integer> indices = new ArrayList<Integer>();
+  private int[] positions = new int[1024];
   
   /**
-   * A Comparator for indices within the list
+   * The first {@link #PREFIX_LENGTH} characters of each entry's String,
+   * packed so that they compare as unsigned values in the order of the
+   * Strings
    */
-  private final Comparator<Integer> comparator = new VirtualListComparator();
+  private long[] prefixes = new long[1024];
   
   /**
-   * A Comparator class for indices within the list
+   * The number of entries in the list
    */
-  private class VirtualListComparator implements Comparator<Integer> {
-    public int compare(Integer o1, Integer o2) {
-      String first = getString(o1);
-      String second = getString(o2);
-      return first.compareTo(second);
+  private int size = 0;
+  
+  /**
+   * Packs the first characters of a String into a long. Shorter Strings
+   * are padded with zeros, so equal prefixes do not imply equal Strings
+   *
+   * @param string The String
+   * @return The packed characters
+   */
+  private static long prefix(String string) {
+    long prefix = 0;
+    for (int i = 0; i < PREFIX_LENGTH; i++) {
+      prefix <<= 16;
+      if (i < string.length()) {
+        prefix |= string.charAt(i);
+      }
     }
+    return prefix;
   }
   
   /**
@@ -109,7 +131,17 @@ public class VirtualTupleList implements Closeable {
     outputStream.writeShort(string.length());
     outputStream.writeChars(string);
     
-    indices.add(position);
+    if (size == positions.length) {
+      int[] newPositions = new int[2 * size];
+      System.arraycopy(positions, 0, newPositions, 0, size);
+      positions = newPositions;
+      long[] newPrefixes = new long[2 * size];
+      System.arraycopy(prefixes, 0, newPrefixes, 0, size);
+      prefixes = newPrefixes;
+    }
+    positions[size] = position;
+    prefixes[size] = prefix(string);
+    size++;
   }
   
   /**
@@ -120,7 +152,7 @@ public class VirtualTupleList implements Closeable {
    * @return The list entry
    */
   public StringCTokenTuple get(int index) {
-    int position = indices.get(index);
+    int position = positions[index];
     
     mappedBuffer.position(position);
     CToken ctoken = new CToken();
@@ -136,21 +168,85 @@ public class VirtualTupleList implements Closeable {
   }
   
   /**
-   * Retrieves only the String portion of a list entry. Used in sorting
-   * (where the CToken is not relevant)
+   * Compares the Strings of two entries, in the order of
+   * {@link String#compareTo(String)}, reading the file only if their
+   * prefixes are equal
    *
-   * @param position The file position of the list entry
-   * @return The entry's String component
+   * @param positions The entry positions
+   * @param prefixes The entry prefixes
+   * @param i The index of the first entry
+   * @param j The index of the second entry
+   * @return A negative value, zero or a positive value as the first String
+   *         is less than, equal to or greater than the second
    */
-  private String getString(int position) {
-    mappedBuffer.position((int) (position + CToken.SIZE));
-    short numChars = mappedBuffer.getShort();
-    char stringChars[] = new char[numChars];
-    for (int i = 0; i < numChars; i++) {
-      stringChars[i] = mappedBuffer.getChar();
+  private int compare(int[] positions, long[] prefixes, int i, int j) {
+    long first = prefixes[i] ^ Long.MIN_VALUE;
+    long second = prefixes[j] ^ Long.MIN_VALUE;
+    if (first != second) {
+      return (first < second) ? -1 : 1;
     }
     
-    return new String(stringChars);
+    int firstPosition = (int) (positions[i] + CToken.SIZE);
+    int secondPosition = (int) (positions[j] + CToken.SIZE);
+    int firstLength = mappedBuffer.getShort(firstPosition);
+    int secondLength = mappedBuffer.getShort(secondPosition);
+    int length = Math.min(firstLength, secondLength);
+    for (int k = 0; k < length; k++) {
+      char c1 = mappedBuffer.getChar(firstPosition + 2 + 2 * k);
+      char c2 = mappedBuffer.getChar(secondPosition + 2 + 2 * k);
+      if (c1 != c2) {
+        return c1 - c2;
+      }
+    }
+    return firstLength - secondLength;
+  }
+  
+  /**
+   * Sorts a range of entries by merge sort. The sort is stable, so entries
+   * with equal Strings stay in the order they were added
+   *
+   * @param positions The entry positions to sort
+   * @param prefixes The entry prefixes to sort
+   * @param positionsTemp Scratch space for positions
+   * @param prefixesTemp Scratch space for prefixes
+   * @param from The start of the range
+   * @param to The end of the range
+   */
+  private void mergeSort(int[] positions, long[] prefixes, int[] positionsTemp, long[] prefixesTemp, int from, int to) {
+    if (to - from <= INSERTION_SORT_THRESHOLD) {
+      for (int i = from + 1; i < to; i++) {
+        for (int j = i; (j > from) && (compare(positions, prefixes, j - 1, j) > 0); j--) {
+          int position = positions[j];
+          positions[j] = positions[j - 1];
+          positions[j - 1] = position;
+          long prefix = prefixes[j];
+          prefixes[j] = prefixes[j - 1];
+          prefixes[j - 1] = prefix;
+        }
+      }
+      return;
+    }
+    
+    int middle = (from + to) >>> 1;
+    mergeSort(positions, prefixes, positionsTemp, prefixesTemp, from, middle);
+    mergeSort(positions, prefixes, positionsTemp, prefixesTemp, middle, to);
+    if (compare(positions, prefixes, middle - 1, middle) <= 0) {
+      return; // already in order
+    }
+    
+    System.arraycopy(positions, from, positionsTemp, from, to - from);
+    System.arraycopy(prefixes, from, prefixesTemp, from, to - from);
+    int i = from;
+    int j = middle;
+    for (int k = from; k < to; k++) {
+      if ((j >= to) || ((i < middle) && (compare(positionsTemp, prefixesTemp, i, j) <= 0))) {
+        positions[k] = positionsTemp[i];
+        prefixes[k] = prefixesTemp[i++];
+      } else {
+        positions[k] = positionsTemp[j];
+        prefixes[k] = prefixesTemp[j++];
+      }
+    }
   }
   
   /**
@@ -161,7 +257,8 @@ public class VirtualTupleList implements Closeable {
   public void sort() throws IOException {
     outputStream.flush();
     mappedBuffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
-    Collections.sort(indices, comparator);
+    mergeSort(positions, prefixes, new int[size], new long[size], 0, size);
+    prefixes = null;
   }
   
   /**
@@ -170,7 +267,7 @@ public class VirtualTupleList implements Closeable {
    * @return The number of entries in the list
    */
   public int size() {
-    return indices.size();
+    return size;
   }
   
   /**
@@ -0,0 +1,223 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+import net.java.sen.util.LatencyHistogram;
+import net.java.sen.util.StripedCounter;
+
+/**
+ * Counts the work done in analysing text over one dictionary, and the time
+ * it takes
+ * 
+ * <p>Metrics are optional. A {@link Dictionary} without metrics, the
+ * default, records nothing; with metrics, the taggers over it record each
+ * sentence analysed, and the lattice built and best analysis found for it,
+ * into striped counters and a {@link LatencyHistogram}. The same metrics are
+ * usually shared by all the {@link Dictionary}s of a dictionary directory
+ * (see <code>SenFactory.enableMetrics</code>), and published as a JMX MBean
+ * 
+ * <p><b>Thread Safety</b>: This class and all its public methods are thread
+ * safe. Recording takes no locks
+ */
+public final class AnalysisMetrics implements AnalysisMetricsMBean {
+  
+  /** Documents analysed by stream taggers */
+  private final StripedCounter documents = new StripedCounter();
+  
+  /** Sentences analysed */
+  private final StripedCounter sentences = new StripedCounter();
+  
+  /** Characters analysed */
+  private final StripedCounter characters = new StripedCounter();
+  
+  /** Lattices built */
+  private final StripedCounter lattices = new StripedCounter();
+  
+  /** Nodes in the lattices built */
+  private final StripedCounter latticeNodes = new StripedCounter();
+  
+  /** Positions searched in the dictionary */
+  private final StripedCounter positions = new StripedCounter();
+  
+  /** Dictionary morphemes found at the positions searched */
+  private final StripedCounter trieHits = new StripedCounter();
+  
+  /** Tokens of best analyses */
+  private final StripedCounter tokens = new StripedCounter();
+  
+  /** Unknown morphemes among the tokens of best analyses */
+  private final StripedCounter unknownWords = new StripedCounter();
+  
+  /** Part-of-speech records decoded */
+  private final StripedCounter morphemeDecodes = new StripedCounter();
+  
+  /** The time taken to analyse each sentence, in nanoseconds */
+  private final LatencyHistogram latency = new LatencyHistogram();
+  
+  /** The time at which the metrics were created or reset */
+  private volatile long startTime = System.nanoTime();
+  
+  /**
+   * Records that a stream tagger has finished a document
+   */
+  public void recordDocument() {
+    documents.increment();
+  }
+  
+  /**
+   * Records the analysis of a sentence
+   *
+   * @param length The number of characters in the sentence
+   * @param nanos The time taken, in nanoseconds
+   */
+  public void recordSentence(int length, long nanos) {
+    sentences.increment();
+    characters.add(length);
+    latency.record(nanos);
+  }
+  
+  /**
+   * Records the lattice built for a sentence
+   *
+   * @param nodes The number of nodes in the lattice
+   * @param positionCount The number of positions searched in the dictionary
+   * @param hits The number of dictionary morphemes found
+   */
+  public void recordLattice(int nodes, int positionCount, int hits) {
+    lattices.increment();
+    latticeNodes.add(nodes);
+    positions.add(positionCount);
+    trieHits.add(hits);
+  }
+  
+  /**
+   * Records the best analysis of a sentence
+   *
+   * @param tokenCount The number of tokens
+   * @param unknownCount The number of tokens that are unknown morphemes
+   */
+  public void recordTokens(int tokenCount, int unknownCount) {
+    tokens.add(tokenCount);
+    unknownWords.add(unknownCount);
+  }
+  
+  /**
+   * Records the decoding of a part-of-speech record
+   */
+  public void recordMorphemeDecode() {
+    morphemeDecodes.increment();
+  }
+  
+  /**
+   * Returns the histogram of the time taken to analyse each sentence, in
+   * nanoseconds
+   *
+   * @return The histogram
+   */
+  public LatencyHistogram getLatencyHistogram() {
+    return latency;
+  }
+  
+  /**
+   * @param numerator The numerator
+   * @param denominator The denominator
+   * @return The ratio, or 0 if the denominator is 0
+   */
+  private static double ratio(long numerator, long denominator) {
+    return (denominator == 0) ? 0 : (double) numerator / denominator;
+  }
+  
+  /**
+   * @return The number of seconds since the metrics were created or reset
+   */
+  private double elapsedSeconds() {
+    return (System.nanoTime() - startTime) / 1e9;
+  }
+  
+  public long getDocumentCount() {
+    return documents.sum();
+  }
+  
+  public long getSentenceCount() {
+    return sentences.sum();
+  }
+  
+  public long getCharacterCount() {
+    return characters.sum();
+  }
+  
+  public double getSentencesPerSecond() {
+    double elapsed = elapsedSeconds();
+    return (elapsed > 0) ? sentences.sum() / elapsed : 0;
+  }
+  
+  public double getCharactersPerSecond() {
+    double elapsed = elapsedSeconds();
+    return (elapsed > 0) ? characters.sum() / elapsed : 0;
+  }
+  
+  public double getLatticeNodesPerSentence() {
+    return ratio(latticeNodes.sum(), lattices.sum());
+  }
+  
+  public double getTrieHitsPerPosition() {
+    return ratio(trieHits.sum(), positions.sum());
+  }
+  
+  public double getUnknownWordRate() {
+    return ratio(unknownWords.sum(), tokens.sum());
+  }
+  
+  public long getMorphemeDecodeCount() {
+    return morphemeDecodes.sum();
+  }
+  
+  public double getMeanLatencyMicros() {
+    return latency.getMean() / 1000;
+  }
+  
+  public double getMedianLatencyMicros() {
+    return latency.getValueAtPercentile(50) / 1000.0;
+  }
+  
+  public double getLatency99thPercentileMicros() {
+    return latency.getValueAtPercentile(99) / 1000.0;
+  }
+  
+  public double getLatency999thPercentileMicros() {
+    return latency.getValueAtPercentile(99.9) / 1000.0;
+  }
+  
+  public double getMaxLatencyMicros() {
+    return latency.getMax() / 1000.0;
+  }
+  
+  public void reset() {
+    documents.reset();
+    sentences.reset();
+    characters.reset();
+    lattices.reset();
+    latticeNodes.reset();
+    positions.reset();
+    trieHits.reset();
+    tokens.reset();
+    unknownWords.reset();
+    morphemeDecodes.reset();
+    latency.reset();
+    startTime = System.nanoTime();
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+/**
+ * The JMX management interface of {@link AnalysisMetrics}
+ */
+public interface AnalysisMetricsMBean {
+  
+  /**
+   * @return The number of documents analysed by stream taggers
+   */
+  long getDocumentCount();
+  
+  /**
+   * @return The number of sentences analysed
+   */
+  long getSentenceCount();
+  
+  /**
+   * @return The number of characters analysed
+   */
+  long getCharacterCount();
+  
+  /**
+   * @return The number of sentences analysed per second since the metrics
+   *         were created or reset
+   */
+  double getSentencesPerSecond();
+  
+  /**
+   * @return The number of characters analysed per second since the metrics
+   *         were created or reset
+   */
+  double getCharactersPerSecond();
+  
+  /**
+   * @return The mean number of lattice nodes built per sentence
+   */
+  double getLatticeNodesPerSentence();
+  
+  /**
+   * @return The mean number of dictionary morphemes found per position
+   *         searched
+   */
+  double getTrieHitsPerPosition();
+  
+  /**
+   * @return The fraction of the tokens of best analyses that are unknown
+   *         morphemes
+   */
+  double getUnknownWordRate();
+  
+  /**
+   * @return The number of part-of-speech records decoded for Morphemes
+   */
+  long getMorphemeDecodeCount();
+  
+  /**
+   * @return The mean time taken to analyse a sentence, in microseconds
+   */
+  double getMeanLatencyMicros();
+  
+  /**
+   * @return The median time taken to analyse a sentence, in microseconds
+   */
+  double getMedianLatencyMicros();
+  
+  /**
+   * @return The 99th percentile of the time taken to analyse a sentence, in
+   *         microseconds
+   */
+  double getLatency99thPercentileMicros();
+  
+  /**
+   * @return The 99.9th percentile of the time taken to analyse a sentence,
+   *         in microseconds
+   */
+  double getLatency999thPercentileMicros();
+  
+  /**
+   * @return The longest time taken to analyse a sentence, in microseconds
+   */
+  double getMaxLatencyMicros();
+  
+  /**
+   * Discards everything recorded so far
+   */
+  void reset();
+}
@@ -21,7 +21,6 @@
 
 package net.java.sen.dictionary;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
@@ -37,8 +36,11 @@ public class Dictionary {
   /** Mapped buffer of the token file (token.sen) */
   private final ByteBuffer tokenBuffer;
   
-  /** Mapped buffer of the part-of-speech information file (partOfSpeech.sen) */
-  private final ByteBuffer partOfSpeechInfoBuffer;
+  /**
+   * Mapped buffer of the part-of-speech information file (partOfSpeech.sen),
+   * loaded when the first Morpheme is decoded
+   */
+  private final LazySection<ByteBuffer> partOfSpeechInfo;
   
   /** Mapped buffer of the Trie data (trie.sen) */
   private final IntBuffer trieBuffer;
@@ -46,6 +48,43 @@ public class Dictionary {
   /** Mapped buffer of the connection cost matrix file (connectionCost.sen) */
   private final ShortBuffer connectionCostBuffer;
   
+  /**
+   * Heap copy of the Trie data, or <code>null</code> if the Trie is searched
+   * through {@link #trieBuffer}
+   */
+  private final int[] trieArray;
+  
+  /**
+   * Heap copy of the connection cost matrix including its header, or
+   * <code>null</code> if costs are read through {@link #connectionCostBuffer}
+   */
+  private final short[] connectionCostArray;
+  
+  /**
+   * The index of the first cost within {@link #connectionCostArray}
+   */
+  private final int connectionArrayOffset;
+  
+  /**
+   * For a matrix in the compact layout, the offset of the row of costs for
+   * each (rcAttr2, rcAttr1) pair; otherwise <code>null</code>
+   */
+  private final int[] connectionRowOffsets;
+  
+  /**
+   * The first value of a connection cost matrix in the compact layout, in
+   * place of the size of its first extent. The compact layout is: the marker,
+   * the sizes of the three extents, the number of distinct rows, the
+   * (unsigned) index of the row for each (rcAttr2, rcAttr1) pair, and the
+   * distinct rows of costs
+   */
+  public static final short COMPACT_CONNECTION_COST_MARKER = -1;
+  
+  /**
+   * The maximum number of distinct rows in a compact connection cost matrix
+   */
+  public static final int MAX_COMPACT_ROWS = 0xffff;
+  
   /** Size of the first extent of the connection cost matrix */
   private final int connectionSize1;
   
@@ -64,21 +103,52 @@ public class Dictionary {
   /** A CToken representing an unknown morpheme */
   private final CToken unknownToken;
   
+  /**
+   * The header of the dictionary, which locates the {@link CToken}s of each
+   * Trie value
+   */
+  private final DictionaryHeader header;
+  
   /**
    * A buffer used to store result indices from a Trie search. Reused on
-   * every call to the {@link #commonPrefixSearch(CharIterator)} method
+   * every call to the {@link #commonPrefixSearch(CharIterator)} method.
+   * Sized by the header to hold the results of any search
    */
-  private final int trieSearchResults[] = new int[256];
+  private final int trieSearchResults[];
   
   /**
    * A buffer used to store {@link CToken}s resulting from a search. Reused
-   * on every call to the {@link #commonPrefixSearch(CharIterator)} method
+   * on every call to the {@link #commonPrefixSearch(CharIterator)} method,
+   * and grown if a search finds more than it can hold
+   */
+  private CToken results[] = new CToken[0];
+  
+  /**
+   * The cache of decoded part-of-speech records, if any
    */
-  private final CToken results[] = new CToken[256];
+  private volatile MorphemeCache morphemeCache;
   
-  final String posIndex[];
-  final String conjTypeIndex[];
-  final String conjFormIndex[];
+  /**
+   * The user dictionary searched alongside the Trie, if any
+   */
+  private UserDictionary userDictionary;
+  
+  /**
+   * The metrics recorded by analyses over this Dictionary, if any
+   */
+  private volatile AnalysisMetrics metrics;
+  
+  /**
+   * Records the characters read by a Trie search, so that the user
+   * dictionary can be searched over the same characters
+   */
+  private final ReplayIterator replayIterator = new ReplayIterator();
+  
+  /**
+   * Unique part-of-speech and conjugation values (posIndex.sen), loaded when
+   * the first Morpheme is decoded
+   */
+  private final LazySection<PartOfSpeechTables> partOfSpeechTables;
   
   /**
    * Gets a unique beginning-of-string {@link CToken <code>CToken</code>}. The {@link CToken <code>CToken</code>} returned by this method is
@@ -116,7 +186,102 @@ public class Dictionary {
    * @return The character buffer
    */
   ByteBuffer getPartOfSpeechInfoBuffer() {
-    return partOfSpeechInfoBuffer;
+    return partOfSpeechInfo.get();
+  }
+  
+  /**
+   * Returns the unique part-of-speech and conjugation values
+   *
+   * @return The part-of-speech tables
+   */
+  PartOfSpeechTables getPartOfSpeechTables() {
+    return partOfSpeechTables.get();
+  }
+  
+  /**
+   * Returns the cache of decoded part-of-speech records
+   *
+   * @return The cache, or <code>null</code> if records are decoded on every
+   *         access
+   */
+  public MorphemeCache getMorphemeCache() {
+    return morphemeCache;
+  }
+  
+  /**
+   * Sets a cache of decoded part-of-speech records. The cache may be shared
+   * with other <code>Dictionary</code>s over the same part-of-speech file
+   *
+   * @param morphemeCache The cache, or <code>null</code> to decode records
+   *                      on every access
+   */
+  public void setMorphemeCache(MorphemeCache morphemeCache) {
+    this.morphemeCache = morphemeCache;
+  }
+  
+  /**
+   * Returns the token data buffer
+   *
+   * @return The token data buffer
+   */
+  ByteBuffer getTokenBuffer() {
+    return tokenBuffer;
+  }
+  
+  /**
+   * Returns the user dictionary searched alongside the Trie
+   *
+   * @return The user dictionary, or <code>null</code> if there is none
+   */
+  public UserDictionary getUserDictionary() {
+    return userDictionary;
+  }
+  
+  /**
+   * Sets a user dictionary to be searched alongside the Trie. The user
+   * dictionary may be shared with other <code>Dictionary</code>s over the
+   * same compiled data
+   *
+   * @param userDictionary The user dictionary, or <code>null</code> to
+   *                       search only the Trie
+   */
+  public void setUserDictionary(UserDictionary userDictionary) {
+    this.userDictionary = userDictionary;
+  }
+  
+  /**
+   * Returns the metrics recorded by analyses over this Dictionary
+   *
+   * @return The metrics, or <code>null</code> if nothing is recorded
+   */
+  public AnalysisMetrics getMetrics() {
+    return metrics;
+  }
+  
+  /**
+   * Sets the metrics to be recorded by analyses over this Dictionary. The
+   * metrics may be shared with other <code>Dictionary</code>s
+   *
+   * @param metrics The metrics, or <code>null</code> to record nothing
+   */
+  public void setMetrics(AnalysisMetrics metrics) {
+    this.metrics = metrics;
+  }
+  
+  /**
+   * Grows {@link #results} if necessary to hold a number of CTokens
+   *
+   * @param size The number of CTokens, including the terminator
+   */
+  private void ensureResults(int size) {
+    if (size > results.length) {
+      CToken newResults[] = new CToken[Math.max(size, results.length + (results.length >> 1))];
+      System.arraycopy(results, 0, newResults, 0, results.length);
+      for (int i = results.length; i < newResults.length; i++) {
+        newResults[i] = new CToken();
+      }
+      results = newResults;
+    }
   }
   
   /**
@@ -128,7 +293,15 @@ public class Dictionary {
    * @return The connection cost
    */
   public int getCost(Node lNode2, Node lNode, Node rNode) {
-    final int position = connectionSize3 * (connectionSize2 * lNode2.rcAttr2 + lNode.rcAttr1) + rNode.lcAttr;
+    final int position;
+    if (connectionRowOffsets != null) {
+      position = connectionRowOffsets[connectionSize2 * lNode2.rcAttr2 + lNode.rcAttr1] + rNode.lcAttr;
+    } else {
+      position = connectionSize3 * (connectionSize2 * lNode2.rcAttr2 + lNode.rcAttr1) + rNode.lcAttr;
+    }
+    if (connectionCostArray != null) {
+      return connectionCostArray[connectionArrayOffset + position] + rNode.dictionaryCost;
+    }
     return connectionCostBuffer.get(position) + rNode.dictionaryCost;
   }
   
@@ -143,46 +316,229 @@ public class Dictionary {
   public CToken[] commonPrefixSearch(CharIterator iterator) {
     int size = 0;
     
-    int n = TrieSearcher.commonPrefixSearch(trieBuffer, iterator, trieSearchResults);
+    // An empty user dictionary costs nothing
+    UserDictionary userDictionary = this.userDictionary;
+    if ((userDictionary != null) && (userDictionary.size() == 0)) {
+      userDictionary = null;
+    }
+    if (userDictionary != null) {
+      replayIterator.reset(iterator);
+      iterator = replayIterator;
+    }
+    
+    int n;
+    if (trieArray != null) {
+      n = TrieSearcher.commonPrefixSearch(trieArray, iterator, trieSearchResults);
+    } else {
+      n = TrieSearcher.commonPrefixSearch(trieBuffer, iterator, trieSearchResults);
+    }
     
     for (int i = 0; i < n; i++) {
-      int k = trieSearchResults[i] & 0xff;
-      int p = trieSearchResults[i] >> 8;
+      int k = header.getTokenCount(trieSearchResults[i]);
+      int p = header.getTokenStart(trieSearchResults[i]);
     
       tokenBuffer.position((int) ((p + 3) * CToken.SIZE));
     
+      ensureResults(size + k + 1);
       for (int j = 0; j < k; j++) {
         results[size++].read(tokenBuffer);
       }
     }
     
+    if (userDictionary != null) {
+      replayIterator.replay();
+      ensureResults(size + userDictionary.getMaxResults() + 1);
+      size = userDictionary.commonPrefixSearch(replayIterator, results, size);
+    }
+    
     // Null terminate
+    ensureResults(size + 1);
     results[size].terminator = true;
     
     return results;
   }
   
   /**
-   * @throws IOException
+   * A CharIterator that records the characters read from another, and can
+   * then read them again before continuing with the other
+   */
+  private static final class ReplayIterator implements CharIterator {
+    
+    /** The iterator read from */
+    private CharIterator iterator;
+    
+    /** The characters read so far */
+    private char[] chars = new char[64];
+    
+    /** The number of characters read so far */
+    private int count;
+    
+    /** The index of the next character to return */
+    private int position;
+    
+    /**
+     * Starts recording a new iterator
+     *
+     * @param iterator The iterator to read from
+     */
+    void reset(CharIterator iterator) {
+      this.iterator = iterator;
+      count = 0;
+      position = 0;
+    }
+    
+    /**
+     * Returns to the first character read
+     */
+    void replay() {
+      position = 0;
+    }
+    
+    public boolean hasNext() {
+      return (position < count) || iterator.hasNext();
+    }
+    
+    public char next() {
+      if (position < count) {
+        return chars[position++];
+      }
+      char c = iterator.next();
+      if (count == chars.length) {
+        char[] newChars = new char[2 * chars.length];
+        System.arraycopy(chars, 0, newChars, 0, count);
+        chars = newChars;
+      }
+      chars[count++] = c;
+      position++;
+      return c;
+    }
+  }
+  
+  /**
+   * Creates a Dictionary over data whose Trie values are packed, as in
+   * dictionaries without an extended header
+   * 
+   * @param connectionCostBuffer The connection cost matrix (connectionCost.sen)
+   * @param partOfSpeechInfoBuffer The part-of-speech information (partOfSpeech.sen)
+   * @param tokenBuffer The token data (token.sen)
+   * @param trieBuffer The double array Trie data (trie.sen)
+   * @param posIndex Unique part-of-speech values
+   * @param conjTypeIndex Unique conjugational type values
+   * @param conjFormIndex Unique conjugational form values
    */
   public Dictionary(ShortBuffer connectionCostBuffer, ByteBuffer partOfSpeechInfoBuffer, ByteBuffer tokenBuffer, IntBuffer trieBuffer, String[] posIndex,
       String[] conjTypeIndex, String[] conjFormIndex) {
+    this(connectionCostBuffer, null, LazySection.of(partOfSpeechInfoBuffer), tokenBuffer, trieBuffer, null,
+        LazySection.of(new PartOfSpeechTables(posIndex, conjTypeIndex, conjFormIndex)), DictionaryHeader.PACKED,
+        readConnectionRowOffsets(connectionCostBuffer));
+  }
+  
+    /**
+   * Decodes the offsets of the rows of a connection cost matrix in the
+   * compact layout. The offsets are only read, and may be shared by all
+   * Dictionaries over the same matrix
+   * 
+   * @param connectionCostBuffer The connection cost matrix (connectionCost.sen)
+   * @return The offset of the row of costs for each (rcAttr2, rcAttr1) pair,
+   *         or <code>null</code> if the matrix is not in the compact layout
+   */
+  public static int[] readConnectionRowOffsets(ShortBuffer connectionCostBuffer) {
+    ShortBuffer buffer = connectionCostBuffer.duplicate();
+    if (buffer.get() != COMPACT_CONNECTION_COST_MARKER) {
+      return null;
+    }
+    
+    int size1 = buffer.get();
+    int size2 = buffer.get();
+    int size3 = buffer.get();
+    buffer.get();
+    
+    int indexSize = size1 * size2;
+    if (indexSize > buffer.remaining()) {
+      throw new RuntimeException("Connection cost file is truncated");
+    }
+    
+    int[] rowOffsets = new int[indexSize];
+    for (int i = 0; i < indexSize; i++) {
+      rowOffsets[i] = (buffer.get() & 0xffff) * size3;
+    }
+    return rowOffsets;
+  }
+  
+  /**
+   * Creates a Dictionary over the data of a compiled dictionary<br><br>
+   * 
+   * The part-of-speech data are loaded the first time a Morpheme is decoded,
+   * so that analyses that only need the surface forms of tokens never read
+   * them. If heap arrays are given, the Trie and connection cost matrix are
+   * searched in them instead of the buffers, which avoids the bounds and
+   * byte order handling of the NIO buffers in the innermost Viterbi loop.
+   * The arrays and row offsets are only read, and may be shared between
+   * Dictionaries
+   * 
+   * @param connectionCostBuffer The connection cost matrix (connectionCost.sen)
+   * @param connectionCostArray The whole of connectionCost.sen as a heap
+   *                            array, or <code>null</code>
+   * @param partOfSpeechInfo The part-of-speech information (partOfSpeech.sen)
+   * @param tokenBuffer The token data (token.sen)
+   * @param trieBuffer The double array Trie data (trie.sen)
+   * @param trieArray The whole of trie.sen as a heap array, or
+   *                  <code>null</code>
+   * @param partOfSpeechTables Unique part-of-speech and conjugation values
+   *                           (posIndex.sen)
+   * @param header The dictionary header (header.sen)
+   * @param connectionRowOffsets The row offsets of the connection cost
+   *                             matrix, as returned by
+   *                             {@link #readConnectionRowOffsets(ShortBuffer)}
+   */
+  public Dictionary(ShortBuffer connectionCostBuffer, short[] connectionCostArray, LazySection<ByteBuffer> partOfSpeechInfo,
+      ByteBuffer tokenBuffer, IntBuffer trieBuffer, int[] trieArray, LazySection<PartOfSpeechTables> partOfSpeechTables,
+      DictionaryHeader header, int[] connectionRowOffsets) {
     // Map connection cost file
     ShortBuffer buffer = connectionCostBuffer;
     
-    connectionSize1 = buffer.get();
-    connectionSize2 = buffer.get();
-    connectionSize3 = buffer.get();
-    
-    int expectedSize = 3 + (connectionSize1 * connectionSize2 * connectionSize3);
-    if (expectedSize != buffer.limit()) {
-      throw new RuntimeException("Expected connection cost file to be " + (2 * expectedSize) + " bytes, but was " + (2 * buffer.limit()));
+    int expectedSize;
+    short marker = buffer.get();
+    if (marker == COMPACT_CONNECTION_COST_MARKER) {
+      connectionSize1 = buffer.get();
+      connectionSize2 = buffer.get();
+      connectionSize3 = buffer.get();
+      int rowCount = buffer.get() & 0xffff;
+      
+      int indexSize = connectionSize1 * connectionSize2;
+      expectedSize = 5 + indexSize + (rowCount * connectionSize3);
+      if (expectedSize != buffer.limit()) {
+        throw new RuntimeException("Expected connection cost file to be " + (2 * expectedSize) + " bytes, but was " + (2 * buffer.limit()));
+      }
+      
+      if ((connectionRowOffsets == null) || (connectionRowOffsets.length != indexSize)) {
+        throw new IllegalArgumentException("Connection cost row offsets do not match the matrix");
+      }
+      this.connectionRowOffsets = connectionRowOffsets;
+      buffer.position(buffer.position() + indexSize);
+      connectionArrayOffset = 5 + indexSize;
+    } else {
+      connectionSize1 = marker;
+      connectionSize2 = buffer.get();
+      connectionSize3 = buffer.get();
+      
+      expectedSize = 3 + (connectionSize1 * connectionSize2 * connectionSize3);
+      if (expectedSize != buffer.limit()) {
+        throw new RuntimeException("Expected connection cost file to be " + (2 * expectedSize) + " bytes, but was " + (2 * buffer.limit()));
+      }
+      
+      if (connectionRowOffsets != null) {
+        throw new IllegalArgumentException("Connection cost row offsets do not match the matrix");
+      }
+      this.connectionRowOffsets = null;
+      connectionArrayOffset = 3;
     }
     
     this.connectionCostBuffer = buffer.slice();
+    this.connectionCostArray = connectionCostArray;
     
     // Map position infomation file.
-    this.partOfSpeechInfoBuffer = partOfSpeechInfoBuffer;
+    this.partOfSpeechInfo = partOfSpeechInfo;
     
     // Map token file
     this.tokenBuffer = tokenBuffer;
@@ -195,14 +551,13 @@ public class Dictionary {
     
     // Map double array trie dictionary
     this.trieBuffer = trieBuffer;
+    this.trieArray = trieArray;
     
     // indexes (unique POS values, etc)
-    this.posIndex = posIndex;
-    this.conjTypeIndex = conjTypeIndex;
-    this.conjFormIndex = conjFormIndex;
+    this.partOfSpeechTables = partOfSpeechTables;
     
-    for (int i = 0; i < results.length; i++) {
-      results[i] = new CToken();
-    }
+    this.header = header;
+    this.trieSearchResults = new int[header.getMaxTrieResults()];
+    ensureResults(header.getMaxTokens() + 1);
   }
 }
@@ -0,0 +1,397 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import net.java.sen.util.IOUtils;
+
+/**
+ * A compiled dictionary held in a single file (dictionary.sen)
+ * 
+ * <p>The file begins with a magic number, the format version and a table of
+ * sections, each recorded as its name, offset, length and CRC32. The
+ * sections hold the contents of the separate compiled dictionary files
+ * ({@link #SECTIONS}), each starting on a {@link #ALIGNMENT} byte boundary,
+ * so that the whole file is mapped once and every section is a slice of
+ * that mapping. Reading a section only touches the pages that are used, so
+ * the checksums are not verified when a section is read but by
+ * {@link #verify()}, which reads the whole file
+ * 
+ * <p><b>Thread Safety</b>: This class and all its public methods are thread
+ * safe
+ */
+public final class DictionaryFile {
+  
+  /** The name of the single dictionary file within a dictionary directory */
+  public static final String FILE_NAME = "dictionary.sen";
+  
+  /** The names of the sections, as the names of the separate files */
+  public static final String[] SECTIONS = new String[] {
+      "header.sen", "connectionCost.sen", "partOfSpeech.sen", "token.sen",
+      "trie.sen", "posIndex.sen"
+  };
+  
+  /** The alignment of the sections within the file */
+  public static final int ALIGNMENT = 4096;
+  
+  /** The first four bytes of a dictionary file, "GSDF" */
+  private static final int MAGIC = 0x47534446;
+  
+  /** The version of the file format */
+  private static final int VERSION = 1;
+  
+  /** The size of the buffer used to checksum and copy sections */
+  private static final int BUFFER_SIZE = 65536;
+  
+  /** The file */
+  private final File file;
+  
+  /** The mapping of the whole file */
+  private final ByteBuffer buffer;
+  
+  /** The sections of the file, by name */
+  private final Map<String, Section> sections = new LinkedHashMap<String, Section>();
+  
+  /**
+   * A section of the file
+   */
+  private static class Section {
+    
+    final int offset;
+    
+    final int length;
+    
+    final int checksum;
+    
+    /** Set once the checksum has been verified */
+    volatile boolean verified;
+    
+    Section(int offset, int length, int checksum) {
+      this.offset = offset;
+      this.length = length;
+      this.checksum = checksum;
+    }
+  }
+  
+  /**
+   * Maps a dictionary file and reads its section table
+   * 
+   * @param file The dictionary file
+   * @return The dictionary file
+   * @throws IOException if the file cannot be read, or is not a dictionary
+   *         file of a supported version, or its section table is corrupt
+   */
+  public static DictionaryFile open(File file) throws IOException {
+    return new DictionaryFile(file);
+  }
+  
+  /**
+   * @param file The dictionary file
+   * @throws IOException
+   */
+  private DictionaryFile(File file) throws IOException {
+    this.file = file;
+    
+    FileInputStream in = null;
+    FileChannel channel = null;
+    try {
+      in = new FileInputStream(file);
+      channel = in.getChannel();
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Dictionary file [" + file + "] is too large: " + channel.size() + " bytes");
+      }
+      // the mapping stays valid after the channel is closed
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      IOUtils.closeWhileHandlingException(channel, in);
+    }
+    
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a dictionary file [" + file + "]");
+      }
+      int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported dictionary file version " + version + " [" + file + "]");
+      }
+      
+      int count = buffer.getInt();
+      DataInputStream din = new DataInputStream(new ByteBufferInputStream(buffer));
+      for (int i = 0; i < count; i++) {
+        String name = din.readUTF();
+        long offset = din.readLong();
+        long length = din.readLong();
+        int checksum = din.readInt();
+        if ((offset < 0) || (offset % ALIGNMENT != 0) || (length < 0) || (offset + length > buffer.capacity())) {
+          throw new IOException("Dictionary file [" + file + "] is truncated or corrupt: section "
+              + name + " at " + offset + " of " + length + " bytes");
+        }
+        sections.put(name, new Section((int) offset, (int) length, checksum));
+      }
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Dictionary file [" + file + "] is truncated");
+    }
+  }
+  
+  /**
+   * Returns whether the file has a section
+   * 
+   * @param name The name of the section
+   * @return <code>true</code> if the section is present
+   */
+  public boolean hasSection(String name) {
+    return sections.containsKey(name);
+  }
+  
+  /**
+   * Returns a section of the file. The checksum of the section is not
+   * verified; see {@link #verify()}
+   * 
+   * @param name The name of the section
+   * @return A read-only buffer over the section
+   * @throws IOException if the file has no such section
+   */
+  public ByteBuffer getSection(String name) throws IOException {
+    return slice(getSectionEntry(name));
+  }
+  
+  /**
+   * Returns a stream over a section of the file. The checksum of the section
+   * is not verified; see {@link #verify()}
+   * 
+   * @param name The name of the section
+   * @return A stream over the section
+   * @throws IOException if the file has no such section
+   */
+  public InputStream getSectionStream(String name) throws IOException {
+    return new ByteBufferInputStream(getSection(name));
+  }
+  
+  /**
+   * Verifies the checksums of all sections not yet verified. This reads
+   * every page of the file
+   * 
+   * @throws IOException if a section does not match its checksum
+   */
+  public void verify() throws IOException {
+    for (Map.Entry<String, Section> entry : sections.entrySet()) {
+      Section section = entry.getValue();
+      if (!section.verified) {
+        if (checksum(slice(section)) != section.checksum) {
+          throw new IOException("Dictionary file [" + file + "] is corrupt: checksum of section "
+              + entry.getKey() + " does not match");
+        }
+        section.verified = true;
+      }
+    }
+  }
+  
+  /**
+   * @param name The name of a section
+   * @return The section
+   * @throws IOException if the file has no such section
+   */
+  private Section getSectionEntry(String name) throws IOException {
+    Section section = sections.get(name);
+    if (section == null) {
+      throw new IOException("Dictionary file [" + file + "] has no section " + name);
+    }
+    return section;
+  }
+  
+  /**
+   * @param section A section
+   * @return A read-only buffer over the section
+   */
+  private ByteBuffer slice(Section section) {
+    ByteBuffer data = buffer.duplicate();
+    data.limit(section.offset + section.length);
+    data.position(section.offset);
+    return data.slice().asReadOnlyBuffer();
+  }
+  
+  /**
+   * Computes the CRC32 of the remaining bytes of a buffer
+   * 
+   * @param data The buffer
+   * @return The checksum
+   */
+  private static int checksum(ByteBuffer data) {
+    CRC32 crc = new CRC32();
+    byte[] chunk = new byte[Math.min(BUFFER_SIZE, data.remaining())];
+    while (data.hasRemaining()) {
+      int length = Math.min(chunk.length, data.remaining());
+      data.get(chunk, 0, length);
+      crc.update(chunk, 0, length);
+    }
+    return (int) crc.getValue();
+  }
+  
+  /**
+   * Writes the separate compiled files of a dictionary directory into a
+   * single dictionary file. The file is written beside the output under a
+   * temporary name and then renamed over the output, so that a watched
+   * dictionary directory sees either the old file or the new one, and never
+   * a partly written or missing file. If the platform cannot rename over an
+   * existing file, the old file is left in place and an IOException thrown.
+   * The temporary file is deleted whenever the conversion fails
+   * 
+   * @param dictionaryDir The directory of the separate compiled files
+   * @param output The dictionary file to write
+   * @throws IOException if a file cannot be read or written, or the output
+   *         cannot be replaced
+   */
+  public static void convert(File dictionaryDir, File output) throws IOException {
+    File[] inputs = new File[SECTIONS.length];
+    long[] offsets = new long[SECTIONS.length];
+    
+    ByteArrayOutputStream table = new ByteArrayOutputStream();
+    writeTable(new DataOutputStream(table), offsets, new long[SECTIONS.length], new int[SECTIONS.length]);
+    long offset = align(table.size());
+    for (int i = 0; i < SECTIONS.length; i++) {
+      inputs[i] = new File(dictionaryDir, SECTIONS[i]);
+      if (!inputs[i].isFile()) {
+        throw new IOException("Dictionary file [" + inputs[i] + "] not found");
+      }
+      offsets[i] = offset;
+      offset = align(offset + inputs[i].length());
+    }
+    if (offset > Integer.MAX_VALUE) {
+      throw new IOException("Dictionary is too large for a single file: " + offset + " bytes");
+    }
+    
+    File temp = new File(output.getAbsoluteFile().getParentFile(), output.getName() + ".tmp");
+    RandomAccessFile out = new RandomAccessFile(temp, "rw");
+    boolean written = false;
+    try {
+      out.setLength(0);
+      long[] lengths = new long[SECTIONS.length];
+      int[] checksums = new int[SECTIONS.length];
+      byte[] chunk = new byte[BUFFER_SIZE];
+      for (int i = 0; i < SECTIONS.length; i++) {
+        out.seek(offsets[i]);
+        CRC32 crc = new CRC32();
+        FileInputStream in = new FileInputStream(inputs[i]);
+        try {
+          int length;
+          while ((length = in.read(chunk)) != -1) {
+            out.write(chunk, 0, length);
+            crc.update(chunk, 0, length);
+            lengths[i] += length;
+          }
+        } finally {
+          IOUtils.closeWhileHandlingException(in);
+        }
+        checksums[i] = (int) crc.getValue();
+      }
+      out.setLength(align(out.length()));
+      
+      table.reset();
+      writeTable(new DataOutputStream(table), offsets, lengths, checksums);
+      out.seek(0);
+      out.write(table.toByteArray());
+      out.getFD().sync();
+      written = true;
+    } finally {
+      IOUtils.closeWhileHandlingException(out);
+      if (!written) {
+        temp.delete();
+      }
+    }
+    
+    // the output is not deleted first, so that it exists throughout
+    if (!temp.renameTo(output)) {
+      temp.delete();
+      throw new IOException("Could not replace dictionary file [" + output + "]");
+    }
+  }
+  
+  /**
+   * Writes the magic number, version and section table
+   * 
+   * @param out The stream to write to
+   * @param offsets The offsets of the sections
+   * @param lengths The lengths of the sections
+   * @param checksums The checksums of the sections
+   * @throws IOException
+   */
+  private static void writeTable(DataOutputStream out, long[] offsets, long[] lengths, int[] checksums)
+      throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(SECTIONS.length);
+    for (int i = 0; i < SECTIONS.length; i++) {
+      out.writeUTF(SECTIONS[i]);
+      out.writeLong(offsets[i]);
+      out.writeLong(lengths[i]);
+      out.writeInt(checksums[i]);
+    }
+    out.flush();
+  }
+  
+  /**
+   * @param offset An offset
+   * @return The offset rounded up to the next {@link #ALIGNMENT}
+   */
+  private static long align(long offset) {
+    return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+  }
+  
+  /**
+   * A stream over the remaining bytes of a buffer
+   */
+  private static class ByteBufferInputStream extends InputStream {
+    
+    private final ByteBuffer buffer;
+    
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+    
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      len = Math.min(len, buffer.remaining());
+      buffer.get(b, off, len);
+      return len;
+    }
+  }
+}
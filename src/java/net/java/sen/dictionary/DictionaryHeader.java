@@ -0,0 +1,289 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The contents of a compiled dictionary's header (header.sen)
+ * 
+ * <p>The header begins with the lengths of the connection cost,
+ * part-of-speech, token and Trie files. Dictionaries compiled since the
+ * header was extended follow these with a version, the largest number of
+ * Trie keys and of {@link CToken}s found by a single prefix search, and the
+ * encoding of the Trie values. A Trie value locates the group of
+ * {@link CToken}s sharing one surface within the token file, either packed
+ * as the count in the low 8 bits and the first token above them, or, for
+ * dictionaries too large for that, as the index of the group in a table of
+ * group starts which is stored in the header
+ */
+public final class DictionaryHeader {
+  
+  /** The version of the extended header */
+  private static final int VERSION = 2;
+  
+  /** The Trie values are packed counts and starts */
+  private static final int PACKED_VALUES = 0;
+  
+  /** The Trie values are indices into the table of group starts */
+  private static final int GROUP_VALUES = 1;
+  
+  /** The number of bits of a packed Trie value holding the count */
+  private static final int COUNT_BITS = 8;
+  
+  /** The largest count in a packed Trie value */
+  private static final int MAX_PACKED_COUNT = (1 << COUNT_BITS) - 1;
+  
+  /** The largest start in a packed Trie value */
+  private static final int MAX_PACKED_START = Integer.MAX_VALUE >> COUNT_BITS;
+  
+  /**
+   * The number of Trie keys assumed to be found by a single search in a
+   * dictionary without an extended header
+   */
+  private static final int DEFAULT_MAX_TRIE_RESULTS = 256;
+  
+  /**
+   * The number of {@link CToken}s assumed to be found by a single search in
+   * a dictionary without an extended header
+   */
+  private static final int DEFAULT_MAX_TOKENS = 255;
+  
+  /**
+   * The header assumed for a {@link Dictionary} created without one: packed
+   * Trie values, and the search limits of a dictionary without an extended
+   * header
+   */
+  static final DictionaryHeader PACKED = new DictionaryHeader(0, 0, 0, 0,
+      DEFAULT_MAX_TRIE_RESULTS, DEFAULT_MAX_TOKENS, null);
+  
+  /** The length of the connection cost file */
+  private final int connectionCostLength;
+  
+  /** The length of the part-of-speech file */
+  private final int partOfSpeechLength;
+  
+  /** The length of the token file */
+  private final int tokenLength;
+  
+  /** The length of the Trie file */
+  private final int trieLength;
+  
+  /** The largest number of Trie keys found by a single search */
+  private final int maxTrieResults;
+  
+  /** The largest number of CTokens found by a single search */
+  private final int maxTokens;
+  
+  /**
+   * The index of the first CToken of each group followed by the number of
+   * CTokens, or <code>null</code> if the Trie values are packed
+   */
+  private final int[] groupStarts;
+  
+  /**
+   * Determines whether groups of CTokens can be located by packed Trie
+   * values
+   * 
+   * @param maxCount The largest number of CTokens in a group
+   * @param maxStart The largest index of the first CToken of a group
+   * @return <code>true</code> if packed values can be used
+   */
+  public static boolean canPack(int maxCount, int maxStart) {
+    return (maxCount <= MAX_PACKED_COUNT) && (maxStart <= MAX_PACKED_START);
+  }
+  
+  /**
+   * Packs the location of a group of CTokens into a Trie value
+   * 
+   * @param count The number of CTokens in the group
+   * @param start The index of the first CToken of the group
+   * @return The Trie value
+   */
+  public static int pack(int count, int start) {
+    return count + (start << COUNT_BITS);
+  }
+  
+  /**
+   * Returns the number of CTokens in the group located by a Trie value
+   * 
+   * @param value The Trie value
+   * @return The number of CTokens
+   */
+  public int getTokenCount(int value) {
+    if (groupStarts != null) {
+      return groupStarts[value + 1] - groupStarts[value];
+    }
+    return value & MAX_PACKED_COUNT;
+  }
+  
+  /**
+   * Returns the index of the first CToken in the group located by a Trie
+   * value
+   * 
+   * @param value The Trie value
+   * @return The index of the first CToken
+   */
+  public int getTokenStart(int value) {
+    if (groupStarts != null) {
+      return groupStarts[value];
+    }
+    return value >> COUNT_BITS;
+  }
+  
+  /**
+   * @return The length of the connection cost file
+   */
+  public int getConnectionCostLength() {
+    return connectionCostLength;
+  }
+  
+  /**
+   * @return The length of the part-of-speech file
+   */
+  public int getPartOfSpeechLength() {
+    return partOfSpeechLength;
+  }
+  
+  /**
+   * @return The length of the token file
+   */
+  public int getTokenLength() {
+    return tokenLength;
+  }
+  
+  /**
+   * @return The length of the Trie file
+   */
+  public int getTrieLength() {
+    return trieLength;
+  }
+  
+  /**
+   * @return The largest number of Trie keys found by a single search
+   */
+  public int getMaxTrieResults() {
+    return maxTrieResults;
+  }
+  
+  /**
+   * @return The largest number of CTokens found by a single search
+   */
+  public int getMaxTokens() {
+    return maxTokens;
+  }
+  
+  /**
+   * Reads a header
+   * 
+   * @param in The stream to read from
+   * @return The header
+   * @throws IOException
+   */
+  public static DictionaryHeader read(InputStream in) throws IOException {
+    DataInputStream din = new DataInputStream(in);
+    int connectionCostLength = din.readInt();
+    int partOfSpeechLength = din.readInt();
+    int tokenLength = din.readInt();
+    int trieLength = din.readInt();
+    
+    int version;
+    try {
+      version = din.readInt();
+    } catch (EOFException e) {
+      return new DictionaryHeader(connectionCostLength, partOfSpeechLength, tokenLength, trieLength,
+          DEFAULT_MAX_TRIE_RESULTS, DEFAULT_MAX_TOKENS, null);
+    }
+    if (version != VERSION) {
+      throw new IOException("Unsupported dictionary header version " + version);
+    }
+    
+    int maxTrieResults = din.readInt();
+    int maxTokens = din.readInt();
+    
+    int[] groupStarts = null;
+    int values = din.readInt();
+    if (values == GROUP_VALUES) {
+      groupStarts = new int[din.readInt() + 1];
+      for (int i = 0; i < groupStarts.length; i++) {
+        groupStarts[i] = din.readInt();
+      }
+    } else if (values != PACKED_VALUES) {
+      throw new IOException("Unsupported dictionary Trie value encoding " + values);
+    }
+    
+    return new DictionaryHeader(connectionCostLength, partOfSpeechLength, tokenLength, trieLength,
+        maxTrieResults, maxTokens, groupStarts);
+  }
+  
+  /**
+   * Writes this header
+   * 
+   * @param out The stream to write to
+   * @throws IOException
+   */
+  public void write(OutputStream out) throws IOException {
+    DataOutputStream dout = new DataOutputStream(out);
+    dout.writeInt(connectionCostLength);
+    dout.writeInt(partOfSpeechLength);
+    dout.writeInt(tokenLength);
+    dout.writeInt(trieLength);
+    
+    dout.writeInt(VERSION);
+    dout.writeInt(maxTrieResults);
+    dout.writeInt(maxTokens);
+    
+    if (groupStarts == null) {
+      dout.writeInt(PACKED_VALUES);
+    } else {
+      dout.writeInt(GROUP_VALUES);
+      dout.writeInt(groupStarts.length - 1);
+      for (int i = 0; i < groupStarts.length; i++) {
+        dout.writeInt(groupStarts[i]);
+      }
+    }
+    dout.flush();
+  }
+  
+  /**
+   * @param connectionCostLength The length of the connection cost file
+   * @param partOfSpeechLength The length of the part-of-speech file
+   * @param tokenLength The length of the token file
+   * @param trieLength The length of the Trie file
+   * @param maxTrieResults The largest number of Trie keys found by a single
+   *                       search
+   * @param maxTokens The largest number of CTokens found by a single search
+   * @param groupStarts The index of the first CToken of each group followed
+   *                    by the number of CTokens, if the Trie values are
+   *                    group indices, or <code>null</code> if they are packed
+   */
+  public DictionaryHeader(int connectionCostLength, int partOfSpeechLength, int tokenLength, int trieLength,
+      int maxTrieResults, int maxTokens, int[] groupStarts) {
+    this.connectionCostLength = connectionCostLength;
+    this.partOfSpeechLength = partOfSpeechLength;
+    this.tokenLength = tokenLength;
+    this.trieLength = trieLength;
+    this.maxTrieResults = maxTrieResults;
+    this.maxTokens = maxTokens;
+    this.groupStarts = groupStarts;
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+import java.io.IOException;
+
+/**
+ * A section of a compiled dictionary that is loaded the first time it is
+ * used, rather than when the dictionary is opened
+ * 
+ * <p><b>Thread Safety</b>: This class and all its public methods are thread
+ * safe. The section is loaded at most once, unless loading fails, in which
+ * case it is attempted again by the next call to {@link #get()}
+ *
+ * @param <T> The type of the loaded section
+ */
+public abstract class LazySection<T> {
+  
+  /** The loaded section, or <code>null</code> until it has been loaded */
+  private volatile T value;
+  
+  /**
+   * Returns a section that has already been loaded
+   * 
+   * @param <T> The type of the section
+   * @param value The section
+   * @return The loaded section
+   */
+  public static <T> LazySection<T> of(final T value) {
+    LazySection<T> section = new LazySection<T>() {
+      @Override
+      protected T load() {
+        return value;
+      }
+    };
+    section.value = value;
+    return section;
+  }
+  
+  /**
+   * Returns the section, loading it if this is the first use
+   * 
+   * @return The section
+   * @throws RuntimeException if the section cannot be loaded
+   */
+  public final T get() {
+    T result = value;
+    if (result == null) {
+      synchronized (this) {
+        result = value;
+        if (result == null) {
+          try {
+            result = load();
+          } catch (IOException e) {
+            throw new RuntimeException("Could not load dictionary section", e);
+          }
+          value = result;
+        }
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Returns whether the section has been loaded
+   * 
+   * @return <code>true</code> if the section has been loaded
+   */
+  public final boolean isLoaded() {
+    return value != null;
+  }
+  
+  /**
+   * Loads the section. Called at most once, unless it fails
+   * 
+   * @return The section, which must not be <code>null</code>
+   * @throws IOException if the section cannot be read
+   */
+  protected abstract T load() throws IOException;
+}
@@ -101,7 +101,9 @@ public class Morpheme {
   private String additionalInformation = null;
   
   /**
-   * Loads the part-of-speech data from the {@link Dictionary}
+   * Loads the part-of-speech data from the {@link Dictionary}, from its
+   * {@link MorphemeCache} if it has one, or from its {@link UserDictionary}
+   * for a user dictionary entry
    *
    */
   private void load(LoadState requested) {
@@ -109,15 +111,54 @@ public class Morpheme {
       return; // we already loaded what we need
     }
     
-    ByteBuffer buffer = dictionary.getPartOfSpeechInfoBuffer();
+    MorphemeCache.Features features = null;
+    if (UserDictionary.isUserIndex(partOfSpeechIndex)) {
+      features = dictionary.getUserDictionary().getFeatures(partOfSpeechIndex);
+    } else {
+      MorphemeCache cache = dictionary.getMorphemeCache();
+      if (cache != null) {
+        features = cache.get(dictionary, partOfSpeechIndex);
+      }
+    }
+    
+    if (features != null) {
+      partOfSpeech = features.partOfSpeech;
+      conjugationalType = features.conjugationalType;
+      conjugationalForm = features.conjugationalForm;
+      basicForm = features.basicForm;
+      readings = features.readings;
+      pronunciations = features.pronunciations;
+      loaded = LoadState.FULL;
+      return;
+    }
+    
+    decode(requested);
+  }
+  
+  /**
+   * Decodes the part-of-speech data from the {@link Dictionary}'s
+   * part-of-speech file
+   *
+   * @param requested The data to decode
+   */
+  private void decode(LoadState requested) {
+    // Read through a private view of the buffer, as the Dictionary may be in
+    // use by another thread once its analysis has been returned
+    ByteBuffer buffer = dictionary.getPartOfSpeechInfoBuffer().duplicate();
     buffer.position(partOfSpeechIndex);
     char[] temp = new char[512];
+    
+    AnalysisMetrics metrics = dictionary.getMetrics();
+    if (metrics != null) {
+      metrics.recordMorphemeDecode();
+    }
     int length;
     
     if (loaded == LoadState.NONE) {
-      partOfSpeech = dictionary.posIndex[DictionaryUtil.readVInt(buffer)];
-      conjugationalType = dictionary.conjTypeIndex[DictionaryUtil.readVInt(buffer)];
-      conjugationalForm = dictionary.conjFormIndex[DictionaryUtil.readVInt(buffer)];
+      PartOfSpeechTables tables = dictionary.getPartOfSpeechTables();
+      partOfSpeech = tables.partsOfSpeech.get(DictionaryUtil.readVInt(buffer));
+      conjugationalType = tables.conjugationalTypes.get(DictionaryUtil.readVInt(buffer));
+      conjugationalForm = tables.conjugationalForms.get(DictionaryUtil.readVInt(buffer));
       
       length = DictionaryUtil.readVInt(buffer);
       if (length == 0) {
@@ -171,6 +212,22 @@ public class Morpheme {
     }
   }
   
+  /**
+   * Decodes a part-of-speech record for a {@link MorphemeCache}
+   *
+   * @param dictionary The {@link Dictionary} to decode from
+   * @param partOfSpeechIndex The index into the part-of-speech file
+   * @return The decoded record
+   */
+  static MorphemeCache.Features decode(Dictionary dictionary, int partOfSpeechIndex) {
+    Morpheme morpheme = new Morpheme(dictionary, partOfSpeechIndex);
+    morpheme.decode(LoadState.FULL);
+    return new MorphemeCache.Features(morpheme.partOfSpeech, morpheme.conjugationalType,
+        morpheme.conjugationalForm, morpheme.basicForm,
+        Collections.unmodifiableList(morpheme.readings),
+        Collections.unmodifiableList(morpheme.pronunciations));
+  }
+  
   /**
    * Gets the conjugation type of the morpheme
    * 
@@ -202,7 +259,8 @@ public class Morpheme {
   }
   
   /**
-   * Gets the readings of the morpheme
+   * Gets the readings of the morpheme. The list is unmodifiable if the
+   * morpheme was read through a {@link MorphemeCache}
    * 
    * @return The readings
    */
@@ -212,7 +270,8 @@ public class Morpheme {
   }
   
   /**
-   * Gets the pronunciations of the morpheme
+   * Gets the pronunciations of the morpheme. The list is unmodifiable if the
+   * morpheme was read through a {@link MorphemeCache}
    * 
    * @return The pronunciations
    */
@@ -221,6 +280,208 @@ public class Morpheme {
     return pronunciations;
   }
   
+  /**
+   * Returns a private view of the part-of-speech file positioned at the
+   * length of this morpheme's unconjugated form
+   *
+   * @return The positioned buffer
+   */
+  private ByteBuffer seekBasicForm() {
+    ByteBuffer buffer = dictionary.getPartOfSpeechInfoBuffer().duplicate();
+    buffer.position(partOfSpeechIndex);
+    DictionaryUtil.readVInt(buffer); // POS
+    DictionaryUtil.readVInt(buffer); // conjType
+    DictionaryUtil.readVInt(buffer); // conjForm
+    return buffer;
+  }
+  
+  /**
+   * Checks whether data copied into an array must be decoded from the
+   * part-of-speech file. Where the {@link Dictionary} has a
+   * {@link MorphemeCache}, or the morpheme is a {@link UserDictionary}
+   * entry, the strings are loaded and copied instead
+   *
+   * @return <code>true</code> if the data should be read from the
+   *         part-of-speech file
+   */
+  private boolean isUndecoded() {
+    if (loaded != LoadState.NONE) {
+      return false;
+    }
+    if ((dictionary.getMorphemeCache() != null) || UserDictionary.isUserIndex(partOfSpeechIndex)) {
+      load(LoadState.FULL); // cached strings cost no decoding
+      return false;
+    }
+    return true;
+  }
+  
+  /**
+   * Gets the length of the unconjugated form of the morpheme
+   * 
+   * @return The length, or 0 if the unconjugated form is the same as the
+   *         surface form and {@link #getBasicForm()} returns "*"
+   */
+  public int getBasicFormLength() {
+    if (isUndecoded()) {
+      return DictionaryUtil.readVInt(seekBasicForm());
+    }
+    return (basicForm == null || basicForm.equals("*")) ? 0 : basicForm.length();
+  }
+  
+  /**
+   * Copies the unconjugated form of the morpheme into an array without
+   * creating any strings
+   * 
+   * @param buffer The array to copy into, which must have room for
+   *               {@link #getBasicFormLength()} characters
+   * @param offset The position in the array to copy to
+   * @return The number of characters copied, as
+   *         {@link #getBasicFormLength()}
+   */
+  public int copyBasicForm(char[] buffer, int offset) {
+    if (isUndecoded()) {
+      ByteBuffer data = seekBasicForm();
+      int length = DictionaryUtil.readVInt(data);
+      DictionaryUtil.readString(data, buffer, offset, offset + length);
+      return length;
+    }
+    int length = getBasicFormLength();
+    if (length > 0) {
+      basicForm.getChars(0, length, buffer, offset);
+    }
+    return length;
+  }
+  
+  /**
+   * Gets the total length of the readings of the morpheme
+   * 
+   * @return The length of all readings concatenated
+   */
+  public int getReadingsLength() {
+    return copyReadingData(null, 0, false);
+  }
+  
+  /**
+   * Copies the readings of the morpheme, concatenated, into an array without
+   * creating any strings
+   * 
+   * @param buffer The array to copy into, which must have room for
+   *               {@link #getReadingsLength()} characters
+   * @param offset The position in the array to copy to
+   * @return The number of characters copied
+   */
+  public int copyReadings(char[] buffer, int offset) {
+    return copyReadingData(buffer, offset, false);
+  }
+  
+  /**
+   * Gets the total length of the pronunciations of the morpheme
+   * 
+   * @return The length of all pronunciations concatenated
+   */
+  public int getPronunciationsLength() {
+    return copyReadingData(null, 0, true);
+  }
+  
+  /**
+   * Copies the pronunciations of the morpheme, concatenated, into an array
+   * without creating any strings
+   * 
+   * @param buffer The array to copy into, which must have room for
+   *               {@link #getPronunciationsLength()} characters
+   * @param offset The position in the array to copy to
+   * @return The number of characters copied
+   */
+  public int copyPronunciations(char[] buffer, int offset) {
+    return copyReadingData(buffer, offset, true);
+  }
+  
+  /**
+   * Copies or measures the readings or pronunciations of the morpheme
+   *
+   * @param buffer The array to copy into, or <code>null</code> to only
+   *               measure the data
+   * @param offset The position in the array to copy to
+   * @param pronunciation If <code>true</code>, the pronunciations are
+   *                      copied, otherwise the readings
+   * @return The number of characters copied or measured
+   */
+  private int copyReadingData(char[] buffer, int offset, boolean pronunciation) {
+    if (!isUndecoded()) {
+      load(LoadState.FULL);
+      List<String> strings = pronunciation ? pronunciations : readings;
+      int total = 0;
+      for (int i = 0; i < strings.size(); i++) {
+        String string = strings.get(i);
+        if (buffer != null) {
+          string.getChars(0, string.length(), buffer, offset + total);
+        }
+        total += string.length();
+      }
+      return total;
+    }
+    
+    ByteBuffer data = seekBasicForm();
+    int length = DictionaryUtil.readVInt(data);
+    data.position(data.position() + 2 * length); // basicForm
+    
+    int readingData = DictionaryUtil.readVInt(data);
+    int numReadings = readingData >>> 1;
+    int bytesPerChar = ((readingData & 1) == 0) ? 1 : 2;
+    int total = 0;
+    for (int i = 0; i < numReadings; i++) {
+      length = DictionaryUtil.readVInt(data);
+      final int readingLength = length >>> 1;
+      final int readingStart = data.position();
+      data.position(readingStart + bytesPerChar * readingLength);
+      
+      if ((length & 1) != 0) {
+        final int pronunciationLength = DictionaryUtil.readVInt(data);
+        if (pronunciation) {
+          total += copyChars(data, buffer, offset + total, pronunciationLength, bytesPerChar);
+        } else {
+          data.position(data.position() + bytesPerChar * pronunciationLength);
+        }
+      } else if (pronunciation) {
+        // the pronunciation is the same as the reading
+        int position = data.position();
+        data.position(readingStart);
+        total += copyChars(data, buffer, offset + total, readingLength, bytesPerChar);
+        data.position(position);
+      }
+      
+      if (!pronunciation) {
+        int position = data.position();
+        data.position(readingStart);
+        total += copyChars(data, buffer, offset + total, readingLength, bytesPerChar);
+        data.position(position);
+      }
+    }
+    return total;
+  }
+  
+  /**
+   * Copies encoded characters from the part-of-speech file
+   *
+   * @param data The part-of-speech file, positioned at the characters
+   * @param buffer The array to copy into, or <code>null</code> to skip the
+   *               characters
+   * @param offset The position in the array to copy to
+   * @param length The number of characters
+   * @param bytesPerChar 1 for katakana, or 2 for other characters
+   * @return The number of characters
+   */
+  private static int copyChars(ByteBuffer data, char[] buffer, int offset, int length, int bytesPerChar) {
+    if (buffer == null) {
+      data.position(data.position() + bytesPerChar * length);
+    } else if (bytesPerChar == 1) {
+      DictionaryUtil.readKatakana(data, buffer, offset, offset + length);
+    } else {
+      DictionaryUtil.readString(data, buffer, offset, offset + length);
+    }
+    return length;
+  }
+  
   /**
    * Gets the part-of-speech in Chasen format
    * 
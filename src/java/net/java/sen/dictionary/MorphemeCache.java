@@ -0,0 +1,296 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded cache of decoded part-of-speech records, shared by all the
+ * {@link Dictionary}s of a dictionary directory
+ * 
+ * <p>A {@link Morpheme} backed by a cached {@link Dictionary} is a cheap
+ * handle: the first access to any of its members takes the decoded record
+ * from the cache, and only a miss reads and decodes the part-of-speech file.
+ * Records are keyed by their part-of-speech index in an open-addressing
+ * table; each key may occupy one of a few neighbouring slots, and a slot is
+ * reclaimed by a CLOCK (second chance) sweep over those slots, so that
+ * frequently used records are kept and the cache never grows beyond its
+ * capacity
+ * 
+ * <p>Readings and pronunciations of a cached record are shared between
+ * {@link Morpheme}s, and are returned as unmodifiable lists
+ * 
+ * <p><b>Thread Safety</b>: This class and all its public methods are thread
+ * safe. Lookups take no locks
+ */
+public final class MorphemeCache {
+  
+  /**
+   * The system property giving the capacity of the caches created by
+   * {@link net.java.sen.SenFactory}. A capacity of 0 disables caching
+   */
+  public static final String SIZE_PROPERTY = "net.java.sen.morphemeCacheSize";
+  
+  /**
+   * The default capacity, in records
+   */
+  public static final int DEFAULT_SIZE = 8192;
+  
+  /**
+   * The number of neighbouring slots a key may occupy
+   */
+  private static final int PROBES = 4;
+  
+  /**
+   * The number of hit and miss counter stripes. Must be a power of 2
+   */
+  private static final int STRIPES = 16;
+  
+  /**
+   * The distance in longs between counter stripes, chosen so that stripes do
+   * not share a cache line
+   */
+  private static final int STRIPE_SPACING = 8;
+  
+  /**
+   * A decoded part-of-speech record
+   */
+  static final class Features {
+    
+    final String partOfSpeech;
+    final String conjugationalType;
+    final String conjugationalForm;
+    final String basicForm;
+    final List<String> readings;
+    final List<String> pronunciations;
+    
+    Features(String partOfSpeech, String conjugationalType, String conjugationalForm, String basicForm,
+        List<String> readings, List<String> pronunciations) {
+      this.partOfSpeech = partOfSpeech;
+      this.conjugationalType = conjugationalType;
+      this.conjugationalForm = conjugationalForm;
+      this.basicForm = basicForm;
+      this.readings = readings;
+      this.pronunciations = pronunciations;
+    }
+  }
+  
+  /**
+   * A slot of the table
+   */
+  private static final class Entry {
+    
+    final int key;
+    final Features features;
+    
+    /**
+     * Set on every hit, and cleared as the clock hand passes
+     */
+    volatile boolean referenced = true;
+    
+    Entry(int key, Features features) {
+      this.key = key;
+      this.features = features;
+    }
+  }
+  
+  /**
+   * The table of records
+   */
+  private final AtomicReferenceArray<Entry> table;
+  
+  /**
+   * The table size minus 1
+   */
+  private final int mask;
+  
+  /**
+   * Striped hit counters
+   */
+  private final AtomicLongArray hits = new AtomicLongArray(STRIPES * STRIPE_SPACING);
+  
+  /**
+   * Striped miss counters
+   */
+  private final AtomicLongArray misses = new AtomicLongArray(STRIPES * STRIPE_SPACING);
+  
+  /**
+   * Returns the capacity configured by the {@link #SIZE_PROPERTY} system
+   * property
+   *
+   * @return The configured capacity, or {@link #DEFAULT_SIZE} if none is set
+   */
+  public static int getConfiguredSize() {
+    String value = System.getProperty(SIZE_PROPERTY);
+    if (value == null || value.trim().length() == 0) {
+      return DEFAULT_SIZE;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid " + SIZE_PROPERTY + ": " + value);
+    }
+  }
+  
+  /**
+   * Returns the stripe of the hit and miss counters for the current thread
+   *
+   * @return The index of the counter
+   */
+  private static int stripe() {
+    return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * STRIPE_SPACING;
+  }
+  
+  /**
+   * Sums a striped counter
+   *
+   * @param counters The counter stripes
+   * @return The total
+   */
+  private static long sum(AtomicLongArray counters) {
+    long total = 0;
+    for (int i = 0; i < counters.length(); i += STRIPE_SPACING) {
+      total += counters.get(i);
+    }
+    return total;
+  }
+  
+  /**
+   * Returns the first slot of a key
+   *
+   * @param key The part-of-speech index
+   * @return The slot
+   */
+  private int slot(int key) {
+    int h = key * 0x9e3779b9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+  
+  /**
+   * Returns the decoded record of a part-of-speech, decoding and caching it
+   * on a miss
+   *
+   * @param dictionary The {@link Dictionary} to decode from
+   * @param partOfSpeechIndex The index into the part-of-speech file
+   * @return The decoded record
+   */
+  Features get(Dictionary dictionary, int partOfSpeechIndex) {
+    int first = slot(partOfSpeechIndex);
+    for (int i = 0; i < PROBES; i++) {
+      Entry entry = table.get((first + i) & mask);
+      if (entry != null && entry.key == partOfSpeechIndex) {
+        if (!entry.referenced) {
+          entry.referenced = true;
+        }
+        hits.incrementAndGet(stripe());
+        return entry.features;
+      }
+    }
+    
+    misses.incrementAndGet(stripe());
+    Features features = Morpheme.decode(dictionary, partOfSpeechIndex);
+    
+    // Sweep the key's slots for a free or unreferenced one, giving each
+    // referenced record a second chance. If all were referenced, the first
+    // slot is replaced
+    int victim = first;
+    for (int i = 0; i < PROBES; i++) {
+      int index = (first + i) & mask;
+      Entry entry = table.get(index);
+      if (entry == null || !entry.referenced) {
+        victim = index;
+        break;
+      }
+      entry.referenced = false;
+    }
+    // A racing insert of the same key is harmless; one record is kept
+    table.set(victim, new Entry(partOfSpeechIndex, features));
+    
+    return features;
+  }
+  
+  /**
+   * Returns the number of lookups answered from the cache
+   *
+   * @return The number of hits
+   */
+  public long getHitCount() {
+    return sum(hits);
+  }
+  
+  /**
+   * Returns the number of lookups that decoded a record
+   *
+   * @return The number of misses
+   */
+  public long getMissCount() {
+    return sum(misses);
+  }
+  
+  /**
+   * Returns the proportion of lookups answered from the cache
+   *
+   * @return The hit rate between 0 and 1, or 0 if there have been no lookups
+   */
+  public double getHitRate() {
+    long hitCount = getHitCount();
+    long total = hitCount + getMissCount();
+    return (total == 0) ? 0 : (double) hitCount / total;
+  }
+  
+  /**
+   * Returns the maximum number of records held
+   *
+   * @return The capacity
+   */
+  public int getCapacity() {
+    return table.length();
+  }
+  
+  /**
+   * Returns the number of records currently held
+   *
+   * @return The number of records
+   */
+  public int size() {
+    int size = 0;
+    for (int i = 0; i < table.length(); i++) {
+      if (table.get(i) != null) {
+        size++;
+      }
+    }
+    return size;
+  }
+  
+  /**
+   * @param capacity The maximum number of records to hold, rounded up to a
+   *                 power of 2
+   */
+  public MorphemeCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    }
+    int size = PROBES;
+    while (size < capacity) {
+      size <<= 1;
+    }
+    this.table = new AtomicReferenceArray<Entry>(size);
+    this.mask = size - 1;
+  }
+}
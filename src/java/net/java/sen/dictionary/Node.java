@@ -64,10 +64,19 @@ final public class Node implements Cloneable {
   public Node rnext;
   
   /**
-   * The <code>Morpheme</code> that is contained within this <code>Node</code>
+   * The <code>Morpheme</code> that is contained within this <code>Node</code>,
+   * or <code>null</code> if it is to be created from
+   * <code>partOfSpeechIndex</code> when needed
    */
   public Morpheme morpheme;
   
+  /**
+   * The index of the part-of-speech of this <code>Node</code> within the
+   * part-of-speech information file. Only meaningful if
+   * <code>morpheme</code> is <code>null</code>
+   */
+  public int partOfSpeechIndex;
+  
   /**
    * The index of the first character of this <code>Node</code> within the
    * surface
@@ -94,6 +103,48 @@ final public class Node implements Cloneable {
    */
   public int cost; 
   
+  /**
+   * Copies every field of another <code>Node</code> into this one
+   * 
+   * @param node The <code>Node</code> to copy
+   */
+  public void set(Node node) {
+    this.rcAttr2 = node.rcAttr2;
+    this.rcAttr1 = node.rcAttr1;
+    this.lcAttr = node.lcAttr;
+    this.dictionaryCost = node.dictionaryCost;
+    this.prev = node.prev;
+    this.next = node.next;
+    this.lnext = node.lnext;
+    this.rnext = node.rnext;
+    this.morpheme = node.morpheme;
+    this.partOfSpeechIndex = node.partOfSpeechIndex;
+    this.start = node.start;
+    this.length = node.length;
+    this.span = node.span;
+    this.cost = node.cost;
+  }
+  
+  /**
+   * Resets every field of this <code>Node</code> to its initial value
+   */
+  public void clear() {
+    this.rcAttr2 = 0;
+    this.rcAttr1 = 0;
+    this.lcAttr = 0;
+    this.dictionaryCost = 0;
+    this.prev = null;
+    this.next = null;
+    this.lnext = null;
+    this.rnext = null;
+    this.morpheme = null;
+    this.partOfSpeechIndex = 0;
+    this.start = 0;
+    this.length = 0;
+    this.span = 0;
+    this.cost = 0;
+  }
+  
   @Override
   public Node clone() {
     // Nodes form a lattice, and must be copied shallowly
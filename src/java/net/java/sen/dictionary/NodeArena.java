@@ -0,0 +1,94 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+package net.java.sen.dictionary;
+
+/**
+ * A pool of {@link Node}s from which the {@link Viterbi} lattice of a
+ * sentence is built. The pool is emptied with {@link #reset()} before each
+ * sentence, after which its <code>Node</code>s are handed out again, so that
+ * analysing a sentence does not allocate any <code>Node</code>s once the pool
+ * has grown to the size of the largest lattice seen
+ * 
+ * <p><b>Thread Safety</b>: Objects of this class are <b>NOT</b> thread safe and
+ * should not be accessed simultaneously by multiple threads
+ */
+public final class NodeArena {
+  
+  /** The pooled <code>Node</code>s, created on first use */
+  private Node[] nodes = new Node[256];
+  
+  /** The number of <code>Node</code>s handed out since the last reset */
+  private int size = 0;
+  
+  /**
+   * Returns a cleared <code>Node</code> from the pool. The
+   * <code>Node</code> remains valid until the next call to
+   * {@link #reset()}
+   *
+   * @return A cleared <code>Node</code>
+   */
+  public Node newNode() {
+    if (size == nodes.length) {
+      Node[] newNodes = new Node[nodes.length * 2];
+      System.arraycopy(nodes, 0, newNodes, 0, nodes.length);
+      nodes = newNodes;
+    }
+    
+    Node node = nodes[size];
+    if (node == null) {
+      node = new Node();
+      nodes[size] = node;
+    } else {
+      node.clear();
+    }
+    size++;
+    
+    return node;
+  }
+  
+  /**
+   * Returns a <code>Node</code> from the pool holding a copy of the given
+   * <code>Node</code>. The <code>Node</code> remains valid until the next call
+   * to {@link #reset()}
+   *
+   * @param template The <code>Node</code> to copy
+   * @return The copied <code>Node</code>
+   */
+  public Node newNode(Node template) {
+    Node node = newNode();
+    node.set(template);
+    return node;
+  }
+  
+  /**
+   * Returns all <code>Node</code>s to the pool. <code>Node</code>s
+   * previously handed out must not be used afterwards
+   */
+  public void reset() {
+    size = 0;
+  }
+  
+  /**
+   * Returns the number of <code>Node</code>s handed out since the last reset
+   *
+   * @return The number of <code>Node</code>s
+   */
+  public int size() {
+    return size;
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The unique part-of-speech, conjugational type and conjugational form
+ * values of a compiled dictionary (posIndex.sen), which are referred to by
+ * index from the part-of-speech file. Values read from a buffer are decoded
+ * from it when first used, so a mapped posIndex.sen is not decoded as a
+ * whole when the dictionary is opened
+ */
+public final class PartOfSpeechTables {
+  
+  /** Unique part-of-speech values */
+  final StringPool partsOfSpeech;
+  
+  /** Unique conjugational type values */
+  final StringPool conjugationalTypes;
+  
+  /** Unique conjugational form values */
+  final StringPool conjugationalForms;
+  
+  /**
+   * Reads the tables from a buffer, which is then referred to whenever a
+   * value is first used
+   * 
+   * @param buffer The contents of posIndex.sen
+   * @return The tables
+   * @throws IOException if the tables extend beyond the buffer
+   */
+  public static PartOfSpeechTables read(ByteBuffer buffer) throws IOException {
+    ByteBuffer data = buffer.duplicate();
+    StringPool partsOfSpeech = StringPool.read(data);
+    StringPool conjugationalTypes = StringPool.read(data);
+    StringPool conjugationalForms = StringPool.read(data);
+    return new PartOfSpeechTables(partsOfSpeech, conjugationalTypes, conjugationalForms);
+  }
+  
+  /**
+   * Reads the tables from a stream
+   * 
+   * @param in The stream to read from
+   * @return The tables
+   * @throws IOException
+   */
+  public static PartOfSpeechTables read(InputStream in) throws IOException {
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    byte[] buf = new byte[4096];
+    int length;
+    while ((length = in.read(buf)) != -1) {
+      data.write(buf, 0, length);
+    }
+    return read(ByteBuffer.wrap(data.toByteArray()));
+  }
+  
+  /**
+   * @param partsOfSpeech Unique part-of-speech values
+   * @param conjugationalTypes Unique conjugational type values
+   * @param conjugationalForms Unique conjugational form values
+   */
+  public PartOfSpeechTables(String[] partsOfSpeech, String[] conjugationalTypes, String[] conjugationalForms) {
+    this(new StringPool(partsOfSpeech), new StringPool(conjugationalTypes), new StringPool(conjugationalForms));
+  }
+  
+  /**
+   * @param partsOfSpeech Unique part-of-speech values
+   * @param conjugationalTypes Unique conjugational type values
+   * @param conjugationalForms Unique conjugational form values
+   */
+  private PartOfSpeechTables(StringPool partsOfSpeech, StringPool conjugationalTypes, StringPool conjugationalForms) {
+    this.partsOfSpeech = partsOfSpeech;
+    this.conjugationalTypes = conjugationalTypes;
+    this.conjugationalForms = conjugationalForms;
+  }
+}
@@ -19,6 +19,7 @@
 
 package net.java.sen.dictionary;
 
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.NoSuchElementException;
 
@@ -30,25 +31,39 @@ import java.util.NoSuchElementException;
  */
 public class Sentence {
   
-  /** The sentence's characters */
+  /** The array holding the sentence's characters */
   private char[] characters;
   
+  /** The index within <code>characters</code> of the first character */
+  private int offset;
+  
+  /** The number of characters in the sentence */
+  private int length;
+  
   /**
-   * An BitSet of the same length as the <code>characters</code> array.
-   * characters at indices that are <code>true</code> are both ignored
-   * and treated as breaking points
+   * An BitSet indexed by position within the sentence. Characters at
+   * positions that are <code>true</code> are both ignored and treated as
+   * breaking points. Created when the first span is set, and reused by
+   * {@link #reset(char[], int, int)}
    */
   private BitSet breakingIgnoreSet;
   
   /**
-   * The reading constraints to apply. The constraints set will prevent other
-   * spans from intersecting the indicated region, allowing the Viterbi
-   * algorithm to ensure that a morpheme with the chosen length and reading
-   * is picked in preference to any other possible sequence of morphemes
-   * for the same characters
+   * The reading constraints to apply, indexed by starting position. The
+   * constraints set will prevent other spans from intersecting the indicated
+   * region, allowing the Viterbi algorithm to ensure that a morpheme with the
+   * chosen length and reading is picked in preference to any other possible
+   * sequence of morphemes for the same characters. As most sentences have no
+   * constraints, the array is only created when the first is set, and is
+   * reused by {@link #reset(char[], int, int)}
    */
   private Reading[] constraints;
   
+  /**
+   * The number of reading constraints set
+   */
+  private int constraintCount;
+  
   
   /**
    * A SentenceIterator that obeys the defined breaking ignore spans,
@@ -117,20 +132,20 @@ public class Sentence {
       // If the current span has a reading constraint, skip to the end.
       // Otherwise start at the next character
       int i = this.origin;
-      if ((i >= 0) && (constraints[i] != null)) {
+      if ((i >= 0) && (getReadingConstraint(i) != null)) {
         i += constraints[i].length;
       } else {
         i++;
       }
       
       // Find the next iterable position, skipping any ignored spans and space
-      for (int j = i; j < characters.length; ) {
-        if (breakingIgnoreSet.get(j)) {
+      for (int j = i; j < length; ) {
+        if (isIgnored(j)) {
           j = breakingIgnoreSet.nextClearBit(j);
-        } else if (characters[j] == ' '  ||
-            characters[j] == '\t' ||
-            characters[j] == '\r' ||
-            characters[j] == '\n') {
+        } else if (characters[offset + j] == ' '  ||
+            characters[offset + j] == '\t' ||
+            characters[offset + j] == '\r' ||
+            characters[offset + j] == '\n') {
           j++;
         } else {
           nextOrigin = j;
@@ -144,20 +159,20 @@ public class Sentence {
       this.nextSkipped = nextSkipped;
       if (
           (this.nextOrigin >= 0)
-          && (this.nextOrigin < characters.length)
-          && (Sentence.this.constraints[this.nextOrigin] != null)
+          && (this.nextOrigin < length)
+          && (getReadingConstraint(this.nextOrigin) != null)
       )
       {
         this.nextLimit = this.nextOrigin + constraints[this.nextOrigin].length; 
       } else {
-        this.nextLimit = characters.length;
+        this.nextLimit = length;
       }
     }
     
     /* SentenceIterator interface */
     
     public char current() {
-      return characters[nextIndex];
+      return characters[offset + nextIndex];
     }
     
     public boolean hasNextOrigin() {
@@ -169,7 +184,7 @@ public class Sentence {
     }
     
     public int length() {
-      return characters.length;
+      return length;
     }
     
     public int nextOrigin() {
@@ -205,14 +220,14 @@ public class Sentence {
       
       if (nextIndex >= limit) {
         nextIndexValid = false;
-      } else if (breakingIgnoreSet.get(nextIndex)) {
+      } else if (isIgnored(nextIndex)) {
         nextIndexValid = false;
-      } else 	if ((nextIndex > origin) && (constraints[nextIndex] != null)) {
+      } else 	if ((nextIndex > origin) && (getReadingConstraint(nextIndex) != null)) {
         nextIndexValid = false;
-      } else if (characters[nextIndex] == ' '  ||
-          characters[nextIndex] == '\t' ||
-          characters[nextIndex] == '\r' ||
-          characters[nextIndex] == '\n') {
+      } else if (characters[offset + nextIndex] == ' '  ||
+          characters[offset + nextIndex] == '\t' ||
+          characters[offset + nextIndex] == '\r' ||
+          characters[offset + nextIndex] == '\n') {
         nextIndexValid = false;
       } else {
         nextIndexValid = true;
@@ -232,7 +247,7 @@ public class Sentence {
         throw new NoSuchElementException();
       }
       
-      char nextCharacter = characters[nextIndex];
+      char nextCharacter = characters[offset + nextIndex];
       nextIndex++;
       nextIndexValid = null;
       return nextCharacter;
@@ -268,7 +283,7 @@ public class Sentence {
     /* SentenceIterator interface */
     
     public char current() {
-      return characters[nextIndex];
+      return characters[offset + nextIndex];
     }
     
     public boolean hasNextOrigin() {
@@ -276,7 +291,7 @@ public class Sentence {
     }
     
     public int length() {
-      return characters.length;
+      return length;
     }
     
     public int nextOrigin() {
@@ -300,14 +315,14 @@ public class Sentence {
     public boolean hasNext() {
       boolean nextIndexValid;
       
-      if (nextIndex >= characters.length) {
+      if (nextIndex >= length) {
         nextIndexValid = false;
-      } else if (breakingIgnoreSet.get(nextIndex)) {
+      } else if (isIgnored(nextIndex)) {
         nextIndexValid = false;
-      } else if (characters[nextIndex] == ' '  ||
-          characters[nextIndex] == '\t' ||
-          characters[nextIndex] == '\r' ||
-          characters[nextIndex] == '\n') {
+      } else if (characters[offset + nextIndex] == ' '  ||
+          characters[offset + nextIndex] == '\t' ||
+          characters[offset + nextIndex] == '\r' ||
+          characters[offset + nextIndex] == '\n') {
         nextIndexValid = false;
       } else {
         nextIndexValid = true;
@@ -327,7 +342,7 @@ public class Sentence {
         throw new NoSuchElementException();
       }
       
-      char nextCharacter = characters[nextIndex];
+      char nextCharacter = characters[offset + nextIndex];
       nextIndex++;
       nextIndexValid = null;
       return nextCharacter;
@@ -353,9 +368,23 @@ public class Sentence {
    * @param length The length of the ignore span to set
    */
   public void setBreakingIgnoreSpan(int position, short length) {
+    if (breakingIgnoreSet == null) {
+      breakingIgnoreSet = new BitSet(this.length);
+    }
     breakingIgnoreSet.set(position, position + length);
   }
   
+  /**
+   * Checks whether the character at a position is within a breaking ignore
+   * span
+   *
+   * @param position The position to check
+   * @return <code>true</code> if the character is ignored
+   */
+  private boolean isIgnored(int position) {
+    return (breakingIgnoreSet != null) && breakingIgnoreSet.get(position);
+  }
+  
   /**
    * Sets a reading constraint on the Sentence starting at <code>position<code>;
    * any existing constraints that overlap the new constraint will be removed.
@@ -364,12 +393,12 @@ public class Sentence {
    */
   public void setReadingConstraint(Reading constraint) {
     // Check starting position
-    if ((constraint.start < 0) || (constraint.start >= characters.length)) {
+    if ((constraint.start < 0) || (constraint.start >= length)) {
       throw new IllegalArgumentException("Invalid constraint starting position");
     }
     
     // Check length
-    if ((constraint.length <= 0) || (constraint.start + constraint.length - 1) >= characters.length) {
+    if ((constraint.length <= 0) || (constraint.start + constraint.length - 1) >= length) {
       throw new IllegalArgumentException("Invalid constraint length");
     }
     
@@ -378,6 +407,14 @@ public class Sentence {
       throw new IllegalArgumentException("Invalid constraint reading");
     }
     
+    if ((constraints == null) || (constraints.length < length)) {
+      Reading[] newConstraints = new Reading[length];
+      if (constraintCount > 0) {
+        System.arraycopy(constraints, 0, newConstraints, 0, constraints.length);
+      }
+      constraints = newConstraints;
+    }
+    
     // Remove any existing constraints that overlap the new constraint
     
     // Starting at the end of the constraint, work backwards until we hit
@@ -387,6 +424,7 @@ public class Sentence {
       if (constraints[i] != null) {
         if ((i + constraints[i].length - 1) >= constraint.start) {
           constraints[i] = null;
+          constraintCount--;
         } else {
           done = true;
         }
@@ -394,6 +432,7 @@ public class Sentence {
     }
     
     constraints[constraint.start] = constraint;
+    constraintCount++;
   }
   
   /**
@@ -403,7 +442,7 @@ public class Sentence {
    * @return The constraint if present, or <code>null</code>
    */
   public Reading getReadingConstraint(int position) {
-    return constraints[position];
+    return (constraintCount == 0) ? null : constraints[position];
   }
   
   /**
@@ -412,7 +451,10 @@ public class Sentence {
    * @param position The position to remove the constraint from
    */
   public void removeReadingConstraint(int position) {
-    constraints[position] = null;
+    if ((constraintCount > 0) && (constraints[position] != null)) {
+      constraints[position] = null;
+      constraintCount--;
+    }
   }
   
   /**
@@ -437,7 +479,9 @@ public class Sentence {
   }
   
   /**
-   * Returns the underlying characters of this Sentence
+   * Returns the underlying characters of this Sentence. The sentence
+   * occupies {@link #getLength()} characters of the array from
+   * {@link #getOffset()}; all other positions are relative to the offset
    *
    * @return The underlying characters
    */
@@ -445,15 +489,70 @@ public class Sentence {
     return characters;
   }
   
+  /**
+   * Returns the index of the first character of this Sentence within the
+   * array returned by {@link #getCharacters()}
+   *
+   * @return The offset of the sentence
+   */
+  public int getOffset() {
+    return offset;
+  }
+  
+  /**
+   * Returns the number of characters in this Sentence
+   *
+   * @return The length of the sentence
+   */
+  public int getLength() {
+    return length;
+  }
+  
+  /**
+   * Reuses this sentence for a range of the given characters, removing all
+   * breaking ignore spans and reading constraints. The storage for spans and
+   * constraints is kept for the new characters. The characters are not
+   * copied, and must not be changed while the sentence is in use
+   *  
+   * @param characters The array holding the sentence's characters
+   * @param offset The index of the first character of the sentence
+   * @param length The number of characters in the sentence
+   */
+  public void reset(char[] characters, int offset, int length) {
+    if ((offset < 0) || (length < 0) || (offset + length > characters.length)) {
+      throw new IllegalArgumentException("Invalid range: offset=" + offset + ", length=" + length);
+    }
+    this.characters = characters;
+    this.offset = offset;
+    this.length = length;
+    if (breakingIgnoreSet != null) {
+      breakingIgnoreSet.clear();
+    }
+    if (constraintCount > 0) {
+      Arrays.fill(constraints, null);
+      constraintCount = 0;
+    }
+  }
+  
+  /**
+   * Creates a sentence over a range of the given characters. The characters
+   * are not copied, and must not be changed while the sentence is in use
+   *  
+   * @param characters The array holding the sentence's characters
+   * @param offset The index of the first character of the sentence
+   * @param length The number of characters in the sentence
+   */
+  public Sentence(char[] characters, int offset, int length) {
+    reset(characters, offset, length);
+  }
+  
   /**
    * Creates a sentence with the given characters
    *  
    * @param characters The sentence's characters 
    */
   public Sentence(char[] characters) {
-    this.characters = characters;
-    this.breakingIgnoreSet = new BitSet(characters.length);
-    this.constraints = new Reading[characters.length];
+    this(characters, 0, characters.length);
   }
   
   /**
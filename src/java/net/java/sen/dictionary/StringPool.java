@@ -0,0 +1,137 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A table of strings stored in a buffer as a count followed by each string
+ * in the format of {@link java.io.DataOutput#writeUTF(String)}. Opening the
+ * table only skips over the strings to find where each begins; a string is
+ * decoded the first time it is used
+ * 
+ * <p><b>Thread Safety</b>: This class and all its methods are thread safe
+ */
+final class StringPool {
+  
+  /** The buffer holding the encoded strings, or <code>null</code> */
+  private final ByteBuffer buffer;
+  
+  /** The position in the buffer of the length of each string */
+  private final int offsets[];
+  
+  /**
+   * The strings decoded so far. A string may be decoded by several threads
+   * at once, but as Strings are immutable any of the copies can be used
+   */
+  private final String strings[];
+  
+  /**
+   * Reads the string offsets of a table, leaving the buffer positioned
+   * after it
+   * 
+   * @param buffer The buffer, positioned at the count of the table
+   * @return The table
+   * @throws IOException if the table extends beyond the buffer
+   */
+  static StringPool read(ByteBuffer buffer) throws IOException {
+    if (buffer.remaining() < 2) {
+      throw new IOException("String table is truncated");
+    }
+    int offsets[] = new int[buffer.getChar()];
+    int position = buffer.position();
+    for (int i = 0; i < offsets.length; i++) {
+      if (position + 2 > buffer.limit()) {
+        throw new IOException("String table is truncated");
+      }
+      offsets[i] = position;
+      position += 2 + buffer.getChar(position);
+    }
+    if (position > buffer.limit()) {
+      throw new IOException("String table is truncated");
+    }
+    buffer.position(position);
+    
+    return new StringPool(buffer.duplicate(), offsets, new String[offsets.length]);
+  }
+  
+  /**
+   * Creates a table of strings that have already been decoded
+   * 
+   * @param strings The strings
+   */
+  StringPool(String[] strings) {
+    this(null, null, strings);
+  }
+  
+  /**
+   * @param buffer The buffer holding the encoded strings
+   * @param offsets The position of each string
+   * @param strings The decoded strings
+   */
+  private StringPool(ByteBuffer buffer, int[] offsets, String[] strings) {
+    this.buffer = buffer;
+    this.offsets = offsets;
+    this.strings = strings;
+  }
+  
+  /**
+   * @return The number of strings
+   */
+  int size() {
+    return strings.length;
+  }
+  
+  /**
+   * Returns a string, decoding it if this is its first use
+   * 
+   * @param index The index of the string
+   * @return The string
+   */
+  String get(int index) {
+    String string = strings[index];
+    if (string == null) {
+      string = decode(offsets[index]);
+      strings[index] = string;
+    }
+    return string;
+  }
+  
+  /**
+   * Decodes one string from the buffer
+   * 
+   * @param offset The position of the length of the string
+   * @return The string
+   */
+  private String decode(int offset) {
+    int end = offset + 2 + buffer.getChar(offset);
+    char chars[] = new char[end - offset - 2];
+    int length = 0;
+    for (int i = offset + 2; i < end;) {
+      int b = buffer.get(i++) & 0xff;
+      if (b < 0x80) {
+        chars[length++] = (char) b;
+      } else if ((b & 0xe0) == 0xc0) {
+        chars[length++] = (char) (((b & 0x1f) << 6) | (buffer.get(i++) & 0x3f));
+      } else {
+        chars[length++] = (char) (((b & 0x0f) << 12) | ((buffer.get(i++) & 0x3f) << 6) | (buffer.get(i++) & 0x3f));
+      }
+    }
+    return new String(chars, 0, length);
+  }
+}
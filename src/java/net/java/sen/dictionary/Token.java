@@ -262,6 +262,34 @@ public class Token {
     this.length = node.length;
   }
   
+  /**
+   * Creates a Token from a Node
+   * 
+   * @param surface The underlying sentence characters
+   * @param node The Node to create from
+   * @param morpheme The morpheme data of the Node
+   */
+  public Token(char[] surface, Node node, Morpheme morpheme) {
+    this(surface, 0, node, morpheme);
+  }
+  
+  /**
+   * Creates a Token from a Node of a sentence held within a larger array
+   * 
+   * @param surface The array holding the sentence's characters
+   * @param offset The index within the array of the sentence's first
+   *               character
+   * @param node The Node to create from
+   * @param morpheme The morpheme data of the Node
+   */
+  public Token(char[] surface, int offset, Node node, Morpheme morpheme) {
+    this.morpheme = morpheme;
+    this.cost = node.cost;
+    this.surface = new String(surface, offset + node.start, node.length);
+    this.start = node.start;
+    this.length = node.length;
+  }
+  
   /**
    * Creates a Token with explicit parameters
    * 
@@ -0,0 +1,238 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+/**
+ * The tokens of an analysed sentence, held in parallel arrays rather than as
+ * {@link Token} objects. The buffer is filled by
+ * {@link Viterbi#getBestTokens(Sentence, TokenBuffer)} and may be reused for
+ * every sentence, so that no object is created per token unless its
+ * {@link Morpheme} is requested. The surfaces of the tokens are not copied,
+ * but read from the sentence's character array, which must not be changed
+ * while the tokens are in use
+ * 
+ * <p><b>Thread Safety</b>: Objects of this class are <b>NOT</b> thread safe and
+ * should not be accessed simultaneously by multiple threads
+ */
+public final class TokenBuffer {
+  
+  /** The initial capacity of the arrays */
+  private static final int INITIAL_CAPACITY = 16;
+  
+  /** The number of tokens */
+  private int size = 0;
+  
+  /** The start of each token, relative to the sentence */
+  private int starts[] = new int[INITIAL_CAPACITY];
+  
+  /** The length of each token */
+  private int lengths[] = new int[INITIAL_CAPACITY];
+  
+  /** The cumulative Viterbi cost of each token */
+  private int costs[] = new int[INITIAL_CAPACITY];
+  
+  /** The index of each token's part-of-speech data */
+  private int partOfSpeechIndexes[] = new int[INITIAL_CAPACITY];
+  
+  /**
+   * The morpheme of each token, created when first requested unless it was
+   * created during analysis, as for unknown words
+   */
+  private Morpheme morphemes[] = new Morpheme[INITIAL_CAPACITY];
+  
+  /** The array holding the sentence's characters */
+  private char characters[] = new char[0];
+  
+  /** The index within the array of the sentence's first character */
+  private int offset = 0;
+  
+  /** The Dictionary the tokens were found in */
+  private Dictionary dictionary;
+  
+  /**
+   * Removes all tokens, and sets the sentence the following tokens are found
+   * in
+   * 
+   * @param characters The array holding the sentence's characters
+   * @param offset The index within the array of the sentence's first
+   *               character
+   * @param dictionary The Dictionary the tokens are found in
+   */
+  void reset(char[] characters, int offset, Dictionary dictionary) {
+    // release the morphemes of the previous sentence
+    for (int i = 0; i < size; i++) {
+      morphemes[i] = null;
+    }
+    this.size = 0;
+    this.characters = characters;
+    this.offset = offset;
+    this.dictionary = dictionary;
+  }
+  
+  /**
+   * Appends a token
+   * 
+   * @param node The Node of the token
+   */
+  void add(Node node) {
+    if (size == starts.length) {
+      grow();
+    }
+    starts[size] = node.start;
+    lengths[size] = node.length;
+    costs[size] = node.cost;
+    partOfSpeechIndexes[size] = node.partOfSpeechIndex;
+    morphemes[size] = node.morpheme;
+    size++;
+  }
+  
+  /**
+   * Doubles the capacity of the arrays
+   */
+  private void grow() {
+    int capacity = 2 * starts.length;
+    
+    int newStarts[] = new int[capacity];
+    System.arraycopy(starts, 0, newStarts, 0, size);
+    starts = newStarts;
+    int newLengths[] = new int[capacity];
+    System.arraycopy(lengths, 0, newLengths, 0, size);
+    lengths = newLengths;
+    int newCosts[] = new int[capacity];
+    System.arraycopy(costs, 0, newCosts, 0, size);
+    costs = newCosts;
+    int newPartOfSpeechIndexes[] = new int[capacity];
+    System.arraycopy(partOfSpeechIndexes, 0, newPartOfSpeechIndexes, 0, size);
+    partOfSpeechIndexes = newPartOfSpeechIndexes;
+    Morpheme newMorphemes[] = new Morpheme[capacity];
+    System.arraycopy(morphemes, 0, newMorphemes, 0, size);
+    morphemes = newMorphemes;
+  }
+  
+  /**
+   * Returns the number of tokens
+   * 
+   * @return The number of tokens
+   */
+  public int size() {
+    return size;
+  }
+  
+  /**
+   * Returns the start of a token's character range within the sentence
+   * 
+   * @param index The index of the token
+   * @return The start of the token, relative to the sentence
+   */
+  public int getStart(int index) {
+    checkIndex(index);
+    return starts[index];
+  }
+  
+  /**
+   * Returns the length of a token's character range
+   * 
+   * @param index The index of the token
+   * @return The length of the token
+   */
+  public int getLength(int index) {
+    checkIndex(index);
+    return lengths[index];
+  }
+  
+  /**
+   * Returns the Viterbi cost of a token, which as for {@link Token#getCost()}
+   * includes the costs of the tokens before it
+   * 
+   * @param index The index of the token
+   * @return The cumulative cost of the token
+   */
+  public int getCost(int index) {
+    checkIndex(index);
+    return costs[index];
+  }
+  
+  /**
+   * Returns the morpheme data of a token, creating its {@link Morpheme} if
+   * this is the first request for it
+   * 
+   * @param index The index of the token
+   * @return The morpheme data of the token
+   */
+  public Morpheme getMorpheme(int index) {
+    checkIndex(index);
+    Morpheme morpheme = morphemes[index];
+    if (morpheme == null) {
+      morpheme = new Morpheme(dictionary, partOfSpeechIndexes[index]);
+      morphemes[index] = morpheme;
+    }
+    return morpheme;
+  }
+  
+  /**
+   * Returns the array holding the characters of the sentence. A token's
+   * surface occupies {@link #getLength(int)} characters from
+   * {@link #getOffset()} + {@link #getStart(int)}
+   * 
+   * @return The array holding the sentence's characters
+   */
+  public char[] getCharacters() {
+    return characters;
+  }
+  
+  /**
+   * Returns the index within {@link #getCharacters()} of the sentence's
+   * first character
+   * 
+   * @return The offset of the sentence
+   */
+  public int getOffset() {
+    return offset;
+  }
+  
+  /**
+   * Returns the surface of a token as a String
+   * 
+   * @param index The index of the token
+   * @return The surface of the token
+   */
+  public String getSurface(int index) {
+    checkIndex(index);
+    return new String(characters, offset + starts[index], lengths[index]);
+  }
+  
+  /**
+   * Creates a {@link Token} equal to one returned by
+   * {@link Viterbi#getBestTokens(Sentence, java.util.List)} for a token
+   * 
+   * @param index The index of the token
+   * @return The Token
+   */
+  public Token getToken(int index) {
+    return new Token(getSurface(index), costs[index], starts[index], lengths[index], getMorpheme(index));
+  }
+  
+  /**
+   * @param index The index of a token
+   * @throws IndexOutOfBoundsException if there is no such token
+   */
+  private void checkIndex(int index) {
+    if ((index < 0) || (index >= size)) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+}
@@ -76,6 +76,19 @@ public abstract class Tokenizer {
     return bosNode;
   }
   
+  /**
+   * Creates a beginning-of-string {@link Node} from the given
+   * {@link NodeArena}
+   *
+   * @param arena The arena to take the {@link Node}s from
+   * @return A beginning-of-string {@link Node}
+   */
+  public Node getBOSNode(NodeArena arena) {
+    Node bosNode = arena.newNode(this.bosNode);
+    bosNode.prev = arena.newNode(this.bosNode);
+    return bosNode;
+  }
+  
   /**
    * Creates a unique end-of-string {@link Node}. The {@link Node} returned by
    * this method is freshly cloned and not an alias of any other {@link Node}
@@ -86,6 +99,16 @@ public abstract class Tokenizer {
     return eosNode.clone();
   }
   
+  /**
+   * Creates an end-of-string {@link Node} from the given {@link NodeArena}
+   *
+   * @param arena The arena to take the {@link Node} from
+   * @return An end-of-string Node
+   */
+  public Node getEOSNode(NodeArena arena) {
+    return arena.newNode(eosNode);
+  }
+  
   /**
    * Creates an "unknown morpheme" {@link Node} with the specified
    * characteristics.  The {@link Node} returned by this method is freshly
@@ -110,8 +133,47 @@ public abstract class Tokenizer {
     return unknownNode;
   }
   
+  /**
+   * Creates an "unknown morpheme" {@link Node} with the specified
+   * characteristics from the given {@link NodeArena}
+   *
+   * @param surface The underlying surface of which the {@link Node} is part
+   * @param start The index of the first character of the surface within the
+   *              {@link Node}
+   * @param length The length of the {@link Node}
+   * @param span The span of the {@link Node}
+   * @param arena The arena to take the {@link Node} from
+   * @return The new "unknown morpheme" {@link Node}
+   */
+  public Node getUnknownNode(char[] surface, int start, int length, int span, NodeArena arena) {
+    Node unknownNode = arena.newNode();
+    
+    unknownNode.setCToken(unknownCToken);
+    unknownNode.start = start;
+    unknownNode.length = length;
+    unknownNode.span = span;
+    unknownNode.morpheme = unknownMorpheme;
+    
+    return unknownNode;
+  }
+  
   private final Morpheme unknownMorpheme;
   
+  /**
+   * Returns the {@link Morpheme} of a {@link Node}. If the {@link Node} does
+   * not hold a {@link Morpheme}, a lazy proxy onto its part-of-speech in the
+   * {@link Dictionary} is created
+   *
+   * @param node The {@link Node}
+   * @return The {@link Morpheme}
+   */
+  public Morpheme getMorpheme(Node node) {
+    if (node.morpheme != null) {
+      return node.morpheme;
+    }
+    return new Morpheme(dictionary, node.partOfSpeechIndex);
+  }
+  
   /**
    * Searches for possible morphemes from the given SentenceIterator. The
    * {@link Node} that is returned links through
@@ -126,6 +188,26 @@ public abstract class Tokenizer {
    */
   public abstract Node lookup(SentenceIterator iterator, char[] surface) throws IOException;
   
+  /**
+   * Searches for possible morphemes from the given SentenceIterator, taking
+   * the {@link Node}s from the given {@link NodeArena}. The {@link Node}s
+   * returned need not hold a {@link Morpheme}; use
+   * {@link #getMorpheme(Node)} to obtain it.<br><br>
+   * 
+   * The default implementation calls {@link #lookup(SentenceIterator, char[])}
+   * and does not use the arena
+   *
+   * @param iterator The iterator to search from
+   * @param surface The underlying character surface
+   * @param arena The arena to take the {@link Node}s from
+   * @return The head of a chain of {@link Node}s representing the possible
+   *         morphemes beginning at the given index
+   * @throws IOException
+   */
+  public Node lookup(SentenceIterator iterator, char[] surface, NodeArena arena) throws IOException {
+    return lookup(iterator, surface);
+  }
+  
   /**
    * Constructs a new {@link Tokenizer} that uses the specified
    * {@link Dictionary} to find possible morphemes within a given string
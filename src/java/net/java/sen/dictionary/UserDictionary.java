@@ -0,0 +1,409 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.java.sen.trie.CharIterator;
+import net.java.sen.util.CSVParser;
+
+/**
+ * A dictionary of additional morphemes, read at runtime from CSV and
+ * searched alongside a compiled {@link Dictionary} without recompiling it
+ * 
+ * <p>Entries have the same columns as the dictionary CSV given to the
+ * compiler: surface, cost, four part-of-speech fields, conjugational type,
+ * conjugational form, basic form, reading and pronunciation. Blank lines
+ * and lines starting with <code>#</code> are ignored. The part-of-speech
+ * and conjugation of an entry must occur in the compiled dictionary, and
+ * the connection attributes most often used with them there are used for
+ * the entry
+ * 
+ * <p>Entries are held in arrays sorted by surface, and a search narrows the
+ * range of matching entries by binary search as each character is read
+ * 
+ * <p><b>Thread Safety</b>: Objects of this class are immutable, and may be
+ * shared by any number of {@link Dictionary}s over the same compiled data
+ */
+public final class UserDictionary {
+  
+  /**
+   * The part-of-speech index of the first entry. Entries are numbered
+   * downwards from here, below the index of unknown morphemes
+   */
+  private static final int FIRST_INDEX = -2;
+  
+  /** The number of columns of an entry */
+  private static final int COLUMNS = 11;
+  
+  /** The surfaces of the entries, in order */
+  private final String[] surfaces;
+  
+  /** The CTokens of the entries */
+  private final CToken[] ctokens;
+  
+  /** The part-of-speech records of the entries */
+  private final MorphemeCache.Features[] features;
+  
+  /** The largest number of entries found by a single search */
+  private final int maxResults;
+  
+  /**
+   * An entry as read, before sorting
+   */
+  private static final class Entry implements Comparable<Entry> {
+    
+    final String surface;
+    final CToken ctoken = new CToken();
+    final MorphemeCache.Features features;
+    
+    /** The part-of-speech, conjugational type and form indices */
+    final long key;
+    
+    final int lineNumber;
+    
+    Entry(String surface, MorphemeCache.Features features, long key, int lineNumber) {
+      this.surface = surface;
+      this.features = features;
+      this.key = key;
+      this.lineNumber = lineNumber;
+    }
+    
+    public int compareTo(Entry other) {
+      return surface.compareTo(other.surface);
+    }
+  }
+  
+  /**
+   * Reports whether a part-of-speech index is that of a user dictionary
+   * entry
+   *
+   * @param partOfSpeechIndex The part-of-speech index
+   * @return <code>true</code> if the index is that of a user dictionary entry
+   */
+  static boolean isUserIndex(int partOfSpeechIndex) {
+    return partOfSpeechIndex <= FIRST_INDEX;
+  }
+  
+  /**
+   * Returns the part-of-speech record of an entry
+   *
+   * @param partOfSpeechIndex The part-of-speech index of the entry
+   * @return The record
+   */
+  MorphemeCache.Features getFeatures(int partOfSpeechIndex) {
+    return features[FIRST_INDEX - partOfSpeechIndex];
+  }
+  
+  /**
+   * Returns the number of entries
+   *
+   * @return The number of entries
+   */
+  public int size() {
+    return surfaces.length;
+  }
+  
+  /**
+   * Returns the largest number of entries found by a single search
+   *
+   * @return The largest number of entries
+   */
+  int getMaxResults() {
+    return maxResults;
+  }
+  
+  /**
+   * Searches for entries forming a prefix of the characters of an iterator,
+   * and appends copies of their {@link CToken}s to an array of results
+   *
+   * @param iterator The iterator to read search characters from
+   * @param results The array of results, with room for at least
+   *                {@link #getMaxResults()} more
+   * @param size The number of results already in the array
+   * @return The number of results in the array
+   */
+  int commonPrefixSearch(CharIterator iterator, CToken[] results, int size) {
+    int low = 0;
+    int high = surfaces.length;
+    int depth = 0;
+    
+    while (low < high) {
+      // Within the range, the entries equal to the characters read so far
+      // sort first
+      while ((low < high) && (surfaces[low].length() == depth)) {
+        CToken result = results[size++];
+        CToken ctoken = ctokens[low];
+        result.rcAttr2 = ctoken.rcAttr2;
+        result.rcAttr1 = ctoken.rcAttr1;
+        result.lcAttr = ctoken.lcAttr;
+        result.length = ctoken.length;
+        result.cost = ctoken.cost;
+        result.partOfSpeechIndex = ctoken.partOfSpeechIndex;
+        result.terminator = false;
+        low++;
+      }
+      
+      if ((low == high) || !iterator.hasNext()) {
+        break;
+      }
+      
+      char c = iterator.next();
+      low = search(low, high, depth, c, false);
+      high = search(low, high, depth, c, true);
+      depth++;
+    }
+    
+    return size;
+  }
+  
+  /**
+   * Finds the first entry within a range whose character at a given depth
+   * is not less than, or is greater than, a given character. Every entry in
+   * the range is longer than the depth, and the range is ordered by the
+   * character at the depth
+   *
+   * @param low The start of the range
+   * @param high The end of the range
+   * @param depth The index of the characters to compare
+   * @param c The character to search for
+   * @param after If <code>true</code>, find the first entry greater than
+   *              <code>c</code>, otherwise the first not less than it
+   * @return The index of the entry, or <code>high</code> if there is none
+   */
+  private int search(int low, int high, int depth, char c, boolean after) {
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      char m = surfaces[middle].charAt(depth);
+      if ((m < c) || (after && (m == c))) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+  
+  /**
+   * Packs part-of-speech, conjugational type and conjugational form indices
+   * into a single key
+   */
+  private static long key(int partOfSpeech, int conjugationalType, int conjugationalForm) {
+    return ((long) partOfSpeech << 42) | ((long) conjugationalType << 21) | conjugationalForm;
+  }
+  
+  /**
+   * Creates a map from each value of an index to its position
+   */
+  private static Map<String,Integer> indexOf(StringPool values) {
+    Map<String,Integer> map = new HashMap<String,Integer>();
+    for (int i = values.size() - 1; i >= 0; i--) {
+      map.put(values.get(i), i);
+    }
+    return map;
+  }
+  
+  /**
+   * Finds the connection attributes most often used in a compiled
+   * dictionary with each of the given parts-of-speech
+   *
+   * @param dictionary The compiled dictionary
+   * @param keys The packed part-of-speech keys to find
+   * @return The rcAttr2, rcAttr1 and lcAttr of each key found, packed into
+   *         a long
+   */
+  private static Map<Long,Long> findAttributes(Dictionary dictionary, Map<Long,Map<Long,int[]>> keys) {
+    // Private views, as the Dictionary's buffers may be in use
+    ByteBuffer tokenBuffer = dictionary.getTokenBuffer().duplicate();
+    ByteBuffer partOfSpeechBuffer = dictionary.getPartOfSpeechInfoBuffer().duplicate();
+    CToken ctoken = new CToken();
+    
+    // Skip the beginning-of-string, end-of-string and unknown CTokens
+    tokenBuffer.position((int) (3 * CToken.SIZE));
+    while (tokenBuffer.remaining() >= CToken.SIZE) {
+      ctoken.read(tokenBuffer);
+      partOfSpeechBuffer.position(ctoken.partOfSpeechIndex);
+      int partOfSpeech = DictionaryUtil.readVInt(partOfSpeechBuffer);
+      int conjugationalType = DictionaryUtil.readVInt(partOfSpeechBuffer);
+      int conjugationalForm = DictionaryUtil.readVInt(partOfSpeechBuffer);
+      
+      Map<Long,int[]> counts = keys.get(key(partOfSpeech, conjugationalType, conjugationalForm));
+      if (counts != null) {
+        Long attributes = Long.valueOf(((ctoken.rcAttr2 & 0xffffL) << 32) | ((ctoken.rcAttr1 & 0xffffL) << 16)
+            | (ctoken.lcAttr & 0xffffL));
+        int[] count = counts.get(attributes);
+        if (count == null) {
+          counts.put(attributes, new int[] { 1 });
+        } else {
+          count[0]++;
+        }
+      }
+    }
+    
+    Map<Long,Long> result = new HashMap<Long,Long>();
+    for (Map.Entry<Long,Map<Long,int[]>> key : keys.entrySet()) {
+      int best = 0;
+      for (Map.Entry<Long,int[]> count : key.getValue().entrySet()) {
+        if (count.getValue()[0] > best) {
+          best = count.getValue()[0];
+          result.put(key.getKey(), count.getKey());
+        }
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Reads a user dictionary in CSV format
+   *
+   * @param dictionary The compiled dictionary the entries will be searched
+   *                   alongside, which supplies their connection attributes
+   * @param reader The reader to read the entries from
+   * @return The user dictionary
+   * @throws IOException on a read error, a malformed entry, or a
+   *         part-of-speech that does not occur in the compiled dictionary
+   */
+  public static UserDictionary load(Dictionary dictionary, Reader reader) throws IOException {
+    PartOfSpeechTables tables = dictionary.getPartOfSpeechTables();
+    Map<String,Integer> posIndex = indexOf(tables.partsOfSpeech);
+    Map<String,Integer> conjTypeIndex = indexOf(tables.conjugationalTypes);
+    Map<String,Integer> conjFormIndex = indexOf(tables.conjugationalForms);
+    
+    List<Entry> entries = new ArrayList<Entry>();
+    Map<Long,Map<Long,int[]>> keys = new HashMap<Long,Map<Long,int[]>>();
+    BufferedReader in = new BufferedReader(reader);
+    CSVParser parser = new CSVParser("");
+    
+    String line;
+    int lineNumber = 0;
+    while ((line = in.readLine()) != null) {
+      lineNumber++;
+      if ((line.trim().length() == 0) || line.startsWith("#")) {
+        continue;
+      }
+      
+      String[] values = parser.tokenize(line);
+      if ((values.length < COLUMNS) || (values[0].length() == 0)
+          || (values[0].length() > Short.MAX_VALUE)) {
+        throw new IOException("User dictionary format error at line " + lineNumber + ": " + line);
+      }
+      
+      int cost;
+      try {
+        cost = Integer.parseInt(values[1].trim());
+      } catch (NumberFormatException e) {
+        throw new IOException("User dictionary invalid cost at line " + lineNumber + ": " + line);
+      }
+      if ((cost < Short.MIN_VALUE) || (cost > Short.MAX_VALUE)) {
+        throw new IOException("User dictionary invalid cost at line " + lineNumber + ": " + line);
+      }
+      
+      // As the compiler builds the part-of-speech
+      StringBuilder partOfSpeechBuilder = new StringBuilder();
+      for (int i = 2; i < 6; i++) {
+        if (!values[i].equals("*")) {
+          if (partOfSpeechBuilder.length() > 0) {
+            partOfSpeechBuilder.append('-');
+          }
+          partOfSpeechBuilder.append(values[i]);
+        }
+      }
+      Integer partOfSpeech = posIndex.get(partOfSpeechBuilder.toString());
+      Integer conjugationalType = conjTypeIndex.get(values[6]);
+      Integer conjugationalForm = conjFormIndex.get(values[7]);
+      if ((partOfSpeech == null) || (conjugationalType == null) || (conjugationalForm == null)) {
+        throw new IOException("User dictionary unknown part-of-speech at line " + lineNumber + ": " + line);
+      }
+      long key = key(partOfSpeech, conjugationalType, conjugationalForm);
+      if (!keys.containsKey(key)) {
+        keys.put(key, new HashMap<Long,int[]>());
+      }
+      
+      // A basic form the same as the surface is shown as "*"
+      String basicForm = values[8].equals(values[0]) ? "*" : values[8];
+      MorphemeCache.Features features = new MorphemeCache.Features(
+          tables.partsOfSpeech.get(partOfSpeech), tables.conjugationalTypes.get(conjugationalType),
+          tables.conjugationalForms.get(conjugationalForm), basicForm,
+          Collections.singletonList(values[9]), Collections.singletonList(values[10]));
+      
+      Entry entry = new Entry(values[0], features, key, lineNumber);
+      entry.ctoken.length = (short) values[0].length();
+      entry.ctoken.cost = (short) cost;
+      entries.add(entry);
+    }
+    
+    Map<Long,Long> attributes = entries.isEmpty() ? new HashMap<Long,Long>() : findAttributes(dictionary, keys);
+    Collections.sort(entries);
+    
+    return new UserDictionary(entries, attributes);
+  }
+  
+  /**
+   * @param entries The entries, sorted by surface
+   * @param attributes The packed connection attributes of each packed
+   *                   part-of-speech key
+   * @throws IOException if a part-of-speech has no connection attributes
+   */
+  private UserDictionary(List<Entry> entries, Map<Long,Long> attributes) throws IOException {
+    int size = entries.size();
+    surfaces = new String[size];
+    ctokens = new CToken[size];
+    features = new MorphemeCache.Features[size];
+    
+    // The entries whose surfaces are prefixes of the current surface, with
+    // the number of entries found by a search ending with each
+    int[] prefixes = new int[size];
+    int[] prefixResults = new int[size];
+    int depth = 0;
+    int max = 0;
+    
+    for (int i = 0; i < size; i++) {
+      Entry entry = entries.get(i);
+      Long packed = attributes.get(entry.key);
+      if (packed == null) {
+        throw new IOException("User dictionary unknown part-of-speech at line " + entry.lineNumber
+            + ": " + entry.surface);
+      }
+      entry.ctoken.rcAttr2 = (short) (packed >>> 32);
+      entry.ctoken.rcAttr1 = (short) (packed >>> 16);
+      entry.ctoken.lcAttr = (short) packed.longValue();
+      entry.ctoken.partOfSpeechIndex = FIRST_INDEX - i;
+      
+      surfaces[i] = entry.surface;
+      ctokens[i] = entry.ctoken;
+      features[i] = entry.features;
+      
+      while ((depth > 0) && !entry.surface.startsWith(surfaces[prefixes[depth - 1]])) {
+        depth--;
+      }
+      prefixResults[depth] = (depth > 0 ? prefixResults[depth - 1] : 0) + 1;
+      prefixes[depth] = i;
+      max = Math.max(max, prefixResults[depth]);
+      depth++;
+    }
+    
+    maxResults = max;
+  }
+}
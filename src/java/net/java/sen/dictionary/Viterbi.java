@@ -23,7 +23,12 @@ package net.java.sen.dictionary;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 /**
  * An implementation of the Viterbi algorithm used to find the most likely
@@ -52,9 +57,104 @@ public class Viterbi {
   private Node eosNode;
   
   /**
-   * An array of linked lists of possible morphemes ending at a given position
+   * An array of linked lists of possible morphemes ending at a given position.
+   * Retained and grown as needed across sentences
    */
-  private Node[] endNodeList;
+  private Node[] endNodeList = new Node[0];
+  
+  /**
+   * The pool from which the lattice {@link Node}s are taken. Reset for each
+   * sentence
+   */
+  private final NodeArena arena = new NodeArena();
+  
+  /**
+   * A beam width which, on the reference corpora, gives the same results as
+   * the exact search while bounding the work done at each position
+   */
+  public static final int DEFAULT_BEAM_WIDTH = 32;
+  
+  /**
+   * The maximum number of Nodes ending at a position that are considered as
+   * left connections, or 0 to consider them all
+   */
+  private int beamWidth = 0;
+  
+  /**
+   * Scratch space for the costs of the Nodes ending at a position, used when
+   * pruning to the beam width
+   */
+  private int[] beamCosts = new int[0];
+  
+  /**
+   * Restricts the search to the <code>beamWidth</code> lowest cost Nodes
+   * ending at each position. This bounds the time taken to analyse long
+   * sentences with many possible morphemes at each position, at the risk of
+   * pruning the most likely path. {@link #DEFAULT_BEAM_WIDTH} is a reasonable
+   * choice
+   *
+   * @param beamWidth The beam width, or 0 for an exact search
+   */
+  public void setBeamWidth(int beamWidth) {
+    if (beamWidth < 0) {
+      throw new IllegalArgumentException("beamWidth must not be negative");
+    }
+    this.beamWidth = beamWidth;
+  }
+  
+  /**
+   * @return The beam width, or 0 if the search is exact
+   */
+  public int getBeamWidth() {
+    return beamWidth;
+  }
+  
+  /**
+   * Prunes the Nodes ending at a position to the <code>beamWidth</code> with
+   * the lowest cost. The remaining Nodes keep their relative order, so that
+   * ties between them are resolved as in an exact search
+   *
+   * @param position The position
+   */
+  private void pruneToBeam(int position) {
+    int count = 0;
+    for (Node node = endNodeList[position]; node != null; node = node.lnext) {
+      count++;
+    }
+    if (count <= beamWidth) {
+      return;
+    }
+    
+    if (beamCosts.length < count) {
+      beamCosts = new int[Math.max(count, beamCosts.length * 2)];
+    }
+    count = 0;
+    for (Node node = endNodeList[position]; node != null; node = node.lnext) {
+      beamCosts[count++] = node.cost;
+    }
+    
+    // Keep the Nodes cheaper than the beamWidth'th lowest cost, and as many
+    // of those equal to it as fit, earliest first
+    Arrays.sort(beamCosts, 0, count);
+    int threshold = beamCosts[beamWidth - 1];
+    int equalAllowed = beamWidth;
+    for (int i = 0; beamCosts[i] < threshold; i++) {
+      equalAllowed--;
+    }
+    
+    Node last = null;
+    for (Node node = endNodeList[position]; node != null; node = node.lnext) {
+      if (node.cost < threshold || (node.cost == threshold && equalAllowed-- > 0)) {
+        if (last == null) {
+          endNodeList[position] = node;
+        } else {
+          last.lnext = node;
+        }
+        last = node;
+      }
+    }
+    last.lnext = null;
+  }
   
   /**
    * Calculates the best connection for each of a linked list of Nodes
@@ -102,8 +202,9 @@ public class Viterbi {
           continue;
         }
         Node rNode2 = lookup(it, sentence.getCharacters(), sentence.getReadingConstraint(pos2));
+        // The looked up Nodes are fresh from the arena and not otherwise part
+        // of the lattice, so they can be joined to it directly
         for (; rNode2 != null; rNode2 = rNode2.rnext) {
-          rNode2 = rNode2.clone();
           rNode2.cost = rNode.cost + tokenizer.getDictionary().getCost(rNode.prev, rNode, rNode2);
           rNode2.prev = rNode;
           
@@ -130,7 +231,7 @@ public class Viterbi {
    * @throws IOException
    */
   private Node lookup(SentenceIterator iterator, char[] surface, Reading constraint) throws IOException {
-    Node resultNode = tokenizer.lookup(iterator, surface);
+    Node resultNode = tokenizer.lookup(iterator, surface, arena);
     
     if (constraint == null) {
       return resultNode;
@@ -139,7 +240,7 @@ public class Viterbi {
     Node filteredResultNode = null;
     Node lastNode = null;
     for (Node node = resultNode; node != null; node = node.rnext) {
-      if ((node.length == constraint.length) && (node.morpheme.getReadings().contains(constraint.text))) {
+      if ((node.length == constraint.length) && (tokenizer.getMorpheme(node).getReadings().contains(constraint.text))) {
         if (filteredResultNode == null) {
           filteredResultNode = node;
         } else {
@@ -155,7 +256,7 @@ public class Viterbi {
     }
     
     // Synthesize Node
-    Node unknownNode = tokenizer.getUnknownNode(surface, iterator.origin(), constraint.length, constraint.length + iterator.skippedCharCount());
+    Node unknownNode = tokenizer.getUnknownNode(surface, iterator.origin(), constraint.length, constraint.length + iterator.skippedCharCount(), arena);
     Morpheme unknownMorpheme = new Morpheme(unknownNode.morpheme.getPartOfSpeech(), null, null, "*", 
         new String[] { constraint.text }, new String[0], unknownNode.morpheme.getAdditionalInformation());
     unknownNode.morpheme = unknownMorpheme;
@@ -172,12 +273,13 @@ public class Viterbi {
    * @throws IOException
    */
   public List<Token> getPossibleTokens(Sentence sentence, int position) throws IOException {
-    Node resultNode = tokenizer.lookup(sentence.unconstrainedIterator(position), sentence.getCharacters());
+    char[] surface = sentence.getCharacters();
+    int offset = sentence.getOffset();
+    Node resultNode = tokenizer.lookup(sentence.unconstrainedIterator(position), surface);
     
-    String sentenceString = new String(sentence.getCharacters());
     List<Token> tokenList = new ArrayList<Token>();
     while (resultNode != null) {
-      Token token = new Token(sentenceString, resultNode);
+      Token token = new Token(surface, offset, resultNode, tokenizer.getMorpheme(resultNode));
       tokenList.add(token);
       resultNode = resultNode.rnext;
     }
@@ -186,23 +288,33 @@ public class Viterbi {
   }
   
   /**
-   * Analyses a sentence to find the most likely sequence of morphemes
+   * Builds the Viterbi lattice for a sentence. On return, every Node holds
+   * the cost of and a link to its best predecessor, and the end-of-string
+   * Node is connected to the last position at which a morpheme ended
    *
    * @param sentence The sentence to analyse
-   * @return The most likely list of morphemes
    * @throws IOException
    */
-  public List<Token> getBestTokens(Sentence sentence, List<Token> reuse) throws IOException {
+  private void buildLattice(Sentence sentence) throws IOException {
     SentenceIterator iterator = sentence.iterator();
     int length = iterator.length();
     char[] surface = sentence.getCharacters();
     
-    // Initialize the Viterbi lattice
-    bosNode = tokenizer.getBOSNode();
-    eosNode = tokenizer.getEOSNode();
-    endNodeList = new Node[length + 1];
+    // Initialize the Viterbi lattice, reusing the Nodes and end Node list
+    // of the previous sentence
+    arena.reset();
+    bosNode = tokenizer.getBOSNode(arena);
+    eosNode = tokenizer.getEOSNode(arena);
+    if (endNodeList.length < length + 1) {
+      endNodeList = new Node[Math.max(length + 1, endNodeList.length * 2)];
+    } else {
+      Arrays.fill(endNodeList, 0, length + 1, null);
+    }
     endNodeList[0] = bosNode;
-    endNodeList[length] = null;
+    
+    AnalysisMetrics metrics = tokenizer.getDictionary().getMetrics();
+    int positions = 0;
+    int trieHits = 0;
     
     // Look up potential morphemes at each position in the sentence, and
     // join them to the lattice
@@ -210,7 +322,20 @@ public class Viterbi {
       int position = iterator.nextOrigin();
       int base = position - iterator.skippedCharCount();
       if (endNodeList[base] != null) {
+        if (beamWidth > 0) {
+          pruneToBeam(base);
+        }
         Node rNode = lookup(iterator, surface, sentence.getReadingConstraint(position));
+        if (metrics != null) {
+          // Nodes found in the dictionary have their Morphemes created when
+          // needed; only synthesized unknown morphemes carry one already
+          positions++;
+          for (Node node = rNode; node != null; node = node.rnext) {
+            if (node.morpheme == null) {
+              trieHits++;
+            }
+          }
+        }
         if (rNode != null) {
           calculateConnectionCosts(base, length, rNode, sentence);
         }
@@ -222,12 +347,63 @@ public class Viterbi {
     // will connect to the beginning-of-string node.
     for (int position = length; position >= 0; position--) {
       if (endNodeList[position] != null) {
+        eosNode.start = position;
         calculateConnectionCosts(position, length, eosNode, sentence);
         // Once we have connected the end-of-string node, leave the loop. 
         break;
       }
     }
     
+    if (metrics != null) {
+      metrics.recordLattice(arena.size(), positions, trieHits);
+    }
+  }
+  
+  /**
+   * Analyses a sentence to find the most likely sequence of morphemes
+   *
+   * @param sentence The sentence to analyse
+   * @return The most likely list of morphemes
+   * @throws IOException
+   */
+  public List<Token> getBestTokens(Sentence sentence, List<Token> reuse) throws IOException {
+    char[] surface = sentence.getCharacters();
+    int offset = sentence.getOffset();
+    
+    findBestPath(sentence);
+    
+    // Convert to Token list
+    List<Token> tokenList = reuse;
+    tokenList.clear();
+    int unknownWords = 0;
+    Node node = bosNode.next;
+    while ((node != null) && (node.next != null)) {
+      if (node.morpheme != null) {
+        unknownWords++;
+      }
+      Token token = new Token(surface, offset, node, tokenizer.getMorpheme(node));
+      tokenList.add(token);
+      node = node.next;
+    }
+    
+    AnalysisMetrics metrics = tokenizer.getDictionary().getMetrics();
+    if (metrics != null) {
+      metrics.recordTokens(tokenList.size(), unknownWords);
+    }
+    
+    return tokenList;
+  }
+  
+  /**
+   * Builds the lattice of a sentence, and links the Nodes of the most likely
+   * path forwards from the beginning-of-string Node
+   *
+   * @param sentence The sentence to analyse
+   * @throws IOException
+   */
+  private void findBestPath(Sentence sentence) throws IOException {
+    buildLattice(sentence);
+    
     // Working backwards from the end-of-string Node, make the forward
     // connections along the most likely path
     Node node = eosNode;
@@ -236,19 +412,269 @@ public class Viterbi {
       prevNode.next = node;
       node = prevNode;
     }
+  }
+  
+  /**
+   * Analyses a sentence to find the most likely sequence of morphemes,
+   * returning them in a {@link TokenBuffer} rather than as {@link Token}s.
+   * No object is created per token, and the surfaces are not copied
+   *
+   * @param sentence The sentence to analyse
+   * @param reuse The buffer to fill
+   * @return <code>reuse</code>, holding the most likely morphemes
+   * @throws IOException
+   * @see #getBestTokens(Sentence, List)
+   */
+  public TokenBuffer getBestTokens(Sentence sentence, TokenBuffer reuse) throws IOException {
+    findBestPath(sentence);
     
-    // Convert to Token list
-    String sentenceString = new String(sentence.getCharacters());
-    List<Token> tokenList = reuse;
-    tokenList.clear();
-    node = bosNode.next;
+    reuse.reset(sentence.getCharacters(), sentence.getOffset(), tokenizer.getDictionary());
+    int unknownWords = 0;
+    Node node = bosNode.next;
     while ((node != null) && (node.next != null)) {
-      Token token = new Token(sentenceString, node);
-      tokenList.add(token);
+      if (node.morpheme != null) {
+        unknownWords++;
+      }
+      reuse.add(node);
       node = node.next;
     }
     
-    return tokenList;
+    AnalysisMetrics metrics = tokenizer.getDictionary().getMetrics();
+    if (metrics != null) {
+      metrics.recordTokens(reuse.size(), unknownWords);
+    }
+    
+    return reuse;
+  }
+  
+  /**
+   * A partial path through the lattice used by the N-best search, running
+   * from a Node to the end-of-string
+   */
+  private static final class Hypothesis {
+    
+    /** The leftmost Node of the partial path */
+    final Node node;
+    
+    /** The rest of the partial path, towards the end-of-string */
+    final Hypothesis next;
+    
+    /**
+     * The connection and morpheme costs of the partial path, to the right of
+     * <code>node</code>
+     */
+    final int cost;
+    
+    /**
+     * The cost of the best complete path containing this partial path: the
+     * best cost from the beginning-of-string to <code>node</code>, plus
+     * <code>cost</code>
+     */
+    final int priority;
+    
+    /** Breaks ties in priority, so that the search order is deterministic */
+    final int sequence;
+    
+    Hypothesis(Node node, Hypothesis next, int cost, int sequence) {
+      this.node = node;
+      this.next = next;
+      this.cost = cost;
+      this.priority = node.cost + cost;
+      this.sequence = sequence;
+    }
+  }
+  
+  /**
+   * Identifies the sequence of morphemes of a complete path. Two paths are
+   * equal if their Nodes cover the same characters with the same
+   * part-of-speech and hold the same Morpheme, as do the copies of a Node
+   * joined to the lattice for trigram connections
+   */
+  private static final class PathKey {
+    
+    /** The Nodes of the path, excluding the beginning-of-string */
+    private final Node[] nodes;
+    
+    /** The hash code of the path */
+    private final int hash;
+    
+    PathKey(Hypothesis hypothesis) {
+      int count = 0;
+      for (Hypothesis h = hypothesis.next; h != null; h = h.next) {
+        count++;
+      }
+      
+      nodes = new Node[count];
+      int i = 0;
+      int hash = 0;
+      for (Hypothesis h = hypothesis.next; h != null; h = h.next) {
+        Node node = h.node;
+        nodes[i++] = node;
+        hash = 31 * hash + node.start;
+        hash = 31 * hash + node.length;
+        hash = 31 * hash + node.partOfSpeechIndex;
+      }
+      this.hash = hash;
+    }
+    
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+    
+    @Override
+    public boolean equals(Object object) {
+      if (!(object instanceof PathKey)) {
+        return false;
+      }
+      Node[] other = ((PathKey) object).nodes;
+      if (other.length != nodes.length) {
+        return false;
+      }
+      for (int i = 0; i < nodes.length; i++) {
+        Node n1 = nodes[i];
+        Node n2 = other[i];
+        if ((n1.start != n2.start) || (n1.length != n2.length)
+            || (n1.partOfSpeechIndex != n2.partOfSpeechIndex) || (n1.morpheme != n2.morpheme)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+  
+  /**
+   * Orders Hypotheses from the lowest priority to the highest
+   */
+  private static final Comparator<Hypothesis> HYPOTHESIS_ORDER = new Comparator<Hypothesis>() {
+    public int compare(Hypothesis h1, Hypothesis h2) {
+      if (h1.priority != h2.priority) {
+        return (h1.priority < h2.priority) ? -1 : 1;
+      }
+      // Prefer the newest of equally likely Hypotheses, so that the search
+      // follows one path to the beginning-of-string rather than widening
+      // across every tie
+      return (h1.sequence > h2.sequence) ? -1 : ((h1.sequence == h2.sequence) ? 0 : 1);
+    }
+  };
+  
+  /**
+   * The maximum number of partial paths the N-best search may create for a
+   * sentence. When reached, the paths found so far are returned
+   */
+  public static final int MAX_NBEST_HYPOTHESES = 100000;
+  
+  /**
+   * Analyses a sentence to find the <code>n</code> most likely sequences of
+   * morphemes, in order of increasing cost. Only sequences whose cost is
+   * within <code>costMargin</code> of the best sequence are returned.<br><br>
+   * 
+   * The lattice is first built as for {@link #getBestTokens(Sentence, List)};
+   * it is then searched backwards from the end-of-string with A*, using the
+   * best cost of each Node from the beginning-of-string as the (exact)
+   * estimate of the remaining cost. The cost of each returned {@link Token}
+   * is the cumulative cost of its path up to and including the Token, so
+   * that the first path is identical to the result of
+   * {@link #getBestTokens(Sentence, List)}.<br><br>
+   * 
+   * Where the dictionary has trigram connection costs, the cost of a
+   * connection is taken from the best predecessor of its left Node, as during
+   * the forward pass, so the order of later paths is approximate
+   *
+   * @param sentence The sentence to analyse
+   * @param n The maximum number of sequences to return
+   * @param costMargin The maximum difference in cost between the best and
+   *                   any other returned sequence
+   * @return Up to <code>n</code> lists of morphemes, most likely first
+   * @throws IOException
+   */
+  public List<List<Token>> getNBestTokens(Sentence sentence, int n, int costMargin) throws IOException {
+    if (n < 1) {
+      throw new IllegalArgumentException("n must be positive");
+    }
+    if (costMargin < 0) {
+      throw new IllegalArgumentException("costMargin must not be negative");
+    }
+    
+    char[] surface = sentence.getCharacters();
+    int offset = sentence.getOffset();
+    Dictionary dictionary = tokenizer.getDictionary();
+    
+    buildLattice(sentence);
+    
+    List<List<Token>> paths = new ArrayList<List<Token>>(n);
+    Set<PathKey> pathKeys = new HashSet<PathKey>();
+    long maxPriority = (long) eosNode.cost + costMargin;
+    PriorityQueue<Hypothesis> queue = new PriorityQueue<Hypothesis>(64, HYPOTHESIS_ORDER);
+    int created = 0;
+    queue.add(new Hypothesis(eosNode, null, 0, created++));
+    
+    while (!queue.isEmpty()) {
+      Hypothesis hypothesis = queue.poll();
+      Node rNode = hypothesis.node;
+      
+      if (rNode == bosNode) {
+        // A complete path. Nodes joined to the lattice for trigram
+        // connections duplicate other Nodes, so the same sequence of
+        // morphemes may be found more than once
+        if (!pathKeys.add(new PathKey(hypothesis))) {
+          continue;
+        }
+        // The cost of the path is the priority of its first Node
+        List<Token> tokens = new ArrayList<Token>();
+        int unknownWords = 0;
+        for (Hypothesis h = hypothesis.next; (h != null) && (h.node != eosNode); h = h.next) {
+          if (h.node.morpheme != null) {
+            unknownWords++;
+          }
+          Token token = new Token(surface, offset, h.node, tokenizer.getMorpheme(h.node));
+          token.setCost(hypothesis.priority - h.cost);
+          tokens.add(token);
+        }
+        AnalysisMetrics metrics = dictionary.getMetrics();
+        if ((metrics != null) && paths.isEmpty()) {
+          metrics.recordTokens(tokens.size(), unknownWords);
+        }
+        paths.add(tokens);
+        if (paths.size() == n) {
+          break;
+        }
+        continue;
+      }
+      
+      // Extend the partial path by each Node ending where rNode begins
+      int base = rNode.start + rNode.length - rNode.span;
+      for (Node lNode = endNodeList[base]; lNode != null; lNode = lNode.lnext) {
+        if (lNode == rNode) {
+          // The end-of-string Node is joined to the list it connects to
+          continue;
+        }
+        int cost = hypothesis.cost + dictionary.getCost(lNode.prev, lNode, rNode);
+        if ((long) lNode.cost + cost > maxPriority) {
+          continue;
+        }
+        if (created == MAX_NBEST_HYPOTHESES) {
+          return paths;
+        }
+        queue.add(new Hypothesis(lNode, hypothesis, cost, created++));
+      }
+    }
+    
+    return paths;
+  }
+  
+  /**
+   * Analyses a sentence to find the <code>n</code> most likely sequences of
+   * morphemes, in order of increasing cost
+   *
+   * @param sentence The sentence to analyse
+   * @param n The maximum number of sequences to return
+   * @return Up to <code>n</code> lists of morphemes, most likely first
+   * @throws IOException
+   * @see #getNBestTokens(Sentence, int, int)
+   */
+  public List<List<Token>> getNBestTokens(Sentence sentence, int n) throws IOException {
+    return getNBestTokens(sentence, n, Integer.MAX_VALUE);
   }
   
   /** @deprecated use {@link #getBestTokens(Sentence, List)} instead */
@@ -100,7 +100,7 @@ public class CommentFilter implements StreamFilter {
     Iterator<Rule> itr = ruleList.iterator();
     commentTokens.clear();
     
-    String surface = new String(sentence.getCharacters());
+    String surface = new String(sentence.getCharacters(), sentence.getOffset(), sentence.getLength());
     while (itr.hasNext()) {
       int count = 0;
       Rule rule = itr.next();
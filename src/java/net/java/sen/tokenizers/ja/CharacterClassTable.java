@@ -0,0 +1,262 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+package net.java.sen.tokenizers.ja;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+ * A table of the character classes used by {@link JapaneseTokenizer} to
+ * synthesize unknown morphemes. The class of every UTF-16 code unit is
+ * precomputed, so that looking up a class is a single array access.<br><br>
+ * 
+ * Each class has two flags:
+ * <ul>
+ * <li><b>invoke</b>: an unknown morpheme is synthesized at a position even
+ *     if the dictionary contains morphemes starting there</li>
+ * <li><b>group</b>: an unknown morpheme covers the whole run of consecutive
+ *     characters of the class, rather than a single character</li>
+ * </ul>
+ * 
+ * The default table reproduces the built in classes of
+ * {@link JapaneseTokenizer}. It can be customised with a subset of the
+ * MeCab <code>char.def</code> format, applied on top of the defaults:
+ * <pre>
+ * # NAME INVOKE GROUP LENGTH
+ * KANJI 0 1 0
+ * GREEK 1 1 0
+ * # CODE[..CODE] NAME
+ * 0x0391..0x03C9 GREEK
+ * </pre>
+ * The built in class names are <code>DEFAULT</code>, <code>SPACE</code>,
+ * <code>KANJI</code>, <code>KATAKANA</code>, <code>HIRAGANA</code> and
+ * <code>HALF_WIDTH</code>; other names define new classes. The
+ * <code>LENGTH</code> field and any compatible classes following the first
+ * name on a range line are accepted but ignored
+ */
+public final class CharacterClassTable {
+  
+  /** The number of UTF-16 code units */
+  private static final int SIZE = 0x10000;
+  
+  /** The first class number available to classes defined in char.def */
+  private static final int FIRST_USER_CLASS = JapaneseTokenizer.HALF_WIDTH + 1;
+  
+  /** The shared default table */
+  private static final CharacterClassTable DEFAULT_TABLE = new CharacterClassTable();
+  
+  /** The class of each UTF-16 code unit */
+  private final byte[] classes = new byte[SIZE];
+  
+  /** The invoke flag of each class */
+  private final boolean[] invoke = new boolean[256];
+  
+  /** The group flag of each class */
+  private final boolean[] group = new boolean[256];
+  
+  /** The class numbers of named classes */
+  private final Map<String,Integer> names = new HashMap<String,Integer>();
+  
+  /** The next class number to assign to a class defined in char.def */
+  private int nextClass = FIRST_USER_CLASS;
+  
+  /**
+   * Returns the default table
+   *
+   * @return The default table
+   */
+  public static CharacterClassTable getDefault() {
+    return DEFAULT_TABLE;
+  }
+  
+  /**
+   * Reads a table in MeCab <code>char.def</code> format, applied on top of
+   * the default table
+   *
+   * @param reader The reader to read the definitions from
+   * @return The table
+   * @throws IOException on a read error or malformed definition
+   */
+  public static CharacterClassTable load(Reader reader) throws IOException {
+    CharacterClassTable table = new CharacterClassTable();
+    BufferedReader in = new BufferedReader(reader);
+    
+    String line;
+    int lineNumber = 0;
+    while ((line = in.readLine()) != null) {
+      lineNumber++;
+      int comment = line.indexOf('#');
+      if (comment >= 0) {
+        line = line.substring(0, comment);
+      }
+      StringTokenizer tokenizer = new StringTokenizer(line);
+      if (!tokenizer.hasMoreTokens()) {
+        continue;
+      }
+      
+      String first = tokenizer.nextToken();
+      try {
+        if (first.startsWith("0x") || first.startsWith("0X")) {
+          if (!tokenizer.hasMoreTokens()) {
+            throw new IOException("char.def format error at line " + lineNumber + ": " + line);
+          }
+          int start, end;
+          int range = first.indexOf("..");
+          if (range >= 0) {
+            start = Integer.decode(first.substring(0, range));
+            end = Integer.decode(first.substring(range + 2));
+          } else {
+            start = end = Integer.decode(first);
+          }
+          // Code points beyond the BMP cannot be looked up by char
+          end = Math.min(end, SIZE - 1);
+          if (start < 0 || start > end) {
+            throw new IOException("char.def invalid range at line " + lineNumber + ": " + line);
+          }
+          String name = tokenizer.nextToken();
+          Integer charClass = table.names.get(name);
+          if (charClass == null) {
+            throw new IOException("char.def undefined class " + name + " at line " + lineNumber);
+          }
+          for (int c = start; c <= end; c++) {
+            table.classes[c] = (byte) charClass.intValue();
+          }
+        } else {
+          if (tokenizer.countTokens() < 2) {
+            throw new IOException("char.def format error at line " + lineNumber + ": " + line);
+          }
+          boolean invoke = !"0".equals(tokenizer.nextToken());
+          boolean group = !"0".equals(tokenizer.nextToken());
+          table.define(first, invoke, group);
+        }
+      } catch (NumberFormatException e) {
+        throw new IOException("char.def format error at line " + lineNumber + ": " + line);
+      }
+    }
+    
+    return table;
+  }
+  
+  /**
+   * Defines or redefines a named class
+   *
+   * @param name The name of the class
+   * @param invoke The invoke flag
+   * @param group The group flag
+   * @throws IOException if there are too many classes
+   */
+  private void define(String name, boolean invoke, boolean group) throws IOException {
+    Integer charClass = names.get(name);
+    if (charClass == null) {
+      if (nextClass > 0xFF) {
+        throw new IOException("char.def defines too many classes");
+      }
+      charClass = nextClass++;
+      names.put(name, charClass);
+    }
+    this.invoke[charClass] = invoke;
+    this.group[charClass] = group;
+  }
+  
+  /**
+   * Gets the character class of the given character
+   *
+   * @param c The character
+   * @return The character class
+   */
+  public int getCharClass(char c) {
+    return classes[c] & 0xFF;
+  }
+  
+  /**
+   * Indicates whether an unknown morpheme is synthesized for a class even
+   * when the dictionary contains morphemes at the same position
+   *
+   * @param charClass The character class
+   * @return <code>true</code> if unknown morphemes are always synthesized
+   */
+  public boolean isInvoke(int charClass) {
+    return invoke[charClass];
+  }
+  
+  /**
+   * Indicates whether an unknown morpheme of a class covers the whole run of
+   * consecutive characters of that class
+   *
+   * @param charClass The character class
+   * @return <code>true</code> if runs of the class are grouped
+   */
+  public boolean isGroup(int charClass) {
+    return group[charClass];
+  }
+  
+  /**
+   * Creates a table holding the built in classes
+   */
+  private CharacterClassTable() {
+    for (int c = 0; c < SIZE; c++) {
+      classes[c] = (byte) defaultCharClass((char) c);
+    }
+    
+    // Classes below 0x80 are the Unicode general categories of ASCII
+    // characters. Runs of these and of the named classes are grouped, except
+    // for Hiragana, Kanji and other characters
+    for (int i = 0; i < FIRST_USER_CLASS; i++) {
+      invoke[i] = true;
+      group[i] = true;
+    }
+    invoke[JapaneseTokenizer.HIRAGANA] = false;
+    invoke[JapaneseTokenizer.KANJI] = false;
+    group[JapaneseTokenizer.HIRAGANA] = false;
+    group[JapaneseTokenizer.KANJI] = false;
+    group[JapaneseTokenizer.OTHER] = false;
+    
+    names.put("DEFAULT", JapaneseTokenizer.OTHER);
+    names.put("SPACE", JapaneseTokenizer.SPACE);
+    names.put("KANJI", JapaneseTokenizer.KANJI);
+    names.put("KATAKANA", JapaneseTokenizer.KATAKANA);
+    names.put("HIRAGANA", JapaneseTokenizer.HIRAGANA);
+    names.put("HALF_WIDTH", JapaneseTokenizer.HALF_WIDTH);
+  }
+  
+  /**
+   * Computes the built in character class of the given character
+   *
+   * @param c The character
+   * @return The character class
+   */
+  static int defaultCharClass(char c) {
+    if (c <= 0x7F) {
+      return (c == ' ' || c == '\t' || c == '\r' || c == '\n') ? JapaneseTokenizer.SPACE : Character.getType(Character.toLowerCase(c));
+    } else if (c >= 0x3040 && c <= 0x309F) {
+      return JapaneseTokenizer.HIRAGANA;
+    } else if (c >= 0x30A0 && c <= 0x30FF && Character.getType(c) != Character.CONNECTOR_PUNCTUATION && c != 0x30FB) {
+      return JapaneseTokenizer.KATAKANA;
+    } else if (c >= 0x4E00 && c <= 0x9FFF) {
+      return JapaneseTokenizer.KANJI;
+    } else if (c >= 0xFF00 && c <= 0xFFEF) {
+      return JapaneseTokenizer.HALF_WIDTH;
+    } else {
+      return JapaneseTokenizer.OTHER;
+    }
+  }
+}
@@ -22,11 +22,10 @@ package net.java.sen.tokenizers.ja;
 
 import net.java.sen.dictionary.CToken;
 import net.java.sen.dictionary.Dictionary;
-import net.java.sen.dictionary.Morpheme;
 import net.java.sen.dictionary.Node;
+import net.java.sen.dictionary.NodeArena;
 import net.java.sen.dictionary.SentenceIterator;
 import net.java.sen.dictionary.Tokenizer;
-import net.java.sen.trie.CharIterator;
 
 /**
  * A Tokenizer for Japanese text
@@ -51,55 +50,50 @@ public class JapaneseTokenizer extends Tokenizer {
   /** Character class for half-width forms */
   static final int HALF_WIDTH = 0x85;
   
+  /** The character classes used to synthesize unknown morphemes */
+  private final CharacterClassTable charClasses;
+  
   /**
-   * Gets the character class of the given character
-   *
-   * @param c The character
-   * @return The character class
+   * The iterator over which the last run of grouped characters was found.
+   * Together with <code>runStart</code> and <code>runEnd</code>, this lets
+   * the run lengths at the following origins within the same run be
+   * calculated without rescanning the run
    */
-  private int getCharClass(char c) {
-    // TODO: I think we are recalculating this over and over (n^2),
-    // which is why the method is so sensitive to performance.
-    // maybe instead we should calculate up-front in the sentence?
-    if (c <= 0x7F) {
-      return (c == ' ' || c == '\t' || c == '\r' || c == '\n') ? SPACE : Character.getType(Character.toLowerCase(c));
-    } else if (c >= 0x3040 && c <= 0x309F) {
-      return HIRAGANA;
-    } else if (c >= 0x30A0 && c <= 0x30FF && Character.getType(c) != Character.CONNECTOR_PUNCTUATION && c != 0x30FB) {
-      return KATAKANA;
-    } else if (c >= 0x4E00 && c <= 0x9FFF) {
-      return KANJI;
-    } else if (c >= 0xFF00 && c <= 0xFFEF) {
-      return HALF_WIDTH;
-    } else {
-      return OTHER;
-    }
-  }
+  private SentenceIterator runIterator;
+  
+  /** The index of the first character of the last run */
+  private int runStart;
+  
+  /** One greater than the index of the last character of the last run */
+  private int runEnd;
   
   /**
    * Find the length to use for an unknown token
    *
-   * @param iterator The iterator to read from
+   * @param iterator The iterator to read from, positioned at its origin
    * @return The length
    */
-  private int findUnknownToken(CharIterator iterator) {
+  private int findUnknownToken(SentenceIterator iterator) {
     int length = 0;
     
     if (iterator.hasNext()) {
-      int charClass = getCharClass(iterator.next());
-      switch (charClass) {
-        case HIRAGANA:
-        case KANJI:
-        case OTHER:
-          length = 1;
-          break;
-          
-        default:
-          length = 1;
-          while (iterator.hasNext() && (getCharClass(iterator.next()) == charClass)) {
-            length++;
-          }
-          break;
+      int origin = iterator.origin();
+      int charClass = charClasses.getCharClass(iterator.next());
+      length = 1;
+      if (charClasses.isGroup(charClass)) {
+        if ((iterator == runIterator) && (origin > runStart) && (origin < runEnd)) {
+          // Within a run already found; every character up to its end has
+          // the same class, and the run ends at the same place
+          return runEnd - origin;
+        }
+        
+        while (iterator.hasNext() && (charClasses.getCharClass(iterator.next()) == charClass)) {
+          length++;
+        }
+        
+        runIterator = iterator;
+        runStart = origin;
+        runEnd = origin + length;
       }
     }
     
@@ -108,25 +102,51 @@ public class JapaneseTokenizer extends Tokenizer {
   
   @Override
   public Node lookup(SentenceIterator iterator, char[] surface) {
+    Node resultNode = lookupNodes(iterator, surface, null);
+    
+    for (Node node = resultNode; node != null; node = node.rnext) {
+      node.morpheme = getMorpheme(node);
+    }
+    
+    return resultNode;
+  }
+  
+  @Override
+  public Node lookup(SentenceIterator iterator, char[] surface, NodeArena arena) {
+    return lookupNodes(iterator, surface, arena);
+  }
+  
+  /**
+   * Searches for possible morphemes from the given SentenceIterator
+   *
+   * @param iterator The iterator to search from
+   * @param surface The underlying character surface
+   * @param arena The arena to take the {@link Node}s from, or
+   *              <code>null</code> to create new {@link Node}s that the
+   *              caller may keep
+   * @return The head of a chain of {@link Node}s representing the possible
+   *         morphemes beginning at the given index
+   */
+  private Node lookupNodes(SentenceIterator iterator, char[] surface, NodeArena arena) {
     Node resultNode = null;
     
-    int charClass = getCharClass(iterator.current());
+    int charClass = charClasses.getCharClass(iterator.current());
     
     int skipped = iterator.skippedCharCount();
     CToken t[] = getDictionary().commonPrefixSearch(iterator);
     for (int i = 0; t[i].terminator == false; i++) {
-      Node newNode = new Node();
+      Node newNode = (arena == null) ? new Node() : arena.newNode();
       newNode.setCToken(t[i]);
       newNode.length = t[i].length;
       newNode.start = iterator.origin();
       newNode.span = t[i].length + skipped; 
       newNode.rnext = resultNode;
-      newNode.morpheme = new Morpheme(getDictionary(), t[i].partOfSpeechIndex);
+      newNode.partOfSpeechIndex = t[i].partOfSpeechIndex;
       
       resultNode = newNode;
     }
     
-    if ((resultNode != null) && (charClass == HIRAGANA || charClass == KANJI)) {
+    if ((resultNode != null) && !charClasses.isInvoke(charClass)) {
       return resultNode;
     }
     
@@ -134,7 +154,9 @@ public class JapaneseTokenizer extends Tokenizer {
     iterator.rewindToOrigin();
     int unknownTokenLength = findUnknownToken(iterator);
     
-    Node unknownNode = getUnknownNode(surface, iterator.origin(), unknownTokenLength, skipped + unknownTokenLength);
+    Node unknownNode = (arena == null)
+        ? getUnknownNode(surface, iterator.origin(), unknownTokenLength, skipped + unknownTokenLength)
+        : getUnknownNode(surface, iterator.origin(), unknownTokenLength, skipped + unknownTokenLength, arena);
     unknownNode.rnext = resultNode;
     
     return unknownNode;
@@ -147,6 +169,19 @@ public class JapaneseTokenizer extends Tokenizer {
    * @param unknownPartOfSpeechDescription The part-of-speech code to use for unknown tokens
    */
   public JapaneseTokenizer(Dictionary dictionary, String unknownPartOfSpeechDescription) {
+    this(dictionary, unknownPartOfSpeechDescription, CharacterClassTable.getDefault());
+  }
+  
+  /**
+   * Creates a JapaneseTokenizer with the given Dictionary and character
+   * classes
+   * 
+   * @param dictionary The Dictionary in which to search for possible morphemes
+   * @param unknownPartOfSpeechDescription The part-of-speech code to use for unknown tokens
+   * @param charClasses The character classes used to synthesize unknown tokens
+   */
+  public JapaneseTokenizer(Dictionary dictionary, String unknownPartOfSpeechDescription, CharacterClassTable charClasses) {
     super(dictionary, unknownPartOfSpeechDescription);
+    this.charClasses = charClasses;
   }
 }
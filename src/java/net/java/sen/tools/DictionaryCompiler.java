@@ -22,6 +22,8 @@
 package net.java.sen.tools;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import net.java.sen.compiler.DictionaryBuilder;
 
@@ -32,11 +34,21 @@ public class DictionaryCompiler {
   /**
    * Main method
    * 
-   * @param args &lt;Custom dictionary file&gt; (optional)
+   * @param args [-compact] &lt;Custom dictionary file&gt; (optional). With
+   *             -compact, the connection cost matrix is written in the
+   *             compact, row deduplicated layout
    * @throws IOException 
    */
   public static void main(String args[]) throws IOException {
-    String[] customDictionaries = args;
-    new DictionaryBuilder(customDictionaries);
+    boolean compactMatrix = false;
+    List<String> customDictionaries = new ArrayList<String>();
+    for (String arg : args) {
+      if ("-compact".equals(arg)) {
+        compactMatrix = true;
+      } else {
+        customDictionaries.add(arg);
+      }
+    }
+    new DictionaryBuilder(customDictionaries.toArray(new String[customDictionaries.size()]), compactMatrix);
   }
 }
@@ -0,0 +1,42 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.tools;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.java.sen.dictionary.DictionaryFile;
+
+/**
+ * Converts the separate compiled dictionary files (header.sen, trie.sen and
+ * so on) into a single dictionary file, which is loaded in their place
+ */
+public class DictionaryConverter {
+  /**
+   * Main method
+   * 
+   * @param args &lt;Dictionary directory&gt; (optional, default the current
+   *             directory) &lt;Output file&gt; (optional, default
+   *             dictionary.sen in the dictionary directory)
+   * @throws IOException 
+   */
+  public static void main(String args[]) throws IOException {
+    File dictionaryDir = new File((args.length > 0) ? args[0] : ".");
+    File output = (args.length > 1) ? new File(args[1]) : new File(dictionaryDir, DictionaryFile.FILE_NAME);
+    DictionaryFile.convert(dictionaryDir, output);
+  }
+}
@@ -20,37 +20,46 @@
 
 package net.java.sen.trie;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.IntBuffer;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.Vector;
+import java.util.List;
 
 import net.java.sen.util.IOUtils;
 
 /**
  * Constructs a Trie from the supplied sorted key and value arrays
+ * 
+ * <p>The double array is built in heap memory and written to the Trie data
+ * file once complete. Unoccupied elements are found through a list of empty
+ * elements rather than by probing each element in turn, so that building the
+ * Trie for a large dictionary does not slow down as the array fills
  */
 public class TrieBuilder {
   
-  /** The file the Trie data is written to */
-  private RandomAccessFile trieFile;
+  /**
+   * The Trie data, as pairs of base and check values
+   */
+  private int data[] = new int[0];
   
   /**
-   * An expanding MappedByteBuffer used to write the Trie data without holding
-   * the entire Trie in heap memory
+   * The list of empty elements. For an empty element, the link is the element
+   * itself; for an occupied element, it is a later element with no empty
+   * element in between. Links are shortened as the list is traversed
    */
-  private MappedByteBuffer byteBuffer = null;
+  private int emptyLinks[] = new int[0];
   
   /**
-   * The Trie MappedByteBuffer represented as an IntBuffer
+   * The size of the Trie data file, in elements. This grows in the same steps
+   * as the file was formerly extended, so that the data written is unchanged
    */
-  private IntBuffer trieDataBuffer = null;
+  private int capacity = 0;
   
   /**
-   * A bit field used to track the occupied regions of the Trie data file
+   * A bit field used to track the base positions already in use
    */
   private BitSet used = new BitSet();
   
@@ -107,64 +116,107 @@ public class TrieBuilder {
   };
   
   /**
-   * Increases the size of the Trie data file
+   * Increases the size of the Trie data, growing the heap arrays if necessary
    * 
-   * @param newSize The new size of the file
-   * @throws IOException 
+   * @param newSize The new size of the Trie data, in elements
+   */
+  private void resize(int newSize) {
+    capacity = newSize;
+    
+    int slots = emptyLinks.length;
+    if (slots >= newSize) {
+      return;
+    }
+    
+    int newSlots = Math.max(newSize, slots + (slots >> 1));
+    
+    int newData[] = new int[newSlots << 1];
+    System.arraycopy(data, 0, newData, 0, data.length);
+    data = newData;
+    
+    int newLinks[] = new int[newSlots];
+    System.arraycopy(emptyLinks, 0, newLinks, 0, slots);
+    for (int i = slots; i < newSlots; i++) {
+      newLinks[i] = i;
+    }
+    emptyLinks = newLinks;
+  }
+  
+  /**
+   * Returns the check value of an element
+   * 
+   * @param position The element
+   * @return The check value, or 0 if the element is empty
    */
-  private void resize(long newSize) throws IOException {
-    if (byteBuffer != null) {
-      byteBuffer.force();
+  private int check(int position) {
+    return position < emptyLinks.length ? data[(position << 1) + 1] : 0;
+  }
+  
+  /**
+   * Finds the first empty element at or after the given element
+   * 
+   * @param position The element to search from
+   * @return The first empty element
+   */
+  private int nextEmpty(int position) {
+    int slots = emptyLinks.length;
+    
+    int empty = position;
+    while (empty < slots && emptyLinks[empty] != empty) {
+      empty = emptyLinks[empty];
     }
     
-    trieFile.setLength(newSize * 8);
-    FileChannel indexChannel = trieFile.getChannel();
-    byteBuffer = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, newSize * 8);
-    trieDataBuffer = byteBuffer.asIntBuffer();
+    while (position < empty) {
+      int next = emptyLinks[position];
+      emptyLinks[position] = empty;
+      position = next;
+    }
+    
+    return empty;
   }
   
   /**
-   * Builds a vector containing the children of the given node
+   * Builds a list containing the children of the given node
    * 
    * @param parent The parent TrieNode
-   * @return The vector of child TrieNodes
+   * @return The list of child TrieNodes
    */
-  private Vector<TrieNode> fetch(TrieNode parent) {
+  private List<TrieNode> fetch(TrieNode parent) {
     int prev = 0;
-    Vector<TrieNode> siblings = new Vector<TrieNode>();
+    List<TrieNode> siblings = new ArrayList<TrieNode>();
+    TrieNode lastSibling = null;
     
     for (int i = parent.left; i < parent.right; i++) {
       
-      if (keys[i].length() < parent.depth) {
+      String key = keys[i];
+      int length = key.length();
+      
+      if (length < parent.depth) {
         continue;
       }
       
-      String tmp = keys[i];
-      
       int cur = 0;
-      if (keys[i].length() != parent.depth) {
-        cur = tmp.charAt(parent.depth) + 1;
+      if (length != parent.depth) {
+        cur = key.charAt(parent.depth) + 1;
       }
       
       if (prev > cur) {
         throw new RuntimeException("Fatal: Keys are not sorted");
       }
       
-      if (cur != prev || siblings.size() == 0) {
-        TrieNode tempNode = new TrieNode(cur, parent.depth + 1, i, 0);
-        if (siblings.size() != 0) {
-          TrieNode lastSibling = siblings.lastElement();
+      if (cur != prev || lastSibling == null) {
+        if (lastSibling != null) {
           lastSibling.right = i;
         }
         
-        siblings.add(tempNode);
+        lastSibling = new TrieNode(cur, parent.depth + 1, i, 0);
+        siblings.add(lastSibling);
       }
       
       prev = cur;
     }
     
-    if (siblings.size() != 0) {
-      TrieNode lastSibling = siblings.lastElement();
+    if (lastSibling != null) {
       lastSibling.right = parent.right;
     }
     
@@ -172,65 +224,54 @@ public class TrieBuilder {
   }
   
   /**
-   * Find a position with the Trie data file where the given vector of TrieNodes
-   * may be written, resizing the data file if necessary
+   * Find a position with the Trie data where the given list of TrieNodes may
+   * be written, resizing the data if necessary
+   * 
+   * <p>Only empty elements are visited, but the position chosen and the size
+   * of the data are those of a search probing every element from
+   * {@link #nextCheckPosition}
    *
    * @param siblings The TrieNodes to find a position for
    * @return The position to write to
-   * @throws IOException 
    */
-  private int findInsertionPoint(Vector<TrieNode> siblings) throws IOException {
-    int begin = 0;
-    int nonZeroNum = 0;
-    int first = 0;
-    int position;
+  private int findInsertionPoint(List<TrieNode> siblings) {
+    int firstCode = siblings.get(0).code;
+    int lastCode = siblings.get(siblings.size() - 1).code;
     
-    if ((siblings.get(0).code + 1) > (nextCheckPosition)) {
-      position = siblings.get(0).code;
-    } else {
-      position = nextCheckPosition - 1;
-    }
+    int start = Math.max(firstCode + 1, nextCheckPosition);
+    int position = nextEmpty(start);
+    int emptyNum = 1;
+    int begin;
+    int last;
+    
+    nextCheckPosition = position;
     
     while (true) {
       
-      position++;
-      if (position > (trieDataBuffer.limit() >> 1)) {
-        resize((int)(position * 1.05));
-      }
-      
-      if (trieDataBuffer.get((position << 1) + 1) != 0) {
-        nonZeroNum++;
-        continue;
-      } else if (first == 0) {
-        nextCheckPosition = position;
-        first = 1;
-      }
-      
-      begin = position - siblings.get(0).code;
-      
-      int t = begin + siblings.get(siblings.size() - 1).code;
-      if (t > (trieDataBuffer.limit() >> 1)) {
-        resize((int) (t * 1.05));
+      if (position >= capacity) {
+        resize((int) (position * 1.05));
       }
       
-      if (used.get(begin) == true) {
-        continue;
-      }
+      begin = position - firstCode;
       
-      boolean flag = false;
-      
-      for (int i = 1; i < siblings.size(); i++) {
-        if (trieDataBuffer.get(((begin + siblings.get(i).code) << 1) + 1) != 0) {
-          flag = true;
-          break;
-        }
+      last = begin + lastCode;
+      if (last > capacity) {
+        resize((int) (last * 1.05));
       }
       
-      if (!flag) {
+      if (!used.get(begin) && fits(siblings, begin)) {
         break;
       }
+      
+      position = nextEmpty(position + 1);
+      emptyNum++;
+    }
+    
+    if (last >= capacity) {
+      resize((int) (last * 1.05));
     }
     
+    int nonZeroNum = position - start + 1 - emptyNum;
     if (1.0 * nonZeroNum / (position - nextCheckPosition + 1) >= 0.95) {
       nextCheckPosition = position;
     }
@@ -240,30 +281,50 @@ public class TrieBuilder {
   }
   
   /**
-   * Inserts a vector of TrieNodes into the Trie data file
+   * Determines whether the elements for all but the first of a list of
+   * TrieNodes are empty at a given base position
    * 
-   * @param siblings The vector of nodes to insert
+   * @param siblings The TrieNodes to test
+   * @param begin The base position
+   * @return <code>true</code> if the TrieNodes may be written at the position
+   */
+  private boolean fits(List<TrieNode> siblings, int begin) {
+    for (int i = 1; i < siblings.size(); i++) {
+      if (check(begin + siblings.get(i).code) != 0) {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  /**
+   * Inserts a list of TrieNodes into the Trie data
+   * 
+   * @param siblings The list of nodes to insert
    * @return The position at which the nodes were inserted
-   * @throws IOException 
    */
-  private int insert(Vector<TrieNode> siblings) throws IOException {
+  private int insert(List<TrieNode> siblings) {
     
     int begin = findInsertionPoint(siblings);
     
     for (int i = 0; i < siblings.size(); i++) {
-      trieDataBuffer.put(((begin + siblings.get(i).code) << 1) + 1, begin);
+      int position = begin + siblings.get(i).code;
+      data[(position << 1) + 1] = begin;
+      emptyLinks[position] = position + 1;
     }
     
     for (int i = 0; i < siblings.size(); i++) {
-      int position = (begin + siblings.get(i).code) << 1;
+      TrieNode node = siblings.get(i);
+      int position = (begin + node.code) << 1;
       int value;
       
-      Vector<TrieNode> newSiblings = fetch(siblings.get(i));
+      List<TrieNode> newSiblings = fetch(node);
       if (newSiblings.size() == 0) {
         if (this.values == null) {       
-          value = (-siblings.get(i).left - 1);
+          value = (-node.left - 1);
         } else {  
-          value = -values[siblings.get(i).left] - 1;
+          value = -values[node.left] - 1;
           
           if (value >= 0) {
             throw new RuntimeException("Fatal: Negative value assigned");
@@ -272,7 +333,7 @@ public class TrieBuilder {
       } else {
         value = insert(newSiblings);
       }
-      this.trieDataBuffer.put(position,value);
+      this.data[position] = value;
     }
     
     return begin;
@@ -285,22 +346,32 @@ public class TrieBuilder {
    * @throws IOException 
    */
   public void build(String filename) throws IOException {
-    this.trieFile = null;
-    try {
-      this.trieFile = new RandomAccessFile(filename, "rw");
-    this.trieFile.setLength(0);
+    this.data = new int[0];
+    this.emptyLinks = new int[0];
+    this.used = new BitSet();
+    this.nextCheckPosition = 0;
     
     resize(1024 * 10);
-    this.trieDataBuffer.put(0, 1);
+    this.data[0] = 1;
     
     TrieNode rootNode = new TrieNode(0, 0, 0, this.size);
     
-    Vector<TrieNode> siblings = fetch(rootNode);
+    List<TrieNode> siblings = fetch(rootNode);
     insert(siblings);
     
-    this.byteBuffer.force();
+    DataOutputStream out = null;
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+      
+      int length = this.capacity << 1;
+      for (int i = 0; i < length; i++) {
+        out.writeInt(this.data[i]);
+      }
+      
+      out.close();
+      out = null;
     } finally {
-      IOUtils.closeWhileHandlingException(this.trieFile);
+      IOUtils.closeWhileHandlingException(out);
     }
   }
   
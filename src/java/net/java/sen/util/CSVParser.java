@@ -116,12 +116,26 @@ public class CSVParser implements Closeable {
    * @throws IOException 
    */
   public String[] nextTokens() throws IOException {
-    ArrayList<String> list = new ArrayList<String>();
-    
     if (nextRow() == false) {
       return null;
     }
     
+    return tokenize(line);
+  }
+  
+  /**
+   * Returns an array of all values from the given line, which replaces the
+   * current line
+   * 
+   * @param line The line of CSV data
+   * @return tokens The values
+   */
+  public String[] tokenize(String line) {
+    ArrayList<String> list = new ArrayList<String>();
+    
+    this.line = line;
+    position = 0;
+    
     String input;
     while ((input = nextToken()) != null) {
       list.add(input);
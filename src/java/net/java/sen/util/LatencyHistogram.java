@@ -0,0 +1,176 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values, such as latencies in nanoseconds, with
+ * a bounded relative error
+ * 
+ * <p>As in an HDR histogram, values below 32 have a bucket each, and each
+ * higher power of 2 is divided into 16 buckets of equal width, so that any
+ * value is reported to within 1/16 of itself from a fixed array of 960
+ * counts covering the whole range of <code>long</code>
+ * 
+ * <p><b>Thread Safety</b>: This class and all its public methods are thread
+ * safe. Recording takes no locks
+ */
+public final class LatencyHistogram {
+  
+  /**
+   * The number of bits of a value that select its bucket within its power
+   * of 2, including the leading bit
+   */
+  private static final int SUB_BUCKET_BITS = 5;
+  
+  /** The number of values with a bucket each */
+  private static final int LINEAR_BUCKETS = 1 << SUB_BUCKET_BITS;
+  
+  /** The number of buckets for each higher power of 2 */
+  private static final int SUB_BUCKETS = LINEAR_BUCKETS >> 1;
+  
+  /** The total number of buckets */
+  private static final int BUCKETS = LINEAR_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+  
+  /** The number of values recorded in each bucket */
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  
+  /** The number of values recorded */
+  private final StripedCounter count = new StripedCounter();
+  
+  /** The total of the values recorded */
+  private final StripedCounter total = new StripedCounter();
+  
+  /** The largest value recorded */
+  private final AtomicLong max = new AtomicLong();
+  
+  /**
+   * Returns the bucket of a value
+   *
+   * @param value The value, which must not be negative
+   * @return The index of the bucket
+   */
+  static int bucket(long value) {
+    if (value < LINEAR_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+    return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+  }
+  
+  /**
+   * Returns the largest value held in a bucket
+   *
+   * @param bucket The index of the bucket
+   * @return The largest value
+   */
+  static long highestValue(int bucket) {
+    if (bucket < LINEAR_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+    long top = SUB_BUCKETS + (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+    return ((top + 1) << shift) - 1;
+  }
+  
+  /**
+   * Records a value
+   *
+   * @param value The value. Negative values are recorded as 0
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts.incrementAndGet(bucket(value));
+    count.increment();
+    total.add(value);
+    
+    long current = max.get();
+    while ((value > current) && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+  
+  /**
+   * @return The number of values recorded
+   */
+  public long getCount() {
+    return count.sum();
+  }
+  
+  /**
+   * @return The mean of the values recorded, or 0 if there are none
+   */
+  public double getMean() {
+    long n = count.sum();
+    return (n == 0) ? 0 : (double) total.sum() / n;
+  }
+  
+  /**
+   * @return The largest value recorded, or 0 if there are none
+   */
+  public long getMax() {
+    return max.get();
+  }
+  
+  /**
+   * Returns the value below or at which a given percentage of the recorded
+   * values fall, to within the precision of the histogram
+   *
+   * @param percentile The percentage, from 0 to 100
+   * @return The value, or 0 if there are no values
+   */
+  public long getValueAtPercentile(double percentile) {
+    if ((percentile < 0) || (percentile > 100)) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+    }
+    
+    long recorded = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      recorded += counts.get(i);
+    }
+    if (recorded == 0) {
+      return 0;
+    }
+    
+    long target = Math.max(1, (long) Math.ceil(recorded * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= target) {
+        return Math.min(highestValue(i), max.get());
+      }
+    }
+    return max.get();
+  }
+  
+  /**
+   * Discards all recorded values. Values recorded during the reset may be
+   * partly lost
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0);
+    }
+    count.reset();
+    total.reset();
+    max.set(0);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that many threads may add to with little contention. Each
+ * thread adds to one of several stripes, kept on separate cache lines, and
+ * the stripes are summed when the counter is read
+ * 
+ * <p><b>Thread Safety</b>: This class and all its public methods are thread
+ * safe. Additions take no locks
+ */
+public final class StripedCounter {
+  
+  /**
+   * The number of stripes. Must be a power of 2
+   */
+  private static final int STRIPES = 16;
+  
+  /**
+   * The distance in longs between stripes, chosen so that stripes do not
+   * share a cache line
+   */
+  private static final int STRIPE_SPACING = 8;
+  
+  /**
+   * The stripes
+   */
+  private final AtomicLongArray stripes = new AtomicLongArray(STRIPES * STRIPE_SPACING);
+  
+  /**
+   * Returns the stripe for the current thread
+   *
+   * @return The index of the stripe
+   */
+  private static int stripe() {
+    return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * STRIPE_SPACING;
+  }
+  
+  /**
+   * Adds one to the counter
+   */
+  public void increment() {
+    stripes.incrementAndGet(stripe());
+  }
+  
+  /**
+   * Adds a value to the counter
+   *
+   * @param value The value to add
+   */
+  public void add(long value) {
+    stripes.addAndGet(stripe(), value);
+  }
+  
+  /**
+   * Returns the total of the counter. Additions made while the total is
+   * being read may or may not be included
+   *
+   * @return The total
+   */
+  public long sum() {
+    long total = 0;
+    for (int i = 0; i < stripes.length(); i += STRIPE_SPACING) {
+      total += stripes.get(i);
+    }
+    return total;
+  }
+  
+  /**
+   * Resets the counter to zero. Additions made during the reset may be lost
+   */
+  public void reset() {
+    for (int i = 0; i < stripes.length(); i += STRIPE_SPACING) {
+      stripes.set(i, 0);
+    }
+  }
+}
@@ -18,6 +18,8 @@ package org.apache.lucene.analysis.gosen;
 
 import java.io.IOException;
 
+import net.java.sen.dictionary.Morpheme;
+
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.gosen.tokenAttributes.BasicFormAttribute;
@@ -49,8 +51,15 @@ public final class GosenBasicFormFilter extends TokenFilter {
   public boolean incrementToken() throws IOException {
     if (input.incrementToken()) {
       if (!keywordAtt.isKeyword()) {
-        String basicForm = basicFormAtt.getBasicForm();
-        if (basicForm != null && !basicForm.equals("*")) termAtt.setEmpty().append(basicFormAtt.getBasicForm());
+        // copy the basic form straight into the term, without a String
+        Morpheme morpheme = basicFormAtt.getMorpheme();
+        if (morpheme != null) {
+          int length = morpheme.getBasicFormLength();
+          if (length > 0) {
+            morpheme.copyBasicForm(termAtt.resizeBuffer(length), 0);
+            termAtt.setLength(length);
+          }
+        }
       }
       return true;
     } else {
@@ -19,6 +19,8 @@ package org.apache.lucene.analysis.gosen;
 import java.io.IOException;
 import java.util.List;
 
+import net.java.sen.dictionary.Morpheme;
+
 import org.apache.lucene.analysis.KeywordMarkerFilter;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
@@ -102,13 +104,20 @@ public final class GosenReadingsFormFilter extends TokenFilter {
   public boolean incrementToken() throws IOException {
     if (input.incrementToken()) {
       if (!keywordAtt.isKeyword()) {
-        List<String> readings = readingsAtt.getReadings();
-        if (readings != null){ 
-          StringBuilder sb = new StringBuilder();
-          for(String reading : readings){
-            sb.append(romanized ? ToStringUtil.getRomanization(reading) : reading);
+        Morpheme morpheme = readingsAtt.getMorpheme();
+        if (morpheme != null) {
+          if (romanized) {
+            termAtt.setEmpty();
+            List<String> readings = morpheme.getReadings();
+            for (int i = 0; i < readings.size(); i++) {
+              ToStringUtil.getRomanization(termAtt, readings.get(i));
+            }
+          } else {
+            // copy the readings straight into the term, without Strings
+            int length = morpheme.getReadingsLength();
+            morpheme.copyReadings(termAtt.resizeBuffer(length), 0);
+            termAtt.setLength(length);
           }
-          termAtt.setEmpty().append(sb.toString());
         }
       }
       return true;
@@ -23,6 +23,7 @@ import net.java.sen.SenFactory;
 import net.java.sen.StringTagger;
 import net.java.sen.dictionary.Morpheme;
 import net.java.sen.dictionary.Token;
+import net.java.sen.dictionary.TokenBuffer;
 import net.java.sen.filter.StreamFilter;
 
 import org.apache.lucene.analysis.Tokenizer;
@@ -35,6 +36,8 @@ import org.apache.lucene.analysis.gosen.tokenAttributes.ReadingsAttribute;
 import org.apache.lucene.analysis.gosen.tokenAttributes.SentenceStartAttribute;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 
 /**
  * This is a Japanese tokenizer which uses "Sen" morphological
@@ -50,6 +53,10 @@ import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
  *   <li>{@link CostAttribute}
  *   <li>{@link SentenceStartAttribute}
  * </ul>
+ * <p>
+ * With {@link #setNBest(int, int)}, the tokens of several analyses of each
+ * sentence are merged into a token graph, described by
+ * {@link PositionIncrementAttribute} and {@link PositionLengthAttribute}.
  */
 public final class GosenTokenizer extends Tokenizer {
   /* (non-Javadoc)
@@ -66,6 +73,10 @@ public final class GosenTokenizer extends Tokenizer {
         + ((conjugationAtt == null) ? 0 : conjugationAtt.hashCode());
     result = prime * result + ((costAtt == null) ? 0 : costAtt.hashCode());
     result = prime * result + ((offsetAtt == null) ? 0 : offsetAtt.hashCode());
+    result = prime * result
+        + ((posIncAtt == null) ? 0 : posIncAtt.hashCode());
+    result = prime * result
+        + ((posLengthAtt == null) ? 0 : posLengthAtt.hashCode());
     result = prime * result
         + ((partOfSpeechAtt == null) ? 0 : partOfSpeechAtt.hashCode());
     result = prime * result
@@ -113,6 +124,16 @@ public final class GosenTokenizer extends Tokenizer {
         return false;
     } else if (!offsetAtt.equals(other.offsetAtt))
       return false;
+    if (posIncAtt == null) {
+      if (other.posIncAtt != null)
+        return false;
+    } else if (!posIncAtt.equals(other.posIncAtt))
+      return false;
+    if (posLengthAtt == null) {
+      if (other.posLengthAtt != null)
+        return false;
+    } else if (!posLengthAtt.equals(other.posLengthAtt))
+      return false;
     if (partOfSpeechAtt == null) {
       if (other.partOfSpeechAtt != null)
         return false;
@@ -147,8 +168,15 @@ public final class GosenTokenizer extends Tokenizer {
   }
 
   private final StreamTagger2 tagger;
+  private final StreamFilter filter;
+  private final String dictionaryDir;
+  private final String userDictionary;
+  // version of the dictionary the tagger was created over
+  private long version;
   private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
   private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+  private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+  private final PositionLengthAttribute posLengthAtt = addAttribute(PositionLengthAttribute.class);
   
   // morphological attributes
   private final BasicFormAttribute basicFormAtt = addAttribute(BasicFormAttribute.class);
@@ -165,6 +193,10 @@ public final class GosenTokenizer extends Tokenizer {
   // viterbi costs from Token.getCost() are cumulative,
   // so we accumulate this so we can then subtract to present an absolute cost.
   private int accumulatedCost = 0;
+  
+  // tokens of the current sentence, when no filter is used
+  private TokenBuffer tokenBuffer;
+  private int bufferIndex = 0;
 
   public GosenTokenizer(Reader in) {
     this(in, null, null);
@@ -175,15 +207,75 @@ public final class GosenTokenizer extends Tokenizer {
   }
   
   public GosenTokenizer(Reader in, StreamFilter filter, String dictionaryDir) {
+    this(in, filter, dictionaryDir, null);
+  }
+  
+  /**
+   * @param userDictionary a user dictionary CSV file, whose morphemes are
+   *        found alongside those of the dictionary, or <code>null</code>
+   * @see net.java.sen.dictionary.UserDictionary
+   */
+  public GosenTokenizer(Reader in, StreamFilter filter, String dictionaryDir, String userDictionary) {
     super(in);
-    StringTagger stringTagger = SenFactory.getStringTagger(dictionaryDir);
+    this.filter = filter;
+    this.dictionaryDir = dictionaryDir;
+    this.userDictionary = userDictionary;
+    tagger = new StreamTagger2(createStringTagger(), in);
+  }
+
+  /**
+   * Creates a tagger over the current dictionary, recording its version.
+   * The version is read first, so that a reload racing with this call is
+   * at worst picked up again by the next {@link #reset(Reader)}.
+   */
+  private StringTagger createStringTagger() {
+    version = SenFactory.getVersion(dictionaryDir);
+    StringTagger stringTagger = SenFactory.getStringTagger(dictionaryDir, userDictionary);
     if(filter != null)
       stringTagger.addFilter(filter);
-    tagger = new StreamTagger2(stringTagger, in);
+    return stringTagger;
+  }
+
+  /**
+   * Merges the <code>n</code> most likely analyses of each sentence into the
+   * token stream, producing a token graph. Costs are then reported per token.
+   * 
+   * @param n the maximum number of analyses to merge; 1 disables N-best
+   * @param costMargin the maximum difference in cost between the best and any
+   *        other merged analysis
+   */
+  public void setNBest(int n, int costMargin) {
+    tagger.setNBest(n, costMargin);
+  }
+
+  /**
+   * Restricts the analysis to a beam of the most likely morphemes ending at
+   * each position, bounding the time taken by long sentences.
+   * 
+   * @param beamWidth the beam width, or 0 for an exact analysis
+   * @see net.java.sen.dictionary.Viterbi#setBeamWidth(int)
+   */
+  public void setBeamWidth(int beamWidth) {
+    tagger.setBeamWidth(beamWidth);
+  }
+
+  /**
+   * Sets the longest run of text without a line break that is analysed
+   * intact; longer runs may have tokens split at the buffer boundary.
+   * 
+   * @param maxSentenceLength the maximum size of the read buffer, in characters
+   * @see StreamTagger2#setMaxSentenceLength(int)
+   */
+  public void setMaxSentenceLength(int maxSentenceLength) {
+    tagger.setMaxSentenceLength(maxSentenceLength);
   }
 
   @Override
   public boolean incrementToken() throws IOException {
+    if (filter == null && !tagger.isNBest()) {
+      return incrementBufferedToken();
+    }
+    
     Token token = tagger.next();
     if (token == null) {
       return false;
@@ -200,8 +292,15 @@ public final class GosenTokenizer extends Tokenizer {
         sentenceAtt.setSentenceStart(true);
       }
       
-      costAtt.setCost(cost - accumulatedCost);
-      accumulatedCost = cost;
+      if (tagger.isNBest()) {
+        // merged analyses are not cumulative
+        costAtt.setCost(cost);
+      } else {
+        costAtt.setCost(cost - accumulatedCost);
+        accumulatedCost = cost;
+      }
+      posIncAtt.setPositionIncrement(tagger.getPositionIncrement());
+      posLengthAtt.setPositionLength(tagger.getPositionLength());
       basicFormAtt.setMorpheme(m);
       conjugationAtt.setMorpheme(m);
       partOfSpeechAtt.setMorpheme(m);
@@ -212,11 +311,59 @@ public final class GosenTokenizer extends Tokenizer {
     }
   }
 
+  /**
+   * Sets the attributes from the next token of a {@link TokenBuffer}, which
+   * avoids creating a {@link Token} and its surface String for each token
+   * when the tagger has no filter.
+   */
+  private boolean incrementBufferedToken() throws IOException {
+    while (tokenBuffer == null || bufferIndex >= tokenBuffer.size()) {
+      tokenBuffer = tagger.nextBuffer();
+      bufferIndex = 0;
+      if (tokenBuffer == null) {
+        return false;
+      }
+    }
+    
+    clearAttributes();
+    final int i = bufferIndex++;
+    final Morpheme m = tokenBuffer.getMorpheme(i);
+    final int start = tokenBuffer.getStart(i);
+    final int length = tokenBuffer.getLength(i);
+    
+    termAtt.copyBuffer(tokenBuffer.getCharacters(), tokenBuffer.getOffset() + start, length);
+    final int cost = tokenBuffer.getCost(i);
+    
+    if (i == 0) {
+      accumulatedCost = 0;
+      sentenceAtt.setSentenceStart(true);
+    }
+    
+    costAtt.setCost(cost - accumulatedCost);
+    accumulatedCost = cost;
+    posIncAtt.setPositionIncrement(1);
+    posLengthAtt.setPositionLength(1);
+    basicFormAtt.setMorpheme(m);
+    conjugationAtt.setMorpheme(m);
+    partOfSpeechAtt.setMorpheme(m);
+    pronunciationsAtt.setMorpheme(m);
+    readingsAtt.setMorpheme(m);
+    final int sentenceOffset = tagger.getSentenceOffset();
+    offsetAtt.setOffset(correctOffset(sentenceOffset + start), correctOffset(sentenceOffset + start + length));
+    return true;
+  }
+
   @Override
   public void reset(Reader in) throws IOException {
     super.reset(in);
+    // switch to a reloaded dictionary between documents
+    if (version != SenFactory.getVersion(dictionaryDir)) {
+      tagger.setTagger(createStringTagger());
+    }
     tagger.reset(in);
     accumulatedCost = 0;
+    tokenBuffer = null;
+    bufferIndex = 0;
   }
 
   @Override
@@ -22,11 +22,18 @@ import java.io.Reader;
 
 import java.text.BreakIterator;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Locale;
 
 import net.java.sen.StringTagger;
+import net.java.sen.dictionary.AnalysisMetrics;
 import net.java.sen.dictionary.Token;
+import net.java.sen.dictionary.TokenBuffer;
 
 /**
  * Breaks text into sentences according to UAX #29: Unicode Text Segmentation
@@ -35,7 +42,11 @@ import net.java.sen.dictionary.Token;
  */
 public final class StreamTagger2 {
   private static final int IOBUFFER = 4096;
-  private final char buffer[] = new char[IOBUFFER];
+  /** default limit to the growth of the buffer */
+  public static final int DEFAULT_MAX_SENTENCE_LENGTH = 16 * IOBUFFER;
+  private char buffer[] = new char[IOBUFFER];
+  /** the buffer grows up to this size when it holds no safe end point */
+  private int maxSentenceLength = DEFAULT_MAX_SENTENCE_LENGTH;
   /** true length of text in the buffer */
   private int length = 0; 
   /** length in buffer that can be evaluated safely, up to a safe end point */
@@ -49,6 +60,20 @@ public final class StreamTagger2 {
   private final CharArrayIterator iterator = new CharArrayIterator();
   private List<Token> tokens = new ArrayList<Token>();
   private int index = 0;
+  /** the tokens of the current sentence, when read by {@link #nextBuffer()} */
+  private TokenBuffer tokenBuffer = new TokenBuffer();
+  /** offset of the current sentence of <code>tokenBuffer</code> */
+  private int sentenceOffset = 0;
+  
+  /** number of analyses merged into the token stream of each sentence */
+  private int nBest = 1;
+  /** maximum cost difference between the best and any other merged analysis */
+  private int nBestCostMargin = Integer.MAX_VALUE;
+  /** beam width applied to the tagger, and to any tagger that replaces it */
+  private int beamWidth = 0;
+  /** position increment and length of each token in <code>tokens</code> */
+  private int[] positionIncrements = new int[0];
+  private int[] positionLengths = new int[0];
 
   /**
    * Construct a new StreamTagger2 that breaks text into words from the given Reader.
@@ -58,6 +83,94 @@ public final class StreamTagger2 {
     this.input = input;
   }
 
+  /**
+   * Sets the number of analyses of each sentence to merge into the token
+   * stream. When greater than 1, the returned tokens form a graph: tokens of
+   * alternative analyses overlap those of the best analysis, and their
+   * positions are described by {@link #getPositionIncrement()} and
+   * {@link #getPositionLength()}. The costs of the tokens are then per-token
+   * rather than cumulative.
+   * 
+   * @param n the maximum number of analyses to merge
+   * @param costMargin the maximum difference in cost between the best and any
+   *        other merged analysis
+   */
+  public void setNBest(int n, int costMargin) {
+    if (n < 1) {
+      throw new IllegalArgumentException("n must be positive");
+    }
+    if (costMargin < 0) {
+      throw new IllegalArgumentException("costMargin must not be negative");
+    }
+    this.nBest = n;
+    this.nBestCostMargin = costMargin;
+  }
+  
+  /**
+   * Restricts the analysis of each sentence to a beam of the most likely
+   * morphemes ending at each position.
+   * 
+   * @param beamWidth the beam width, or 0 for an exact analysis
+   * @see StringTagger#setBeamWidth(int)
+   */
+  public void setBeamWidth(int beamWidth) {
+    tagger.setBeamWidth(beamWidth);
+    this.beamWidth = beamWidth;
+  }
+  
+  /**
+   * Replaces the tagger used to analyse sentences, for example with one over
+   * a reloaded dictionary. The beam width set on this object is applied to
+   * the new tagger. Should be called only between inputs, before
+   * {@link #reset(Reader)}.
+   * 
+   * @param tagger the new tagger
+   */
+  public void setTagger(StringTagger tagger) {
+    tagger.setBeamWidth(beamWidth);
+    this.tagger = tagger;
+  }
+  
+  /**
+   * Sets the longest run of text without an unambiguous break (a line or
+   * paragraph separator) that is analysed intact. The buffer grows as
+   * needed up to this size; longer runs are broken at the end of the buffer,
+   * possibly splitting a token. The buffer is never smaller than 4096
+   * characters.
+   * 
+   * @param maxSentenceLength the maximum size of the buffer, in characters
+   */
+  public void setMaxSentenceLength(int maxSentenceLength) {
+    if (maxSentenceLength < 1) {
+      throw new IllegalArgumentException("maxSentenceLength must be positive");
+    }
+    this.maxSentenceLength = Math.max(IOBUFFER, maxSentenceLength);
+  }
+  
+  /**
+   * @return true if more than one analysis of each sentence is merged into
+   *         the token stream
+   */
+  public boolean isNBest() {
+    return nBest > 1;
+  }
+  
+  /**
+   * @return the position increment of the token last returned by
+   *         {@link #next()}
+   */
+  public int getPositionIncrement() {
+    return positionIncrements[index - 1];
+  }
+  
+  /**
+   * @return the number of positions spanned by the token last returned by
+   *         {@link #next()}
+   */
+  public int getPositionLength() {
+    return positionLengths[index - 1];
+  }
+
   public Token next() throws IOException {
     if (tokens == null || index >= tokens.size()) {
       if (length == 0)
@@ -71,10 +184,40 @@ public final class StreamTagger2 {
     return tokens.get(index++);
   }
   
+  /**
+   * Analyses the next sentence that has any tokens, as an alternative to
+   * {@link #next()} that creates no {@link Token}s. The tagger must have no
+   * filters, and N-best analysis is not applied. The buffer is reused, and
+   * its contents replaced by the following call.
+   * 
+   * @return the tokens of the sentence, whose starts are relative to
+   *         {@link #getSentenceOffset()}, or null at the end of the input
+   * @throws IOException
+   * @see StringTagger#analyze(char[], int, int, TokenBuffer)
+   */
+  public TokenBuffer nextBuffer() throws IOException {
+    if (length == 0)
+      refill();
+    while (!incrementSentenceBuffer()) {
+      refill();
+      if (length <= 0) // no more bytes to read;
+        return null;
+    }
+    return tokenBuffer;
+  }
+  
+  /**
+   * @return the offset in the input of the sentence last returned by
+   *         {@link #nextBuffer()}
+   */
+  public int getSentenceOffset() {
+    return sentenceOffset;
+  }
+  
   public void reset() throws IOException {
     iterator.setText(buffer, 0, 0);
     breaker.setText(iterator);
-    length = usableLength = offset = index = 0;
+    length = usableLength = offset = index = sentenceOffset = 0;
     tokens.clear();
   }
 
@@ -84,6 +227,10 @@ public final class StreamTagger2 {
   }
   
   public int end() throws IOException {
+    AnalysisMetrics metrics = tagger.getMetrics();
+    if (metrics != null) {
+      metrics.recordDocument();
+    }
     return (length < 0) ? offset : offset + length;
   }  
 
@@ -91,14 +238,17 @@ public final class StreamTagger2 {
    * This tokenizes text based upon the longest matching rule, and because of 
    * this, isn't friendly to a Reader.
    * 
-   * Text is read from the input stream in 4kB chunks. Within a 4kB chunk of
+   * Text is read from the input stream in 4kB chunks. Within a chunk of
    * text, the last unambiguous break point is found. Any remaining characters 
    * represent possible partial sentences, so are appended to the front of the 
    * next chunk.
    * 
-   * There is the possibility that there are no unambiguous break points within
-   * an entire 4kB chunk of text (binary data). So there is a maximum word limit
-   * of 4kB since it will not try to grow the buffer in this case.
+   * If there are no unambiguous break points within an entire chunk of text,
+   * the buffer is doubled and more text is read, up to maxSentenceLength.
+   * Only text without a break for longer than that (binary data) is broken
+   * at the end of the buffer, possibly truncating tokens.
+   * 
+   * Sentences are analysed in place in the buffer, without being copied.
    * 
    * Note: this is much more sophisticated than StreamTagger, which will just
    * truncate on its 256 char buffer!
@@ -139,18 +289,30 @@ public final class StreamTagger2 {
     offset += usableLength;
     int leftover = length - usableLength;
     System.arraycopy(buffer, usableLength, buffer, 0, leftover);
-    int requested = buffer.length - leftover;
-    int returned = input.read(buffer, leftover, requested);
-    length = returned < 0 ? leftover : returned + leftover;
-    if (returned < requested) /* reader has been emptied, process the rest */
-      usableLength = length;
-    else { /* still more data to be read, find a safe-stopping place */
+    length = leftover;
+    while (true) {
+      int requested = buffer.length - length;
+      int returned = input.read(buffer, length, requested);
+      if (returned > 0)
+        length += returned;
+      if (returned < requested) { /* reader has been emptied, process the rest */
+        usableLength = length;
+        break;
+      }
+      /* still more data to be read, find a safe-stopping place */
       usableLength = findSafeEnd();
-      if (usableLength < 0)
+      if (usableLength >= 0)
+        break;
+      if (buffer.length >= maxSentenceLength) {
         usableLength = length; /*
-                                * more than IOBUFFER of text without breaks,
-                                * gonna possibly truncate tokens
+                                * more than maxSentenceLength of text without
+                                * breaks, gonna possibly truncate tokens
                                 */
+        break;
+      }
+      char[] newBuffer = new char[Math.min(2 * buffer.length, maxSentenceLength)];
+      System.arraycopy(buffer, 0, newBuffer, 0, length);
+      buffer = newBuffer;
     }
 
     iterator.setText(buffer, 0, Math.max(0, usableLength));
@@ -174,10 +336,14 @@ public final class StreamTagger2 {
       if (end == BreakIterator.DONE)
         return false; // BreakIterator exhausted
 
-      String text = new String(buffer, start, end - start);
-      tokens = tagger.analyze(text, tokens);
+      if (nBest > 1) {
+        tokens = mergePaths(tagger.analyzeNBest(buffer, start, end - start, nBest, nBestCostMargin));
+      } else {
+        tokens = tagger.analyze(buffer, start, end - start, tokens);
+      }
 
       if (tokens != null && !tokens.isEmpty()) {
+        setPositions();
         for (int i = 0; i < tokens.size(); i++) {
           Token token = tokens.get(i);
           token.setSentenceStart(i == 0);
@@ -188,4 +354,106 @@ public final class StreamTagger2 {
       }
     }
   }
+  
+  /*
+   * return true if a sentence with tokens has been analysed into
+   * tokenBuffer, or false if the buffer is exhausted.
+   */
+  private boolean incrementSentenceBuffer() throws IOException {
+    while (true) {
+      int start = breaker.current();
+
+      if (start == BreakIterator.DONE)
+        return false; // BreakIterator exhausted
+
+      // find the next set of boundaries
+      int end = breaker.next();
+
+      if (end == BreakIterator.DONE)
+        return false; // BreakIterator exhausted
+
+      tokenBuffer = tagger.analyze(buffer, start, end - start, tokenBuffer);
+
+      if (tokenBuffer.size() > 0) {
+        sentenceOffset = start + offset;
+        return true;
+      }
+    }
+  }
+  
+  private static final Comparator<Token> START_ORDER = new Comparator<Token>() {
+    public int compare(Token t1, Token t2) {
+      return (t1.getStart() < t2.getStart()) ? -1 : ((t1.getStart() == t2.getStart()) ? 0 : 1);
+    }
+  };
+  
+  /**
+   * Merges the analyses of a sentence into a single list of tokens, ordered
+   * by start position. Tokens covering the same characters as a token of a
+   * better analysis are dropped, and the cumulative cost of each token is
+   * replaced by its own cost.
+   */
+  private static List<Token> mergePaths(List<List<Token>> paths) {
+    List<Token> merged = new ArrayList<Token>();
+    Set<Long> spans = new HashSet<Long>();
+    for (List<Token> path : paths) {
+      int previousCost = 0;
+      for (Token token : path) {
+        int cost = token.getCost();
+        token.setCost(cost - previousCost);
+        previousCost = cost;
+        if (spans.add(Long.valueOf(((long) token.getStart() << 32) | token.getLength()))) {
+          merged.add(token);
+        }
+      }
+    }
+    // stable, so tokens of the best analysis come first at each position
+    Collections.sort(merged, START_ORDER);
+    return merged;
+  }
+  
+  /**
+   * Calculates the position increment and length of each token in
+   * <code>tokens</code>. Every distinct start offset is a position; a token
+   * spans the positions from its start up to the first position at or after
+   * its end.
+   */
+  private void setPositions() {
+    int size = tokens.size();
+    if (positionIncrements.length < size) {
+      positionIncrements = new int[Math.max(size, positionIncrements.length * 2)];
+      positionLengths = new int[positionIncrements.length];
+    }
+    if (nBest == 1) {
+      Arrays.fill(positionIncrements, 0, size, 1);
+      Arrays.fill(positionLengths, 0, size, 1);
+      return;
+    }
+    
+    int[] starts = new int[size];
+    int positions = 0;
+    for (int i = 0; i < size; i++) {
+      int start = tokens.get(i).getStart();
+      if (positions == 0 || starts[positions - 1] != start) {
+        starts[positions++] = start;
+      }
+    }
+    
+    int position = -1;
+    for (int i = 0; i < size; i++) {
+      Token token = tokens.get(i);
+      if (position < 0 || starts[position] != token.getStart()) {
+        position++;
+        positionIncrements[i] = 1;
+      } else {
+        positionIncrements[i] = 0;
+      }
+      int end = token.end();
+      int endPosition = position + 1;
+      while (endPosition < positions && starts[endPosition] < end) {
+        endPosition++;
+      }
+      positionLengths[i] = endPosition - position;
+    }
+  }
 }
@@ -16,6 +16,7 @@ package org.apache.lucene.analysis.gosen;
  * limitations under the License.
  */
 
+import java.io.IOException;
 import java.util.HashMap;
 
 public class ToStringUtil {
@@ -233,6 +234,18 @@ public class ToStringUtil {
    */
   public static String getRomanization(String s) {
     StringBuilder builder = new StringBuilder();
+    try {
+      getRomanization(builder, s);
+    } catch (IOException e) {
+      throw new RuntimeException(e); // cannot happen with a StringBuilder
+    }
+    return builder.toString();
+  }
+  
+  /**
+   * Romanize katakana with modified hepburn, appending the result
+   */
+  public static void getRomanization(Appendable builder, CharSequence s) throws IOException {
     final int len = s.length();
     for (int i = 0; i < len; i++) {
       // maximum lookahead: 3
@@ -1015,6 +1028,5 @@ public class ToStringUtil {
           builder.append(ch);
       }
     }
-    return builder.toString();
   }
 }
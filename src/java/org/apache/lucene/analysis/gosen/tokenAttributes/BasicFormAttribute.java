@@ -29,4 +29,5 @@ import org.apache.lucene.util.Attribute;
 public interface BasicFormAttribute extends Attribute {
   public String getBasicForm();
   public void setMorpheme(Morpheme morpheme);
+  public Morpheme getMorpheme();
 }
@@ -34,6 +34,10 @@ public class BasicFormAttributeImpl extends AttributeImpl implements BasicFormAt
   public void setMorpheme(Morpheme morpheme) {
     this.morpheme = morpheme;
   }
+  
+  public Morpheme getMorpheme() {
+    return morpheme;
+  }
 
   @Override
   public void clear() {
@@ -28,4 +28,5 @@ import org.apache.lucene.util.Attribute;
 public interface PronunciationsAttribute extends Attribute {
   public List<String> getPronunciations();
   public void setMorpheme(Morpheme morpheme);
+  public Morpheme getMorpheme();
 }
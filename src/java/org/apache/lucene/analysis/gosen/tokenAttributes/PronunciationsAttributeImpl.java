@@ -38,6 +38,10 @@ public class PronunciationsAttributeImpl extends AttributeImpl implements Pronun
   public void setMorpheme(Morpheme morpheme) {
     this.morpheme = morpheme;
   }
+  
+  public Morpheme getMorpheme() {
+    return morpheme;
+  }
 
   @Override
   public void clear() {
@@ -25,4 +25,5 @@ import org.apache.lucene.util.Attribute;
 public interface ReadingsAttribute extends Attribute {
   public List<String> getReadings();
   public void setMorpheme(Morpheme morpheme);
+  public Morpheme getMorpheme();
 }
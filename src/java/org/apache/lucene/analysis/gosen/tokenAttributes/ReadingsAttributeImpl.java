@@ -41,6 +41,10 @@ public class ReadingsAttributeImpl extends AttributeImpl implements ReadingsAttr
   public void setMorpheme(Morpheme morpheme) {
     this.morpheme = morpheme;
   }
+  
+  public Morpheme getMorpheme() {
+    return morpheme;
+  }
 
   @Override
   public void clear() {
@@ -21,14 +21,22 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.net.URL;
 import java.util.Map;
 
+import net.java.sen.SenFactory;
+import net.java.sen.dictionary.AnalysisMetrics;
+import net.java.sen.dictionary.MorphemeCache;
 import net.java.sen.filter.stream.CompositeTokenFilter;
 
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.gosen.GosenTokenizer;
+import org.apache.lucene.analysis.gosen.StreamTagger2;
 import org.apache.lucene.util.IOUtils;
 import org.apache.solr.common.ResourceLoader;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.core.SolrInfoMBean;
 import org.apache.solr.core.SolrResourceLoader;
 import org.apache.solr.util.plugin.ResourceLoaderAware;
 
@@ -40,14 +48,71 @@ import org.apache.solr.util.plugin.ResourceLoaderAware;
  *     &lt;tokenizer class="solr.GosenTokenizerFactory" compositePOS="compositePOS.txt" dictionaryDir="/opt/dictionary" /&gt;
  *   &lt;/analyzer&gt;
  * &lt;/fieldType&gt;</pre>
+ * <p>
+ * <code>nBest</code> (default 1) merges that many analyses of each sentence
+ * into a token graph, and <code>nBestCostMargin</code> limits them to those
+ * whose cost is within the margin of the best analysis.
+ * <p>
+ * <code>beamWidth</code> (default 0, exact) limits the analysis to that many
+ * of the most likely morphemes ending at each position, bounding the time
+ * taken by very long sentences. 32 gives the same results as the exact
+ * analysis on typical text.
+ * <p>
+ * <code>maxSentenceLength</code> (default 65536) is the longest run of text
+ * without a line break that is analysed intact. The read buffer grows up to
+ * this size; longer runs may have tokens split at the buffer boundary.
+ * <p>
+ * <code>dictionaryReloadInterval</code> (default 0, never) is the number of
+ * seconds between checks of <code>dictionaryDir</code> for a recompiled
+ * dictionary. A changed dictionary is loaded and validated in the
+ * background, and used by tokenizers from their next document on.
+ * <p>
+ * <code>userDictionary</code> names a CSV file of additional morphemes,
+ * found alongside those of the dictionary without recompiling it. Its lines
+ * have the columns of the dictionary CSV: surface, cost, part-of-speech (4
+ * fields), conjugational type and form, basic form, reading and
+ * pronunciation. A relative path is resolved against solr/conf first.
+ * <p>
+ * <code>metrics</code> (default false) records analysis throughput, lattice
+ * sizes, unknown word rate and sentence latency for
+ * <code>dictionaryDir</code>. They are published as a JMX MBean, and as the
+ * statistics of this factory.
  */
-public class GosenTokenizerFactory extends BaseTokenizerFactory implements ResourceLoaderAware {
+public class GosenTokenizerFactory extends BaseTokenizerFactory implements ResourceLoaderAware, SolrInfoMBean {
   
   private CompositeTokenFilter compositeTokenFilter;
   private String dictionaryDir;
+  private String userDictionary;
+  private int nBest = 1;
+  private int nBestCostMargin = Integer.MAX_VALUE;
+  private int beamWidth = 0;
+  private int maxSentenceLength = StreamTagger2.DEFAULT_MAX_SENTENCE_LENGTH;
+  private int dictionaryReloadInterval = 0;
+  private boolean metrics = false;
 
   public void init(Map<String,String> args) {
     super.init(args);
+    nBest = getInt("nBest", 1);
+    nBestCostMargin = getInt("nBestCostMargin", Integer.MAX_VALUE);
+    if (nBest < 1) {
+      throw new RuntimeException("nBest must be positive: " + nBest);
+    }
+    if (nBestCostMargin < 0) {
+      throw new RuntimeException("nBestCostMargin must not be negative: " + nBestCostMargin);
+    }
+    beamWidth = getInt("beamWidth", 0);
+    if (beamWidth < 0) {
+      throw new RuntimeException("beamWidth must not be negative: " + beamWidth);
+    }
+    maxSentenceLength = getInt("maxSentenceLength", StreamTagger2.DEFAULT_MAX_SENTENCE_LENGTH);
+    if (maxSentenceLength < 1) {
+      throw new RuntimeException("maxSentenceLength must be positive: " + maxSentenceLength);
+    }
+    dictionaryReloadInterval = getInt("dictionaryReloadInterval", 0);
+    if (dictionaryReloadInterval < 0) {
+      throw new RuntimeException("dictionaryReloadInterval must not be negative: " + dictionaryReloadInterval);
+    }
+    metrics = getBoolean("metrics", false);
   }
 
   public void inform(ResourceLoader loader) {
@@ -91,10 +156,99 @@ public class GosenTokenizerFactory extends BaseTokenizerFactory implements Resou
         // absolute path
         dictionaryDir = dirVal;
       }
+      if (dictionaryReloadInterval > 0) {
+        SenFactory.watch(dictionaryDir, dictionaryReloadInterval * 1000L);
+      }
+    }
+    if (metrics) {
+      SenFactory.enableMetrics(dictionaryDir);
+    }
+    String userDictVal = args.get("userDictionary");
+    if (userDictVal != null) {
+      File f = new File(userDictVal);
+      if (!f.isAbsolute()) {
+        File f1 = new File(SolrResourceLoader.class.cast(loader).getConfigDir() + userDictVal);
+        if (f1.isFile()) {
+          // relative path (from solr/conf)
+          f = f1;
+        }
+      }
+      userDictionary = f.getAbsolutePath();
+      try {
+        // fail early on a malformed user dictionary
+        SenFactory.getUserDictionary(dictionaryDir, userDictionary);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
     }
   }
 
   public Tokenizer create(Reader reader) {
-    return new GosenTokenizer(reader, compositeTokenFilter, dictionaryDir);
+    GosenTokenizer tokenizer = new GosenTokenizer(reader, compositeTokenFilter, dictionaryDir, userDictionary);
+    if (nBest > 1) {
+      tokenizer.setNBest(nBest, nBestCostMargin);
+    }
+    if (beamWidth > 0) {
+      tokenizer.setBeamWidth(beamWidth);
+    }
+    if (maxSentenceLength != StreamTagger2.DEFAULT_MAX_SENTENCE_LENGTH) {
+      tokenizer.setMaxSentenceLength(maxSentenceLength);
+    }
+    return tokenizer;
+  }
+
+  public String getName() {
+    return getClass().getName();
+  }
+
+  public String getVersion() {
+    return "1.0";
+  }
+
+  public String getDescription() {
+    return "Japanese morphological analysis over " + dictionaryDir;
+  }
+
+  public Category getCategory() {
+    return Category.OTHER;
+  }
+
+  public String getSourceId() {
+    return null;
+  }
+
+  public String getSource() {
+    return null;
+  }
+
+  public URL[] getDocs() {
+    return null;
+  }
+
+  public NamedList<Object> getStatistics() {
+    NamedList<Object> stats = new SimpleOrderedMap<Object>();
+    stats.add("dictionaryDir", dictionaryDir);
+    AnalysisMetrics analysisMetrics = SenFactory.getMetrics(dictionaryDir);
+    if (analysisMetrics != null) {
+      stats.add("documents", analysisMetrics.getDocumentCount());
+      stats.add("sentences", analysisMetrics.getSentenceCount());
+      stats.add("characters", analysisMetrics.getCharacterCount());
+      stats.add("sentencesPerSecond", analysisMetrics.getSentencesPerSecond());
+      stats.add("charactersPerSecond", analysisMetrics.getCharactersPerSecond());
+      stats.add("latticeNodesPerSentence", analysisMetrics.getLatticeNodesPerSentence());
+      stats.add("trieHitsPerPosition", analysisMetrics.getTrieHitsPerPosition());
+      stats.add("unknownWordRate", analysisMetrics.getUnknownWordRate());
+      stats.add("morphemeDecodes", analysisMetrics.getMorphemeDecodeCount());
+      stats.add("meanLatencyMicros", analysisMetrics.getMeanLatencyMicros());
+      stats.add("medianLatencyMicros", analysisMetrics.getMedianLatencyMicros());
+      stats.add("latency99thPercentileMicros", analysisMetrics.getLatency99thPercentileMicros());
+      stats.add("latency999thPercentileMicros", analysisMetrics.getLatency999thPercentileMicros());
+      stats.add("maxLatencyMicros", analysisMetrics.getMaxLatencyMicros());
+    }
+    MorphemeCache cache = SenFactory.getMorphemeCache(dictionaryDir);
+    if (cache != null) {
+      stats.add("morphemeCacheHitRate", cache.getHitRate());
+    }
+    return stats;
   }
 }
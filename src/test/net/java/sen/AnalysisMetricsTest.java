@@ -0,0 +1,104 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+package net.java.sen;
+
+import static net.java.sen.SenTestUtil.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.java.sen.dictionary.AnalysisMetrics;
+import net.java.sen.dictionary.Token;
+import net.java.sen.util.LatencyHistogram;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests {@link AnalysisMetrics}
+ */
+public class AnalysisMetricsTest extends LuceneTestCase {
+  
+  /**
+   * Tests that taggers record metrics once they are enabled, and that the
+   * metrics are published over JMX
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testMetrics() throws Exception {
+    StringTagger untracked = SenFactory.getStringTagger(IPADIC_DIR);
+    assertNull(untracked.getMetrics());
+    
+    AnalysisMetrics metrics = SenFactory.enableMetrics(IPADIC_DIR);
+    try {
+      assertSame(metrics, SenFactory.getMetrics(IPADIC_DIR));
+      
+      StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR);
+      assertSame(metrics, tagger.getMetrics());
+      String sentence = "関西国際空港でＰＣを買いました。";
+      tagger.analyze(sentence, new ArrayList<Token>());
+      tagger.analyze(sentence, new ArrayList<Token>());
+      untracked.analyze(sentence, new ArrayList<Token>());
+      
+      assertEquals(2, metrics.getSentenceCount());
+      assertEquals(2 * sentence.length(), metrics.getCharacterCount());
+      assertTrue(metrics.getLatticeNodesPerSentence() > 0);
+      assertTrue(metrics.getTrieHitsPerPosition() > 0);
+      assertEquals(2, metrics.getLatencyHistogram().getCount());
+      assertTrue(metrics.getMaxLatencyMicros() >= metrics.getMedianLatencyMicros());
+      
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      assertFalse(server.queryNames(new ObjectName("net.java.sen:type=AnalysisMetrics,*"), null).isEmpty());
+      
+      metrics.reset();
+      assertEquals(0, metrics.getSentenceCount());
+    } finally {
+      SenFactory.disableMetrics(IPADIC_DIR);
+    }
+    
+    assertNull(SenFactory.getMetrics(IPADIC_DIR));
+    assertNull(SenFactory.getStringTagger(IPADIC_DIR).getMetrics());
+  }
+  
+  /**
+   * Tests that percentiles are within the precision of the histogram
+   */
+  @Test
+  public void testLatencyHistogram() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long i = 1; i <= 100000; i++) {
+      histogram.record(i * 1000);
+    }
+    
+    assertEquals(100000, histogram.getCount());
+    assertEquals(100000000L, histogram.getMax());
+    assertEquals(50000500.0, histogram.getMean(), 1);
+    
+    long median = histogram.getValueAtPercentile(50);
+    assertTrue(Math.abs(median - 50000000L) <= 50000000L / 16);
+    long p99 = histogram.getValueAtPercentile(99);
+    assertTrue(Math.abs(p99 - 99000000L) <= 99000000L / 16);
+    
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+
+package net.java.sen;
+
+import static net.java.sen.SenTestUtil.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.java.sen.dictionary.Token;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests {@link BatchTagger}
+ */
+public class BatchTaggerTest extends LuceneTestCase {
+  
+  private static final String[] SENTENCES = new String[] {
+      "これはテストだ",
+      "東京都に住んでいる",
+      "すもももももももものうち",
+      "関西国際空港でＰＣを買いました。",
+      "魔女狩大将マシュー・ホプキンス。",
+      "麻薬の密売は根こそぎ絶やさなければならない",
+      ""
+  };
+  
+  /**
+   * @param count The number of documents
+   * @return A list of documents cycling through the test sentences
+   */
+  private static List<String> documents(int count) {
+    List<String> documents = new ArrayList<String>(count);
+    for (int i = 0; i < count; i++) {
+      documents.add(SENTENCES[i % SENTENCES.length]);
+    }
+    return documents;
+  }
+  
+  /**
+   * Tests that results are returned in input order
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testAnalyzeAll() throws Exception {
+    StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      BatchTagger batchTagger = new BatchTagger(IPADIC_DIR, executor, 8);
+      List<String> documents = documents(500);
+      List<List<Token>> results = batchTagger.analyzeAll(documents);
+      
+      assertEquals(documents.size(), results.size());
+      for (int i = 0; i < documents.size(); i++) {
+        List<Token> expected = tagger.analyze(documents.get(i), new ArrayList<Token>());
+        compareTokens(expected.toArray(new Token[expected.size()]), results.get(i));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+  
+  /**
+   * Tests that the streaming variant reads no further ahead of the consumer
+   * than the in-flight limit
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testIteratorBackpressure() throws Exception {
+    final int maxInFlight = 3;
+    final List<String> documents = documents(100);
+    final int[] read = new int[1];
+    Iterator<String> inputs = new Iterator<String>() {
+      public boolean hasNext() {
+        return read[0] < documents.size();
+      }
+      public String next() {
+        return documents.get(read[0]++);
+      }
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+    
+    StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      BatchTagger batchTagger = new BatchTagger(IPADIC_DIR, executor, maxInFlight);
+      int consumed = 0;
+      for (Iterator<List<Token>> results = batchTagger.iterator(inputs); results.hasNext();) {
+        assertTrue(read[0] <= consumed + maxInFlight);
+        List<Token> actual = results.next();
+        List<Token> expected = tagger.analyze(documents.get(consumed), new ArrayList<Token>());
+        compareTokens(expected.toArray(new Token[expected.size()]), actual);
+        consumed++;
+      }
+      assertEquals(documents.size(), consumed);
+    } finally {
+      executor.shutdown();
+    }
+  }
+  
+  /**
+   * Tests that an in-flight limit below 1 is rejected
+   */
+  @Test
+  public void testInvalidMaxInFlight() {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      new BatchTagger(IPADIC_DIR, executor, 0);
+      fail();
+    } catch (IllegalArgumentException e) {
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
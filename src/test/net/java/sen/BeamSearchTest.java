@@ -0,0 +1,132 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+
+package net.java.sen;
+
+import static net.java.sen.SenTestUtil.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.Token;
+import net.java.sen.dictionary.Viterbi;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests that a beam search gives the same results as the exact search
+ */
+public class BeamSearchTest extends LuceneTestCase {
+  
+  private static final String[] SENTENCES = new String[] {
+      "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である、" +
+      "アメリカ低所得者医療援助制度が、今日では、その予算の約３分の１を老人に費やしている。",
+      "麻薬の密売は根こそぎ絶やさなければならない",
+      "魔女狩大将マシュー・ホプキンス。",
+      "これは本ではない",
+      "すもももももももものうち",
+      "関西国際空港でＰＣを買いました。",
+      "くよくよくよくよくよくよくよくよくよくよくよくよくよくよくよくよくよくよくよくよ"
+  };
+  
+  /**
+   * Compares the analysis of a string by exact and beam searches
+   *
+   * @param exactTagger A tagger using the exact search
+   * @param beamTagger A tagger using the beam search
+   * @param text The string to analyse
+   */
+  private static void assertSameTokens(StringTagger exactTagger, StringTagger beamTagger, String text) throws Exception {
+    List<Token> expected = exactTagger.analyze(text, new ArrayList<Token>());
+    List<Token> actual = beamTagger.analyze(text, new ArrayList<Token>());
+    
+    compareTokens(expected.toArray(new Token[expected.size()]), actual);
+  }
+  
+  /**
+   * Tests the default beam width against the exact search on a reference
+   * corpus
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testDefaultBeamWidth() throws Exception {
+    StringTagger exactTagger = SenFactory.getStringTagger(IPADIC_DIR);
+    StringTagger beamTagger = SenFactory.getStringTagger(IPADIC_DIR);
+    beamTagger.setBeamWidth(Viterbi.DEFAULT_BEAM_WIDTH);
+    
+    for (String sentence : SENTENCES) {
+      assertSameTokens(exactTagger, beamTagger, sentence);
+    }
+  }
+  
+  /**
+   * Tests the default beam width on a long sentence without punctuation
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testLongSentence() throws Exception {
+    StringTagger exactTagger = SenFactory.getStringTagger(IPADIC_DIR);
+    StringTagger beamTagger = SenFactory.getStringTagger(IPADIC_DIR);
+    beamTagger.setBeamWidth(Viterbi.DEFAULT_BEAM_WIDTH);
+    
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 20; i++) {
+      for (String sentence : SENTENCES) {
+        text.append(sentence.replace("、", "").replace("。", ""));
+      }
+    }
+    
+    assertSameTokens(exactTagger, beamTagger, text.toString());
+  }
+  
+  /**
+   * Tests that even the narrowest beam covers the whole sentence
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testNarrowBeam() throws Exception {
+    StringTagger beamTagger = SenFactory.getStringTagger(IPADIC_DIR);
+    beamTagger.setBeamWidth(1);
+    
+    for (String sentence : SENTENCES) {
+      List<Token> tokens = beamTagger.analyze(sentence, new ArrayList<Token>());
+      int end = 0;
+      for (Token token : tokens) {
+        assertEquals(end, token.getStart());
+        end = token.end();
+      }
+      assertEquals(sentence.length(), end);
+    }
+  }
+  
+  /**
+   * Tests that a negative beam width is rejected
+   */
+  @Test
+  public void testNegativeBeamWidth() {
+    try {
+      SenFactory.getStringTagger(IPADIC_DIR).setBeamWidth(-1);
+      fail();
+    } catch (IllegalArgumentException e) {
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+package net.java.sen;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import net.java.sen.tokenizers.ja.CharacterClassTable;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests for CharacterClassTable
+ */
+public class CharacterClassTableTest extends LuceneTestCase {
+  
+  /** Character class for non-Japanese text */
+  private static final int OTHER = 0x80;
+  
+  /** Character class for Kanji */
+  private static final int KANJI = 0x82;
+  
+  /** Character class for Katakana */
+  private static final int KATAKANA = 0x83;
+  
+  /**
+   * Tests that the default table holds the classes previously calculated
+   * for each character by JapaneseTokenizer
+   */
+  @Test
+  public void testDefaultClasses() {
+    CharacterClassTable table = CharacterClassTable.getDefault();
+    
+    for (int i = 0; i < 0x10000; i++) {
+      char c = (char) i;
+      int expected;
+      if (c <= 0x7F) {
+        expected = (c == ' ' || c == '\t' || c == '\r' || c == '\n') ? 0x81 : Character.getType(Character.toLowerCase(c));
+      } else if (c >= 0x3040 && c <= 0x309F) {
+        expected = 0x84;
+      } else if (c >= 0x30A0 && c <= 0x30FF && Character.getType(c) != Character.CONNECTOR_PUNCTUATION && c != 0x30FB) {
+        expected = KATAKANA;
+      } else if (c >= 0x4E00 && c <= 0x9FFF) {
+        expected = KANJI;
+      } else if (c >= 0xFF00 && c <= 0xFFEF) {
+        expected = 0x85;
+      } else {
+        expected = OTHER;
+      }
+      assertEquals("class of " + Integer.toHexString(i), expected, table.getCharClass(c));
+    }
+  }
+  
+  /**
+   * Tests the default flags
+   */
+  @Test
+  public void testDefaultFlags() {
+    CharacterClassTable table = CharacterClassTable.getDefault();
+    
+    assertFalse(table.isInvoke(table.getCharClass('あ')));
+    assertFalse(table.isGroup(table.getCharClass('あ')));
+    assertFalse(table.isInvoke(table.getCharClass('漢')));
+    assertFalse(table.isGroup(table.getCharClass('漢')));
+    assertTrue(table.isInvoke(table.getCharClass('α')));
+    assertFalse(table.isGroup(table.getCharClass('α')));
+    assertTrue(table.isInvoke(table.getCharClass('カ')));
+    assertTrue(table.isGroup(table.getCharClass('カ')));
+    assertTrue(table.isGroup(table.getCharClass('a')));
+    assertEquals(table.getCharClass('a'), table.getCharClass('A'));
+  }
+  
+  /**
+   * Tests a table read from char.def definitions
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testLoad() throws IOException {
+    String definitions =
+      "# comment\n" +
+      "KANJI 1 1 0\n" +
+      "GREEK 1 1 2  # compatible classes and lengths are ignored\n" +
+      "\n" +
+      "0x0391..0x03C9 GREEK KANJI\n" +
+      "0x30FB KATAKANA\n";
+    CharacterClassTable table = CharacterClassTable.load(new StringReader(definitions));
+    
+    assertTrue(table.isInvoke(KANJI));
+    assertTrue(table.isGroup(KANJI));
+    
+    int greek = table.getCharClass('α');
+    assertTrue(greek != OTHER);
+    assertEquals(greek, table.getCharClass('Ω'));
+    assertTrue(table.isGroup(greek));
+    
+    assertEquals(KATAKANA, table.getCharClass('・'));
+    
+    // Unchanged classes keep their defaults
+    assertEquals(OTHER, table.getCharClass('€'));
+    assertFalse(table.isInvoke(table.getCharClass('あ')));
+    
+    // The default table is not modified
+    assertFalse(CharacterClassTable.getDefault().isGroup(KANJI));
+  }
+  
+  /**
+   * Tests that malformed definitions are rejected
+   */
+  @Test
+  public void testLoadErrors() {
+    String[] definitions = new String[] {
+        "0x0041 UNDEFINED\n",
+        "0x0041\n",
+        "0x0042..0x0041 DEFAULT\n",
+        "0xZZ DEFAULT\n",
+        "NAME 1\n"
+    };
+    
+    for (String definition : definitions) {
+      try {
+        CharacterClassTable.load(new StringReader(definition));
+        fail("Expected IOException for " + definition);
+      } catch (IOException e) {
+        // expected
+      }
+    }
+  }
+}
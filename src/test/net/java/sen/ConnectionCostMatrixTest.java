@@ -0,0 +1,200 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+package net.java.sen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import net.java.sen.compiler.DictionaryBuilder;
+import net.java.sen.dictionary.CToken;
+import net.java.sen.dictionary.Dictionary;
+import net.java.sen.dictionary.DictionaryHeader;
+import net.java.sen.dictionary.Node;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests that the collapsed and compact layouts of the connection cost matrix
+ * give the same costs as the dense matrix they were written from
+ */
+public class ConnectionCostMatrixTest extends LuceneTestCase {
+  
+  private static final int SIZE1 = 4;
+  private static final int SIZE2 = 9;
+  private static final int SIZE3 = 7;
+  
+  /** A header for Dictionaries with no Trie entries */
+  private static final DictionaryHeader HEADER = new DictionaryHeader(0, 0, 3 * (int) CToken.SIZE, 0, 1, 1, null);
+  
+  /**
+   * Creates a dense matrix from a few distinct rows, so that the compact
+   * layout has rows to share
+   *
+   * @param trigram If <code>false</code>, every slice of the first extent is
+   *                the same
+   * @return The matrix
+   */
+  private static short[] createMatrix(boolean trigram) {
+    short[][] rows = new short[5][SIZE3];
+    for (short[] row : rows) {
+      for (int i = 0; i < SIZE3; i++) {
+        row[i] = (short) (random.nextInt(20000) - 10000);
+      }
+    }
+    
+    short[] matrix = new short[SIZE1 * SIZE2 * SIZE3];
+    for (int i1 = 0; i1 < SIZE1; i1++) {
+      for (int i2 = 0; i2 < SIZE2; i2++) {
+        int source = trigram ? (i1 * SIZE2 + i2) : i2;
+        short[] row = rows[(source * 3) % rows.length];
+        System.arraycopy(row, 0, matrix, SIZE3 * (SIZE2 * i1 + i2), SIZE3);
+      }
+    }
+    return matrix;
+  }
+  
+  /**
+   * Writes a matrix as connectionCost.sen
+   *
+   * @param matrix The dense matrix
+   * @param compact If <code>true</code>, write the compact layout
+   * @param trigram The expected result of writing the matrix
+   * @return The written file
+   * @throws Exception
+   */
+  private static ShortBuffer write(short[] matrix, boolean compact, boolean trigram) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    assertEquals(trigram, DictionaryBuilder.writeConnectionCosts(out, matrix.clone(), SIZE1, SIZE2, SIZE3, compact));
+    out.close();
+    
+    ShortBuffer buffer = ByteBuffer.wrap(bytes.toByteArray()).asShortBuffer();
+    assertEquals(compact, buffer.get(0) == Dictionary.COMPACT_CONNECTION_COST_MARKER);
+    assertEquals(trigram ? SIZE1 : 1, buffer.get(compact ? 1 : 0));
+    return buffer;
+  }
+  
+  /**
+   * Creates a Dictionary over a connection cost matrix. Only the matrix is
+   * used; the standard CTokens are empty
+   *
+   * @param costs The connection cost matrix
+   * @param heapArray If <code>true</code>, use the heap array backend
+   * @return The Dictionary
+   */
+  private static Dictionary createDictionary(ShortBuffer costs, boolean heapArray) {
+    ByteBuffer tokens = ByteBuffer.allocate(3 * (int) CToken.SIZE);
+    if (heapArray) {
+      short[] array = new short[costs.limit()];
+      costs.duplicate().get(array);
+      return new Dictionary(ShortBuffer.wrap(array), array, null, tokens, IntBuffer.allocate(0), new int[0], null,
+          HEADER, Dictionary.readConnectionRowOffsets(costs));
+    }
+    return new Dictionary(costs.duplicate(), ByteBuffer.allocate(0), tokens, IntBuffer.allocate(0), new String[0],
+        new String[0], new String[0]);
+  }
+  
+  /**
+   * Checks that a Dictionary gives the cost of the dense matrix for every
+   * attribute triple
+   *
+   * @param matrix The dense matrix
+   * @param dictionary The Dictionary
+   * @param trigram If <code>false</code>, the Dictionary's matrix was
+   *                collapsed, and rcAttr2 is always 0
+   */
+  private static void assertCosts(short[] matrix, Dictionary dictionary, boolean trigram) {
+    Node lNode2 = new Node();
+    Node lNode = new Node();
+    Node rNode = new Node();
+    for (int i1 = 0; i1 < SIZE1; i1++) {
+      lNode2.rcAttr2 = (short) (trigram ? i1 : 0);
+      for (int i2 = 0; i2 < SIZE2; i2++) {
+        lNode.rcAttr1 = (short) i2;
+        for (int i3 = 0; i3 < SIZE3; i3++) {
+          rNode.lcAttr = (short) i3;
+          assertEquals(matrix[SIZE3 * (SIZE2 * i1 + i2) + i3], dictionary.getCost(lNode2, lNode, rNode));
+        }
+      }
+    }
+  }
+  
+  /**
+   * Checks every layout of a matrix against the dense matrix
+   *
+   * @param trigram If <code>false</code>, every slice of the first extent is
+   *                the same
+   */
+  private static void checkLayouts(boolean trigram) throws Exception {
+    short[] matrix = createMatrix(trigram);
+    
+    for (boolean compact : new boolean[] { false, true }) {
+      ShortBuffer costs = write(matrix, compact, trigram);
+      assertCosts(matrix, createDictionary(costs, false), trigram);
+      assertCosts(matrix, createDictionary(costs, true), trigram);
+    }
+  }
+  
+  /**
+   * Tests a matrix whose costs depend on rcAttr2
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testTrigramMatrix() throws Exception {
+    checkLayouts(true);
+  }
+  
+  /**
+   * Tests a matrix whose first extent is collapsed
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testCollapsedMatrix() throws Exception {
+    checkLayouts(false);
+  }
+  
+  /**
+   * Tests that Dictionaries built with the same decoded row offsets give
+   * the same costs
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testSharedRowOffsets() throws Exception {
+    short[] matrix = createMatrix(true);
+    ShortBuffer costs = write(matrix, true, true);
+    
+    int[] rowOffsets = Dictionary.readConnectionRowOffsets(costs);
+    assertNotNull(rowOffsets);
+    assertEquals(SIZE1 * SIZE2, rowOffsets.length);
+    
+    for (int i = 0; i < 2; i++) {
+      Dictionary dictionary = new Dictionary(costs.duplicate(), null, null, ByteBuffer.allocate(3 * (int) CToken.SIZE),
+          IntBuffer.allocate(0), null, null, HEADER, rowOffsets);
+      assertCosts(matrix, dictionary, true);
+    }
+    
+    assertNull(Dictionary.readConnectionRowOffsets(write(matrix, false, true)));
+  }
+}
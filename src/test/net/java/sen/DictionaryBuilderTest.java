@@ -0,0 +1,186 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.Arrays;
+
+import net.java.sen.compiler.DictionaryBuilder;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests {@link DictionaryBuilder}
+ */
+public class DictionaryBuilderTest extends LuceneTestCase {
+  
+  /** The compiled files */
+  private static final String[] COMPILED_FILES = new String[] {
+      "connectionCost.sen", "partOfSpeech.sen", "posIndex.sen", "token.sen", "trie.sen", "header.sen"
+  };
+  
+  /** The parts of speech of the generated entries */
+  private static final String[] PARTS_OF_SPEECH = new String[] {
+      "名詞,一般,*,*,*,*", "名詞,固有名詞,*,*,*,*", "名詞,サ変接続,*,*,*,*", "助詞,格助詞,一般,*,*,*",
+      "動詞,自立,*,*,五段・カ行,基本形", "助動詞,*,*,*,特殊・タ,基本形", "記号,句点,*,*,*,*"
+  };
+  
+  /**
+   * Creates an empty directory
+   *
+   * @return The directory
+   * @throws IOException
+   */
+  private static File createDirectory() throws IOException {
+    File dir = File.createTempFile("dic", null);
+    dir.delete();
+    dir.mkdir();
+    dir.deleteOnExit();
+    return dir;
+  }
+  
+  /**
+   * Writes a file as UTF-8
+   *
+   * @param file The file
+   * @param text The contents of the file
+   * @throws IOException
+   */
+  private static void write(File file, String text) throws IOException {
+    file.deleteOnExit();
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try {
+      writer.write(text);
+    } finally {
+      writer.close();
+    }
+  }
+  
+  /**
+   * Reads a file
+   *
+   * @param file The file
+   * @return The contents of the file
+   * @throws IOException
+   */
+  private static byte[] read(File file) throws IOException {
+    RandomAccessFile in = new RandomAccessFile(file, "r");
+    try {
+      byte[] bytes = new byte[(int) in.length()];
+      in.readFully(bytes);
+      return bytes;
+    } finally {
+      in.close();
+    }
+  }
+  
+  /**
+   * Generates the source data of a dictionary with enough entries to be
+   * parsed in several chunks, including lexicalized connection rules,
+   * duplicate surfaces and compound readings
+   *
+   * @param entries The number of dictionary entries
+   * @return The dictionary CSV data and the connection CSV data
+   */
+  private static String[] generateSource(int entries) {
+    StringBuilder dictionary = new StringBuilder();
+    for (int i = 0; i < entries; i++) {
+      char[] chars = new char[1 + random.nextInt(4)];
+      for (int j = 0; j < chars.length; j++) {
+        chars[j] = (char) (0x30A2 + random.nextInt(8));
+      }
+      String surface = new String(chars);
+      String basicForm = (random.nextInt(10) == 0) ? "の" : surface;
+      String reading = (random.nextInt(20) == 0) ? ("{" + surface + "/" + surface + "ア}") : surface;
+      dictionary.append(surface).append(',').append(random.nextInt(8000)).append(',')
+          .append(PARTS_OF_SPEECH[random.nextInt(PARTS_OF_SPEECH.length)]).append(',')
+          .append(basicForm).append(',').append(reading).append(',').append(reading).append('\n');
+    }
+    
+    String[] columns = new String[PARTS_OF_SPEECH.length + 4];
+    for (int i = 0; i < PARTS_OF_SPEECH.length; i++) {
+      columns[i] = PARTS_OF_SPEECH[i] + ",*";
+    }
+    columns[PARTS_OF_SPEECH.length] = "文頭,*,*,*,*,*,*";
+    columns[PARTS_OF_SPEECH.length + 1] = "文末,*,*,*,*,*,*";
+    columns[PARTS_OF_SPEECH.length + 2] = "名詞,*,*,*,*,*,*";
+    columns[PARTS_OF_SPEECH.length + 3] = "助詞,格助詞,一般,*,*,*,の";
+    String wildcard = "*,*,*,*,*,*,*";
+    
+    StringBuilder connection = new StringBuilder();
+    for (String left : columns) {
+      for (String right : columns) {
+        connection.append('"').append(wildcard).append("\",\"").append(left).append("\",\"").append(right)
+            .append("\",").append(random.nextInt(3000)).append('\n');
+      }
+    }
+    connection.append('"').append(wildcard).append("\",\"").append(wildcard).append("\",\"").append(wildcard)
+        .append("\",").append(random.nextInt(3000)).append('\n');
+    for (int i = 0; i < 30; i++) {
+      connection.append('"').append(columns[random.nextInt(columns.length)]).append("\",\"")
+          .append(columns[random.nextInt(columns.length)]).append("\",\"")
+          .append(columns[random.nextInt(columns.length)]).append("\",").append(random.nextInt(3000)).append('\n');
+    }
+    
+    return new String[] { dictionary.toString(), connection.toString() };
+  }
+  
+  /**
+   * Compiles source data
+   *
+   * @param source The dictionary CSV data and the connection CSV data
+   * @param threads The number of parsing threads
+   * @return The directory holding the compiled files
+   * @throws IOException
+   */
+  private static File build(String[] source, int threads) throws IOException {
+    File dir = createDirectory();
+    write(new File(dir, "dictionary.csv"), source[0]);
+    write(new File(dir, "connection.csv"), source[1]);
+    for (String name : COMPILED_FILES) {
+      new File(dir, name).deleteOnExit();
+    }
+    new DictionaryBuilder(dir, new String[0], false, threads);
+    return dir;
+  }
+  
+  /**
+   * Tests that parsing in parallel produces the same files as parsing on a
+   * single thread
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testParallelParsing() throws Exception {
+    String[] source = generateSource(20000);
+    
+    File sequential = build(source, 1);
+    File parallel = build(source, 4);
+    
+    for (String name : COMPILED_FILES) {
+      byte[] expected = read(new File(sequential, name));
+      assertTrue(name, expected.length > 0);
+      assertTrue(name, Arrays.equals(expected, read(new File(parallel, name))));
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+package net.java.sen;
+
+import static net.java.sen.SenTestUtil.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.DictionaryFile;
+import net.java.sen.dictionary.Token;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests {@link DictionaryFile}
+ */
+public class DictionaryFileTest extends LuceneTestCase {
+  
+  private static final String SENTENCE = "関西国際空港でＰＣを買いました。";
+  
+  /**
+   * Converts the test dictionary into a single file in a new directory
+   *
+   * @return The directory
+   * @throws IOException
+   */
+  private static File convert() throws IOException {
+    File dir = File.createTempFile("dic", null);
+    dir.delete();
+    dir.mkdir();
+    dir.deleteOnExit();
+    File file = new File(dir, DictionaryFile.FILE_NAME);
+    file.deleteOnExit();
+    DictionaryFile.convert(new File(IPADIC_DIR), file);
+    return dir;
+  }
+  
+  /**
+   * Flips a bit in the middle of the Trie section of a dictionary file, which
+   * is not read when a dictionary is opened
+   *
+   * @param file The dictionary file
+   * @throws IOException
+   */
+  private static void corruptTrie(File file) throws IOException {
+    // the sections follow the table in order, each page aligned
+    long offset = DictionaryFile.ALIGNMENT;
+    for (int i = 0; !DictionaryFile.SECTIONS[i].equals("trie.sen"); i++) {
+      long length = new File(IPADIC_DIR, DictionaryFile.SECTIONS[i]).length();
+      offset += (length + DictionaryFile.ALIGNMENT - 1) / DictionaryFile.ALIGNMENT * DictionaryFile.ALIGNMENT;
+    }
+    offset += new File(IPADIC_DIR, "trie.sen").length() / 2;
+    
+    RandomAccessFile out = new RandomAccessFile(file, "rw");
+    try {
+      out.seek(offset);
+      int b = out.read();
+      out.seek(offset);
+      out.write(b ^ 1);
+    } finally {
+      out.close();
+    }
+  }
+  
+  /**
+   * Tests that a single dictionary file gives the same tokens as the
+   * separate files
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testSingleFile() throws Exception {
+    List<Token> expected = SenFactory.getStringTagger(IPADIC_DIR).analyze(SENTENCE, new ArrayList<Token>());
+    
+    File dir = convert();
+    File file = new File(dir, DictionaryFile.FILE_NAME);
+    assertEquals(0, file.length() % DictionaryFile.ALIGNMENT);
+    
+    DictionaryFile dictionaryFile = DictionaryFile.open(file);
+    dictionaryFile.verify();
+    for (String name : DictionaryFile.SECTIONS) {
+      assertEquals(new File(IPADIC_DIR, name).length(), dictionaryFile.getSection(name).capacity());
+    }
+    
+    StringTagger tagger = SenFactory.getStringTagger(dir.getPath());
+    compareTokens(expected.toArray(new Token[expected.size()]), tagger.analyze(SENTENCE, new ArrayList<Token>()));
+  }
+  
+  /**
+   * Tests that a corrupt section is detected by its checksum
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testChecksum() throws Exception {
+    File file = new File(convert(), DictionaryFile.FILE_NAME);
+    corruptTrie(file);
+    
+    // sections are not verified when read
+    DictionaryFile dictionaryFile = DictionaryFile.open(file);
+    dictionaryFile.getSection("trie.sen");
+    try {
+      dictionaryFile.verify();
+      fail();
+    } catch (IOException e) {
+    }
+    
+    // a corrupt dictionary is rejected by a reload
+    try {
+      SenFactory.reload(file.getParent());
+      fail();
+    } catch (IOException e) {
+    }
+  }
+  
+  /**
+   * Tests that a corrupt dictionary file opened by
+   * {@link SenFactory#getInstance(String)} is detected in the background,
+   * and then fails every later use
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testBackgroundChecksum() throws Exception {
+    File file = new File(convert(), DictionaryFile.FILE_NAME);
+    corruptTrie(file);
+    
+    // the first use may finish before the mismatch is found
+    String dir = file.getParent();
+    try {
+      SenFactory.getInstance(dir).awaitVerification();
+    } catch (RuntimeException e) {
+    }
+    try {
+      SenFactory.getInstance(dir);
+      fail();
+    } catch (RuntimeException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+    try {
+      SenFactory.getStringTagger(dir);
+      fail();
+    } catch (RuntimeException e) {
+    }
+  }
+  
+  /**
+   * Tests that converting over an existing dictionary file replaces it, and
+   * that an output which cannot be replaced is left as it was
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testReplace() throws Exception {
+    File dir = convert();
+    File file = new File(dir, DictionaryFile.FILE_NAME);
+    DictionaryFile.convert(new File(IPADIC_DIR), file);
+    DictionaryFile.open(file).verify();
+    assertFalse(new File(dir, DictionaryFile.FILE_NAME + ".tmp").exists());
+    
+    // a directory that is not empty cannot be renamed over
+    File blocked = new File(dir, "blocked");
+    blocked.mkdir();
+    blocked.deleteOnExit();
+    File child = new File(blocked, "child");
+    child.createNewFile();
+    child.deleteOnExit();
+    try {
+      DictionaryFile.convert(new File(IPADIC_DIR), blocked);
+      fail();
+    } catch (IOException e) {
+    }
+    assertTrue(child.exists());
+    assertFalse(new File(dir, "blocked.tmp").exists());
+  }
+  
+  /**
+   * Tests that a section table with a negative offset is rejected
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testNegativeOffset() throws Exception {
+    File file = new File(convert(), DictionaryFile.FILE_NAME);
+    RandomAccessFile out = new RandomAccessFile(file, "rw");
+    try {
+      // after the magic number, version, count and the first section's name
+      out.seek(12 + 2 + DictionaryFile.SECTIONS[0].length());
+      out.writeLong(-DictionaryFile.ALIGNMENT);
+    } finally {
+      out.close();
+    }
+    
+    try {
+      DictionaryFile.open(file);
+      fail();
+    } catch (IOException e) {
+    }
+  }
+  
+  /**
+   * Tests that a file which is not a dictionary file is rejected
+   *
+   * @throws Exception
+   */
+  @Test(expected = IOException.class)
+  public void testNotDictionaryFile() throws Exception {
+    DictionaryFile.open(new File(IPADIC_DIR, "trie.sen"));
+  }
+}
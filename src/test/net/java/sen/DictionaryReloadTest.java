@@ -0,0 +1,144 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+package net.java.sen;
+
+import static net.java.sen.SenTestUtil.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.Token;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests reloading of dictionaries through {@link SenFactory}
+ */
+public class DictionaryReloadTest extends LuceneTestCase {
+  
+  private static final String SENTENCE = "関西国際空港でＰＣを買いました。";
+  
+  /**
+   * Tests that a reload replaces the dictionary used by new taggers, while
+   * taggers created before it continue to work
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testReload() throws Exception {
+    long version = SenFactory.getVersion(IPADIC_DIR);
+    StringTagger oldTagger = SenFactory.getStringTagger(IPADIC_DIR);
+    List<Token> expected = oldTagger.analyze(SENTENCE, new ArrayList<Token>());
+    Token[] expectedTokens = expected.toArray(new Token[expected.size()]);
+    
+    long newVersion = SenFactory.reload(IPADIC_DIR);
+    assertTrue(newVersion > version);
+    assertEquals(newVersion, SenFactory.getVersion(IPADIC_DIR));
+    
+    // the old tagger keeps its dictionary
+    compareTokens(expectedTokens, oldTagger.analyze(SENTENCE, new ArrayList<Token>()));
+    
+    // a new tagger uses the reloaded dictionary
+    StringTagger newTagger = SenFactory.getStringTagger(IPADIC_DIR);
+    compareTokens(expectedTokens, newTagger.analyze(SENTENCE, new ArrayList<Token>()));
+  }
+  
+  /**
+   * Writes a user dictionary file
+   *
+   * @param file The file
+   * @param entries The user dictionary CSV
+   * @throws IOException
+   */
+  private static void writeUserDictionary(File file, String entries) throws IOException {
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try {
+      writer.write(entries);
+    } finally {
+      writer.close();
+    }
+  }
+  
+  /**
+   * Tests that a reload reads the user dictionaries in use again, and fails
+   * if one of them cannot be read over the new dictionary
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testReloadUserDictionary() throws Exception {
+    File file = File.createTempFile("user", ".csv");
+    file.deleteOnExit();
+    String path = file.getPath();
+    String entries = "東京特許許可局,-10000,名詞,一般,*,*,*,*,東京特許許可局,"
+        + "トウキョウトッキョキョカキョク,トーキョートッキョキョカキョク\n";
+    writeUserDictionary(file, entries);
+    SenFactory.getUserDictionary(IPADIC_DIR, path);
+    
+    SenFactory.reload(IPADIC_DIR);
+    assertEquals(1, SenFactory.getUserDictionary(IPADIC_DIR, path).size());
+    
+    try {
+      writeUserDictionary(file, "東京,-100,存在しない品詞,*,*,*,*,*,東京,トウキョウ,トーキョー\n");
+      long version = SenFactory.getVersion(IPADIC_DIR);
+      try {
+        SenFactory.reload(IPADIC_DIR);
+        fail();
+      } catch (IOException e) {
+      }
+      assertEquals(version, SenFactory.getVersion(IPADIC_DIR));
+    } finally {
+      // later reloads read the file again
+      writeUserDictionary(file, entries);
+    }
+  }
+  
+  /**
+   * Tests that the version is unchanged without a reload
+   */
+  @Test
+  public void testStableVersion() {
+    long version = SenFactory.getVersion(IPADIC_DIR);
+    SenFactory.getStringTagger(IPADIC_DIR);
+    assertEquals(version, SenFactory.getVersion(IPADIC_DIR));
+  }
+  
+  /**
+   * Tests that watching requires a dictionary directory and a positive
+   * interval
+   */
+  @Test
+  public void testInvalidWatch() {
+    try {
+      SenFactory.watch(null, 1000);
+      fail();
+    } catch (IllegalArgumentException e) {
+    }
+    try {
+      SenFactory.watch(IPADIC_DIR, 0);
+      fail();
+    } catch (IllegalArgumentException e) {
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+package net.java.sen;
+
+import static net.java.sen.SenTestUtil.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.Token;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests that the heap array dictionary backend produces the same tokens as
+ * the buffer backend
+ */
+public class HeapArrayDictionaryTest extends LuceneTestCase {
+  
+  /**
+   * Compares the analysis of a string with both backends
+   *
+   * @param bufferTagger A tagger using the buffer backend
+   * @param arrayTagger A tagger using the heap array backend
+   * @param text The string to analyse
+   */
+  private static void assertSameTokens(StringTagger bufferTagger, StringTagger arrayTagger, String text) throws Exception {
+    List<Token> expected = bufferTagger.analyze(text, new ArrayList<Token>());
+    List<Token> actual = arrayTagger.analyze(text, new ArrayList<Token>());
+    
+    compareTokens(expected.toArray(new Token[expected.size()]), actual);
+  }
+  
+  /**
+   * Tests some fixed sentences
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testSentences() throws Exception {
+    StringTagger bufferTagger = SenFactory.getStringTagger(IPADIC_DIR, false);
+    StringTagger arrayTagger = SenFactory.getStringTagger(IPADIC_DIR, true);
+    
+    String[] sentences = new String[] {
+        "これはテストだ",
+        "東京都に住んでいる",
+        "すもももももももものうち",
+        "関西国際空港でＰＣを買いました。",
+        "Ｌｕｃｅｎｅとlucene-gosenで全文検索"
+    };
+    
+    for (String sentence : sentences) {
+      assertSameTokens(bufferTagger, arrayTagger, sentence);
+    }
+  }
+  
+  /**
+   * Tests random strings of kana and common kanji
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testRandomStrings() throws Exception {
+    StringTagger bufferTagger = SenFactory.getStringTagger(IPADIC_DIR, false);
+    StringTagger arrayTagger = SenFactory.getStringTagger(IPADIC_DIR, true);
+    
+    for (int i = 0; i < 1000 * RANDOM_MULTIPLIER; i++) {
+      char[] chars = new char[random.nextInt(40)];
+      for (int j = 0; j < chars.length; j++) {
+        switch (random.nextInt(3)) {
+          case 0:
+            chars[j] = (char) (0x3041 + random.nextInt(0x56));
+            break;
+          case 1:
+            chars[j] = (char) (0x30A1 + random.nextInt(0x59));
+            break;
+          default:
+            chars[j] = (char) (0x4E00 + random.nextInt(0x200));
+            break;
+        }
+      }
+      assertSameTokens(bufferTagger, arrayTagger, new String(chars));
+    }
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+package net.java.sen;
+
+import static net.java.sen.SenTestUtil.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.java.sen.dictionary.Dictionary;
+import net.java.sen.dictionary.DictionaryHeader;
+import net.java.sen.dictionary.LazySection;
+import net.java.sen.dictionary.PartOfSpeechTables;
+import net.java.sen.dictionary.Token;
+import net.java.sen.tokenizers.ja.JapaneseTokenizer;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests {@link LazySection}
+ */
+public class LazySectionTest extends LuceneTestCase {
+  
+  /**
+   * A section that counts its loads
+   */
+  private static class CountingSection<T> extends LazySection<T> {
+    
+    final AtomicInteger loads = new AtomicInteger();
+    
+    private final LazySection<T> section;
+    
+    CountingSection(LazySection<T> section) {
+      this.section = section;
+    }
+    
+    @Override
+    protected T load() throws IOException {
+      loads.incrementAndGet();
+      return section.get();
+    }
+  }
+  
+  /**
+   * Maps a file of the test dictionary
+   *
+   * @param name The name of the file
+   * @return The mapped file
+   * @throws IOException
+   */
+  private static ByteBuffer map(String name) throws IOException {
+    FileInputStream in = new FileInputStream(new File(IPADIC_DIR, name));
+    try {
+      FileChannel channel = in.getChannel();
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      in.close();
+    }
+  }
+  
+  /**
+   * Tests that the part-of-speech data are only loaded once a Morpheme is
+   * decoded
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testOnDemand() throws Exception {
+    DictionaryHeader header;
+    FileInputStream in = new FileInputStream(new File(IPADIC_DIR, "header.sen"));
+    try {
+      header = DictionaryHeader.read(in);
+    } finally {
+      in.close();
+    }
+    
+    CountingSection<ByteBuffer> pos = new CountingSection<ByteBuffer>(new LazySection<ByteBuffer>() {
+      @Override
+      protected ByteBuffer load() throws IOException {
+        return map("partOfSpeech.sen");
+      }
+    });
+    CountingSection<PartOfSpeechTables> tables = new CountingSection<PartOfSpeechTables>(new LazySection<PartOfSpeechTables>() {
+      @Override
+      protected PartOfSpeechTables load() throws IOException {
+        FileInputStream in = new FileInputStream(new File(IPADIC_DIR, "posIndex.sen"));
+        try {
+          return PartOfSpeechTables.read(in);
+        } finally {
+          in.close();
+        }
+      }
+    });
+    ShortBuffer costs = map("connectionCost.sen").asShortBuffer();
+    Dictionary dictionary = new Dictionary(costs, null, pos, map("token.sen"), map("trie.sen").asIntBuffer(), null,
+        tables, header, Dictionary.readConnectionRowOffsets(costs));
+    StringTagger tagger = new StringTagger(new JapaneseTokenizer(dictionary, SenFactory.unknownPOS));
+    
+    String sentence = "関西国際空港でＰＣを買いました。";
+    List<Token> tokens = tagger.analyze(sentence, new ArrayList<Token>());
+    List<Token> expected = SenFactory.getStringTagger(IPADIC_DIR).analyze(sentence, new ArrayList<Token>());
+    assertEquals(expected.size(), tokens.size());
+    for (int i = 0; i < tokens.size(); i++) {
+      assertEquals(expected.get(i).getSurface(), tokens.get(i).getSurface());
+    }
+    assertFalse(pos.isLoaded());
+    assertFalse(tables.isLoaded());
+    
+    for (int i = 0; i < tokens.size(); i++) {
+      assertEquals(expected.get(i).getMorpheme().toString(), tokens.get(i).getMorpheme().toString());
+    }
+    assertEquals(1, pos.loads.get());
+    assertEquals(1, tables.loads.get());
+  }
+  
+  /**
+   * Tests that a section is loaded once however many threads use it first
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testSingleLoad() throws Exception {
+    final CountingSection<Object> section = new CountingSection<Object>(LazySection.of(new Object()));
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          section.get();
+        }
+      };
+      threads[i].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    
+    assertTrue(section.isLoaded());
+    assertEquals(1, section.loads.get());
+  }
+  
+  /**
+   * Tests that a failed load is attempted again
+   */
+  @Test
+  public void testFailedLoad() {
+    final AtomicInteger attempts = new AtomicInteger();
+    LazySection<String> section = new LazySection<String>() {
+      @Override
+      protected String load() throws IOException {
+        if (attempts.incrementAndGet() == 1) {
+          throw new IOException();
+        }
+        return "loaded";
+      }
+    };
+    
+    try {
+      section.get();
+      fail();
+    } catch (RuntimeException e) {
+    }
+    assertFalse(section.isLoaded());
+    assertEquals("loaded", section.get());
+    assertEquals(2, attempts.get());
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen;
+
+import static net.java.sen.SenTestUtil.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.MorphemeCache;
+import net.java.sen.dictionary.Token;
+import net.java.sen.dictionary.Tokenizer;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests {@link MorphemeCache}
+ */
+public class MorphemeCacheTest extends LuceneTestCase {
+  
+  private static final String[] SENTENCES = new String[] {
+      "すもももももももものうち",
+      "関西国際空港でＰＣを買いました。",
+      "麻薬の密売は根こそぎ絶やさなければならない"
+  };
+  
+  /**
+   * Analyses the test sentences, loading each morpheme fully
+   *
+   * @param tagger The tagger to use
+   * @return The tokens of every sentence
+   * @throws Exception
+   */
+  private static List<Token> analyzeAll(StringTagger tagger) throws Exception {
+    List<Token> tokens = new ArrayList<Token>();
+    for (String sentence : SENTENCES) {
+      for (Token token : tagger.analyze(sentence, new ArrayList<Token>())) {
+        token.getMorpheme().toString();
+        tokens.add(token);
+      }
+    }
+    return tokens;
+  }
+  
+  /**
+   * Tests that cached morphemes equal morphemes decoded from the dictionary
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testCachedMorphemes() throws Exception {
+    assertNotNull(SenFactory.getMorphemeCache(IPADIC_DIR));
+    
+    Tokenizer uncached = SenFactory.getTokenizer(IPADIC_DIR);
+    uncached.getDictionary().setMorphemeCache(null);
+    List<Token> expected = analyzeAll(new StringTagger(uncached));
+    
+    // analyse twice, so that the second pass is read from the cache
+    StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR);
+    analyzeAll(tagger);
+    compareTokens(expected.toArray(new Token[expected.size()]), analyzeAll(tagger));
+  }
+  
+  /**
+   * Tests that repeated analyses are answered from the cache
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testHitRate() throws Exception {
+    Tokenizer tokenizer = SenFactory.getTokenizer(IPADIC_DIR);
+    MorphemeCache cache = new MorphemeCache(65536);
+    tokenizer.getDictionary().setMorphemeCache(cache);
+    StringTagger tagger = new StringTagger(tokenizer);
+    
+    analyzeAll(tagger);
+    long hits = cache.getHitCount();
+    long misses = cache.getMissCount();
+    assertTrue(misses > 0);
+    
+    analyzeAll(tagger);
+    assertEquals(misses, cache.getMissCount());
+    assertTrue(cache.getHitCount() > hits);
+    assertTrue(cache.getHitRate() > 0.5);
+  }
+  
+  /**
+   * Tests that shared readings may not be modified
+   *
+   * @throws Exception
+   */
+  @Test(expected = UnsupportedOperationException.class)
+  public void testUnmodifiableReadings() throws Exception {
+    StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR);
+    List<Token> tokens = tagger.analyze(SENTENCES[0], new ArrayList<Token>());
+    tokens.get(0).getMorpheme().getReadings().add("");
+  }
+  
+  /**
+   * Tests that the cache stays within its capacity
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testCapacity() throws Exception {
+    assertEquals(8, new MorphemeCache(5).getCapacity());
+    
+    Tokenizer tokenizer = SenFactory.getTokenizer(IPADIC_DIR);
+    tokenizer.getDictionary().setMorphemeCache(null);
+    List<Token> expected = analyzeAll(new StringTagger(tokenizer));
+    
+    MorphemeCache cache = new MorphemeCache(4);
+    tokenizer.getDictionary().setMorphemeCache(cache);
+    for (int i = 0; i < 3; i++) {
+      compareTokens(expected.toArray(new Token[expected.size()]), analyzeAll(new StringTagger(tokenizer)));
+      assertTrue(cache.size() <= 4);
+    }
+  }
+  
+  /**
+   * Tests that a capacity must be positive
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCapacity() {
+    new MorphemeCache(0);
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen;
+
+import static net.java.sen.SenTestUtil.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.Morpheme;
+import net.java.sen.dictionary.Token;
+import net.java.sen.dictionary.Tokenizer;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests copying {@link Morpheme} data into arrays
+ */
+public class MorphemeTest extends LuceneTestCase {
+  
+  private static final String SENTENCE = "関西国際空港でＰＣを買いました。すもももももももものうち";
+  
+  /**
+   * Concatenates a list of strings
+   *
+   * @param strings The strings
+   * @return The concatenated string
+   */
+  private static String concatenate(List<String> strings) {
+    StringBuilder builder = new StringBuilder();
+    for (String string : strings) {
+      builder.append(string);
+    }
+    return builder.toString();
+  }
+  
+  /**
+   * Checks that the array copies of a morpheme's data match its strings
+   *
+   * @param tokens The tokens to check
+   */
+  private static void checkCopies(List<Token> tokens) {
+    for (Token token : tokens) {
+      Morpheme morpheme = token.getMorpheme();
+      
+      char[] buffer = new char[morpheme.getBasicFormLength() + 1];
+      int length = morpheme.copyBasicForm(buffer, 1);
+      assertEquals(buffer.length - 1, length);
+      String basicForm = morpheme.getBasicForm();
+      assertEquals(basicForm.equals("*") ? "" : basicForm, new String(buffer, 1, length));
+      
+      buffer = new char[morpheme.getReadingsLength() + 1];
+      length = morpheme.copyReadings(buffer, 1);
+      assertEquals(concatenate(morpheme.getReadings()), new String(buffer, 1, length));
+      
+      buffer = new char[morpheme.getPronunciationsLength() + 1];
+      length = morpheme.copyPronunciations(buffer, 1);
+      assertEquals(concatenate(morpheme.getPronunciations()), new String(buffer, 1, length));
+    }
+  }
+  
+  /**
+   * Tests copying data decoded from the dictionary
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testUncachedCopies() throws Exception {
+    Tokenizer tokenizer = SenFactory.getTokenizer(IPADIC_DIR);
+    tokenizer.getDictionary().setMorphemeCache(null);
+    checkCopies(new StringTagger(tokenizer).analyze(SENTENCE, new ArrayList<Token>()));
+  }
+  
+  /**
+   * Tests copying data from cached strings
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testCachedCopies() throws Exception {
+    StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR);
+    checkCopies(tagger.analyze(SENTENCE, new ArrayList<Token>()));
+  }
+  
+  /**
+   * Tests copying data from a literal morpheme
+   */
+  @Test
+  public void testLiteralCopies() {
+    Morpheme morpheme = new Morpheme("名詞", "*", "*", "買う", new String[] { "カウ", "カイ" },
+        new String[] { "カウ", "カイ" }, null);
+    char[] buffer = new char[morpheme.getReadingsLength()];
+    assertEquals(4, morpheme.copyReadings(buffer, 0));
+    assertEquals("カウカイ", new String(buffer));
+    assertEquals(2, morpheme.getBasicFormLength());
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+
+package net.java.sen;
+
+import static net.java.sen.SenTestUtil.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.Sentence;
+import net.java.sen.dictionary.Token;
+import net.java.sen.dictionary.Viterbi;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests N-best analysis
+ */
+public class NBestTest extends LuceneTestCase {
+  
+  private static final String[] SENTENCES = new String[] {
+      "これはテストだ",
+      "東京都に住んでいる",
+      "すもももももももものうち",
+      "関西国際空港でＰＣを買いました。",
+      ""
+  };
+  
+  /**
+   * @param path An analysed path
+   * @return The total cost of the path
+   */
+  private static int pathCost(List<Token> path) {
+    return path.isEmpty() ? Integer.MIN_VALUE : path.get(path.size() - 1).getCost();
+  }
+  
+  /**
+   * Tests that the first path is the Viterbi best path
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testFirstPathIsBest() throws Exception {
+    Viterbi viterbi = getViterbi();
+    
+    for (String text : SENTENCES) {
+      List<Token> best = new ArrayList<Token>(viterbi.getBestTokens(new Sentence(text.toCharArray()), new ArrayList<Token>()));
+      List<List<Token>> paths = viterbi.getNBestTokens(new Sentence(text.toCharArray()), 5);
+      
+      assertTrue(paths.size() >= 1);
+      compareTokens(best.toArray(new Token[best.size()]), paths.get(0));
+    }
+  }
+  
+  /**
+   * Tests that paths are in order of increasing cost, and that their tokens
+   * do not overlap
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testOrder() throws Exception {
+    Viterbi viterbi = getViterbi();
+    
+    for (String text : SENTENCES) {
+      List<List<Token>> paths = viterbi.getNBestTokens(new Sentence(text.toCharArray()), 10);
+      
+      int previousCost = Integer.MIN_VALUE;
+      for (List<Token> path : paths) {
+        int cost = pathCost(path);
+        assertTrue(cost >= previousCost);
+        previousCost = cost;
+        
+        int end = 0;
+        for (Token token : path) {
+          assertTrue(token.getStart() >= end);
+          end = token.end();
+        }
+      }
+      if (text.length() > 0) {
+        assertTrue(paths.size() > 1);
+      }
+    }
+  }
+  
+  /**
+   * Tests that the cost margin limits the returned paths
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testCostMargin() throws Exception {
+    Viterbi viterbi = getViterbi();
+    String text = "すもももももももものうち";
+    
+    List<List<Token>> paths = viterbi.getNBestTokens(new Sentence(text.toCharArray()), 10, 0);
+    int bestCost = pathCost(paths.get(0));
+    for (List<Token> path : paths) {
+      assertEquals(bestCost, pathCost(path));
+    }
+    
+    paths = viterbi.getNBestTokens(new Sentence(text.toCharArray()), 10, 1000);
+    for (List<Token> path : paths) {
+      assertTrue(pathCost(path) - bestCost <= 1000);
+    }
+  }
+  
+  /**
+   * Tests N-best analysis through the StringTagger
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testStringTagger() throws Exception {
+    StringTagger tagger = getStringTagger();
+    
+    List<List<Token>> paths = tagger.analyzeNBest("東京都に住んでいる", 3, Integer.MAX_VALUE);
+    List<Token> best = tagger.analyze("東京都に住んでいる", new ArrayList<Token>());
+    
+    assertTrue(paths.size() > 1 && paths.size() <= 3);
+    compareTokens(best.toArray(new Token[best.size()]), paths.get(0));
+  }
+}
@@ -826,4 +826,65 @@ public class SentenceTest extends LuceneTestCase {
     
     compareTokens (testTokens, tokens);
   }
+  
+  /**
+   * Tests that a range of a larger array is analysed as if it were the whole
+   * sentence
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testSentenceRange() throws IOException {
+    String text = "これは本ではない";
+    char[] characters = ("魔女狩" + text + "大将").toCharArray();
+    
+    Sentence range = new Sentence(characters, 3, text.length());
+    assertEquals(3, range.getOffset());
+    assertEquals(text.length(), range.getLength());
+    
+    List<Token> expected = getViterbi().getBestTokens(new Sentence(text), new ArrayList<Token>());
+    compareTokens(expected.toArray(new Token[expected.size()]),
+        getViterbi().getBestTokens(range, new ArrayList<Token>()));
+    
+    StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR);
+    compareTokens(expected.toArray(new Token[expected.size()]),
+        tagger.analyze(characters, 3, text.length(), new ArrayList<Token>()));
+  }
+  
+  /**
+   * Tests that a range must lie within the array
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSentenceRange() {
+    new Sentence(new char[4], 2, 3);
+  }
+  
+  /**
+   * Tests that resetting a sentence removes its ignore spans and reading
+   * constraints
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testReset() throws IOException {
+    Sentence sentence = new Sentence("今日は".toCharArray());
+    sentence.setReadingConstraint(new Reading(0, 1, "イマ"));
+    sentence.setBreakingIgnoreSpan(2, (short) 1);
+    assertNotNull(sentence.getReadingConstraint(0));
+    
+    char[] characters = "これは本ではない".toCharArray();
+    sentence.reset(characters, 0, characters.length);
+    for (int i = 0; i < characters.length; i++) {
+      assertNull(sentence.getReadingConstraint(i));
+    }
+    
+    List<Token> expected = getViterbi().getBestTokens(new Sentence(characters), new ArrayList<Token>());
+    compareTokens(expected.toArray(new Token[expected.size()]),
+        getViterbi().getBestTokens(sentence, new ArrayList<Token>()));
+    
+    sentence.setReadingConstraint(new Reading(3, 1, "ホン"));
+    assertEquals("ホン", sentence.getReadingConstraint(3).text);
+    sentence.removeReadingConstraint(3);
+    assertNull(sentence.getReadingConstraint(3));
+  }
 }
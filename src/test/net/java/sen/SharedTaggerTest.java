@@ -0,0 +1,129 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+
+package net.java.sen;
+
+import static net.java.sen.SenTestUtil.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.java.sen.dictionary.Token;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests {@link SharedTagger} from concurrent threads
+ */
+public class SharedTaggerTest extends LuceneTestCase {
+  
+  private static final String[] SENTENCES = new String[] {
+      "これはテストだ",
+      "東京都に住んでいる",
+      "すもももももももものうち",
+      "関西国際空港でＰＣを買いました。",
+      "魔女狩大将マシュー・ホプキンス。",
+      "麻薬の密売は根こそぎ絶やさなければならない"
+  };
+  
+  private static final int THREADS = 8;
+  
+  /**
+   * Tests that there is one SharedTagger per dictionary
+   */
+  @Test
+  public void testSingleton() {
+    assertSame(SenFactory.getSharedTagger(IPADIC_DIR), SenFactory.getSharedTagger(IPADIC_DIR));
+    assertNotSame(SenFactory.getSharedTagger(IPADIC_DIR, false), SenFactory.getSharedTagger(IPADIC_DIR, true));
+  }
+  
+  /**
+   * Tests that a SharedTagger held across a reload uses the reloaded
+   * dictionary, and does not keep taggers over the old one
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testReload() throws Exception {
+    SharedTagger sharedTagger = SenFactory.getSharedTagger(IPADIC_DIR);
+    List<Token> expected = sharedTagger.analyze(SENTENCES[3]);
+    Token[] expectedTokens = expected.toArray(new Token[expected.size()]);
+    assertTrue(sharedTagger.getPoolSize() > 0);
+    assertTrue(sharedTagger.isCurrent());
+    
+    SenFactory.reload(IPADIC_DIR);
+    assertFalse(sharedTagger.isCurrent());
+    
+    compareTokens(expectedTokens, sharedTagger.analyze(SENTENCES[3]));
+    assertTrue(sharedTagger.isCurrent());
+    assertEquals(1, sharedTagger.getPoolSize());
+  }
+  
+  /**
+   * Tests that concurrent analyses give the same results as a StringTagger,
+   * including the lazily loaded morpheme data
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testConcurrentAnalysis() throws Exception {
+    StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR);
+    final List<Token[]> expected = new ArrayList<Token[]>();
+    for (String sentence : SENTENCES) {
+      List<Token> tokens = tagger.analyze(sentence, new ArrayList<Token>());
+      for (Token token : tokens) {
+        token.getMorpheme().toString(); // load fully before comparing
+      }
+      expected.add(tokens.toArray(new Token[tokens.size()]));
+    }
+    
+    final SharedTagger sharedTagger = SenFactory.getSharedTagger(IPADIC_DIR);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final int iterations = 200 * RANDOM_MULTIPLIER;
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < threads.length; t++) {
+      final int offset = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            List<Token> reuse = new ArrayList<Token>();
+            for (int i = 0; i < iterations; i++) {
+              int n = (i + offset) % SENTENCES.length;
+              List<Token> tokens = sharedTagger.analyze(SENTENCES[n], reuse);
+              compareTokens(expected.get(n), tokens);
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    
+    if (failure.get() != null) {
+      throw new RuntimeException(failure.get());
+    }
+    assertTrue(sharedTagger.getPoolSize() <= THREADS);
+  }
+}
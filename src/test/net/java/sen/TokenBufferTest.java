@@ -0,0 +1,94 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+package net.java.sen;
+
+import static net.java.sen.SenTestUtil.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.Token;
+import net.java.sen.dictionary.TokenBuffer;
+import net.java.sen.filter.stream.CommentFilter;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests {@link TokenBuffer}
+ */
+public class TokenBufferTest extends LuceneTestCase {
+  
+  private static final String[] SENTENCES = new String[] {
+      "すもももももももものうち",
+      "関西国際空港でＰＣを買いました。",
+      "麻薬の密売は根こそぎ絶やさなければならない"
+  };
+  
+  /**
+   * Tests that a TokenBuffer holds the same tokens as a List, when reused
+   * for several sentences within a larger array
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testSameTokens() throws Exception {
+    StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR);
+    TokenBuffer buffer = new TokenBuffer();
+    
+    for (String sentence : SENTENCES) {
+      List<Token> expected = tagger.analyze(sentence, new ArrayList<Token>());
+      
+      char[] surface = ("#" + sentence + "#").toCharArray();
+      assertSame(buffer, tagger.analyze(surface, 1, sentence.length(), buffer));
+      assertEquals(1, buffer.getOffset());
+      
+      List<Token> tokens = new ArrayList<Token>();
+      for (int i = 0; i < buffer.size(); i++) {
+        assertEquals(expected.get(i).getSurface(),
+            new String(buffer.getCharacters(), buffer.getOffset() + buffer.getStart(i), buffer.getLength(i)));
+        tokens.add(buffer.getToken(i));
+      }
+      compareTokens(expected.toArray(new Token[expected.size()]), tokens);
+    }
+  }
+  
+  /**
+   * Tests that a token past the end is rejected
+   *
+   * @throws Exception
+   */
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testIndex() throws Exception {
+    TokenBuffer buffer = new TokenBuffer();
+    SenFactory.getStringTagger(IPADIC_DIR).analyze(SENTENCES[0].toCharArray(), 0, SENTENCES[0].length(), buffer);
+    buffer.getStart(buffer.size());
+  }
+  
+  /**
+   * Tests that a tagger with filters cannot fill a TokenBuffer
+   *
+   * @throws Exception
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testFilter() throws Exception {
+    StringTagger tagger = SenFactory.getStringTagger(IPADIC_DIR);
+    tagger.addFilter(new CommentFilter());
+    tagger.analyze(SENTENCES[0].toCharArray(), 0, SENTENCES[0].length(), new TokenBuffer());
+  }
+}
@@ -25,6 +25,8 @@ import java.nio.IntBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
 
 import net.java.sen.trie.CharIterator;
 import net.java.sen.trie.TrieBuilder;
@@ -103,4 +105,64 @@ public class TrieSearcherTest extends LuceneTestCase {
       assertEquals (values[i + 3], results[i]);
     }
   }
+  
+  /**
+   * Tests a Trie large enough to be resized many times during building. Some
+   * key sets such as this one once caused the builder to read beyond the end
+   * of its data
+   *
+   * @throws Exception 
+   */
+  @Test
+  public void testLargeTrie() throws Exception {
+    Random random = new Random(1);
+    TreeSet<String> keySet = new TreeSet<String>();
+    while (keySet.size() < 20000) {
+      int length = 1 + random.nextInt(6);
+      StringBuilder key = new StringBuilder();
+      for (int i = 0; i < length; i++) {
+        key.append((char) (0x3041 + random.nextInt(200)));
+      }
+      keySet.add(key.toString());
+    }
+    
+    String[] keys = keySet.toArray(new String[keySet.size()]);
+    int[] values = new int[keys.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i;
+    }
+    
+    TrieBuilder builder = new TrieBuilder(keys, values, keys.length);
+    File tempFile = File.createTempFile("tst", null);
+    builder.build(tempFile.getAbsolutePath());
+    
+    RandomAccessFile trieFile = new RandomAccessFile(tempFile, "r");
+    MappedByteBuffer trieBuffer = trieFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, trieFile.length());
+    trieFile.close();
+    IntBuffer intBuffer = trieBuffer.asIntBuffer();
+    
+    int[] results = new int[256];
+    for (int i = 0; i < keys.length; i++) {
+      final String testString = keys[i];
+      CharIterator iterator = new CharIterator() {
+        int i = 0;
+        
+        public boolean hasNext() {
+          return this.i < testString.length();
+        }
+        
+        public char next() throws NoSuchElementException {
+          char nextChar = testString.charAt(this.i);
+          this.i++;
+          return nextChar;
+        }
+      };
+      
+      int count = TrieSearcher.commonPrefixSearch(intBuffer, iterator, results);
+      assertTrue(count > 0);
+      assertEquals(i, results[count - 1]);
+    }
+    
+    tempFile.delete();
+  }
 }
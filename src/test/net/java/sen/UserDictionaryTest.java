@@ -0,0 +1,191 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+package net.java.sen;
+
+import static net.java.sen.SenTestUtil.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.CToken;
+import net.java.sen.dictionary.Dictionary;
+import net.java.sen.dictionary.Morpheme;
+import net.java.sen.dictionary.Token;
+import net.java.sen.dictionary.Tokenizer;
+import net.java.sen.dictionary.UserDictionary;
+import net.java.sen.trie.CharIterator;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests {@link UserDictionary}
+ */
+public class UserDictionaryTest extends LuceneTestCase {
+  
+  private static final String ENTRIES =
+      "# user entries\n"
+      + "東京特許許可局,-10000,名詞,一般,*,*,*,*,東京特許許可局,トウキョウトッキョキョカキョク,トーキョートッキョキョカキョク\n"
+      + "\n"
+      + "東京特許,3000,名詞,一般,*,*,*,*,東京特許,トウキョウトッキョ,トーキョートッキョ\n";
+  
+  /**
+   * Creates a StringTagger over a Tokenizer with a user dictionary
+   *
+   * @param entries The user dictionary CSV
+   * @return The StringTagger
+   * @throws IOException
+   */
+  private static StringTagger getUserStringTagger(String entries) throws IOException {
+    Tokenizer tokenizer = SenFactory.getTokenizer(IPADIC_DIR);
+    Dictionary dictionary = tokenizer.getDictionary();
+    dictionary.setUserDictionary(UserDictionary.load(dictionary, new StringReader(entries)));
+    return new StringTagger(tokenizer);
+  }
+  
+  /**
+   * Counts the user dictionary entries found by a prefix search
+   *
+   * @param dictionary The dictionary to search
+   * @param text The text to search
+   * @return The number of user dictionary entries found
+   */
+  private static int countUserEntries(Dictionary dictionary, final String text) {
+    CToken[] results = dictionary.commonPrefixSearch(new CharIterator() {
+      private int position = 0;
+      
+      public boolean hasNext() {
+        return position < text.length();
+      }
+      
+      public char next() {
+        return text.charAt(position++);
+      }
+    });
+    
+    int count = 0;
+    for (int i = 0; !results[i].terminator; i++) {
+      // user dictionary entries have part-of-speech indices below -1
+      if (results[i].partOfSpeechIndex < -1) {
+        count++;
+      }
+    }
+    return count;
+  }
+  
+  /**
+   * Tests that a user dictionary entry is used in analysis
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testUserEntry() throws Exception {
+    StringTagger tagger = getUserStringTagger(ENTRIES);
+    List<Token> tokens = tagger.analyze("東京特許許可局", new ArrayList<Token>());
+    
+    assertEquals(1, tokens.size());
+    Token token = tokens.get(0);
+    assertEquals("東京特許許可局", token.getSurface());
+    
+    Morpheme morpheme = token.getMorpheme();
+    assertEquals("名詞-一般", morpheme.getPartOfSpeech());
+    assertEquals("*", morpheme.getBasicForm());
+    assertEquals("トウキョウトッキョキョカキョク", morpheme.getReadings().get(0));
+    assertEquals("トーキョートッキョキョカキョク", morpheme.getPronunciations().get(0));
+    
+    char[] buffer = new char[morpheme.getReadingsLength()];
+    morpheme.copyReadings(buffer, 0);
+    assertEquals("トウキョウトッキョキョカキョク", new String(buffer));
+  }
+  
+  /**
+   * Tests that every entry forming a prefix of the text is found
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testCommonPrefixSearch() throws Exception {
+    Tokenizer tokenizer = SenFactory.getTokenizer(IPADIC_DIR);
+    Dictionary dictionary = tokenizer.getDictionary();
+    UserDictionary userDictionary = UserDictionary.load(dictionary, new StringReader(ENTRIES));
+    assertEquals(2, userDictionary.size());
+    
+    dictionary.setUserDictionary(userDictionary);
+    assertEquals(2, countUserEntries(dictionary, "東京特許許可局へ"));
+    assertEquals(1, countUserEntries(dictionary, "東京特許許可"));
+    assertEquals(0, countUserEntries(dictionary, "東京"));
+    assertEquals(0, countUserEntries(dictionary, "大阪"));
+  }
+  
+  /**
+   * Tests that a search finding more entries than once fit in the result
+   * buffer returns all of them
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testManyResults() throws Exception {
+    StringBuilder entries = new StringBuilder();
+    for (int i = 0; i < 300; i++) {
+      entries.append("東京特許,").append(3000 + i)
+          .append(",名詞,一般,*,*,*,*,東京特許,トウキョウトッキョ,トーキョートッキョ\n");
+    }
+    
+    Tokenizer tokenizer = SenFactory.getTokenizer(IPADIC_DIR);
+    Dictionary dictionary = tokenizer.getDictionary();
+    dictionary.setUserDictionary(UserDictionary.load(dictionary, new StringReader(entries.toString())));
+    assertEquals(300, countUserEntries(dictionary, "東京特許許可局"));
+  }
+  
+  /**
+   * Tests that an empty user dictionary does not change the analysis
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testEmptyUserDictionary() throws Exception {
+    String text = "東京特許許可局";
+    List<Token> expected = getStringTagger().analyze(text, new ArrayList<Token>());
+    StringTagger tagger = getUserStringTagger("# no entries\n");
+    compareTokens(expected.toArray(new Token[expected.size()]), tagger.analyze(text, new ArrayList<Token>()));
+  }
+  
+  /**
+   * Tests that malformed entries are rejected
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testInvalidEntries() throws Exception {
+    String[] invalid = new String[] {
+        "東京,-100,名詞,一般\n",
+        "東京,cost,名詞,一般,*,*,*,*,東京,トウキョウ,トーキョー\n",
+        "東京,-100,存在しない品詞,*,*,*,*,*,東京,トウキョウ,トーキョー\n"
+    };
+    Dictionary dictionary = SenFactory.getTokenizer(IPADIC_DIR).getDictionary();
+    for (String entries : invalid) {
+      try {
+        UserDictionary.load(dictionary, new StringReader(entries));
+        fail(entries);
+      } catch (IOException e) {
+      }
+    }
+  }
+}
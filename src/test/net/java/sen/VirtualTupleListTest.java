@@ -0,0 +1,126 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.java.sen.compiler.StringCTokenTuple;
+import net.java.sen.compiler.VirtualTupleList;
+import net.java.sen.dictionary.CToken;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests that {@link VirtualTupleList} sorts as a stable sort on
+ * {@link String#compareTo(String)}
+ */
+public class VirtualTupleListTest extends LuceneTestCase {
+  
+  /**
+   * Sorts a list of Strings with a VirtualTupleList and compares the result
+   * with a stable sort of the same list. Each entry's CToken records the
+   * order in which it was added, so that the order of equal Strings is
+   * checked
+   *
+   * @param strings The Strings to sort
+   * @throws Exception
+   */
+  private static void assertSorted(List<String> strings) throws Exception {
+    List<StringCTokenTuple> expected = new ArrayList<StringCTokenTuple>();
+    VirtualTupleList list = new VirtualTupleList();
+    try {
+      for (int i = 0; i < strings.size(); i++) {
+        CToken ctoken = new CToken();
+        ctoken.partOfSpeechIndex = i;
+        ctoken.length = (short) strings.get(i).length();
+        list.add(strings.get(i), ctoken);
+        expected.add(new StringCTokenTuple(strings.get(i), ctoken));
+      }
+      list.sort();
+      Collections.sort(expected);
+      
+      assertEquals(expected.size(), list.size());
+      for (int i = 0; i < expected.size(); i++) {
+        StringCTokenTuple tuple = list.get(i);
+        assertEquals(expected.get(i).key, tuple.key);
+        assertEquals(expected.get(i).value.partOfSpeechIndex, tuple.value.partOfSpeechIndex);
+        assertEquals(expected.get(i).value.length, tuple.value.length);
+      }
+    } finally {
+      list.close();
+    }
+  }
+  
+  /**
+   * Tests Strings that share the packed prefix, are shorter than it, or
+   * differ from each other only by trailing zero characters
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testPrefixes() throws Exception {
+    String[] strings = new String[] {
+        "abcdz", "abcd", "abcdy", "abcda", "abcd\u0000", "abc", "ab", "abc\u0000", "abc\u0000\u0000",
+        "a", "", "b", "abce", "Ａbcd", "あいうえお", "あいうえ",
+        "あいうえおか", "あい"
+    };
+    List<String> list = new ArrayList<String>();
+    for (String string : strings) {
+      list.add(string);
+    }
+    Collections.shuffle(list, random);
+    assertSorted(list);
+  }
+  
+  /**
+   * Tests that equal Strings stay in the order in which they were added
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testStability() throws Exception {
+    String[] strings = new String[] { "abcdef", "abcdeg", "ab", "あいうえお" };
+    List<String> list = new ArrayList<String>();
+    for (int i = 0; i < 200; i++) {
+      list.add(strings[random.nextInt(strings.length)]);
+    }
+    assertSorted(list);
+  }
+  
+  /**
+   * Tests random Strings from a small alphabet, long enough for the merge
+   * sort to merge runs of many entries
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testRandom() throws Exception {
+    char[] alphabet = new char[] { '\u0000', 'a', 'b', 'あ', 'ア', '￥' };
+    List<String> list = new ArrayList<String>();
+    for (int i = 0; i < 5000; i++) {
+      char[] chars = new char[random.nextInt(8)];
+      for (int j = 0; j < chars.length; j++) {
+        chars[j] = alphabet[random.nextInt(alphabet.length)];
+      }
+      list.add(new String(chars));
+    }
+    assertSorted(list);
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+
+package net.java.sen;
+
+import static net.java.sen.SenTestUtil.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.java.sen.dictionary.Sentence;
+import net.java.sen.dictionary.Token;
+import net.java.sen.dictionary.Viterbi;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Tests that the Viterbi lattice is reused, so that the memory allocated to
+ * analyse a sentence does not grow over repeated calls and is proportional
+ * only to the number of output tokens
+ */
+public class ViterbiAllocationTest extends LuceneTestCase {
+  
+  /**
+   * Returns the number of bytes allocated by the current thread so far
+   *
+   * @param bean The thread bean
+   * @return The number of bytes allocated
+   */
+  private static long allocatedBytes(com.sun.management.ThreadMXBean bean) {
+    return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+  
+  /**
+   * Tests the bytes allocated per sentence over repeated analysis
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testAllocationPerSentence() throws Exception {
+    Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled());
+    
+    Viterbi viterbi = getViterbi();
+    Sentence sentence = new Sentence("関西国際空港でＰＣを買いましたが、すもももももももものうちだった。");
+    List<Token> tokens = new ArrayList<Token>();
+    
+    // Warm up, growing the lattice to its final size
+    for (int i = 0; i < 2000; i++) {
+      viterbi.getBestTokens(sentence, tokens);
+    }
+    
+    final int iterations = 1000;
+    long[] bytesPerSentence = new long[3];
+    for (int round = 0; round < bytesPerSentence.length; round++) {
+      long before = allocatedBytes(bean);
+      for (int i = 0; i < iterations; i++) {
+        viterbi.getBestTokens(sentence, tokens);
+      }
+      bytesPerSentence[round] = (allocatedBytes(bean) - before) / iterations;
+    }
+    
+    // Only the output Tokens (with their surface Strings and Morphemes) and
+    // a SentenceIterator should be allocated, never the lattice
+    long limit = 512 * tokens.size() + 4096;
+    for (int round = 0; round < bytesPerSentence.length; round++) {
+      assertTrue("Allocated " + bytesPerSentence[round] + " bytes per sentence of " + tokens.size() + " tokens",
+          bytesPerSentence[round] <= limit);
+    }
+    
+    // and the amount must stay flat
+    assertTrue("Allocation grew from " + bytesPerSentence[0] + " to " + bytesPerSentence[2] + " bytes per sentence",
+        bytesPerSentence[2] <= bytesPerSentence[0] + 256);
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.compiler;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Vector;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests that {@link CostMatrixBuilder} matches rules as a scan of every rule
+ * would
+ */
+public class CostMatrixBuilderTest extends LuceneTestCase {
+  
+  /** The number of fields of a rule */
+  private static final int FIELDS = 7;
+  
+  /** The values of each field, besides the wildcard */
+  private static final String[][] VALUES = new String[][] {
+      { "名詞", "助詞", "動詞" },
+      { "一般", "格助詞", "自立" },
+      { "一般", "引用" },
+      { "人名", "地域" },
+      { "五段・カ行", "特殊・タ" },
+      { "基本形", "連用形" },
+      { "の", "に", "が", "行く" }
+  };
+  
+  /**
+   * Creates a random rule or query
+   *
+   * @param wildcards The probability in 1/10ths of each field being a
+   *                  wildcard
+   * @param unknown If <code>true</code>, fields may hold a value that is in no
+   *                rule
+   * @return The fields
+   */
+  private static String[] randomFields(int wildcards, boolean unknown) {
+    String[] fields = new String[FIELDS];
+    for (int i = 0; i < FIELDS; i++) {
+      if (random.nextInt(10) < wildcards) {
+        fields[i] = "*";
+      } else if (unknown && (random.nextInt(8) == 0)) {
+        fields[i] = "未知";
+      } else {
+        fields[i] = VALUES[i][random.nextInt(VALUES[i].length)];
+      }
+    }
+    return fields;
+  }
+  
+  /**
+   * @param fields The fields of a rule
+   * @return The rule
+   */
+  private static String join(String[] fields) {
+    StringBuilder rule = new StringBuilder();
+    for (int i = 0; i < fields.length; i++) {
+      if (i > 0) {
+        rule.append(',');
+      }
+      rule.append(fields[i]);
+    }
+    return rule.toString();
+  }
+  
+  /**
+   * Finds the rules matching a list of fields by comparing every rule
+   *
+   * @param rules The rules, in order of ID
+   * @param csv The fields
+   * @param parent If <code>true</code>, a wildcard in a rule matches any
+   *               value; otherwise a wildcard in <code>csv</code> does
+   * @return The IDs of the matching rules, in order
+   */
+  private static List<Integer> scanIdList(List<String[]> rules, String[] csv, boolean parent) {
+    List<Integer> results = new ArrayList<Integer>();
+    for (int i = 0; i < rules.size(); i++) {
+      String[] rule = rules.get(i);
+      boolean matches = true;
+      for (int j = 0; j < csv.length; j++) {
+        if (!(((!parent) && (csv[j].charAt(0) == '*')) || (parent && (rule[j].charAt(0) == '*'))
+            || rule[j].equals(csv[j]))) {
+          matches = false;
+          break;
+        }
+      }
+      if (matches) {
+        results.add(i);
+      }
+    }
+    return results;
+  }
+  
+  /**
+   * Finds the ID of a list of fields by comparing every rule: the first of
+   * the matching rules having the fewest wildcards
+   *
+   * @param rules The rules, in order of ID
+   * @param csv The fields
+   * @return The ID, or -1 if no rule matches
+   */
+  private static int scanDicId(List<String[]> rules, String[] csv) {
+    int max = -1;
+    int maxPriority = -1;
+    for (int i : scanIdList(rules, csv, true)) {
+      int priority = 0;
+      for (String field : rules.get(i)) {
+        if (field.charAt(0) != '*') {
+          priority++;
+        }
+      }
+      if (priority > maxPriority) {
+        max = i;
+        maxPriority = priority;
+      }
+    }
+    return max;
+  }
+  
+  /**
+   * Builds a CostMatrixBuilder over random rules, and compares its IDs with
+   * those found by a scan
+   *
+   * @param fullWildcard If <code>true</code>, a rule of wildcards is
+   *                     included, so that every query matches a rule
+   * @throws Exception
+   */
+  private static void checkRandomRules(boolean fullWildcard) throws Exception {
+    CostMatrixBuilder builder = new CostMatrixBuilder();
+    Set<String> ruleSet = new HashSet<String>();
+    List<String[]> rules = new ArrayList<String[]>();
+    if (fullWildcard) {
+      String[] fields = randomFields(10, false);
+      builder.add(join(fields));
+      ruleSet.add(join(fields));
+      rules.add(fields);
+    }
+    for (int i = 0; i < 60; i++) {
+      String[] fields = randomFields(6, false);
+      if (ruleSet.add(join(fields))) {
+        rules.add(fields);
+      }
+      builder.add(join(fields));
+    }
+    builder.build();
+    
+    assertEquals(rules.size(), builder.size());
+    for (String[] rule : rules) {
+      Vector<Integer> ids = builder.getRuleIdList(join(rule));
+      assertEquals(scanIdList(rules, rule, false), new ArrayList<Integer>(ids));
+    }
+    
+    // each query is made twice, so that cached IDs are checked
+    for (int i = 0; i < 400; i++) {
+      String[] query = randomFields(random.nextInt(5), true);
+      int expected = scanDicId(rules, query);
+      for (int j = 0; j < 2; j++) {
+        if (expected < 0) {
+          try {
+            builder.getDicId(query);
+            fail();
+          } catch (IllegalArgumentException e) {
+          }
+        } else {
+          assertEquals(join(query), expected, builder.getDicId(query.clone()));
+          assertEquals(join(query), expected, builder.getDicId(join(query)));
+        }
+      }
+    }
+  }
+  
+  /**
+   * Tests random rules including a rule of wildcards
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testRandomRules() throws Exception {
+    for (int i = 0; i < 20; i++) {
+      checkRandomRules(true);
+    }
+  }
+  
+  /**
+   * Tests random rules that do not match every query
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testUnmatchedQueries() throws Exception {
+    for (int i = 0; i < 20; i++) {
+      checkRandomRules(false);
+    }
+  }
+  
+  /**
+   * Tests a lexicalized rule taking precedence over the general rule for its
+   * part-of-speech, and the general rule being used for other last fields
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testLexicalized() throws Exception {
+    CostMatrixBuilder builder = new CostMatrixBuilder();
+    builder.add("*,*,*,*,*,*,*");
+    builder.add("助詞,格助詞,一般,*,*,*,*");
+    builder.add("助詞,格助詞,一般,*,*,*,の");
+    builder.add("助詞,*,*,*,*,*,*");
+    builder.build();
+    
+    assertEquals(2, builder.getDicId("助詞,格助詞,一般,*,*,*,の"));
+    assertEquals(1, builder.getDicId("助詞,格助詞,一般,*,*,*,に"));
+    assertEquals(2, builder.getDicId(new String[] { "助詞", "格助詞", "一般", "*", "*", "*", "の" }));
+    assertEquals(3, builder.getDicId("助詞,係助詞,*,*,*,*,の"));
+    assertEquals(0, builder.getDicId("名詞,一般,*,*,*,*,の"));
+    assertEquals(0, builder.getDicId("名詞,一般,*,*,*,*,*"));
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 2.1 of the License, or any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ * 
+ */
+
+package net.java.sen.dictionary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.lucene.util.LuceneTestCase;
+import org.junit.Test;
+
+/**
+ * Tests that {@link StringPool} decodes strings written by
+ * {@link DataOutputStream#writeUTF(String)}
+ */
+public class StringPoolTest extends LuceneTestCase {
+  
+  /**
+   * Strings of every length of encoded character: the empty string, \0
+   * (written in two bytes), one, two and three byte characters, and a
+   * surrogate pair
+   */
+  private static final String[] STRINGS = new String[] {
+      "", "\u0000", "a\u0000b", "名詞,一般", "\u00e9\u07ff", "\u0800\uffff",
+      "\ud842\udfb7野家", "五段・カ行イ音便"
+  };
+  
+  /** Written after a table, to check where reading it stops */
+  private static final int END_MARKER = 0x12345678;
+  
+  /**
+   * Writes a table of strings, followed by {@link #END_MARKER}
+   *
+   * @param strings The strings
+   * @return The written bytes
+   * @throws IOException
+   */
+  private static byte[] write(String[] strings) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeChar(strings.length);
+    for (String string : strings) {
+      out.writeUTF(string);
+    }
+    out.writeInt(END_MARKER);
+    out.close();
+    return bytes.toByteArray();
+  }
+  
+  /**
+   * Creates a random string of any characters, including unpaired
+   * surrogates
+   *
+   * @return The string
+   */
+  private static String randomString() {
+    char[] chars = new char[random.nextInt(20)];
+    for (int i = 0; i < chars.length; i++) {
+      switch (random.nextInt(3)) {
+        case 0:
+          chars[i] = (char) random.nextInt(0x80);
+          break;
+        case 1:
+          chars[i] = (char) random.nextInt(0x800);
+          break;
+        default:
+          chars[i] = (char) random.nextInt(0x10000);
+      }
+    }
+    return new String(chars);
+  }
+  
+  /**
+   * Reads a table and checks its strings, decoded in a random order
+   *
+   * @param strings The strings of the table
+   * @throws IOException
+   */
+  private static void checkStrings(String[] strings) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(write(strings));
+    StringPool pool = StringPool.read(buffer);
+    assertEquals(END_MARKER, buffer.getInt());
+    assertEquals(strings.length, pool.size());
+  
+    for (int i = 0; i < 2 * strings.length; i++) {
+      int index = random.nextInt(strings.length);
+      assertEquals(strings[index], pool.get(index));
+    }
+    for (int i = 0; i < strings.length; i++) {
+      assertEquals(strings[i], pool.get(i));
+    }
+  }
+  
+  /**
+   * Tests strings of each length of encoded character
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testStrings() throws Exception {
+    checkStrings(STRINGS);
+  }
+  
+  /**
+   * Tests random strings
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testRandomStrings() throws Exception {
+    String[] strings = new String[100 + random.nextInt(100)];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = randomString();
+    }
+    checkStrings(strings);
+  }
+  
+  /**
+   * Tests that a table cut short anywhere cannot be read
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testTruncated() throws Exception {
+    byte[] bytes = write(STRINGS);
+    int length = bytes.length - 4;
+    for (int i = 0; i < length; i++) {
+      try {
+        StringPool.read(ByteBuffer.wrap(bytes, 0, i));
+        fail("Read a table truncated to " + i + " of " + length + " bytes");
+      } catch (IOException e) {
+      }
+    }
+    assertEquals(STRINGS.length, StringPool.read(ByteBuffer.wrap(bytes, 0, length)).size());
+  }
+}
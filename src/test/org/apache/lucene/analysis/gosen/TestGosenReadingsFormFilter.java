@@ -0,0 +1,65 @@
+package org.apache.lucene.analysis.gosen;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import net.java.sen.SenTestUtil;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.BaseTokenStreamTestCase;
+import org.apache.lucene.analysis.ReusableAnalyzerBase;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+
+/**
+ * Copyright 2004 The Apache Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+public class TestGosenReadingsFormFilter extends BaseTokenStreamTestCase {
+  private Analyzer katakanaAnalyzer = new ReusableAnalyzerBase() {
+    @Override
+    protected TokenStreamComponents createComponents(String field, Reader reader) {
+      Tokenizer tokenizer = new GosenTokenizer(reader, null, SenTestUtil.IPADIC_DIR);
+      TokenStream stream = new GosenReadingsFormFilter(tokenizer);
+      return new TokenStreamComponents(tokenizer, stream);
+    }
+  };
+  
+  private Analyzer romajiAnalyzer = new ReusableAnalyzerBase() {
+    @Override
+    protected TokenStreamComponents createComponents(String field, Reader reader) {
+      Tokenizer tokenizer = new GosenTokenizer(reader, null, SenTestUtil.IPADIC_DIR);
+      TokenStream stream = new GosenReadingsFormFilter(tokenizer, true);
+      return new TokenStreamComponents(tokenizer, stream);
+    }
+  };
+  
+  public void testKatakanaReadings() throws IOException {
+    assertAnalyzesTo(katakanaAnalyzer, "それはまだ実験段階にあります",
+        new String[] { "ソレ", "ハ", "マダ", "ジッケン", "ダンカイ", "ニ", "アリ", "マス" }
+    );
+  }
+  
+  public void testRomajiReadings() throws IOException {
+    assertAnalyzesTo(romajiAnalyzer, "それはまだ実験段階にあります",
+        new String[] { "sore", "ha", "mada", "jikken", "dankai", "ni", "ari", "masu" }
+    );
+  }
+  
+  public void testRandomStrings() throws IOException {
+    checkRandomData(random, katakanaAnalyzer, 10000);
+    checkRandomData(random, romajiAnalyzer, 10000);
+  }
+}
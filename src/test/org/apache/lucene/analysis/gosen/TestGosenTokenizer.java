@@ -19,9 +19,13 @@ package org.apache.lucene.analysis.gosen;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
+import net.java.sen.SenFactory;
 import net.java.sen.SenTestUtil;
+import net.java.sen.dictionary.Token;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.BaseTokenStreamTestCase;
@@ -29,6 +33,10 @@ import org.apache.lucene.analysis.ReusableAnalyzerBase;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.gosen.GosenTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 import org.apache.lucene.util._TestUtil;
 
 /**
@@ -43,6 +51,15 @@ public class TestGosenTokenizer extends BaseTokenStreamTestCase {
     }
   };
   
+  private Analyzer nBestAnalyzer = new ReusableAnalyzerBase() {
+    @Override
+    protected TokenStreamComponents createComponents(String field, Reader reader) {
+      GosenTokenizer tokenizer = new GosenTokenizer(reader, null, SenTestUtil.IPADIC_DIR);
+      tokenizer.setNBest(3, Integer.MAX_VALUE);
+      return new TokenStreamComponents(tokenizer, tokenizer);
+    }
+  };
+  
   public void testDecomposition1() throws IOException {
     assertAnalyzesTo(analyzer, "本来は、貧困層の女性や子供に医療保護を提供するために創設された制度である、" +
                          "アメリカ低所得者医療援助制度が、今日では、その予算の約３分の１を老人に費やしている。",
@@ -114,6 +131,28 @@ public class TestGosenTokenizer extends BaseTokenStreamTestCase {
        new int[] { 4101, 4106 });
   }
   
+  /**
+   * Tests that text without line breaks longer than the read buffer is
+   * analysed as a whole
+   */
+  public void testLongSentence() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < 10000) {
+      sb.append("魔女狩大将マシュー・ホプキンス");
+    }
+    String input = sb.toString();
+    List<Token> tokens = SenFactory.getStringTagger(SenTestUtil.IPADIC_DIR).analyze(input, new ArrayList<Token>());
+    String[] surfaces = new String[tokens.size()];
+    int[] startOffsets = new int[tokens.size()];
+    int[] endOffsets = new int[tokens.size()];
+    for (int i = 0; i < tokens.size(); i++) {
+      surfaces[i] = tokens.get(i).getSurface();
+      startOffsets[i] = tokens.get(i).getStart();
+      endOffsets[i] = tokens.get(i).end();
+    }
+    assertAnalyzesTo(analyzer, input, surfaces, startOffsets, endOffsets);
+  }
+  
   /**
    * Tokenizes random unicode strings, to ensure no exception
    * (results could be completely bogus, but makes sure we don't crash on some input)
@@ -147,4 +186,58 @@ public class TestGosenTokenizer extends BaseTokenStreamTestCase {
         Integer.valueOf(12)
     );
   }
+  
+  /** Tests that the best analysis has one position per token */
+  public void testPositions() throws IOException {
+    assertAnalyzesTo(analyzer, "これは本ではない",
+        new String[] { "これ", "は", "本", "で", "は", "ない" },
+        new int[] { 0, 2, 3, 4, 5, 6 },
+        new int[] { 2, 3, 4, 5, 6, 8 },
+        new int[] { 1, 1, 1, 1, 1, 1 }
+    );
+  }
+  
+  /**
+   * Tests that N-best analysis produces a token graph containing the best
+   * analysis
+   */
+  public void testNBest() throws IOException {
+    String text = "麻薬の密売は根こそぎ絶やさなければならない";
+    List<String> best = new ArrayList<String>();
+    TokenStream ts = analyzer.reusableTokenStream("foo", new StringReader(text));
+    CharTermAttribute termAtt = ts.getAttribute(CharTermAttribute.class);
+    OffsetAttribute offsetAtt = ts.getAttribute(OffsetAttribute.class);
+    ts.reset();
+    while (ts.incrementToken()) {
+      best.add(termAtt.toString() + "/" + offsetAtt.startOffset());
+    }
+    ts.end();
+    ts.close();
+    
+    List<String> graph = new ArrayList<String>();
+    ts = nBestAnalyzer.reusableTokenStream("foo", new StringReader(text));
+    termAtt = ts.getAttribute(CharTermAttribute.class);
+    offsetAtt = ts.getAttribute(OffsetAttribute.class);
+    PositionIncrementAttribute posIncAtt = ts.getAttribute(PositionIncrementAttribute.class);
+    PositionLengthAttribute posLengthAtt = ts.getAttribute(PositionLengthAttribute.class);
+    ts.reset();
+    int lastStart = -1;
+    while (ts.incrementToken()) {
+      graph.add(termAtt.toString() + "/" + offsetAtt.startOffset());
+      assertTrue(offsetAtt.startOffset() >= lastStart);
+      assertEquals(offsetAtt.startOffset() > lastStart ? 1 : 0, posIncAtt.getPositionIncrement());
+      assertTrue(posLengthAtt.getPositionLength() >= 1);
+      lastStart = offsetAtt.startOffset();
+    }
+    ts.end();
+    ts.close();
+    
+    assertTrue(graph.containsAll(best));
+    assertTrue(graph.size() >= best.size());
+  }
+  
+  /** Tokenizes random strings with N-best analysis */
+  public void testNBestReliability() throws IOException {
+    checkRandomData(random, nBestAnalyzer, 1000);
+  }
 }